@@ -0,0 +1,252 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * JMH benchmark for the predicates that are compiled by {@link QueryGenerator#compile(JSONArray)} from the
+ * requirements of subscriptions. It measures how many inserted device descriptions per second can be matched against
+ * all subscriptions in-process, as well as the time that is required for compiling the requirements of all
+ * subscriptions. The subscriptions use a mix of all requirement types, such that the costs of the individual
+ * predicates are represented. Run it with <code>gradle jmh</code>.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SubscriptionPredicateBenchmark {
+
+    //Seed of the random generator, such that all runs use the same subscriptions and device descriptions
+    private static final long SEED = 42;
+
+    //Number of distinct device descriptions that are matched in turn
+    private static final int DEVICE_DESCRIPTIONS_COUNT = 256;
+
+    //Values from which the requirements and the device descriptions are generated
+    private static final String[] NAMES = {"Raspberry Pi", "Arduino Uno", "ESP32 DevKit", "Jetson Nano", "BeagleBone"};
+    private static final String[] ROOMS = {"Living room", "Kitchen", "Office", "Garage", "Bedroom", "Basement"};
+    private static final String[] KEYWORDS = {"raspberry", "temperature", "humidity", "camera", "gateway", "outdoor"};
+    private static final String[] QUANTITIES = {"temperature", "humidity", "light", "motion"};
+    private static final String[] DESCRIPTION_WORDS = {"sensor", "actuator", "camera", "controller", "gateway"};
+
+    //Center of the area in which the devices are located
+    private static final double CENTER_LAT = 48.745;
+    private static final double CENTER_LON = 9.106;
+
+    //Number of subscriptions to match against
+    @Param({"10000"})
+    private int subscriptionsCount;
+
+    //Requirements of the subscriptions
+    private List<JSONArray> requirements;
+
+    //Compiled predicates of the subscriptions
+    private List<Predicate<JSONObject>> predicates;
+
+    //Device descriptions that are matched in turn
+    private JSONObject[] deviceDescriptions;
+
+    //Index of the device description to match next
+    private int nextDeviceDescription = 0;
+
+    /**
+     * Generates the requirements of the subscriptions and the device descriptions and compiles the requirements.
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(SEED);
+
+        //Generate and compile the requirements of the subscriptions
+        this.requirements = new ArrayList<>(subscriptionsCount);
+        this.predicates = new ArrayList<>(subscriptionsCount);
+        for (int i = 0; i < subscriptionsCount; i++) {
+            JSONArray subscriptionRequirements = createRequirements(random);
+            Predicate<JSONObject> predicate = QueryGenerator.compile(subscriptionRequirements);
+
+            //Sanity check
+            if (predicate == null) {
+                throw new IllegalStateException("Failed to compile the requirements " + subscriptionRequirements + ".");
+            }
+
+            this.requirements.add(subscriptionRequirements);
+            this.predicates.add(predicate);
+        }
+
+        //Generate the device descriptions
+        this.deviceDescriptions = new JSONObject[DEVICE_DESCRIPTIONS_COUNT];
+        for (int i = 0; i < DEVICE_DESCRIPTIONS_COUNT; i++) {
+            this.deviceDescriptions[i] = createDeviceDescription(random);
+        }
+    }
+
+    /**
+     * Matches a single inserted device description against the predicates of all subscriptions, as it is done when
+     * the subscribers are notified about a new device description. One operation corresponds to one inserted device
+     * description.
+     *
+     * @return The number of subscriptions that are matched by the device description
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int matchInsertedDeviceDescription() {
+        //Get the next device description
+        JSONObject deviceDescription = deviceDescriptions[nextDeviceDescription];
+        nextDeviceDescription = (nextDeviceDescription + 1) % DEVICE_DESCRIPTIONS_COUNT;
+
+        //Evaluate the predicates of all subscriptions
+        int matches = 0;
+        for (Predicate<JSONObject> predicate : predicates) {
+            if (predicate.test(deviceDescription)) matches++;
+        }
+        return matches;
+    }
+
+    /**
+     * Compiles the requirements of all subscriptions, as it is done when the predicates of the subscriptions are
+     * built for the first time.
+     *
+     * @param blackhole The blackhole that consumes the compiled predicates
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void compileSubscriptions(Blackhole blackhole) {
+        for (JSONArray subscriptionRequirements : requirements) {
+            blackhole.consume(QueryGenerator.compile(subscriptionRequirements));
+        }
+    }
+
+    /**
+     * Creates the requirements of a subscription, consisting of one to three requirements of random types.
+     *
+     * @param random The random generator to use
+     * @return The created requirements
+     */
+    private static JSONArray createRequirements(Random random) {
+        JSONArray requirements = new JSONArray();
+        int requirementsCount = 1 + random.nextInt(3);
+        for (int i = 0; i < requirementsCount; i++) {
+            requirements.put(createRequirement(random));
+        }
+        return requirements;
+    }
+
+    /**
+     * Creates a single requirement of a random type.
+     *
+     * @param random The random generator to use
+     * @return The created requirement
+     */
+    private static JSONObject createRequirement(Random random) {
+        String name = pick(random, NAMES);
+        switch (random.nextInt(9)) {
+            case 0:
+                return new JSONObject().put("type", "name").put("operator", "equals").put("match", name);
+            case 1:
+                return new JSONObject().put("type", "name").put("operator", "begins_with")
+                        .put("match", name.substring(0, 1 + random.nextInt(name.length() - 1)));
+            case 2:
+                return new JSONObject().put("type", "name").put("operator", "contains")
+                        .put("match", name.substring(1, 4));
+            case 3:
+                return new JSONObject().put("type", "location").put("operator", "described_by")
+                        .put("details", new JSONObject().put("operator", "equals").put("match", pick(random, ROOMS)));
+            case 4:
+                return new JSONObject().put("type", "location").put("operator", "in_area")
+                        .put("details", new JSONObject().put("lat", randomLatitude(random))
+                                .put("lon", randomLongitude(random)).put("radius", 500 + random.nextInt(2000)));
+            case 5:
+                //Axis-aligned square, given as closed ring of [lon, lat] points
+                double lat = randomLatitude(random), lon = randomLongitude(random), size = 0.01;
+                return new JSONObject().put("type", "location").put("operator", "in_area")
+                        .put("details", new JSONObject().put("polygon", new JSONArray()
+                                .put(new JSONArray().put(lon).put(lat))
+                                .put(new JSONArray().put(lon + size).put(lat))
+                                .put(new JSONArray().put(lon + size).put(lat + size))
+                                .put(new JSONArray().put(lon).put(lat + size))
+                                .put(new JSONArray().put(lon).put(lat))));
+            case 6:
+                return new JSONObject().put("type", "keywords").put("operator", random.nextBoolean() ? "any" : "all")
+                        .put("match", new JSONArray().put(pick(random, KEYWORDS)).put(pick(random, KEYWORDS)));
+            case 7:
+                return new JSONObject().put("type", "capability").put("name", "RAM")
+                        .put("operator", random.nextBoolean() ? "greater_equals" : "less_than")
+                        .put("match", 512 * (1 + random.nextInt(8)));
+            default:
+                return random.nextBoolean() ?
+                        new JSONObject().put("type", "description").put("operator", random.nextBoolean() ? "and" : "or")
+                                .put("match", pick(random, QUANTITIES) + " " + pick(random, DESCRIPTION_WORDS)) :
+                        new JSONObject().put("type", "attachment").put("details", new JSONObject()
+                                .put("type", "sensor").put("quantity", pick(random, QUANTITIES)));
+        }
+    }
+
+    /**
+     * Creates a device description with random values, following the structure of the example device description.
+     *
+     * @param random The random generator to use
+     * @return The created device description
+     */
+    private static JSONObject createDeviceDescription(Random random) {
+        String room = pick(random, ROOMS);
+        String quantity = pick(random, QUANTITIES);
+        return new JSONObject()
+                .put("name", pick(random, NAMES))
+                .put("description", "A device in the " + room.toLowerCase() + ", equipped with a " + quantity + " "
+                        + pick(random, DESCRIPTION_WORDS) + ".")
+                .put("keywords", new JSONArray().put(pick(random, KEYWORDS)).put(pick(random, KEYWORDS)).put(room))
+                .put("location", new JSONObject()
+                        .put("description", room)
+                        .put("coordinates", new JSONObject().put("lat", randomLatitude(random))
+                                .put("lon", randomLongitude(random))))
+                .put("identifiers", new JSONObject().put("mac_address", String.format("AA:BB:CC:%02X:%02X:%02X",
+                        random.nextInt(256), random.nextInt(256), random.nextInt(256))))
+                .put("capabilities", new JSONObject()
+                        .put("RAM", new JSONObject().put("value", 512 * (1 + random.nextInt(8))))
+                        .put("Python", new JSONObject().put("value", random.nextBoolean())))
+                .put("attachments", new JSONArray()
+                        .put(new JSONObject().put("type", "sensor").put("model", "Sensor " + random.nextInt(10))
+                                .put("object", new JSONObject().put("quantity", quantity))
+                                .put("port", random.nextInt(20))));
+    }
+
+    /**
+     * Picks a random element from a given array.
+     *
+     * @param random The random generator to use
+     * @param values The array to pick from
+     * @return The picked element
+     */
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * Returns a random latitude within about ten kilometers of the center.
+     *
+     * @param random The random generator to use
+     * @return The latitude
+     */
+    private static double randomLatitude(Random random) {
+        return CENTER_LAT + (random.nextDouble() - 0.5) * 0.2;
+    }
+
+    /**
+     * Returns a random longitude within about ten kilometers of the center.
+     *
+     * @param random The random generator to use
+     * @return The longitude
+     */
+    private static double randomLongitude(Random random) {
+        return CENTER_LON + (random.nextDouble() - 0.5) * 0.2;
+    }
+}
@@ -1,26 +1,154 @@
 package de.ipvs.as.mbp.discovery_repository;
 
 import de.ipvs.as.mbp.discovery_repository.service.repository.RepositoryClient;
+import de.ipvs.as.mbp.discovery_repository.service.repository.cache.CacheSettings;
+import de.ipvs.as.mbp.discovery_repository.service.repository.cache.CachingRepositoryClient;
 import de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.ElasticSearchClient;
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.ElasticSearchSettings;
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.file.FileRepositoryClient;
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.InMemoryRepositoryClient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.file.Paths;
+
 /**
  * Configuration of a client that enables interaction with a repository to store, manage and search device descriptions.
  */
 @Configuration
 public class RepositoryConfiguration {
 
+    /*
+    Inject repository-related properties from the application.properties file.
+     */
+    @Value("${repository.type:elasticsearch}")
+    private String repositoryType;
+
+    @Value("${repository.file.directory:data}")
+    private String fileDirectory;
+
+    @Value("${repository.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${repository.cache.documents.max_bytes:67108864}")
+    private long documentCacheMaxBytes;
+
+    @Value("${repository.cache.documents.ttl_ms:60000}")
+    private long documentCacheTtl;
+
+    @Value("${repository.cache.queries.max_bytes:16777216}")
+    private long queryCacheMaxBytes;
+
+    @Value("${repository.cache.queries.ttl_ms:10000}")
+    private long queryCacheTtl;
+
+    @Value("${repository.refresh_interval_ms:1000}")
+    private long refreshInterval;
+
+    @Value("${repository.scheme:http}")
+    private String scheme;
+
+    @Value("${repository.sniffing.enabled:false}")
+    private boolean sniffingEnabled;
+
+    @Value("${repository.sniffing.interval_ms:300000}")
+    private int sniffInterval;
+
+    @Value("${repository.sniffing.after_failure_delay_ms:60000}")
+    private int sniffAfterFailureDelay;
+
+    @Value("${repository.connections.max_total:100}")
+    private int maxConnectionsTotal;
+
+    @Value("${repository.connections.max_per_node:50}")
+    private int maxConnectionsPerNode;
+
+    @Value("${repository.connections.io_threads:0}")
+    private int ioThreadCount;
+
+    @Value("${repository.connections.callback_threads:0}")
+    private int callbackThreadCount;
+
+    @Value("${repository.connections.keep_alive_ms:60000}")
+    private long keepAlive;
+
+    @Value("${repository.timeouts.connect_ms:1000}")
+    private int connectTimeout;
+
+    @Value("${repository.timeouts.socket_ms:30000}")
+    private int socketTimeout;
+
+    @Value("${repository.instance_id:${app.name}}")
+    private String instanceId;
+
+    @Value("${repository.migrate_index:false}")
+    private boolean indexMigrationEnabled;
+
     /**
      * Creates a bean that represents a client for interacting with a repository that can be used
      * to store, manage and search device descriptions. This bean offers an uniform and technology-agnostic
-     * interface, so that the actually used repository technology is hidden from other components.
+     * interface, so that the actually used repository technology is hidden from other components. Depending on
+     * the configured repository type, either an Elasticsearch repository, an embedded in-memory repository or an
+     * embedded file-based repository is used. Unless disabled, retrievals of documents and queries on repositories
+     * that are not kept in memory are served from caches.
      *
      * @return The configured client for interacting with the repository
      */
     @Bean
     public RepositoryClient repositoryClient() {
+        //Create the client for the configured repository type
+        RepositoryClient repositoryClient = createRepositoryClient();
+
+        //Check whether a cache is supposed to be used
+        if (!cacheEnabled || (repositoryClient instanceof InMemoryRepositoryClient)) {
+            return repositoryClient;
+        }
+
+        //Create cache settings from the properties
+        CacheSettings cacheSettings = new CacheSettings()
+                .setDocumentCacheMaxBytes(documentCacheMaxBytes)
+                .setDocumentCacheTtlMillis(documentCacheTtl)
+                .setQueryCacheMaxBytes(queryCacheMaxBytes)
+                .setQueryCacheTtlMillis(queryCacheTtl)
+                .setSearchVisibilityDelayMillis(refreshInterval);
+
+        //Wrap the client with the cache
+        return new CachingRepositoryClient(repositoryClient, cacheSettings);
+    }
+
+    /**
+     * Creates the client for the configured repository type.
+     *
+     * @return The created client
+     */
+    private RepositoryClient createRepositoryClient() {
+        //Check if one of the embedded repositories is supposed to be used
+        if (repositoryType.equalsIgnoreCase("memory")) {
+            return new InMemoryRepositoryClient();
+        } else if (repositoryType.equalsIgnoreCase("file")) {
+            return new FileRepositoryClient(Paths.get(fileDirectory));
+        } else if (!repositoryType.equalsIgnoreCase("elasticsearch")) {
+            throw new IllegalArgumentException("Unknown repository type: " + repositoryType);
+        }
+
+        //Create connection settings from the properties
+        ElasticSearchSettings settings = new ElasticSearchSettings()
+                .setScheme(scheme)
+                .setSniffingEnabled(sniffingEnabled)
+                .setSniffIntervalMillis(sniffInterval)
+                .setSniffAfterFailureDelayMillis(sniffAfterFailureDelay)
+                .setMaxConnectionsTotal(maxConnectionsTotal)
+                .setMaxConnectionsPerRoute(maxConnectionsPerNode)
+                .setIoThreadCount(ioThreadCount)
+                .setCallbackThreadCount(callbackThreadCount)
+                .setKeepAliveMillis(keepAlive)
+                .setConnectTimeoutMillis(connectTimeout)
+                .setSocketTimeoutMillis(socketTimeout)
+                .setInstanceId(instanceId)
+                .setIndexMigrationEnabled(indexMigrationEnabled);
+
         //Use elasticsearch repository
-        return new ElasticSearchClient();
+        return new ElasticSearchClient(settings);
     }
 }
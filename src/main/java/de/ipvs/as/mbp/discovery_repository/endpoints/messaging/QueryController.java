@@ -4,14 +4,20 @@ import de.ipvs.as.mbp.discovery_repository.TopicConfiguration;
 import de.ipvs.as.mbp.discovery_repository.service.descriptions.DeviceDescriptionsService;
 import de.ipvs.as.mbp.discovery_repository.service.messaging.endpoints.MessagingController;
 import de.ipvs.as.mbp.discovery_repository.service.messaging.endpoints.MessagingEndpoint;
+import de.ipvs.as.mbp.discovery_repository.service.repository.Projection;
+import de.ipvs.as.mbp.discovery_repository.service.repository.RepositoryQuery;
 import de.ipvs.as.mbp.discovery_repository.service.subscription.Subscription;
 import de.ipvs.as.mbp.discovery_repository.service.subscription.SubscriptionService;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Controller that exposes an endpoint for handling incoming device description query request messages.
@@ -28,8 +34,14 @@ public class QueryController {
     @Autowired
     private SubscriptionService subscriptionService;
 
+    //Executor for continuations that block on the repository, such that the threads completing its futures are not
+    //occupied while they wait for further responses of the repository
+    @Autowired
+    @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    private Executor requestExecutor;
+
     @MessagingEndpoint(topic = TopicConfiguration.SUB_TOPIC_QUERY, type = "test_reply")
-    public JSONObject handleQueryRequests(String topic, JSONObject message) {
+    public CompletableFuture<JSONObject> handleQueryRequests(String topic, JSONObject message) {
         //Get message payload
         JSONObject messagePayload = message.getJSONObject("message");
 
@@ -38,36 +50,52 @@ public class QueryController {
         JSONArray requirements = messagePayload.optJSONArray("requirements");
         JSONArray scoringCriteria = messagePayload.optJSONArray("scoringCriteria");
         String notificationTopic = messagePayload.optString("notificationTopic");
+        int limit = messagePayload.optInt("limit", 0);
+        String continuationToken = messagePayload.optString("continuationToken");
+        Projection projection = Projection.fromJSON(messagePayload.optJSONArray("includes"), messagePayload.optJSONArray("excludes"));
+
+        //Create query from the requirements, scoring criteria, limit, projection and continuation token
+        RepositoryQuery query = new RepositoryQuery(requirements, scoringCriteria).setLimit(limit)
+                .setProjection(projection).setContinuationToken(continuationToken);
+
+        //Remember whether a subsequent page is requested
+        boolean isContinuation = query.getContinuationToken() != null;
 
-        //Query the device description repository using the requirements and scoring criteria
-        List<JSONObject> candidateDevices = deviceDescriptionsService.queryDeviceDescriptions(requirements, scoringCriteria);
+        //Query the device description repository and process the result outside of the callback threads, since the
+        //registration of subscriptions performs synchronous requests
+        return deviceDescriptionsService.queryDeviceDescriptionsAsync(query).thenApplyAsync(queryResult -> {
+            //Get the matching devices of the page
+            List<JSONObject> candidateDevices = queryResult.getDocuments();
 
-        //Create body of reply message
-        JSONObject replyMessageBody = new JSONObject();
+            //Create body of reply message
+            JSONObject replyMessageBody = new JSONObject();
 
-        //Create revision object
-        JSONObject revisionObject = new JSONObject();
+            //Create revision object
+            JSONObject revisionObject = new JSONObject();
 
-        //Create operation object
-        JSONObject operationObject = new JSONObject();
-        operationObject.put("type", "replace");
-        operationObject.put("deviceDescriptions", new JSONArray().putAll(candidateDevices));
+            //Create operation object
+            JSONObject operationObject = new JSONObject();
+            operationObject.put("type", isContinuation ? "upsert" : "replace");
+            operationObject.put("deviceDescriptions", new JSONArray().putAll(candidateDevices));
 
-        //Set fields of revision object
-        revisionObject.put("referenceIds", new JSONArray().put(referenceId.isEmpty() ? JSONObject.NULL : referenceId));
-        revisionObject.put("operations", new JSONArray().put(operationObject));
+            //Set fields of revision object
+            revisionObject.put("referenceIds", new JSONArray().put(referenceId.isEmpty() ? JSONObject.NULL : referenceId));
+            revisionObject.put("operations", new JSONArray().put(operationObject));
+            revisionObject.put("continuationToken", queryResult.hasMore() ? queryResult.getContinuationToken() : JSONObject.NULL);
 
-        //Add revision object to reply message
-        replyMessageBody.put("revisions", new JSONArray().put(revisionObject));
+            //Add revision object to reply message
+            replyMessageBody.put("revisions", new JSONArray().put(revisionObject));
 
-        //Check whether a subscription is supposed to be created
-        if((notificationTopic == null) || notificationTopic.isEmpty()) return replyMessageBody;
+            //Check whether a subscription is supposed to be created, which is only done for the first page
+            if (isContinuation || (notificationTopic == null) || notificationTopic.isEmpty()) return replyMessageBody;
 
-        //Register corresponding subscription
-        Subscription subscription = new Subscription(notificationTopic, referenceId, requirements, scoringCriteria, candidateDevices);
-        this.subscriptionService.registerSubscription(subscription);
+            //Register corresponding subscription
+            Subscription subscription = new Subscription(notificationTopic, referenceId, query.getRequirements(),
+                    query.getScoringCriteria(), candidateDevices).setLimit(query.getLimit()).setProjection(projection);
+            this.subscriptionService.registerSubscription(subscription);
 
-        //Return body of the reply message
-        return replyMessageBody;
+            //Return body of the reply message
+            return replyMessageBody;
+        }, this.requestExecutor);
     }
 }
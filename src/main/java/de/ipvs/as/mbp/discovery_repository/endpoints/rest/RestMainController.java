@@ -6,19 +6,35 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import de.ipvs.as.mbp.discovery_repository.error.ApplicationException;
 import de.ipvs.as.mbp.discovery_repository.service.descriptions.DeviceDescriptionsService;
 import de.ipvs.as.mbp.discovery_repository.service.messaging.PubSubService;
+import de.ipvs.as.mbp.discovery_repository.service.repository.Projection;
+import de.ipvs.as.mbp.discovery_repository.service.repository.QueryResult;
+import de.ipvs.as.mbp.discovery_repository.service.repository.RepositoryQuery;
+import de.ipvs.as.mbp.discovery_repository.service.repository.WriteConsistency;
+import de.ipvs.as.mbp.discovery_repository.service.subscription.NotificationCoalescer;
+import de.ipvs.as.mbp.discovery_repository.service.subscription.NotificationPipeline;
 import de.ipvs.as.mbp.discovery_repository.service.subscription.SubscriptionService;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Main REST controller for responding to REST requests.
@@ -34,23 +50,56 @@ public class RestMainController {
     @Autowired
     private SubscriptionService subscriptionService;
 
+    @Autowired
+    private NotificationPipeline notificationPipeline;
+
+    @Autowired
+    private NotificationCoalescer notificationCoalescer;
+
     @Autowired
     private PubSubService pubSubService;
 
+    //Executor for continuations that may block on the backpressure of the notification pipeline, such that the
+    //threads completing the futures of the repository are never blocked
+    @Autowired
+    @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    private Executor requestExecutor;
+
     @GetMapping(value = "/deviceDescriptions", produces = "application/json")
-    public ResponseEntity<List<JsonNode>> getDeviceDescriptions() {
-        //Get all device descriptions
-        Map<String, JSONObject> deviceDescriptions = deviceDescriptionsService.getAllDeviceDescriptions();
-
-        //Transform descriptions to list
-        List<JsonNode> deviceDescriptionsList = deviceDescriptions.entrySet().stream().map(d -> {
-            //Extend JSONObject for identifier
-            d.getValue().put("id", d.getKey());
-            return transformJSON(d.getValue());
-        }).collect(Collectors.toList());
-
-        //Return the list of device descriptions as response
-        return ResponseEntity.ok(deviceDescriptionsList);
+    public ResponseEntity<StreamingResponseBody> getDeviceDescriptions(@RequestParam(value = "includes", required = false) List<String> includes,
+                                                                       @RequestParam(value = "excludes", required = false) List<String> excludes) {
+        //Determine the projection to apply
+        Projection projection = parseProjection(includes == null ? null : new JSONArray(includes),
+                excludes == null ? null : new JSONArray(excludes));
+
+        //Create body that writes the device descriptions one by one as JSON array while they are retrieved; if the
+        //retrieval fails, the exception aborts the response instead of closing the array of an incomplete result
+        StreamingResponseBody responseBody = outputStream -> {
+            //Stream all device descriptions
+            try (Stream<Map.Entry<String, JSONObject>> deviceDescriptions = deviceDescriptionsService.streamAllDeviceDescriptions(projection)) {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+                writer.write('[');
+
+                //Iterate over all device descriptions
+                Iterator<Map.Entry<String, JSONObject>> iterator = deviceDescriptions.iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<String, JSONObject> d = iterator.next();
+
+                    //Extend JSONObject for identifier and write it
+                    d.getValue().put("id", d.getKey());
+                    d.getValue().write(writer);
+
+                    //Separate the device descriptions
+                    if (iterator.hasNext()) writer.write(',');
+                }
+
+                writer.write(']');
+                writer.flush();
+            }
+        };
+
+        //Return the stream of device descriptions as response
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(responseBody);
     }
 
     @GetMapping(value = "/example", produces = "application/json")
@@ -79,18 +128,25 @@ public class RestMainController {
         statusMap.put("broker_port", pubSubService.getBrokerPort());
         statusMap.put("device_descriptions_count", deviceDescriptionsService.getDeviceDescriptionsCount());
         statusMap.put("subscriptions_count", subscriptionService.getSubscriptionsCount());
+        statusMap.put("repository_cache", deviceDescriptionsService.getCacheStatistics());
+        statusMap.put("notifications", notificationPipeline.getStatistics());
+        statusMap.put("notification_coalescing", notificationCoalescer.getStatistics());
 
         //Return status map as response
         return ResponseEntity.ok(statusMap);
     }
 
     @PostMapping(value = "/deviceDescriptions", produces = "application/json")
-    public ResponseEntity<JsonNode> insertDeviceDescription(@RequestBody String deviceDescription) {
+    public CompletableFuture<ResponseEntity<JsonNode>> insertDeviceDescription(@RequestBody String deviceDescription,
+                                                                              @RequestParam(value = "consistency", required = false) String consistency) {
         //Apply basic sanity checks
         if ((deviceDescription == null) || (deviceDescription.isEmpty())) {
             throw new ApplicationException(HttpStatus.BAD_REQUEST, "The device description must not be null or empty.");
         }
 
+        //Determine the consistency level to use
+        WriteConsistency writeConsistency = parseWriteConsistency(consistency);
+
         //Try to parse device description as JSON
         JSONObject jsonDescription;
         try {
@@ -112,49 +168,157 @@ public class RestMainController {
         }
 
         //No violations, thus add the device description to the repository
-        String id = this.deviceDescriptionsService.addDeviceDescription(jsonDescription);
+        return this.deviceDescriptionsService.addDeviceDescriptionAsync(jsonDescription, writeConsistency).thenApplyAsync(id -> {
+            //Check if identifier is valid
+            if ((id == null) || (id.isEmpty())) {
+                //Insert failed, because no identifier is available
+                throw new ApplicationException(HttpStatus.INTERNAL_SERVER_ERROR, "The device description is valid, but the insertion failed. Is the repository available?");
+            }
 
-        //Check if identifier is valid
-        if ((id == null) || (id.isEmpty())) {
-            //Insert failed, because no identifier is available
-            throw new ApplicationException(HttpStatus.INTERNAL_SERVER_ERROR, "The device description is valid, but the insertion failed. Is the repository available?");
+            //Copy device description
+            JSONObject insertedDeviceDescription = new JSONObject(jsonDescription, JSONObject.getNames(jsonDescription));
+
+            //Submit the notification of the subscribers, which is performed as soon as the device description is visible for searches
+            this.notificationPipeline.submitInsert(jsonDescription, writeConsistency);
+
+            //Extend device description for an ID field
+            insertedDeviceDescription.put("id", id);
+
+            //Return response with the extended device description
+            return new ResponseEntity<>(transformJSON(insertedDeviceDescription), HttpStatus.CREATED);
+        }, this.requestExecutor);
+    }
+
+    @PostMapping(value = "/deviceDescriptions/_bulk", produces = "application/json")
+    public CompletableFuture<ResponseEntity<JsonNode>> insertDeviceDescriptions(@RequestBody String deviceDescriptions,
+                                                                               @RequestParam(value = "consistency", required = false) String consistency) {
+        //Apply basic sanity checks
+        if ((deviceDescriptions == null) || (deviceDescriptions.isEmpty())) {
+            throw new ApplicationException(HttpStatus.BAD_REQUEST, "The device descriptions must not be null or empty.");
+        }
+
+        //Determine the consistency level to use
+        WriteConsistency writeConsistency = parseWriteConsistency(consistency);
+
+        //Split the NDJSON body into its lines
+        String[] lines = deviceDescriptions.split("\\r?\\n");
+
+        //Create lists for the line numbers, the parsed device descriptions and the parsing errors
+        List<Integer> lineNumbers = new ArrayList<>();
+        List<JSONObject> jsonDescriptions = new ArrayList<>();
+        List<List<String>> violationMessages = new ArrayList<>();
+
+        //Try to parse each non-empty line as device description
+        long timestamp = Instant.now().toEpochMilli();
+        for (int i = 0; i < lines.length; i++) {
+            //Skip empty lines
+            if (lines[i].isBlank()) continue;
+            lineNumbers.add(i + 1);
+
+            try {
+                //Parse device description and extend it for a timestamp
+                JSONObject jsonDescription = new JSONObject(lines[i]);
+                jsonDescription.put("last_update", timestamp);
+                jsonDescriptions.add(jsonDescription);
+                violationMessages.add(null);
+            } catch (JSONException e) {
+                jsonDescriptions.add(null);
+                violationMessages.add(Collections.singletonList("The device description does not seem to consist out of valid JSON."));
+            }
         }
 
-        //Copy device description
-        JSONObject insertedDeviceDescription = new JSONObject(jsonDescription, JSONObject.getNames(jsonDescription));
+        //Validate the successfully parsed device descriptions in parallel
+        List<Integer> validIndices = new ArrayList<>();
+        for (int i = 0; i < jsonDescriptions.size(); i++) {
+            if (jsonDescriptions.get(i) != null) validIndices.add(i);
+        }
+        List<List<String>> validationResults = this.deviceDescriptionsService.validateDeviceDescriptions(
+                validIndices.stream().map(jsonDescriptions::get).collect(Collectors.toList()));
+
+        //Collect the device descriptions that comply to the schema
+        List<Integer> insertIndices = new ArrayList<>();
+        for (int i = 0; i < validIndices.size(); i++) {
+            //Check if violations could be found
+            if ((validationResults.get(i) != null) && (!validationResults.get(i).isEmpty())) {
+                violationMessages.set(validIndices.get(i), validationResults.get(i));
+                continue;
+            }
+            insertIndices.add(validIndices.get(i));
+        }
 
-        //Notify the subscribers if necessary
-        this.subscriptionService.notifyAboutInsert(insertedDeviceDescription);
+        //Add the compliant device descriptions to the repository
+        List<JSONObject> insertDescriptions = insertIndices.stream().map(jsonDescriptions::get).collect(Collectors.toList());
+        CompletableFuture<List<String>> idsFuture = insertDescriptions.isEmpty() ?
+                CompletableFuture.completedFuture(Collections.emptyList()) :
+                this.deviceDescriptionsService.addDeviceDescriptionsAsync(insertDescriptions, writeConsistency);
 
-        //Extend device description for an ID field
-        insertedDeviceDescription.put("id", id);
+        //Create the response as soon as the insertion was processed
+        return idsFuture.thenApplyAsync(ids -> createBulkResponse(lineNumbers, jsonDescriptions, violationMessages,
+                insertIndices, ids, writeConsistency), this.requestExecutor);
+    }
 
-        //Return response with the extended device description
-        return new ResponseEntity<>(transformJSON(insertedDeviceDescription), HttpStatus.CREATED);
+    @PostMapping(value = "/deviceDescriptions/_query", produces = "application/json")
+    public CompletableFuture<ResponseEntity<JsonNode>> queryDeviceDescriptions(@RequestBody String queryBody) {
+        //Try to parse the query as JSON
+        JSONObject jsonQuery;
+        try {
+            jsonQuery = new JSONObject(queryBody);
+        } catch (JSONException e) {
+            throw new ApplicationException(HttpStatus.BAD_REQUEST, "The query does not seem to consist out of valid JSON.");
+        }
+
+        //Create query from the requirements, scoring criteria, limit, projection and continuation token
+        RepositoryQuery query = new RepositoryQuery(jsonQuery.optJSONArray("requirements"), jsonQuery.optJSONArray("scoringCriteria"))
+                .setLimit(jsonQuery.optInt("limit", 0))
+                .setProjection(parseProjection(jsonQuery.optJSONArray("includes"), jsonQuery.optJSONArray("excludes")))
+                .setContinuationToken(jsonQuery.optString("continuationToken"));
+
+        //Query the device description repository
+        CompletableFuture<QueryResult> resultFuture;
+        try {
+            resultFuture = this.deviceDescriptionsService.queryDeviceDescriptionsAsync(query);
+        } catch (IllegalArgumentException e) {
+            throw new ApplicationException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        //Create the response from the resulting page
+        return resultFuture.thenApply(queryResult -> {
+            //Create response body
+            JSONObject responseBody = new JSONObject();
+            responseBody.put("deviceDescriptions", new JSONArray().putAll(queryResult.getDocuments()));
+            responseBody.put("continuationToken", queryResult.hasMore() ? queryResult.getContinuationToken() : JSONObject.NULL);
+
+            //Return response with the resulting page
+            return ResponseEntity.ok(transformJSON(responseBody));
+        });
     }
 
     @DeleteMapping(value = "/deviceDescriptions/{id}", produces = "application/json")
-    public ResponseEntity<Void> deleteDeviceDescription(@PathVariable("id") String id) {
+    public CompletableFuture<ResponseEntity<Void>> deleteDeviceDescription(@PathVariable("id") String id,
+                                                                          @RequestParam(value = "consistency", required = false) String consistency) {
         //Apply basic sanity checks
         if ((id == null) || (id.isEmpty())) {
             throw new ApplicationException(HttpStatus.BAD_REQUEST, "The device description identifier must not be null or empty.");
         }
 
-        //Retrieve the device description from the repository
-        JSONObject deviceDescription = this.deviceDescriptionsService.getDeviceDescription(id);
-
-        //Check if the device description could be found
-        if (deviceDescription == null)
-            throw new ApplicationException(HttpStatus.NOT_FOUND, "The device description does not exist.");
+        //Determine the consistency level to use
+        WriteConsistency writeConsistency = parseWriteConsistency(consistency);
 
-        //Delete the device description
-        this.deviceDescriptionsService.deleteDeviceDescription(id);
+        //Retrieve the device description from the repository, covering also writes that are not searchable yet
+        return this.deviceDescriptionsService.getDeviceDescriptionAsync(id).thenCompose(deviceDescription -> {
+            //Check if the device description could be found
+            if (deviceDescription == null)
+                throw new ApplicationException(HttpStatus.NOT_FOUND, "The device description does not exist.");
 
-        //Notify the subscribers if necessary
-        this.subscriptionService.notifyAboutDelete(deviceDescription);
+            //Delete the device description
+            return this.deviceDescriptionsService.deleteDeviceDescriptionAsync(id, writeConsistency).thenApplyAsync(v -> {
+                //Submit the notification of the subscribers, which is performed as soon as the deletion is visible for searches
+                this.notificationPipeline.submitDelete(deviceDescription, writeConsistency);
 
-        //Return response with the extended device description
-        return ResponseEntity.ok().build();
+                //Return response with the extended device description
+                return ResponseEntity.ok().<Void>build();
+            }, this.requestExecutor);
+        });
     }
 
     @DeleteMapping(value = "/deviceDescriptions", produces = "application/json")
@@ -162,8 +326,8 @@ public class RestMainController {
         //Clear the repository
         this.deviceDescriptionsService.clearRepository();
 
-        //Notify the subscribers if necessary
-        this.subscriptionService.notifyAboutClear();
+        //Submit the notification of the subscribers
+        this.notificationPipeline.submitClear();
 
         //Return response with the extended device description
         return ResponseEntity.ok().build();
@@ -178,6 +342,112 @@ public class RestMainController {
         return ResponseEntity.ok(capabilitiesMap);
     }
 
+    /**
+     * Creates the response for a bulk insertion of device descriptions from the line numbers of the items, the parsed
+     * device descriptions, the messages describing the violations of the items, the indices of the items that were
+     * supposed to be inserted and the identifiers that were returned for them. Furthermore, the notification of the
+     * subscribers about all device descriptions of the batch that were inserted successfully is submitted.
+     *
+     * @param lineNumbers       The line numbers of the items
+     * @param jsonDescriptions  The parsed device descriptions, containing null for items that could not be parsed
+     * @param violationMessages The violation messages of the items, containing null for valid items
+     * @param insertIndices     The indices of the items that were supposed to be inserted
+     * @param ids               The identifiers that were returned for the inserted items
+     * @param consistency       The consistency level that was applied to the insertion
+     * @return The resulting response
+     */
+    private ResponseEntity<JsonNode> createBulkResponse(List<Integer> lineNumbers, List<JSONObject> jsonDescriptions,
+                                                       List<List<String>> violationMessages, List<Integer> insertIndices,
+                                                       List<String> ids, WriteConsistency consistency) {
+        //Create array for the results of the individual items and remember the inserted device descriptions
+        String[] itemIds = new String[jsonDescriptions.size()];
+        List<JSONObject> insertedDeviceDescriptions = new ArrayList<>();
+        for (int i = 0; i < insertIndices.size(); i++) {
+            //Check if identifier is valid
+            String id = (i < ids.size()) ? ids.get(i) : null;
+            if ((id == null) || id.isEmpty()) continue;
+
+            //Remember identifier and device description
+            itemIds[insertIndices.get(i)] = id;
+            insertedDeviceDescriptions.add(jsonDescriptions.get(insertIndices.get(i)));
+        }
+
+        //Submit the notification of the subscribers about the batch, which is performed as soon as it is visible for searches
+        this.notificationPipeline.submitInserts(insertedDeviceDescriptions, consistency);
+
+        //Create the result object for each item
+        JSONArray items = new JSONArray();
+        boolean errors = false;
+        for (int i = 0; i < jsonDescriptions.size(); i++) {
+            JSONObject item = new JSONObject();
+            item.put("line", lineNumbers.get(i));
+
+            if (itemIds[i] != null) {
+                //Item was inserted successfully
+                item.put("status", HttpStatus.CREATED.value());
+                item.put("id", itemIds[i]);
+            } else if (violationMessages.get(i) != null) {
+                //Item was invalid
+                item.put("status", HttpStatus.BAD_REQUEST.value());
+                item.put("errors", new JSONArray(violationMessages.get(i)));
+                errors = true;
+            } else {
+                //Insertion of the item failed
+                item.put("status", HttpStatus.INTERNAL_SERVER_ERROR.value());
+                item.put("errors", new JSONArray().put("The device description is valid, but the insertion failed. Is the repository available?"));
+                errors = true;
+            }
+            items.put(item);
+        }
+
+        //Create response body
+        JSONObject responseBody = new JSONObject();
+        responseBody.put("errors", errors);
+        responseBody.put("items", items);
+
+        //Return response with the results of all items
+        return ResponseEntity.ok(transformJSON(responseBody));
+    }
+
+    /**
+     * Parses a given {@link JSONArray} of include patterns and a given {@link JSONArray} of exclude patterns, as
+     * provided in a request, to a {@link Projection}. If no patterns are provided, the full device descriptions
+     * are retained.
+     *
+     * @param includes The include patterns or null
+     * @param excludes The exclude patterns or null
+     * @return The resulting projection
+     */
+    private Projection parseProjection(JSONArray includes, JSONArray excludes) {
+        try {
+            //Parse the projection
+            return Projection.fromJSON(includes, excludes);
+        } catch (IllegalArgumentException e) {
+            throw new ApplicationException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Parses a given name of a {@link WriteConsistency} as provided in a request. If no name is provided,
+     * null is returned instead, indicating that the default consistency level is supposed to be used.
+     *
+     * @param consistency The name of the consistency level to parse
+     * @return The resulting consistency level or null
+     */
+    private WriteConsistency parseWriteConsistency(String consistency) {
+        //Check whether a consistency level was provided
+        if ((consistency == null) || consistency.isEmpty()) {
+            return null;
+        }
+
+        try {
+            //Parse the consistency level
+            return WriteConsistency.fromName(consistency);
+        } catch (IllegalArgumentException e) {
+            throw new ApplicationException(HttpStatus.BAD_REQUEST, "The requested write consistency is unknown.");
+        }
+    }
+
     /**
      * Transforms a given {@link JSONObject} to a {@link JsonNode} that can be used in {@link ResponseEntity}s in order
      * to return JSON replies. If the transformation fails, null is returned instead.
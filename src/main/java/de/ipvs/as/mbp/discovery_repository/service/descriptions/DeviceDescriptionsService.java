@@ -1,6 +1,11 @@
 package de.ipvs.as.mbp.discovery_repository.service.descriptions;
 
+import de.ipvs.as.mbp.discovery_repository.service.repository.Projection;
+import de.ipvs.as.mbp.discovery_repository.service.repository.QueryResult;
 import de.ipvs.as.mbp.discovery_repository.service.repository.RepositoryClient;
+import de.ipvs.as.mbp.discovery_repository.service.repository.RepositoryQuery;
+import de.ipvs.as.mbp.discovery_repository.service.repository.WriteConsistency;
+import de.ipvs.as.mbp.discovery_repository.service.repository.cache.CachingRepositoryClient;
 import de.ipvs.as.mbp.discovery_repository.util.OrderedJSONObject;
 import org.everit.json.schema.Schema;
 import org.everit.json.schema.ValidationException;
@@ -20,6 +25,13 @@ import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * This service offers technology-agnostic functions for validating, storing, managing and searching device descriptions
@@ -60,11 +72,29 @@ public class DeviceDescriptionsService {
     @Value("${repository.collection_name}")
     private String collectionName;
 
+    @Value("${repository.write_consistency:wait_for_refresh}")
+    private String writeConsistencyName;
+
+    @Value("${repository.refresh_interval_ms:1000}")
+    private long refreshInterval;
+
+    @Value("${repository.query.default_limit:20}")
+    private int defaultQueryLimit;
+
+    @Value("${repository.query.max_limit:1000}")
+    private int maxQueryLimit;
+
 
     //Store the JSON schema and example device description
     private Schema deviceDescriptionSchema;
     private JSONObject exampleDeviceDescription;
 
+    //Consistency level to use for write operations for which no consistency level is explicitly requested
+    private WriteConsistency defaultWriteConsistency;
+
+    //Map (canonical query --> pending result) of the queries that are currently executed by the repository
+    private final Map<String, CompletableFuture<QueryResult>> pendingQueries = new ConcurrentHashMap<>();
+
     /**
      * Creates the {@link DeviceDescriptionsService}.
      */
@@ -77,6 +107,9 @@ public class DeviceDescriptionsService {
      */
     @PostConstruct
     public void initialize() {
+        //Determine the default write consistency
+        this.defaultWriteConsistency = WriteConsistency.fromName(this.writeConsistencyName);
+
         //Establish the connection
         this.repositoryClient.connect(this.hostAddress, this.port, this.username, this.password, this.collectionName);
     }
@@ -114,6 +147,32 @@ public class DeviceDescriptionsService {
         return this.repositoryClient.getAllDocuments();
     }
 
+    /**
+     * Returns a {@link Stream} over all available device descriptions, consisting out of entries that contain the
+     * identifiers of the device descriptions as well as the device descriptions themselves. The device descriptions
+     * are retrieved lazily while the stream is consumed. The stream must be closed after use.
+     *
+     * @return The stream of entries (device description ID --> device description) of all device descriptions
+     */
+    public Stream<Map.Entry<String, JSONObject>> streamAllDeviceDescriptions() {
+        //Stream all documents
+        return this.repositoryClient.streamAllDocuments();
+    }
+
+    /**
+     * Returns a {@link Stream} over all available device descriptions to which a given {@link Projection} is
+     * applied, consisting out of entries that contain the identifiers of the device descriptions as well as the
+     * projected device descriptions. The device descriptions are retrieved lazily while the stream is consumed.
+     * The stream must be closed after use.
+     *
+     * @param projection The projection to apply to the device descriptions
+     * @return The stream of entries (device description ID --> projected device description)
+     */
+    public Stream<Map.Entry<String, JSONObject>> streamAllDeviceDescriptions(Projection projection) {
+        //Stream all documents with the projection
+        return this.repositoryClient.streamAllDocuments(projection == null ? Projection.NONE : projection);
+    }
+
     /**
      * Returns the device description that matches the given identifier as {@link JSONObject} or null if the device
      * description cannot be found.
@@ -131,6 +190,24 @@ public class DeviceDescriptionsService {
         return this.repositoryClient.getDocument(id);
     }
 
+    /**
+     * Asynchronously retrieves the device description that matches the given identifier. The returned
+     * {@link CompletableFuture} completes with the found device description or with null if the device description
+     * cannot be found.
+     *
+     * @param id The identifier of the device description
+     * @return The {@link CompletableFuture} of the found device description
+     */
+    public CompletableFuture<JSONObject> getDeviceDescriptionAsync(String id) {
+        //Sanity check
+        if ((id == null) || (id.isEmpty())) {
+            throw new IllegalArgumentException("The identifier of the device description must not be null or empty");
+        }
+
+        //Retrieve document with this ID
+        return this.repositoryClient.getDocumentAsync(id);
+    }
+
     /**
      * Returns the number of available device descriptions.
      *
@@ -143,23 +220,109 @@ public class DeviceDescriptionsService {
 
     /**
      * Searches all device descriptions that are stored in the repository for those that match a given query,
-     * consisting out of a {@link JSONArray} of requirements and a {@link JSONArray} of scoring criteria.
+     * consisting out of a {@link JSONArray} of requirements and a {@link JSONArray} of scoring criteria, and returns
+     * the first page of matching device descriptions, using the default limit.
      *
      * @param requirements    The requirements of the query
      * @param scoringCriteria The scoring criteria of the query
      * @return A list of matching device descriptions
      */
     public List<JSONObject> queryDeviceDescriptions(JSONArray requirements, JSONArray scoringCriteria) {
-        //Sanity checks
-        if (requirements == null) {
-            requirements = new JSONArray();
+        //Query the device description repository and return the documents of the first page
+        return queryDeviceDescriptions(new RepositoryQuery(requirements, scoringCriteria)).getDocuments();
+    }
+
+    /**
+     * Searches all device descriptions that are stored in the repository for those that match a given
+     * {@link RepositoryQuery} and returns the requested page of matching device descriptions as {@link QueryResult}.
+     * Limits of the query that are not set or that exceed the maximum limit are replaced accordingly. If an
+     * equivalent query is already being executed, its result is awaited instead of querying the repository again.
+     *
+     * @param query The query to execute
+     * @return The resulting page of matching device descriptions
+     * @throws IllegalArgumentException In case the continuation token of the query is invalid
+     */
+    public QueryResult queryDeviceDescriptions(RepositoryQuery query) {
+        //Check whether an equivalent query is already pending
+        String queryKey = resolveLimit(query).getCanonicalForm();
+        CompletableFuture<QueryResult> pendingResult = new CompletableFuture<>();
+        CompletableFuture<QueryResult> existingResult = this.pendingQueries.putIfAbsent(queryKey, pendingResult);
+        if (existingResult != null) {
+            try {
+                //Await the result of the pending query
+                return copyQueryResult(existingResult.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw e;
+            }
         }
-        if (scoringCriteria == null) {
-            scoringCriteria = new JSONArray();
+
+        try {
+            //Query the device description repository and pass the result to the waiting callers
+            QueryResult result = this.repositoryClient.query(query);
+            pendingResult.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            pendingResult.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.pendingQueries.remove(queryKey, pendingResult);
         }
+    }
+
+    /**
+     * Searches all device descriptions that are stored in the repository for those that match each of a given list
+     * of {@link RepositoryQuery}s and returns the resulting pages of matching device descriptions as list of
+     * {@link QueryResult}s, in the same order as the queries. The queries may be bundled into a single request to the
+     * repository, in which case the results only contain the first pages without continuation tokens. Limits of the
+     * queries that are not set or that exceed the maximum limit are replaced accordingly. Queries that failed are
+     * represented by null instead of an empty result.
+     *
+     * @param queries The queries to execute
+     * @return The list of resulting pages of matching device descriptions, containing null for queries that failed
+     * @throws IllegalArgumentException In case the continuation token of any of the queries is invalid
+     */
+    public List<QueryResult> queryDeviceDescriptions(List<RepositoryQuery> queries) {
+        //Resolve the limits of the queries
+        queries.forEach(this::resolveLimit);
 
         //Query the device description repository
-        return this.repositoryClient.query(requirements, scoringCriteria);
+        return this.repositoryClient.multiQuery(queries);
+    }
+
+    /**
+     * Asynchronously searches all device descriptions that are stored in the repository for those that match a given
+     * {@link RepositoryQuery}. The returned {@link CompletableFuture} completes with the requested page of matching
+     * device descriptions as {@link QueryResult}. Limits of the query that are not set or that exceed the maximum
+     * limit are replaced accordingly.
+     *
+     * @param query The query to execute
+     * @return The {@link CompletableFuture} of the resulting page of matching device descriptions
+     * @throws IllegalArgumentException In case the continuation token of the query is invalid
+     */
+    public CompletableFuture<QueryResult> queryDeviceDescriptionsAsync(RepositoryQuery query) {
+        //Check whether an equivalent query is already pending
+        String queryKey = resolveLimit(query).getCanonicalForm();
+        CompletableFuture<QueryResult> pendingResult = new CompletableFuture<>();
+        CompletableFuture<QueryResult> existingResult = this.pendingQueries.putIfAbsent(queryKey, pendingResult);
+        if (existingResult != null) {
+            //Share the result of the pending query
+            return existingResult.thenApply(DeviceDescriptionsService::copyQueryResult);
+        }
+
+        try {
+            //Query the device description repository and pass the result to the waiting callers
+            this.repositoryClient.queryAsync(query).whenComplete((result, throwable) -> {
+                this.pendingQueries.remove(queryKey, pendingResult);
+                if (throwable != null) pendingResult.completeExceptionally(throwable);
+                else pendingResult.complete(result);
+            });
+        } catch (RuntimeException e) {
+            this.pendingQueries.remove(queryKey, pendingResult);
+            pendingResult.completeExceptionally(e);
+            throw e;
+        }
+        return pendingResult;
     }
 
     /**
@@ -174,7 +337,25 @@ public class DeviceDescriptionsService {
         }
 
         //Delete the document
-        this.repositoryClient.deleteDocument(id);
+        this.repositoryClient.deleteDocument(id, this.defaultWriteConsistency);
+    }
+
+    /**
+     * Asynchronously deletes the device description that matches the given identifier. The returned
+     * {@link CompletableFuture} completes as soon as the deletion was processed.
+     *
+     * @param id          The identifier of the device description to delete
+     * @param consistency The consistency level to apply or null, if the default consistency level should be used
+     * @return The {@link CompletableFuture} of the deletion
+     */
+    public CompletableFuture<Void> deleteDeviceDescriptionAsync(String id, WriteConsistency consistency) {
+        //Sanity check
+        if ((id == null) || (id.isEmpty())) {
+            throw new IllegalArgumentException("The identifier of the device description must not be null or empty");
+        }
+
+        //Delete the document
+        return this.repositoryClient.deleteDocumentAsync(id, resolveWriteConsistency(consistency));
     }
 
     /**
@@ -190,7 +371,61 @@ public class DeviceDescriptionsService {
         }
 
         //Insert device description as document and return the identifier
-        return this.repositoryClient.insertDocument(deviceDescription);
+        return this.repositoryClient.insertDocument(deviceDescription, this.defaultWriteConsistency);
+    }
+
+    /**
+     * Asynchronously inserts a given device description to the repository. The returned {@link CompletableFuture}
+     * completes with the identifier of the inserted device description or with null if the insertion failed.
+     *
+     * @param deviceDescription The device description to insert
+     * @param consistency       The consistency level to apply or null, if the default consistency level should be used
+     * @return The {@link CompletableFuture} of the identifier
+     */
+    public CompletableFuture<String> addDeviceDescriptionAsync(JSONObject deviceDescription, WriteConsistency consistency) {
+        //Sanity check
+        if (deviceDescription == null) {
+            throw new IllegalArgumentException("The device description must not be null or empty.");
+        }
+
+        //Insert device description as document
+        return this.repositoryClient.insertDocumentAsync(deviceDescription, resolveWriteConsistency(consistency));
+    }
+
+    /**
+     * Inserts a list of device descriptions to the repository by using as few requests as possible.
+     *
+     * @param deviceDescriptions The device descriptions to insert
+     * @return The identifiers of the inserted device descriptions in the same order, containing null for each
+     * device description that could not be inserted
+     */
+    public List<String> addDeviceDescriptions(List<JSONObject> deviceDescriptions) {
+        //Sanity check
+        if (deviceDescriptions == null) {
+            throw new IllegalArgumentException("The device descriptions must not be null.");
+        }
+
+        //Insert device descriptions as documents and return the identifiers
+        return this.repositoryClient.insertDocuments(deviceDescriptions, this.defaultWriteConsistency);
+    }
+
+    /**
+     * Asynchronously inserts a list of device descriptions to the repository by using as few requests as possible.
+     * The returned {@link CompletableFuture} completes with the identifiers of the inserted device descriptions in
+     * the same order, containing null for each device description that could not be inserted.
+     *
+     * @param deviceDescriptions The device descriptions to insert
+     * @param consistency        The consistency level to apply or null, if the default consistency level should be used
+     * @return The {@link CompletableFuture} of the identifiers
+     */
+    public CompletableFuture<List<String>> addDeviceDescriptionsAsync(List<JSONObject> deviceDescriptions, WriteConsistency consistency) {
+        //Sanity check
+        if (deviceDescriptions == null) {
+            throw new IllegalArgumentException("The device descriptions must not be null.");
+        }
+
+        //Insert device descriptions as documents
+        return this.repositoryClient.insertDocumentsAsync(deviceDescriptions, resolveWriteConsistency(consistency));
     }
 
     /**
@@ -220,20 +455,9 @@ public class DeviceDescriptionsService {
      * @return A list of messages describing the violations
      */
     public List<String> validateDeviceDescription(JSONObject deviceDescription) {
-        //Check if schema is already available
-        if (this.deviceDescriptionSchema == null) {
-            try {
-                //Read schema from file and store it
-                JSONObject rawSchema = new JSONObject(new JSONTokener(schemaResource.getInputStream()));
-                this.deviceDescriptionSchema = SchemaLoader.load(rawSchema);
-            } catch (IOException e) {
-                throw new RuntimeException("JSON schema for device descriptions could not be parsed.");
-            }
-        }
-
         try {
             //Use the schema to validate the given device description
-            this.deviceDescriptionSchema.validate(deviceDescription);
+            getDeviceDescriptionSchema().validate(deviceDescription);
         } catch (ValidationException e) {
             //Get validation issues and return the reasons
             return e.getAllMessages();
@@ -243,6 +467,19 @@ public class DeviceDescriptionsService {
         return Collections.emptyList();
     }
 
+    /**
+     * Validates a list of device descriptions, given as {@link JSONObject}s, in parallel against the JSON schema for
+     * device descriptions. The resulting list contains one list of violation messages for each device description,
+     * in the same order as the given device descriptions.
+     *
+     * @param deviceDescriptions The device descriptions to validate
+     * @return A list of violation message lists, one for each device description
+     */
+    public List<List<String>> validateDeviceDescriptions(List<JSONObject> deviceDescriptions) {
+        //Validate the device descriptions in parallel, while preserving their order
+        return deviceDescriptions.parallelStream().map(this::validateDeviceDescription).collect(Collectors.toList());
+    }
+
     /**
      * Returns whether the repository is available in which the device descriptions are stored.
      *
@@ -253,6 +490,155 @@ public class DeviceDescriptionsService {
         return this.repositoryClient.isConnected();
     }
 
+    /**
+     * Registers the requirements of a subscription, given by its reference ID, at the repository, such that
+     * inserted device descriptions can be matched against them by {@link #findMatchingSubscriptions(List)}.
+     *
+     * @param referenceId  The reference ID of the subscription
+     * @param requirements The requirements of the subscription
+     */
+    public void registerSubscriptionQuery(String referenceId, JSONArray requirements) {
+        this.repositoryClient.registerQuery(referenceId, requirements);
+    }
+
+    /**
+     * Unregisters the requirements of a subscription, given by its reference ID, from the repository.
+     *
+     * @param referenceId The reference ID of the subscription
+     */
+    public void unregisterSubscriptionQuery(String referenceId) {
+        this.repositoryClient.unregisterQuery(referenceId);
+    }
+
+    /**
+     * Determines the subscriptions whose registered requirements are satisfied by at least one of the given
+     * device descriptions and returns their reference IDs.
+     *
+     * @param deviceDescriptions The device descriptions to match against the subscriptions
+     * @return The set of reference IDs of the matching subscriptions or null, if they could not be determined,
+     * such that all subscriptions need to be considered as matching
+     */
+    public Set<String> findMatchingSubscriptions(List<JSONObject> deviceDescriptions) {
+        return this.repositoryClient.percolate(deviceDescriptions);
+    }
+
+    /**
+     * Compiles the requirements of a subscription to a {@link Predicate} that evaluates whether a single device
+     * description satisfies them in-process, i.e. without involving the repository.
+     *
+     * @param requirements The requirements of the subscription
+     * @return The resulting predicate or null, if the requirements cannot be evaluated in-process
+     */
+    public Predicate<JSONObject> compileSubscriptionQuery(JSONArray requirements) {
+        return this.repositoryClient.compileQuery(requirements);
+    }
+
+    /**
+     * Returns the limit that is effectively used for queries with a given limit, taking the default and the maximum
+     * limit into account.
+     *
+     * @param limit The limit of the query or zero, if the default limit is supposed to be used
+     * @return The effective limit
+     */
+    public int getEffectiveQueryLimit(int limit) {
+        return resolveLimit(new RepositoryQuery(new JSONArray(), new JSONArray()).setLimit(limit)).getLimit();
+    }
+
+    /**
+     * Returns statistics about the usage of the cache of the repository, if a cache is used.
+     *
+     * @return The map of statistics, which is empty if no cache is used
+     */
+    public Map<String, Object> getCacheStatistics() {
+        //Check whether a cache is used
+        if (!(this.repositoryClient instanceof CachingRepositoryClient)) {
+            return Collections.emptyMap();
+        }
+
+        //Retrieve the statistics from the cache
+        return ((CachingRepositoryClient) this.repositoryClient).getStatistics();
+    }
+
+    /**
+     * Returns the time in milliseconds after which the changes of a write operation, which was executed with a given
+     * {@link WriteConsistency}, can be expected to be visible for searches. For writes that waited for a refresh or
+     * forced one, the delay is zero. For fire-and-forget writes, the delay is the refresh interval of the repository.
+     *
+     * @param consistency The consistency level that was applied or null, if the default consistency level was used
+     * @return The delay in milliseconds
+     */
+    public long getSearchVisibilityDelay(WriteConsistency consistency) {
+        return (resolveWriteConsistency(consistency) == WriteConsistency.FIRE_AND_FORGET) ? this.refreshInterval : 0;
+    }
+
+    /**
+     * Returns the consistency level that is used for write operations for which no consistency level is explicitly
+     * requested.
+     *
+     * @return The default consistency level
+     */
+    public WriteConsistency getDefaultWriteConsistency() {
+        return defaultWriteConsistency;
+    }
+
+    /**
+     * Returns the given {@link WriteConsistency} or the default consistency level in case the given one is null.
+     *
+     * @param consistency The consistency level to resolve
+     * @return The resulting consistency level
+     */
+    private WriteConsistency resolveWriteConsistency(WriteConsistency consistency) {
+        return consistency == null ? this.defaultWriteConsistency : consistency;
+    }
+
+    /**
+     * Creates a copy of a given {@link QueryResult}, such that callers that share the result of a query do not
+     * affect each other when modifying the contained device descriptions.
+     *
+     * @param queryResult The query result to copy
+     * @return The copy of the query result
+     */
+    private static QueryResult copyQueryResult(QueryResult queryResult) {
+        return new QueryResult(queryResult.getDocuments().stream().map(d -> new JSONObject(d.toString()))
+                .collect(Collectors.toList()), queryResult.getContinuationToken());
+    }
+
+    /**
+     * Replaces the limit of a given {@link RepositoryQuery} with the default limit in case it is not set and caps it
+     * at the maximum limit otherwise.
+     *
+     * @param query The query whose limit is supposed to be resolved
+     * @return The same query with the resolved limit
+     */
+    private RepositoryQuery resolveLimit(RepositoryQuery query) {
+        //Sanity check
+        if (query == null) {
+            throw new IllegalArgumentException("The query must not be null.");
+        }
+
+        //Resolve the limit
+        return query.setLimit(query.getLimit() < 1 ? this.defaultQueryLimit : Math.min(query.getLimit(), this.maxQueryLimit));
+    }
+
+    /**
+     * Returns the JSON schema for device descriptions and loads it from the classpath if it is not already available.
+     *
+     * @return The JSON schema for device descriptions
+     */
+    private synchronized Schema getDeviceDescriptionSchema() {
+        //Check if schema is already available
+        if (this.deviceDescriptionSchema == null) {
+            try {
+                //Read schema from file and store it
+                JSONObject rawSchema = new JSONObject(new JSONTokener(schemaResource.getInputStream()));
+                this.deviceDescriptionSchema = SchemaLoader.load(rawSchema);
+            } catch (IOException e) {
+                throw new RuntimeException("JSON schema for device descriptions could not be parsed.");
+            }
+        }
+        return this.deviceDescriptionSchema;
+    }
+
     /**
      * Returns the host address of the repository.
      *
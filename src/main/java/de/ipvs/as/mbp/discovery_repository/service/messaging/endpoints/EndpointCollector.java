@@ -11,6 +11,7 @@ import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Method;
 import java.util.Set;
+import java.util.concurrent.CompletionStage;
 
 /**
  * This component is responsible for detecting {@link MessagingController}s in the classpath and dispatching the
@@ -63,7 +64,8 @@ public class EndpointCollector {
      * Dispatches a given message that was received under a given topic to the responsible {@link MessagingEndpoint}
      * method. For this, the message is transformed to a {@link JSONObject} and passed to the bean of the
      * method forming the responsible endpoint. Furthermore, possible bodies of reply messages that are returned as
-     * {@link JSONObject}s from the endpoint method are transformed to reply messages and published accordingly.
+     * {@link JSONObject}s or as {@link CompletionStage}s of {@link JSONObject}s from the endpoint method are transformed
+     * to reply messages and published accordingly.
      *
      * @param method  The endpoint method to dispatch the method to
      * @param topic   The topic under which the received message was published
@@ -91,6 +93,28 @@ public class EndpointCollector {
 
                     //Publish the reply message
                     messageService.publishReplyMessage((JSONObject) replyMessageBody, jsonMessage, endpointAnnotation.type());
+                } else if (CompletionStage.class.isAssignableFrom(method.getReturnType())) {
+                    //Call the method to handle the message and get the stage of the reply message body
+                    CompletionStage<?> replyStage = (CompletionStage<?>) method.invoke(bean, topic, jsonMessage);
+
+                    //Check whether a stage was returned
+                    if (replyStage == null) return;
+
+                    //Publish the reply message as soon as the reply message body is available
+                    replyStage.whenComplete((replyMessageBody, throwable) -> {
+                        //Check for errors
+                        if (throwable != null) {
+                            System.err.println("Error occurred while completing endpoint method: " + throwable.getMessage());
+                            throwable.printStackTrace();
+                            return;
+                        }
+
+                        //Check whether a reply message body was returned
+                        if (!(replyMessageBody instanceof JSONObject)) return;
+
+                        //Publish the reply message
+                        messageService.publishReplyMessage((JSONObject) replyMessageBody, jsonMessage, endpointAnnotation.type());
+                    });
                 }
             } catch (Exception e) {
                 //Handle exceptions
@@ -0,0 +1,245 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Objects of this class represent projections of documents, consisting out of lists of field patterns that are
+ * supposed to be included in or excluded from the documents. Field patterns are given as dot-separated paths that
+ * may contain * as wildcard, as for example "location.*" or "capabilities.*.value". A field that matches an include
+ * pattern is included together with all of its sub-fields, while exclude patterns take precedence over include
+ * patterns. If no include patterns are given, all fields are included. In order to be able to identify the projected
+ * device descriptions, their MAC addresses are always part of the projection.
+ */
+public class Projection {
+    //Path of the field that must always be part of projected documents
+    private static final String MANDATORY_FIELD = "identifiers.mac_address";
+
+    //Projection that retains the full documents
+    public static final Projection NONE = new Projection(Collections.emptyList(), Collections.emptyList());
+
+    //The include and exclude patterns
+    private final List<String> includes;
+    private final List<String> excludes;
+
+    //The compiled include and exclude patterns
+    private final List<Pattern> includePatterns;
+    private final List<Pattern> excludePatterns;
+
+    /**
+     * Creates a new {@link Projection} from given lists of include and exclude patterns.
+     *
+     * @param includes The include patterns
+     * @param excludes The exclude patterns
+     * @throws IllegalArgumentException In case the patterns are invalid or exclude the MAC address
+     */
+    public Projection(List<String> includes, List<String> excludes) {
+        //Null checks
+        if ((includes == null) || (excludes == null))
+            throw new IllegalArgumentException("The include and exclude patterns must not be null.");
+
+        //Check the patterns
+        if (includes.stream().anyMatch(p -> (p == null) || p.isBlank()) || excludes.stream().anyMatch(p -> (p == null) || p.isBlank()))
+            throw new IllegalArgumentException("The include and exclude patterns must not be null or empty.");
+
+        //Ensure that the mandatory field is included
+        List<String> effectiveIncludes = new ArrayList<>(includes);
+        if (!effectiveIncludes.isEmpty() && !effectiveIncludes.contains(MANDATORY_FIELD))
+            effectiveIncludes.add(MANDATORY_FIELD);
+
+        //Compile the patterns
+        this.includes = Collections.unmodifiableList(effectiveIncludes);
+        this.excludes = Collections.unmodifiableList(new ArrayList<>(excludes));
+        this.includePatterns = this.includes.stream().map(Projection::compile).collect(Collectors.toList());
+        this.excludePatterns = this.excludes.stream().map(Projection::compile).collect(Collectors.toList());
+
+        //Ensure that the mandatory field is not excluded
+        if (matchesAny(this.excludePatterns, "identifiers") || matchesAny(this.excludePatterns, MANDATORY_FIELD))
+            throw new IllegalArgumentException("The MAC address of the device descriptions must not be excluded.");
+    }
+
+    /**
+     * Creates a new {@link Projection} from given {@link JSONArray}s of include and exclude patterns, of which
+     * each may be null.
+     *
+     * @param includes The include patterns or null
+     * @param excludes The exclude patterns or null
+     * @return The resulting {@link Projection}
+     * @throws IllegalArgumentException In case the patterns are invalid or exclude the MAC address
+     */
+    public static Projection fromJSON(JSONArray includes, JSONArray excludes) {
+        //Check if a projection is requested at all
+        if (((includes == null) || includes.isEmpty()) && ((excludes == null) || excludes.isEmpty())) {
+            return NONE;
+        }
+
+        return new Projection(toPatternList(includes), toPatternList(excludes));
+    }
+
+    /**
+     * Returns the include patterns of the projection, which contain the MAC address field if not empty.
+     *
+     * @return The include patterns
+     */
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    /**
+     * Returns the exclude patterns of the projection.
+     *
+     * @return The exclude patterns
+     */
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    /**
+     * Returns whether the projection retains the full documents, i.e. neither includes nor excludes fields.
+     *
+     * @return True, if the projection retains the full documents; false otherwise
+     */
+    public boolean isEmpty() {
+        return includes.isEmpty() && excludes.isEmpty();
+    }
+
+    /**
+     * Applies the projection to a given document and returns the resulting projected document as new
+     * {@link JSONObject}. If the projection is empty, the given document is returned instead.
+     *
+     * @param document The document to project
+     * @return The projected document
+     */
+    public JSONObject apply(JSONObject document) {
+        //Check if projection is necessary
+        if ((document == null) || isEmpty()) {
+            return document;
+        }
+
+        //Filter the document, starting at its root
+        return (JSONObject) filter(document, "", includes.isEmpty());
+    }
+
+    /**
+     * Filters a given value at a given path of a document recursively according to the include and exclude patterns.
+     *
+     * @param value    The value to filter
+     * @param path     The path of the value within the document
+     * @param included True, if the value is covered by an include pattern of one of its ancestors
+     * @return The filtered value or null, if the value is not part of the projection
+     */
+    private Object filter(Object value, String path, boolean included) {
+        //Check if the value is excluded
+        if (!path.isEmpty() && matchesAny(excludePatterns, path)) {
+            return null;
+        }
+
+        //Check if the value is included
+        included = included || (!path.isEmpty() && matchesAny(includePatterns, path));
+
+        //Check for objects
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            JSONObject result = new JSONObject();
+
+            //Filter all fields of the object
+            for (String key : object.keySet()) {
+                Object filteredValue = filter(object.get(key), path.isEmpty() ? key : path + "." + key, included);
+                if (filteredValue != null) result.put(key, filteredValue);
+            }
+            return (included || path.isEmpty() || !result.isEmpty()) ? result : null;
+        }
+
+        //Check for arrays, whose elements share the path of the array
+        if (value instanceof JSONArray) {
+            JSONArray result = new JSONArray();
+
+            //Filter all elements of the array
+            for (Object element : (JSONArray) value) {
+                Object filteredElement = filter(element, path, included);
+                if (filteredElement != null) result.put(filteredElement);
+            }
+            return (included || !result.isEmpty()) ? result : null;
+        }
+
+        //Primitive value
+        return included ? value : null;
+    }
+
+    /**
+     * Checks and returns whether two {@link Projection}s are equal, i.e. use the same include and exclude patterns.
+     *
+     * @param o The object to check against
+     * @return True, if the given {@link Object} equals this {@link Projection}; false otherwise
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Projection)) return false;
+        Projection that = (Projection) o;
+        return includes.equals(that.includes) && excludes.equals(that.excludes);
+    }
+
+    /**
+     * Calculates a hash code from the include and exclude patterns of the {@link Projection}.
+     *
+     * @return The resulting hash code
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(includes, excludes);
+    }
+
+    /**
+     * Checks whether a given field path matches any of the given patterns.
+     *
+     * @param patterns The patterns to check
+     * @param path     The field path to check
+     * @return True, if the field path matches at least one of the patterns; false otherwise
+     */
+    private static boolean matchesAny(List<Pattern> patterns, String path) {
+        return patterns.stream().anyMatch(p -> p.matcher(path).matches());
+    }
+
+    /**
+     * Compiles a given field pattern with * wildcards to a regular expression.
+     *
+     * @param fieldPattern The field pattern to compile
+     * @return The resulting regular expression
+     */
+    private static Pattern compile(String fieldPattern) {
+        //Quote all parts between the wildcards and join them by arbitrary character sequences
+        String[] parts = fieldPattern.split("\\*", -1);
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) regex.append(".*");
+            regex.append(Pattern.quote(parts[i]));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Transforms a given {@link JSONArray} of patterns to a list of strings.
+     *
+     * @param patterns The patterns to transform or null
+     * @return The resulting list
+     */
+    private static List<String> toPatternList(JSONArray patterns) {
+        //Null check
+        if (patterns == null) return Collections.emptyList();
+
+        //Transform all elements to strings
+        List<String> patternList = new ArrayList<>();
+        for (int i = 0; i < patterns.length(); i++) {
+            patternList.add(patterns.optString(i, null));
+        }
+        return patternList;
+    }
+}
@@ -0,0 +1,66 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository;
+
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Objects of this class represent single pages of results for {@link RepositoryQuery}s, consisting out of a list
+ * of matching documents and an opaque continuation token that allows to retrieve the subsequent page.
+ */
+public class QueryResult {
+    //The matching documents of the page
+    private final List<JSONObject> documents;
+
+    //The continuation token of the subsequent page, or null if no further documents are available
+    private final String continuationToken;
+
+    /**
+     * Creates a new {@link QueryResult} from a given list of documents and a continuation token.
+     *
+     * @param documents         The matching documents of the page
+     * @param continuationToken The continuation token of the subsequent page or null, if no further documents
+     *                          are available
+     */
+    public QueryResult(List<JSONObject> documents, String continuationToken) {
+        this.documents = documents == null ? Collections.emptyList() : documents;
+        this.continuationToken = continuationToken;
+    }
+
+    /**
+     * Creates a new, empty {@link QueryResult}.
+     *
+     * @return The empty {@link QueryResult}
+     */
+    public static QueryResult empty() {
+        return new QueryResult(Collections.emptyList(), null);
+    }
+
+    /**
+     * Returns the matching documents of the page.
+     *
+     * @return The documents
+     */
+    public List<JSONObject> getDocuments() {
+        return documents;
+    }
+
+    /**
+     * Returns the continuation token of the subsequent page or null, if no further documents are available.
+     *
+     * @return The continuation token
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    /**
+     * Returns whether further documents are available that can be retrieved by using the continuation token.
+     *
+     * @return True, if further documents are available; false otherwise
+     */
+    public boolean hasMore() {
+        return continuationToken != null;
+    }
+}
@@ -6,6 +6,10 @@ import org.json.JSONObject;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public interface RepositoryClient {
     /**
@@ -42,34 +46,103 @@ public interface RepositoryClient {
      * Inserts a document, given as {@link JSONObject}, into the repository and returns the identifier under which
      * it was stored.
      *
-     * @param document The document to insert
+     * @param document    The document to insert
+     * @param consistency The consistency level to apply to the write
      * @return The identifier under which the document was stored
      */
-    String insertDocument(JSONObject document);
+    String insertDocument(JSONObject document, WriteConsistency consistency);
+
+    /**
+     * Inserts a list of documents, given as {@link JSONObject}s, into the repository by using as few requests as
+     * possible and returns the identifiers under which they were stored. The resulting list is ordered in the same
+     * way as the given list of documents and contains null for each document that could not be inserted.
+     *
+     * @param documents   The documents to insert
+     * @param consistency The consistency level to apply to the write
+     * @return The list of identifiers under which the documents were stored
+     */
+    List<String> insertDocuments(List<JSONObject> documents, WriteConsistency consistency);
+
+    /**
+     * Asynchronously inserts a document, given as {@link JSONObject}, into the repository. The returned
+     * {@link CompletableFuture} completes with the identifier under which the document was stored or with null
+     * if the insertion failed.
+     *
+     * @param document    The document to insert
+     * @param consistency The consistency level to apply to the write
+     * @return The {@link CompletableFuture} of the identifier
+     */
+    CompletableFuture<String> insertDocumentAsync(JSONObject document, WriteConsistency consistency);
+
+    /**
+     * Asynchronously inserts a list of documents, given as {@link JSONObject}s, into the repository. The returned
+     * {@link CompletableFuture} completes with the list of identifiers under which the documents were stored,
+     * ordered in the same way as the given documents and containing null for each document that could not be
+     * inserted.
+     *
+     * @param documents   The documents to insert
+     * @param consistency The consistency level to apply to the write
+     * @return The {@link CompletableFuture} of the list of identifiers
+     */
+    CompletableFuture<List<String>> insertDocumentsAsync(List<JSONObject> documents, WriteConsistency consistency);
 
     /**
      * Retrieves the document from the repository that matches the given identifier as {@link JSONObject} or null
-     * if the document cannot be found.
+     * if the document cannot be found. The retrieval always reflects the most recent writes, independent of the
+     * {@link WriteConsistency} that was used for them.
      *
      * @param id The identifier of the document to retrieve
      * @return The document as {@link JSONObject} or null
      */
     JSONObject getDocument(String id);
 
+    /**
+     * Asynchronously retrieves the document from the repository that matches the given identifier. The returned
+     * {@link CompletableFuture} completes with the document as {@link JSONObject} or with null if the document
+     * cannot be found.
+     *
+     * @param id The identifier of the document to retrieve
+     * @return The {@link CompletableFuture} of the document
+     */
+    CompletableFuture<JSONObject> getDocumentAsync(String id);
+
     /**
      * Updates a document with a certain identifier in the repository by replacing it with a new document.
      *
-     * @param id       The identifier of the document that is supposed to be updated
-     * @param document The updated document to use
+     * @param id          The identifier of the document that is supposed to be updated
+     * @param document    The updated document to use
+     * @param consistency The consistency level to apply to the write
+     */
+    void updateDocument(String id, JSONObject document, WriteConsistency consistency);
+
+    /**
+     * Asynchronously updates a document with a certain identifier in the repository by replacing it with a new
+     * document. The returned {@link CompletableFuture} completes as soon as the update was processed.
+     *
+     * @param id          The identifier of the document that is supposed to be updated
+     * @param document    The updated document to use
+     * @param consistency The consistency level to apply to the write
+     * @return The {@link CompletableFuture} of the update
      */
-    void updateDocument(String id, JSONObject document);
+    CompletableFuture<Void> updateDocumentAsync(String id, JSONObject document, WriteConsistency consistency);
 
     /**
      * Deletes a document, given by its identifier, from the repository.
      *
-     * @param id The identifier of the document to delete
+     * @param id          The identifier of the document to delete
+     * @param consistency The consistency level to apply to the write
      */
-    void deleteDocument(String id);
+    void deleteDocument(String id, WriteConsistency consistency);
+
+    /**
+     * Asynchronously deletes a document, given by its identifier, from the repository. The returned
+     * {@link CompletableFuture} completes as soon as the deletion was processed.
+     *
+     * @param id          The identifier of the document to delete
+     * @param consistency The consistency level to apply to the write
+     * @return The {@link CompletableFuture} of the deletion
+     */
+    CompletableFuture<Void> deleteDocumentAsync(String id, WriteConsistency consistency);
 
     /**
      * Clears the entire repository by deleting all of its documents.
@@ -77,14 +150,78 @@ public interface RepositoryClient {
     void clearRepository();
 
     /**
-     * Searches all documents in the repository for those that match a given query,
-     * consisting out of a {@link JSONArray} of requirements and a {@link JSONArray} of scoring criteria.
+     * Searches all documents in the repository for those that match a given {@link RepositoryQuery}, consisting out
+     * of requirements, scoring criteria, a limit and an optional continuation token, and returns the requested page
+     * of matching documents as {@link QueryResult}.
      *
-     * @param requirements    The requirements of the query
-     * @param scoringCriteria The scoring criteria of the query
-     * @return A list of matching device descriptions
+     * @param query The query to execute
+     * @return The resulting page of matching documents
+     * @throws IllegalArgumentException In case the continuation token of the query is invalid
      */
-    List<JSONObject> query(JSONArray requirements, JSONArray scoringCriteria);
+    QueryResult query(RepositoryQuery query);
+
+    /**
+     * Asynchronously searches all documents in the repository for those that match a given {@link RepositoryQuery},
+     * consisting out of requirements, scoring criteria, a limit and an optional continuation token. The returned
+     * {@link CompletableFuture} completes with the requested page of matching documents as {@link QueryResult}.
+     *
+     * @param query The query to execute
+     * @return The {@link CompletableFuture} of the resulting page of matching documents
+     * @throws IllegalArgumentException In case the continuation token of the query is invalid
+     */
+    CompletableFuture<QueryResult> queryAsync(RepositoryQuery query);
+
+    /**
+     * Searches all documents in the repository for those that match each of a given list of
+     * {@link RepositoryQuery}s and returns the resulting pages of matching documents as list of {@link QueryResult}s,
+     * in the same order as the queries. Implementations may bundle the queries into a single request to the
+     * repository; the results of such queries only contain the first page of matching documents and no
+     * continuation tokens. Queries that could not be executed, e.g. due to a failure of the repository, are
+     * represented by null instead of an empty result.
+     *
+     * @param queries The queries to execute
+     * @return The list of resulting pages of matching documents, containing null for queries that failed
+     * @throws IllegalArgumentException In case the continuation token of any of the queries is invalid
+     */
+    List<QueryResult> multiQuery(List<RepositoryQuery> queries);
+
+    /**
+     * Registers a query, given by an identifier and a {@link JSONArray} of requirements, for the reverse matching
+     * of documents by {@link #percolate(List)}. If a query with the same identifier is already registered, it is
+     * replaced.
+     *
+     * @param queryId      The identifier of the query
+     * @param requirements The requirements of the query
+     */
+    void registerQuery(String queryId, JSONArray requirements);
+
+    /**
+     * Unregisters a query, given by its identifier, that was previously registered by
+     * {@link #registerQuery(String, JSONArray)}.
+     *
+     * @param queryId The identifier of the query
+     */
+    void unregisterQuery(String queryId);
+
+    /**
+     * Determines the registered queries whose requirements are satisfied by at least one of the given documents,
+     * independently of whether the documents are stored in the repository, and returns their identifiers.
+     *
+     * @param documents The documents to match against the registered queries
+     * @return The set of identifiers of the matching queries or null, if the matching queries could not be
+     * determined, such that all registered queries need to be considered as matching
+     */
+    Set<String> percolate(List<JSONObject> documents);
+
+    /**
+     * Compiles a given {@link JSONArray} of requirements to a {@link Predicate} that evaluates whether a single
+     * document satisfies the requirements in-process, i.e. without involving the repository, and behaves like a
+     * query with the same requirements would do.
+     *
+     * @param requirements The requirements to compile
+     * @return The resulting predicate or null, if the requirements cannot be evaluated in-process
+     */
+    Predicate<JSONObject> compileQuery(JSONArray requirements);
 
     /**
      * Returns the total number of documents in the repository.
@@ -93,6 +230,14 @@ public interface RepositoryClient {
      */
     long getDocumentsCount();
 
+    /**
+     * Asynchronously determines the total number of documents in the repository. The returned
+     * {@link CompletableFuture} completes with the number of documents or with -1 if it could not be determined.
+     *
+     * @return The {@link CompletableFuture} of the number of documents
+     */
+    CompletableFuture<Long> getDocumentsCountAsync();
+
     /**
      * Returns a summary map (key name --> key data type) of all keys and their associated data types
      * that occur in the documents of the repository.
@@ -109,6 +254,27 @@ public interface RepositoryClient {
      */
     Map<String, JSONObject> getAllDocuments();
 
+    /**
+     * Returns a {@link Stream} over all available documents of the repository, consisting out of entries that
+     * contain the identifiers of the documents as well as their contents. The documents are retrieved lazily
+     * in chunks while the stream is consumed, such that the memory consumption does not depend on the total
+     * number of documents. The stream must be closed after use in order to release the associated resources.
+     *
+     * @return The stream of entries (document ID --> document content) of all available documents
+     */
+    Stream<Map.Entry<String, JSONObject>> streamAllDocuments();
+
+    /**
+     * Returns a {@link Stream} over all available documents of the repository to which a given {@link Projection}
+     * is applied, consisting out of entries that contain the identifiers of the documents as well as their projected
+     * contents. The documents are retrieved lazily while the stream is consumed. The stream must be closed after use
+     * in order to release the associated resources.
+     *
+     * @param projection The projection to apply to the documents
+     * @return The stream of entries (document ID --> projected document content) of all available documents
+     */
+    Stream<Map.Entry<String, JSONObject>> streamAllDocuments(Projection projection);
+
     /**
      * Sets the exception handler that is supposed to be used for handling exceptions that occur during the
      * communication between the client and the repository.
@@ -0,0 +1,230 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Objects of this class represent queries for documents of the repository, consisting out of a {@link JSONArray} of
+ * requirements, a {@link JSONArray} of scoring criteria, the maximum number of documents to return, a
+ * {@link Projection} that is applied to the returned documents and an optional continuation token that allows to
+ * retrieve the subsequent page of a preceding query.
+ */
+public class RepositoryQuery {
+    //The requirements of the query
+    private JSONArray requirements;
+
+    //The scoring criteria of the query
+    private JSONArray scoringCriteria;
+
+    //The maximum number of documents to return, or zero for using the default limit
+    private int limit = 0;
+
+    //The projection to apply to the returned documents
+    private Projection projection = Projection.NONE;
+
+    //The continuation token of the page to retrieve, or null for retrieving the first page
+    private String continuationToken = null;
+
+    /**
+     * Creates a new {@link RepositoryQuery} from a given {@link JSONArray} of requirements and a given
+     * {@link JSONArray} of scoring criteria.
+     *
+     * @param requirements    The requirements of the query
+     * @param scoringCriteria The scoring criteria of the query
+     */
+    public RepositoryQuery(JSONArray requirements, JSONArray scoringCriteria) {
+        setRequirements(requirements);
+        setScoringCriteria(scoringCriteria);
+    }
+
+    /**
+     * Returns the requirements of the query.
+     *
+     * @return The requirements
+     */
+    public JSONArray getRequirements() {
+        return requirements;
+    }
+
+    /**
+     * Sets the requirements of the query. If null is provided, an empty {@link JSONArray} is used instead.
+     *
+     * @param requirements The requirements to set
+     * @return The {@link RepositoryQuery}
+     */
+    public RepositoryQuery setRequirements(JSONArray requirements) {
+        this.requirements = requirements == null ? new JSONArray() : requirements;
+        return this;
+    }
+
+    /**
+     * Returns the scoring criteria of the query.
+     *
+     * @return The scoring criteria
+     */
+    public JSONArray getScoringCriteria() {
+        return scoringCriteria;
+    }
+
+    /**
+     * Sets the scoring criteria of the query. If null is provided, an empty {@link JSONArray} is used instead.
+     *
+     * @param scoringCriteria The scoring criteria to set
+     * @return The {@link RepositoryQuery}
+     */
+    public RepositoryQuery setScoringCriteria(JSONArray scoringCriteria) {
+        this.scoringCriteria = scoringCriteria == null ? new JSONArray() : scoringCriteria;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of documents to return or zero, if the default limit is supposed to be used.
+     *
+     * @return The limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Sets the maximum number of documents to return. Values lower than one indicate that the default limit is
+     * supposed to be used.
+     *
+     * @param limit The limit to set
+     * @return The {@link RepositoryQuery}
+     */
+    public RepositoryQuery setLimit(int limit) {
+        this.limit = Math.max(limit, 0);
+        return this;
+    }
+
+    /**
+     * Returns the {@link Projection} that is applied to the returned documents.
+     *
+     * @return The projection
+     */
+    public Projection getProjection() {
+        return projection;
+    }
+
+    /**
+     * Sets the {@link Projection} that is applied to the returned documents. If null is provided, the full documents
+     * are returned.
+     *
+     * @param projection The projection to set
+     * @return The {@link RepositoryQuery}
+     */
+    public RepositoryQuery setProjection(Projection projection) {
+        this.projection = projection == null ? Projection.NONE : projection;
+        return this;
+    }
+
+    /**
+     * Returns the continuation token of the page to retrieve or null, if the first page is supposed to be retrieved.
+     *
+     * @return The continuation token
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    /**
+     * Sets the continuation token of the page to retrieve. Null or empty tokens indicate that the first page is
+     * supposed to be retrieved.
+     *
+     * @param continuationToken The continuation token to set
+     * @return The {@link RepositoryQuery}
+     */
+    public RepositoryQuery setContinuationToken(String continuationToken) {
+        this.continuationToken = ((continuationToken == null) || continuationToken.isEmpty()) ? null : continuationToken;
+        return this;
+    }
+
+    /**
+     * Returns a canonical JSON representation of the query, in which the keys of all objects are sorted and the
+     * elements of the requirements and scoring criteria arrays are ordered as well, since their order does not affect
+     * the result. Queries that differ only in these orders thus share the same canonical representation, which makes
+     * it suitable for identifying equivalent queries. The order of the elements of nested arrays, such as the
+     * coordinates of polygons, is preserved.
+     *
+     * @return The canonical representation
+     */
+    public String getCanonicalForm() {
+        StringBuilder builder = new StringBuilder();
+
+        //Append the requirements and scoring criteria, independent of their order
+        appendUnordered(builder.append("{\"requirements\":"), requirements);
+        appendUnordered(builder.append(",\"scoringCriteria\":"), scoringCriteria);
+
+        //Append the limit, the projection and the continuation token
+        builder.append(",\"limit\":").append(limit);
+        builder.append(",\"includes\":").append(JSONObject.valueToString(projection.getIncludes()));
+        builder.append(",\"excludes\":").append(JSONObject.valueToString(projection.getExcludes()));
+        builder.append(",\"continuationToken\":").append(JSONObject.valueToString(continuationToken));
+        return builder.append("}").toString();
+    }
+
+    /**
+     * Appends the canonical representation of a given array, whose elements are ordered by their own canonical
+     * representations, to a given {@link StringBuilder}.
+     *
+     * @param builder The builder to append to
+     * @param array   The array to append
+     */
+    private static void appendUnordered(StringBuilder builder, JSONArray array) {
+        //Create the canonical representations of the elements
+        List<String> elements = new ArrayList<>(array.length());
+        for (Object element : array) {
+            StringBuilder elementBuilder = new StringBuilder();
+            appendCanonical(elementBuilder, element);
+            elements.add(elementBuilder.toString());
+        }
+
+        //Append the ordered elements
+        elements.sort(null);
+        builder.append('[').append(String.join(",", elements)).append(']');
+    }
+
+    /**
+     * Appends the canonical representation of a given JSON value to a given {@link StringBuilder}.
+     *
+     * @param builder The builder to append to
+     * @param value   The value to append
+     */
+    private static void appendCanonical(StringBuilder builder, Object value) {
+        //Check for objects, whose keys are sorted
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            builder.append('{');
+            boolean first = true;
+            for (String key : new TreeSet<>(object.keySet())) {
+                if (!first) builder.append(',');
+                builder.append(JSONObject.quote(key)).append(':');
+                appendCanonical(builder, object.get(key));
+                first = false;
+            }
+            builder.append('}');
+            return;
+        }
+
+        //Check for arrays, whose order is preserved
+        if (value instanceof JSONArray) {
+            builder.append('[');
+            boolean first = true;
+            for (Object element : (JSONArray) value) {
+                if (!first) builder.append(',');
+                appendCanonical(builder, element);
+                first = false;
+            }
+            builder.append(']');
+            return;
+        }
+
+        //Primitive value
+        builder.append(JSONObject.valueToString(value));
+    }
+}
@@ -0,0 +1,59 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository;
+
+/**
+ * Enumeration of the consistency levels that can be requested for write operations on the repository. The level
+ * determines when a write operation is considered complete with respect to the visibility of its changes
+ * for subsequent searches. Retrieving documents by their identifiers is not affected by the level and always
+ * reflects the most recent writes.
+ */
+public enum WriteConsistency {
+    //Return as soon as the repository accepted the write, without waiting for the changes to become searchable
+    FIRE_AND_FORGET("fire_and_forget"),
+
+    //Return as soon as the changes became searchable as part of the next regular refresh of the repository
+    WAIT_FOR_REFRESH("wait_for_refresh"),
+
+    //Make the changes searchable immediately by forcing a refresh of the repository
+    IMMEDIATE("immediate");
+
+    //Name of the consistency level as used in requests and properties
+    private final String name;
+
+    /**
+     * Creates a new consistency level from a given name.
+     *
+     * @param name The name of the consistency level
+     */
+    WriteConsistency(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the consistency level as used in requests and properties.
+     *
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the consistency level that matches a given name, ignoring the case.
+     *
+     * @param name The name of the consistency level
+     * @return The matching consistency level
+     * @throws IllegalArgumentException In case no consistency level matches the name
+     */
+    public static WriteConsistency fromName(String name) {
+        //Sanity check
+        if (name == null) throw new IllegalArgumentException("The name of the write consistency must not be null.");
+
+        //Search for a consistency level with a matching name
+        for (WriteConsistency consistency : values()) {
+            if (consistency.name.equalsIgnoreCase(name.trim())) {
+                return consistency;
+            }
+        }
+        throw new IllegalArgumentException("Unknown write consistency: " + name);
+    }
+}
@@ -0,0 +1,154 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.cache;
+
+/**
+ * Objects of this class bundle the settings of the {@link CachingRepositoryClient}, covering the capacities and the
+ * times to live of the cached documents and of the cached query results. Unset settings keep their defaults.
+ */
+public class CacheSettings {
+    //Maximum total size of the cached documents in bytes
+    private long documentCacheMaxBytes = 64 * 1024 * 1024;
+
+    //Time after which cached documents expire
+    private long documentCacheTtlMillis = 60 * 1000;
+
+    //Maximum total size of the cached query results in bytes
+    private long queryCacheMaxBytes = 16 * 1024 * 1024;
+
+    //Time after which cached query results expire
+    private long queryCacheTtlMillis = 10 * 1000;
+
+    //Time after which the changes of fire-and-forget writes are visible for searches
+    private long searchVisibilityDelayMillis = 1000;
+
+    /**
+     * Creates new {@link CacheSettings} with default values.
+     */
+    public CacheSettings() {
+
+    }
+
+    /**
+     * Returns the maximum total size of the cached documents in bytes.
+     *
+     * @return The maximum size
+     */
+    public long getDocumentCacheMaxBytes() {
+        return documentCacheMaxBytes;
+    }
+
+    /**
+     * Sets the maximum total size of the cached documents in bytes. A value of zero disables the caching of
+     * documents.
+     *
+     * @param documentCacheMaxBytes The maximum size to set
+     * @return The {@link CacheSettings}
+     */
+    public CacheSettings setDocumentCacheMaxBytes(long documentCacheMaxBytes) {
+        //Sanity check
+        if (documentCacheMaxBytes < 0)
+            throw new IllegalArgumentException("The maximum size of the document cache must not be negative.");
+
+        this.documentCacheMaxBytes = documentCacheMaxBytes;
+        return this;
+    }
+
+    /**
+     * Returns the time after which cached documents expire.
+     *
+     * @return The time to live in milliseconds
+     */
+    public long getDocumentCacheTtlMillis() {
+        return documentCacheTtlMillis;
+    }
+
+    /**
+     * Sets the time after which cached documents expire, which bounds the staleness of documents that are changed
+     * by other clients of the repository.
+     *
+     * @param documentCacheTtlMillis The time to live in milliseconds
+     * @return The {@link CacheSettings}
+     */
+    public CacheSettings setDocumentCacheTtlMillis(long documentCacheTtlMillis) {
+        //Sanity check
+        if (documentCacheTtlMillis <= 0)
+            throw new IllegalArgumentException("The time to live of the document cache must be positive.");
+
+        this.documentCacheTtlMillis = documentCacheTtlMillis;
+        return this;
+    }
+
+    /**
+     * Returns the maximum total size of the cached query results in bytes.
+     *
+     * @return The maximum size
+     */
+    public long getQueryCacheMaxBytes() {
+        return queryCacheMaxBytes;
+    }
+
+    /**
+     * Sets the maximum total size of the cached query results in bytes. A value of zero disables the caching of
+     * query results.
+     *
+     * @param queryCacheMaxBytes The maximum size to set
+     * @return The {@link CacheSettings}
+     */
+    public CacheSettings setQueryCacheMaxBytes(long queryCacheMaxBytes) {
+        //Sanity check
+        if (queryCacheMaxBytes < 0)
+            throw new IllegalArgumentException("The maximum size of the query cache must not be negative.");
+
+        this.queryCacheMaxBytes = queryCacheMaxBytes;
+        return this;
+    }
+
+    /**
+     * Returns the time after which cached query results expire.
+     *
+     * @return The time to live in milliseconds
+     */
+    public long getQueryCacheTtlMillis() {
+        return queryCacheTtlMillis;
+    }
+
+    /**
+     * Sets the time after which cached query results expire, which bounds the staleness of results that are affected
+     * by changes of other clients of the repository.
+     *
+     * @param queryCacheTtlMillis The time to live in milliseconds
+     * @return The {@link CacheSettings}
+     */
+    public CacheSettings setQueryCacheTtlMillis(long queryCacheTtlMillis) {
+        //Sanity check
+        if (queryCacheTtlMillis <= 0)
+            throw new IllegalArgumentException("The time to live of the query cache must be positive.");
+
+        this.queryCacheTtlMillis = queryCacheTtlMillis;
+        return this;
+    }
+
+    /**
+     * Returns the time after which the changes of fire-and-forget writes are visible for searches.
+     *
+     * @return The delay in milliseconds
+     */
+    public long getSearchVisibilityDelayMillis() {
+        return searchVisibilityDelayMillis;
+    }
+
+    /**
+     * Sets the time after which the changes of fire-and-forget writes are visible for searches, which typically
+     * corresponds to the refresh interval of the repository.
+     *
+     * @param searchVisibilityDelayMillis The delay in milliseconds
+     * @return The {@link CacheSettings}
+     */
+    public CacheSettings setSearchVisibilityDelayMillis(long searchVisibilityDelayMillis) {
+        //Sanity check
+        if (searchVisibilityDelayMillis < 0)
+            throw new IllegalArgumentException("The search visibility delay must not be negative.");
+
+        this.searchVisibilityDelayMillis = searchVisibilityDelayMillis;
+        return this;
+    }
+}
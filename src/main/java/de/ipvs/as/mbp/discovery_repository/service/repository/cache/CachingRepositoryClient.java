@@ -0,0 +1,682 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import de.ipvs.as.mbp.discovery_repository.service.repository.*;
+import de.ipvs.as.mbp.discovery_repository.service.repository.handler.RepositoryExceptionHandler;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Decorator for {@link RepositoryClient}s that serves repeated retrievals of documents by their identifiers and
+ * repeated queries from bounded caches in memory. The caches are weighted by the size of the serialized documents
+ * and evict entries based on their recency and frequency of use (W-TinyLFU). Cached documents are invalidated by all
+ * writes that affect them, while cached query results are only valid for the write generation in which they were
+ * computed, such that every write issued via this client makes them obsolete. All entries expire after configurable
+ * times to live, which bound the staleness with respect to changes of other clients of the repository. All remaining
+ * operations are forwarded to the underlying client.
+ */
+public class CachingRepositoryClient implements RepositoryClient {
+
+    //The underlying repository client
+    private final RepositoryClient delegate;
+
+    //Cache (document ID --> serialized document) of retrieved documents
+    private final Cache<String, String> documentCache;
+
+    //Cache (canonical query --> query result) of query results
+    private final Cache<String, CachedQueryResult> queryCache;
+
+    //Generation counter that is incremented by every write
+    private final AtomicLong writeGeneration = new AtomicLong(0);
+
+    //Time after which fire-and-forget writes are visible for searches
+    private final long searchVisibilityDelayMillis;
+
+    //Numbers of hits and misses of the query cache, counting obsolete results as misses
+    private final LongAdder queryCacheHits = new LongAdder();
+    private final LongAdder queryCacheMisses = new LongAdder();
+
+    /**
+     * Creates a new {@link CachingRepositoryClient} for a given underlying repository client and given settings.
+     *
+     * @param delegate The underlying repository client
+     * @param settings The settings of the cache
+     */
+    public CachingRepositoryClient(RepositoryClient delegate, CacheSettings settings) {
+        //Sanity checks
+        if (delegate == null) throw new IllegalArgumentException("The repository client must not be null.");
+        if (settings == null) throw new IllegalArgumentException("The settings must not be null.");
+
+        //Set fields
+        this.delegate = delegate;
+        this.searchVisibilityDelayMillis = settings.getSearchVisibilityDelayMillis();
+
+        //Create the document cache, weighted by the size of the serialized documents
+        this.documentCache = Caffeine.newBuilder()
+                .maximumWeight(settings.getDocumentCacheMaxBytes())
+                .weigher((String id, String document) -> id.length() + document.length())
+                .expireAfterWrite(settings.getDocumentCacheTtlMillis(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+
+        //Create the query cache, weighted by the size of the serialized results
+        this.queryCache = Caffeine.newBuilder()
+                .maximumWeight(settings.getQueryCacheMaxBytes())
+                .weigher((String query, CachedQueryResult result) -> query.length() + result.weight)
+                .expireAfterWrite(settings.getQueryCacheTtlMillis(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Establishes a connection to the repository, using the given connection parameters.
+     *
+     * @param hostAddress    The host address of the repository
+     * @param port           The port of the repository
+     * @param username       The username to use
+     * @param password       The password to use
+     * @param collectionName The name of the repository collection
+     */
+    @Override
+    public void connect(String hostAddress, int port, String username, String password, String collectionName) {
+        delegate.connect(hostAddress, port, username, password, collectionName);
+    }
+
+    /**
+     * Gracefully disconnects from the repository in case a connection was previously established.
+     */
+    @Override
+    public void disconnect() {
+        delegate.disconnect();
+    }
+
+    /**
+     * Disconnects and destroys the client such that all allocated resources are released.
+     */
+    @Override
+    public void close() {
+        documentCache.invalidateAll();
+        queryCache.invalidateAll();
+        delegate.close();
+    }
+
+    /**
+     * Returns whether there is currently an active connection to the repository.
+     *
+     * @return True, if a connection is active; false otherwise
+     */
+    @Override
+    public boolean isConnected() {
+        return delegate.isConnected();
+    }
+
+    /**
+     * Inserts a document, given as {@link JSONObject}, into the repository and returns the identifier under which
+     * it was stored.
+     *
+     * @param document    The document to insert
+     * @param consistency The consistency level to apply to the write
+     * @return The identifier under which the document was stored
+     */
+    @Override
+    public String insertDocument(JSONObject document, WriteConsistency consistency) {
+        try {
+            return delegate.insertDocument(document, consistency);
+        } finally {
+            invalidate(null, consistency);
+        }
+    }
+
+    /**
+     * Inserts a list of documents, given as {@link JSONObject}s, into the repository and returns the identifiers
+     * under which they were stored.
+     *
+     * @param documents   The documents to insert
+     * @param consistency The consistency level to apply to the writes
+     * @return The list of identifiers under which the documents were stored
+     */
+    @Override
+    public List<String> insertDocuments(List<JSONObject> documents, WriteConsistency consistency) {
+        try {
+            return delegate.insertDocuments(documents, consistency);
+        } finally {
+            invalidate(null, consistency);
+        }
+    }
+
+    /**
+     * Asynchronously inserts a document, given as {@link JSONObject}, into the repository.
+     *
+     * @param document    The document to insert
+     * @param consistency The consistency level to apply to the write
+     * @return The {@link CompletableFuture} of the identifier under which the document was stored
+     */
+    @Override
+    public CompletableFuture<String> insertDocumentAsync(JSONObject document, WriteConsistency consistency) {
+        return delegate.insertDocumentAsync(document, consistency).whenComplete((r, t) -> invalidate(null, consistency));
+    }
+
+    /**
+     * Asynchronously inserts a list of documents, given as {@link JSONObject}s, into the repository.
+     *
+     * @param documents   The documents to insert
+     * @param consistency The consistency level to apply to the writes
+     * @return The {@link CompletableFuture} of the list of identifiers under which the documents were stored
+     */
+    @Override
+    public CompletableFuture<List<String>> insertDocumentsAsync(List<JSONObject> documents, WriteConsistency consistency) {
+        return delegate.insertDocumentsAsync(documents, consistency).whenComplete((r, t) -> invalidate(null, consistency));
+    }
+
+    /**
+     * Retrieves the document with a given identifier from the cache or, if not cached, from the repository.
+     *
+     * @param id The identifier of the document
+     * @return The document or null, if it does not exist
+     */
+    @Override
+    public JSONObject getDocument(String id) {
+        //Check the cache
+        String cachedDocument = documentCache.getIfPresent(id);
+        if (cachedDocument != null) return new JSONObject(cachedDocument);
+
+        //Retrieve the document from the repository
+        long generation = writeGeneration.get();
+        JSONObject document = delegate.getDocument(id);
+        cacheDocument(id, document, generation);
+        return document;
+    }
+
+    /**
+     * Asynchronously retrieves the document with a given identifier from the cache or, if not cached, from the
+     * repository.
+     *
+     * @param id The identifier of the document
+     * @return The {@link CompletableFuture} of the document or null, if it does not exist
+     */
+    @Override
+    public CompletableFuture<JSONObject> getDocumentAsync(String id) {
+        //Check the cache
+        String cachedDocument = documentCache.getIfPresent(id);
+        if (cachedDocument != null) return CompletableFuture.completedFuture(new JSONObject(cachedDocument));
+
+        //Retrieve the document from the repository
+        long generation = writeGeneration.get();
+        return delegate.getDocumentAsync(id).thenApply(document -> {
+            cacheDocument(id, document, generation);
+            return document;
+        });
+    }
+
+    /**
+     * Updates the document with a given identifier by merging a given document into it.
+     *
+     * @param id          The identifier of the document
+     * @param document    The document containing the fields to update
+     * @param consistency The consistency level to apply to the write
+     */
+    @Override
+    public void updateDocument(String id, JSONObject document, WriteConsistency consistency) {
+        try {
+            delegate.updateDocument(id, document, consistency);
+        } finally {
+            invalidate(id, consistency);
+        }
+    }
+
+    /**
+     * Asynchronously updates the document with a given identifier by merging a given document into it.
+     *
+     * @param id          The identifier of the document
+     * @param document    The document containing the fields to update
+     * @param consistency The consistency level to apply to the write
+     * @return The {@link CompletableFuture} that completes when the update is done
+     */
+    @Override
+    public CompletableFuture<Void> updateDocumentAsync(String id, JSONObject document, WriteConsistency consistency) {
+        return delegate.updateDocumentAsync(id, document, consistency).whenComplete((r, t) -> invalidate(id, consistency));
+    }
+
+    /**
+     * Deletes the document with a given identifier from the repository.
+     *
+     * @param id          The identifier of the document
+     * @param consistency The consistency level to apply to the write
+     */
+    @Override
+    public void deleteDocument(String id, WriteConsistency consistency) {
+        try {
+            delegate.deleteDocument(id, consistency);
+        } finally {
+            invalidate(id, consistency);
+        }
+    }
+
+    /**
+     * Asynchronously deletes the document with a given identifier from the repository.
+     *
+     * @param id          The identifier of the document
+     * @param consistency The consistency level to apply to the write
+     * @return The {@link CompletableFuture} that completes when the deletion is done
+     */
+    @Override
+    public CompletableFuture<Void> deleteDocumentAsync(String id, WriteConsistency consistency) {
+        return delegate.deleteDocumentAsync(id, consistency).whenComplete((r, t) -> invalidate(id, consistency));
+    }
+
+    /**
+     * Clears the entire repository by deleting all of its documents.
+     */
+    @Override
+    public void clearRepository() {
+        try {
+            delegate.clearRepository();
+        } finally {
+            writeGeneration.incrementAndGet();
+            documentCache.invalidateAll();
+            queryCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Searches all documents in the repository for those that match a given {@link RepositoryQuery}. The result
+     * is served from the cache if the same query was executed since the last write.
+     *
+     * @param query The query to execute
+     * @return The resulting page of matching documents
+     */
+    @Override
+    public QueryResult query(RepositoryQuery query) {
+        //Continuation pages are not cached
+        if (query.getContinuationToken() != null) return delegate.query(query);
+
+        //Check the cache
+        String key = query.getCanonicalForm();
+        long generation = writeGeneration.get();
+        QueryResult cachedResult = getCachedQueryResult(key, generation);
+        if (cachedResult != null) return cachedResult;
+
+        //Execute the query
+        QueryResult result = delegate.query(query);
+        cacheQueryResult(key, result, generation);
+        return result;
+    }
+
+    /**
+     * Asynchronously searches all documents in the repository for those that match a given {@link RepositoryQuery}.
+     * The result is served from the cache if the same query was executed since the last write.
+     *
+     * @param query The query to execute
+     * @return The {@link CompletableFuture} of the resulting page of matching documents
+     */
+    @Override
+    public CompletableFuture<QueryResult> queryAsync(RepositoryQuery query) {
+        //Continuation pages are not cached
+        if (query.getContinuationToken() != null) return delegate.queryAsync(query);
+
+        //Check the cache
+        String key = query.getCanonicalForm();
+        long generation = writeGeneration.get();
+        QueryResult cachedResult = getCachedQueryResult(key, generation);
+        if (cachedResult != null) return CompletableFuture.completedFuture(cachedResult);
+
+        //Execute the query
+        return delegate.queryAsync(query).thenApply(result -> {
+            cacheQueryResult(key, result, generation);
+            return result;
+        });
+    }
+
+    /**
+     * Searches all documents in the repository for those that match each of a given list of
+     * {@link RepositoryQuery}s. Results of queries that were executed since the last write are served from the
+     * cache, while the remaining queries are passed on together. Since their results may lack continuation tokens,
+     * they are not cached.
+     *
+     * @param queries The queries to execute
+     * @return The list of resulting pages of matching documents, containing null for queries that failed
+     */
+    @Override
+    public List<QueryResult> multiQuery(List<RepositoryQuery> queries) {
+        //Look up the cached results and collect the remaining queries
+        long generation = writeGeneration.get();
+        List<QueryResult> results = new ArrayList<>(queries.size());
+        List<RepositoryQuery> remainingQueries = new ArrayList<>();
+        List<Integer> remainingPositions = new ArrayList<>();
+        for (RepositoryQuery query : queries) {
+            QueryResult cachedResult = (query.getContinuationToken() != null) ? null
+                    : getCachedQueryResult(query.getCanonicalForm(), generation);
+            if (cachedResult == null) {
+                remainingQueries.add(query);
+                remainingPositions.add(results.size());
+            }
+            results.add(cachedResult);
+        }
+
+        //Execute the remaining queries together
+        if (!remainingQueries.isEmpty()) {
+            List<QueryResult> remainingResults = delegate.multiQuery(remainingQueries);
+            for (int i = 0; i < remainingPositions.size(); i++) {
+                results.set(remainingPositions.get(i), remainingResults.get(i));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Registers a query, given by an identifier and a {@link JSONArray} of requirements, for the reverse matching
+     * of documents by {@link #percolate(List)}.
+     *
+     * @param queryId      The identifier of the query
+     * @param requirements The requirements of the query
+     */
+    @Override
+    public void registerQuery(String queryId, JSONArray requirements) {
+        delegate.registerQuery(queryId, requirements);
+    }
+
+    /**
+     * Unregisters a query, given by its identifier, that was previously registered by
+     * {@link #registerQuery(String, JSONArray)}.
+     *
+     * @param queryId The identifier of the query
+     */
+    @Override
+    public void unregisterQuery(String queryId) {
+        delegate.unregisterQuery(queryId);
+    }
+
+    /**
+     * Determines the registered queries whose requirements are satisfied by at least one of the given documents
+     * and returns their identifiers.
+     *
+     * @param documents The documents to match against the registered queries
+     * @return The set of identifiers of the matching queries or null, if they could not be determined
+     */
+    @Override
+    public Set<String> percolate(List<JSONObject> documents) {
+        return delegate.percolate(documents);
+    }
+
+    /**
+     * Compiles a given {@link JSONArray} of requirements to a {@link Predicate} that evaluates whether a single
+     * document satisfies the requirements in-process.
+     *
+     * @param requirements The requirements to compile
+     * @return The resulting predicate or null, if the requirements cannot be evaluated in-process
+     */
+    @Override
+    public Predicate<JSONObject> compileQuery(JSONArray requirements) {
+        return delegate.compileQuery(requirements);
+    }
+
+    /**
+     * Returns the total number of documents in the repository.
+     *
+     * @return The number of documents
+     */
+    @Override
+    public long getDocumentsCount() {
+        return delegate.getDocumentsCount();
+    }
+
+    /**
+     * Asynchronously determines the total number of documents in the repository.
+     *
+     * @return The {@link CompletableFuture} of the number of documents
+     */
+    @Override
+    public CompletableFuture<Long> getDocumentsCountAsync() {
+        return delegate.getDocumentsCountAsync();
+    }
+
+    /**
+     * Returns a summary map (key name --> key data type) of all capabilities and their associated data types
+     * that occur in the documents of the repository.
+     *
+     * @return The map of occurring keys and their data types
+     */
+    @Override
+    public Map<String, String> getKeySummary() {
+        return delegate.getKeySummary();
+    }
+
+    /**
+     * Returns all available documents from the repository as a map that contains the identifiers of the documents
+     * as well as their contents.
+     *
+     * @return The map (document ID --> document content) of all available documents
+     */
+    @Override
+    public Map<String, JSONObject> getAllDocuments() {
+        return delegate.getAllDocuments();
+    }
+
+    /**
+     * Returns a {@link Stream} over all available documents of the repository.
+     *
+     * @return The stream of entries (document ID --> document content) of all available documents
+     */
+    @Override
+    public Stream<Map.Entry<String, JSONObject>> streamAllDocuments() {
+        return delegate.streamAllDocuments();
+    }
+
+    /**
+     * Returns a {@link Stream} over all available documents of the repository to which a given {@link Projection}
+     * is applied.
+     *
+     * @param projection The projection to apply to the documents
+     * @return The stream of entries (document ID --> projected document content) of all available documents
+     */
+    @Override
+    public Stream<Map.Entry<String, JSONObject>> streamAllDocuments(Projection projection) {
+        return delegate.streamAllDocuments(projection);
+    }
+
+    /**
+     * Sets the exception handler that is supposed to be used for handling exceptions that occur during the
+     * communication between the client and the repository.
+     *
+     * @param exceptionHandler The exception handler to set or null, if exceptions should not be handled
+     */
+    @Override
+    public void setExceptionHandler(RepositoryExceptionHandler exceptionHandler) {
+        delegate.setExceptionHandler(exceptionHandler);
+    }
+
+    /**
+     * Returns the exception handler that is currently used for handling exceptions that occur during the
+     * communication between the client and the repository.
+     *
+     * @return The exception handler
+     */
+    @Override
+    public RepositoryExceptionHandler getExceptionHandler() {
+        return delegate.getExceptionHandler();
+    }
+
+    /**
+     * Returns statistics about the usage of the caches as map, which contains the numbers of hits, misses and
+     * evictions, the hit rates as well as the numbers and total sizes of the currently cached documents and
+     * query results.
+     *
+     * @return The map of statistics
+     */
+    public Map<String, Object> getStatistics() {
+        //Create map for the statistics
+        Map<String, Object> statistics = new LinkedHashMap<>();
+
+        //Add the statistics of the document cache
+        CacheStats stats = documentCache.stats();
+        Map<String, Object> documentCacheStatistics = new LinkedHashMap<>();
+        documentCacheStatistics.put("hits", stats.hitCount());
+        documentCacheStatistics.put("misses", stats.missCount());
+        documentCacheStatistics.put("hit_rate", stats.hitRate());
+        documentCacheStatistics.put("evictions", stats.evictionCount());
+        documentCacheStatistics.put("entries", documentCache.estimatedSize());
+        documentCacheStatistics.put("weight_bytes", documentCache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L));
+        statistics.put("document_cache", documentCacheStatistics);
+
+        //Add the statistics of the query cache
+        long hits = queryCacheHits.sum();
+        long misses = queryCacheMisses.sum();
+        Map<String, Object> queryCacheStatistics = new LinkedHashMap<>();
+        queryCacheStatistics.put("hits", hits);
+        queryCacheStatistics.put("misses", misses);
+        queryCacheStatistics.put("hit_rate", (hits + misses) == 0 ? 1.0 : (double) hits / (hits + misses));
+        queryCacheStatistics.put("evictions", queryCache.stats().evictionCount());
+        queryCacheStatistics.put("entries", queryCache.estimatedSize());
+        queryCacheStatistics.put("weight_bytes", queryCache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L));
+        queryCacheStatistics.put("write_generation", writeGeneration.get());
+        statistics.put("query_cache", queryCacheStatistics);
+
+        return statistics;
+    }
+
+    /**
+     * Returns the underlying repository client.
+     *
+     * @return The underlying client
+     */
+    public RepositoryClient getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Adds a given retrieved document to the cache, unless a write happened since the retrieval was started, as
+     * the document might be outdated in this case.
+     *
+     * @param id         The identifier of the document
+     * @param document   The retrieved document or null, if it does not exist
+     * @param generation The write generation at the start of the retrieval
+     */
+    private void cacheDocument(String id, JSONObject document, long generation) {
+        //Check whether the document exists and might be outdated
+        if ((document == null) || (writeGeneration.get() != generation)) return;
+
+        //Add the document to the cache
+        documentCache.put(id, document.toString());
+
+        //Remove the document again if a write happened in the meantime
+        if (writeGeneration.get() != generation) documentCache.invalidate(id);
+    }
+
+    /**
+     * Returns a copy of the cached result of the query with a given key, provided that it was computed in a given
+     * write generation.
+     *
+     * @param key        The key of the query
+     * @param generation The current write generation
+     * @return The copy of the cached result or null, if no valid result is cached
+     */
+    private QueryResult getCachedQueryResult(String key, long generation) {
+        //Look up the cached result
+        CachedQueryResult cachedResult = queryCache.getIfPresent(key);
+
+        //Check whether the result is missing or obsolete
+        if ((cachedResult == null) || (cachedResult.generation != generation)) {
+            if (cachedResult != null) queryCache.asMap().remove(key, cachedResult);
+            queryCacheMisses.increment();
+            return null;
+        }
+
+        //Return a copy of the result
+        queryCacheHits.increment();
+        return cachedResult.toQueryResult();
+    }
+
+    /**
+     * Adds a given result of the query with a given key to the cache, unless a write happened since the query was
+     * started. Results that refer to further pages are cached as well, since the continuation tokens of first pages
+     * do not hold any state of the repository and may thus be shared by multiple consumers.
+     *
+     * @param key        The key of the query
+     * @param result     The result of the query
+     * @param generation The write generation at the start of the query
+     */
+    private void cacheQueryResult(String key, QueryResult result, long generation) {
+        //Check whether the result is missing or might be outdated
+        if ((result == null) || (writeGeneration.get() != generation)) return;
+
+        //Add the result to the cache
+        queryCache.put(key, new CachedQueryResult(result, generation));
+    }
+
+    /**
+     * Records a write with a given {@link WriteConsistency} and invalidates the cached document with a given
+     * identifier. Since the changes of fire-and-forget writes may only become visible for searches with the next
+     * refresh of the repository, such writes are recorded a second time after the search visibility delay, making
+     * query results obsolete that were computed in the meantime.
+     *
+     * @param id          The identifier of the written document or null, if no cached document is affected
+     * @param consistency The consistency level that was applied to the write
+     */
+    private void invalidate(String id, WriteConsistency consistency) {
+        //Record the write
+        writeGeneration.incrementAndGet();
+        if (id != null) documentCache.invalidate(id);
+
+        //Record the write again as soon as it became visible for searches
+        if (consistency == WriteConsistency.FIRE_AND_FORGET) {
+            CompletableFuture.runAsync(writeGeneration::incrementAndGet,
+                    CompletableFuture.delayedExecutor(searchVisibilityDelayMillis, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /**
+     * Result of a query that is stored in the query cache, together with the write generation in which it was
+     * computed. The documents are kept in serialized form, such that each retrieval yields independent copies.
+     */
+    private static class CachedQueryResult {
+        //Serialized documents of the result
+        private final List<String> documents;
+
+        //Continuation token of the subsequent page or null, if no further documents are available
+        private final String continuationToken;
+
+        //Write generation in which the result was computed
+        private final long generation;
+
+        //Total size of the serialized documents
+        private final int weight;
+
+        /**
+         * Creates a new cached result from a given {@link QueryResult} and a given write generation.
+         *
+         * @param result     The result to cache
+         * @param generation The write generation in which the result was computed
+         */
+        private CachedQueryResult(QueryResult result, long generation) {
+            this.documents = new ArrayList<>(result.getDocuments().size());
+            result.getDocuments().forEach(d -> this.documents.add(d.toString()));
+            this.continuationToken = result.getContinuationToken();
+            this.generation = generation;
+            this.weight = this.documents.stream().mapToInt(String::length).sum()
+                    + (continuationToken == null ? 0 : continuationToken.length());
+        }
+
+        /**
+         * Creates a new {@link QueryResult} from the cached result.
+         *
+         * @return The created query result
+         */
+        private QueryResult toQueryResult() {
+            List<JSONObject> copies = new ArrayList<>(documents.size());
+            documents.forEach(d -> copies.add(new JSONObject(d)));
+            return new QueryResult(copies, continuationToken);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Objects of this class represent continuation tokens for paginated queries against Elasticsearch, consisting out of
+ * the identifier of the point-in-time on which the query is executed and the sort values of the last document of
+ * the preceding page. Tokens of first pages do not refer to a point-in-time, since it is only opened on the request
+ * of the second page. Towards clients, continuation tokens are exposed as opaque, URL-safe strings.
+ */
+class ContinuationToken {
+    //JSON keys of the encoded token
+    private static final String KEY_POINT_IN_TIME = "pit";
+    private static final String KEY_SEARCH_AFTER = "after";
+
+    //Identifier of the point-in-time or null, if none was opened yet
+    private final String pointInTimeId;
+
+    //Sort values of the last document of the preceding page
+    private final Object[] searchAfter;
+
+    /**
+     * Creates a new {@link ContinuationToken} from a given point-in-time identifier and the sort values of the last
+     * document of the preceding page.
+     *
+     * @param pointInTimeId The identifier of the point-in-time or null, if none was opened yet
+     * @param searchAfter   The sort values of the last document of the preceding page
+     */
+    ContinuationToken(String pointInTimeId, Object[] searchAfter) {
+        this.pointInTimeId = pointInTimeId;
+        this.searchAfter = searchAfter;
+    }
+
+    /**
+     * Decodes a given continuation token string that was previously created by {@link #encode()}.
+     *
+     * @param token The continuation token string to decode
+     * @return The resulting {@link ContinuationToken}
+     * @throws IllegalArgumentException In case the continuation token string is invalid
+     */
+    static ContinuationToken decode(String token) {
+        try {
+            //Decode the token string to JSON
+            JSONObject tokenObject = new JSONObject(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+            JSONArray searchAfterArray = tokenObject.getJSONArray(KEY_SEARCH_AFTER);
+
+            //Restore the sort values with types that are supported by search_after
+            Object[] searchAfter = new Object[searchAfterArray.length()];
+            for (int i = 0; i < searchAfter.length; i++) {
+                Object value = searchAfterArray.get(i);
+                if ((value instanceof Integer) || (value instanceof Long) || (value instanceof BigInteger)) {
+                    searchAfter[i] = ((Number) value).longValue();
+                } else if (value instanceof Number) {
+                    searchAfter[i] = ((Number) value).doubleValue();
+                } else {
+                    searchAfter[i] = value;
+                }
+            }
+
+            return new ContinuationToken(tokenObject.optString(KEY_POINT_IN_TIME, null), searchAfter);
+        } catch (IllegalArgumentException | JSONException e) {
+            throw new IllegalArgumentException("The continuation token is invalid.");
+        }
+    }
+
+    /**
+     * Encodes the continuation token to an opaque, URL-safe string.
+     *
+     * @return The resulting continuation token string
+     */
+    String encode() {
+        //Create JSON object holding the token data
+        JSONObject tokenObject = new JSONObject()
+                .put(KEY_POINT_IN_TIME, pointInTimeId)
+                .put(KEY_SEARCH_AFTER, new JSONArray(searchAfter));
+
+        //Encode the JSON object
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(tokenObject.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the identifier of the point-in-time.
+     *
+     * @return The point-in-time identifier or null, if none was opened yet
+     */
+    String getPointInTimeId() {
+        return pointInTimeId;
+    }
+
+    /**
+     * Returns the sort values of the last document of the preceding page.
+     *
+     * @return The sort values
+     */
+    Object[] getSearchAfter() {
+        return searchAfter;
+    }
+}
@@ -0,0 +1,203 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch;
+
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.PointInTimeBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Cursor that iterates over all documents of an Elasticsearch index page by page. The cursor operates on a
+ * point-in-time of the index and uses search_after for retrieving the subsequent pages, such that only a single
+ * page of documents needs to be held in memory at the same time. If a page cannot be retrieved, the iteration is
+ * aborted with an {@link IllegalStateException}, such that consumers cannot mistake a failure for the end of the
+ * documents. Cursors must be closed after use in order to release the point-in-time.
+ */
+class DocumentCursor implements Iterator<Map.Entry<String, JSONObject>>, AutoCloseable {
+
+    //REST client to use for communicating with the elasticsearch repository
+    private final RestHighLevelClient restClient;
+
+    //Name of the index to iterate over
+    private final String indexName;
+
+    //Number of documents to retrieve per page
+    private final int pageSize;
+
+    //Time for which the point-in-time is kept alive between two pages
+    private final TimeValue keepAlive;
+
+    //Source filtering to apply to the documents, or null for retrieving the full documents
+    private final FetchSourceContext fetchSource;
+
+    //Handler for exceptions that occur during the iteration
+    private final Consumer<Exception> exceptionHandler;
+
+    //Identifier of the current point-in-time
+    private String pointInTimeId;
+
+    //Sort values of the last retrieved document
+    private Object[] searchAfter;
+
+    //Hits of the current page and the position within them
+    private SearchHit[] currentPage = new SearchHit[0];
+    private int position = 0;
+
+    //Whether the last page has been retrieved
+    private boolean exhausted = false;
+
+    /**
+     * Creates a new cursor for a given index.
+     *
+     * @param restClient       The REST client to use
+     * @param indexName        The name of the index to iterate over
+     * @param pageSize         The number of documents to retrieve per page
+     * @param keepAlive        The time for which the point-in-time is kept alive between two pages
+     * @param fetchSource      The source filtering to apply to the documents or null for the full documents
+     * @param exceptionHandler The handler for exceptions that occur during the iteration
+     */
+    DocumentCursor(RestHighLevelClient restClient, String indexName, int pageSize, TimeValue keepAlive,
+                   FetchSourceContext fetchSource, Consumer<Exception> exceptionHandler) {
+        this.restClient = restClient;
+        this.indexName = indexName;
+        this.pageSize = pageSize;
+        this.keepAlive = keepAlive;
+        this.fetchSource = fetchSource;
+        this.exceptionHandler = exceptionHandler;
+    }
+
+    /**
+     * Returns whether further documents are available.
+     *
+     * @return True, if further documents are available; false otherwise
+     * @throws IllegalStateException In case the next page of documents could not be retrieved
+     */
+    @Override
+    public boolean hasNext() {
+        //Retrieve the next page if the current one is consumed
+        if ((position >= currentPage.length) && (!exhausted)) {
+            fetchNextPage();
+        }
+        return position < currentPage.length;
+    }
+
+    /**
+     * Returns the next document as entry of its identifier and its content.
+     *
+     * @return The entry (document ID --> document content) of the next document
+     * @throws IllegalStateException In case the next page of documents could not be retrieved
+     */
+    @Override
+    public Map.Entry<String, JSONObject> next() {
+        //Check for further documents
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        //Get next hit and transform it
+        SearchHit hit = currentPage[position++];
+        return new AbstractMap.SimpleImmutableEntry<>(hit.getId(), new JSONObject(hit.getSourceAsString()));
+    }
+
+    /**
+     * Closes the cursor by releasing its point-in-time.
+     */
+    @Override
+    public void close() {
+        //Do not retrieve any further pages
+        this.exhausted = true;
+        this.currentPage = new SearchHit[0];
+
+        //Check if a point-in-time is open
+        if (pointInTimeId == null) {
+            return;
+        }
+
+        try {
+            //Release the point-in-time by using the low level client
+            Request request = new Request("DELETE", "/_pit");
+            request.setJsonEntity(new JSONObject().put("id", pointInTimeId).toString());
+            restClient.getLowLevelClient().performRequest(request);
+        } catch (IOException e) {
+            exceptionHandler.accept(e);
+        } finally {
+            pointInTimeId = null;
+        }
+    }
+
+    /**
+     * Retrieves the next page of documents, opening the point-in-time on the first invocation.
+     *
+     * @throws IllegalStateException In case the page could not be retrieved
+     */
+    private void fetchNextPage() {
+        try {
+            //Open the point-in-time by using the low level client if not already done
+            if (pointInTimeId == null) {
+                Request request = new Request("POST", "/" + indexName + "/_pit");
+                request.addParameter("keep_alive", keepAlive.getStringRep());
+                Response response = restClient.getLowLevelClient().performRequest(request);
+                pointInTimeId = new JSONObject(EntityUtils.toString(response.getEntity())).getString("id");
+            }
+
+            //Create search source for the next page, using the shard doc order as cheapest stable sort order
+            SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
+                    .query(QueryBuilders.matchAllQuery())
+                    .size(pageSize)
+                    .fetchSource(fetchSource)
+                    .trackTotalHits(false)
+                    .sort(SortBuilders.fieldSort(FieldSortBuilder.SHARD_DOC_FIELD_NAME))
+                    .pointInTimeBuilder(new PointInTimeBuilder(pointInTimeId).setKeepAlive(keepAlive));
+
+            //Continue after the last retrieved document
+            if (searchAfter != null) {
+                sourceBuilder.searchAfter(searchAfter);
+            }
+
+            //Perform the search, which must not reference the index when using a point-in-time
+            SearchResponse response = restClient.search(new SearchRequest().source(sourceBuilder), RequestOptions.DEFAULT);
+
+            //Use the possibly updated point-in-time for subsequent pages
+            if (response.pointInTimeId() != null) {
+                pointInTimeId = response.pointInTimeId();
+            }
+
+            //Update the current page
+            currentPage = response.getHits().getHits();
+            position = 0;
+
+            //Remember sort values of the last document or finish if the last page was retrieved
+            if (currentPage.length > 0) {
+                searchAfter = currentPage[currentPage.length - 1].getSortValues();
+            }
+            if (currentPage.length < pageSize) {
+                exhausted = true;
+            }
+        } catch (Exception e) {
+            //Handle the exception, stop the iteration and abort the consumer
+            exceptionHandler.accept(e);
+            currentPage = new SearchHit[0];
+            position = 0;
+            exhausted = true;
+            throw new IllegalStateException("Failed to retrieve the next page of documents.", e);
+        }
+    }
+}
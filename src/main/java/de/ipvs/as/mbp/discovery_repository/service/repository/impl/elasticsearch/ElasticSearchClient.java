@@ -1,35 +1,68 @@
 package de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch;
 
+import de.ipvs.as.mbp.discovery_repository.service.repository.Projection;
+import de.ipvs.as.mbp.discovery_repository.service.repository.QueryResult;
 import de.ipvs.as.mbp.discovery_repository.service.repository.RepositoryClient;
+import de.ipvs.as.mbp.discovery_repository.service.repository.RepositoryQuery;
+import de.ipvs.as.mbp.discovery_repository.service.repository.WriteConsistency;
 import de.ipvs.as.mbp.discovery_repository.service.repository.handler.RepositoryExceptionHandler;
+import de.ipvs.as.mbp.discovery_repository.service.repository.planner.QueryPlan;
+import de.ipvs.as.mbp.discovery_repository.service.repository.planner.QueryPlanner;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.open.OpenIndexRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.support.WriteRequest;
 import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.action.update.UpdateResponse;
+import org.elasticsearch.client.NodeSelector;
+import org.elasticsearch.client.Request;
 import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
 import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestClientBuilder;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.client.core.CountRequest;
 import org.elasticsearch.client.core.CountResponse;
 import org.elasticsearch.client.indices.*;
+import org.elasticsearch.client.sniff.ElasticsearchNodesSniffer;
+import org.elasticsearch.client.sniff.SniffOnFailureListener;
+import org.elasticsearch.client.sniff.Sniffer;
 import org.elasticsearch.cluster.metadata.MappingMetadata;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentType;
-import org.elasticsearch.index.query.BoolQueryBuilder;
-import org.elasticsearch.index.query.MatchAllQueryBuilder;
+import org.elasticsearch.index.mapper.IdFieldMapper;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.reindex.DeleteByQueryRequest;
+import org.elasticsearch.index.reindex.UpdateByQueryRequest;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.PointInTimeBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
+import org.elasticsearch.search.sort.SortBuilders;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.json.JSONTokener;
@@ -37,12 +70,30 @@ import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * An implementation of the {@link RepositoryClient} interface for Elasticsearch repositories.
@@ -52,33 +103,121 @@ public class ElasticSearchClient implements RepositoryClient {
     //File containing the mapping for the index
     private static final Resource MAPPING_RESOURCE = new ClassPathResource("index/mapping.json");
 
+    //File containing the settings for the index, including the analyzers that are referenced by the mapping
+    private static final Resource SETTINGS_RESOURCE = new ClassPathResource("index/settings.json");
+
+    //Pointer to the field of the mapping whose presence indicates that the index contains the most recent subfields
+    private static final String SUBFIELDS_MARKER_POINTER = "/properties/keywords/fields/lowercase";
+
+    //Maximum number of documents that are inserted within a single bulk request
+    private static final int BULK_MAX_DOCUMENTS = 1000;
+
+    //Number of documents that are retrieved per page when streaming all documents
+    private static final int EXPORT_PAGE_SIZE = 1000;
+
+    //Time for which the point-in-time is kept alive between two pages when streaming all documents
+    private static final TimeValue EXPORT_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+
+    //Number of documents that are returned per page by queries that do not specify a limit
+    private static final int QUERY_DEFAULT_LIMIT = 20;
+
+    //Timeout for the execution of queries
+    private static final TimeValue QUERY_TIMEOUT = new TimeValue(30, TimeUnit.SECONDS);
+
+    //Time for which the point-in-time of a paginated query is kept alive between two pages
+    private static final TimeValue QUERY_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+
+    //Suffix that is appended to the name of the index in order to obtain the name of the percolator index
+    private static final String PERCOLATOR_INDEX_SUFFIX = "_queries";
+
+    //Field of the percolator index that holds the registered queries
+    private static final String PERCOLATOR_FIELD = "registered_query";
+
+    //Field of the percolator index that holds the identifier of the instance that registered a query
+    private static final String PERCOLATOR_INSTANCE_FIELD = "registered_query_instance";
+
+    //Maximum number of registered queries that are retrieved as matches of a single percolation
+    private static final int PERCOLATE_MAX_MATCHES = 10000;
+
+    //Minimum time between two retrievals of the capability types due to queries referencing unknown capabilities
+    private static final long CAPABILITY_TYPES_REFRESH_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+
     //Credentials provider to use
     private final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
 
+    //Connection settings to use
+    private final ElasticSearchSettings settings;
+
     //REST client to use for communicating with the elasticsearch repository
     private RestHighLevelClient restClient;
 
+    //Sniffer for discovering the nodes of the cluster, or null if sniffing is disabled
+    private Sniffer sniffer;
+
     //Name of the index to use
     private String indexName;
 
+    //Name of the percolator index in which the registered queries are stored
+    private String percolatorIndexName;
+
+    //Identifiers of the registered queries that could not be stored in the percolator index and thus always match
+    private final Set<String> unpercolatableQueryIds = ConcurrentHashMap.newKeySet();
+
     //Exception handler to use for handling exceptions
     private RepositoryExceptionHandler exceptionHandler;
 
     //Document describing the mapping to use for the index
     private JSONObject indexMappingDocument;
 
+    //Document describing the settings to use for the index
+    private JSONObject indexSettingsDocument;
+
+    //Map (capability name --> data type) of the capabilities that are known from the mapping of the index
+    private volatile Map<String, String> capabilityTypes = Collections.emptyMap();
+
+    //Time at which the capability types were retrieved the last time
+    private volatile long capabilityTypesTimestamp = 0;
+
+    //Executor for completing the futures of asynchronous requests outside of the I/O threads of the REST client
+    private final ExecutorService callbackExecutor;
+
 
     /**
-     * Creates and initializes the elasticsearch client.
+     * Creates and initializes the elasticsearch client with default connection settings.
      */
     public ElasticSearchClient() {
+        this(new ElasticSearchSettings());
+    }
+
+    /**
+     * Creates and initializes the elasticsearch client with given connection settings.
+     *
+     * @param settings The connection settings to use
+     */
+    public ElasticSearchClient(ElasticSearchSettings settings) {
+        //Sanity check
+        if (settings == null) throw new IllegalArgumentException("The settings must not be null.");
+
+        this.settings = settings;
 
+        //Create executor with a bounded number of named daemon threads for the callbacks
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.callbackExecutor = Executors.newFixedThreadPool(settings.getCallbackThreadCount() > 0 ?
+                settings.getCallbackThreadCount() : 2 * Runtime.getRuntime().availableProcessors(), r -> {
+            Thread thread = new Thread(r, "elasticsearch-callback-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
 
     /**
      * Establishes a connection to the repository that is available at a given host address with a given port by
-     * using a given username and password
+     * using a given username and password. The host address may also consist out of a comma-separated list of
+     * nodes of the cluster in the format [scheme://]host[:port], for which the given port is used as default.
+     * Requests are distributed across all nodes, whereby nodes that fail are excluded with an increasing backoff
+     * time until they become available again. If sniffing is enabled, further nodes of the cluster are discovered
+     * automatically.
      *
      * @param hostAddress    The host address of the messaging broker
      * @param port           The port of the messaging broker
@@ -88,20 +227,54 @@ public class ElasticSearchClient implements RepositoryClient {
      */
     @Override
     public void connect(String hostAddress, int port, String username, String password, String collectionName) {
-        //Set index name to use
+        //Set index names to use
         this.indexName = collectionName;
+        this.percolatorIndexName = collectionName + PERCOLATOR_INDEX_SUFFIX;
 
         //Store credentials in the credentials provider
         credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(username, password));
 
+        //Create listener that triggers sniffing on failures
+        SniffOnFailureListener sniffOnFailureListener = new SniffOnFailureListener();
+
+        //Create builder for the low level client, which marks failing nodes as dead with exponential backoff
+        RestClientBuilder clientBuilder = RestClient.builder(parseHosts(hostAddress, port))
+                .setNodeSelector(NodeSelector.SKIP_DEDICATED_MASTERS)
+                .setRequestConfigCallback(requestConfigBuilder -> requestConfigBuilder
+                        .setConnectTimeout(settings.getConnectTimeoutMillis())
+                        .setSocketTimeout(settings.getSocketTimeoutMillis()))
+                .setHttpClientConfigCallback(httpClientBuilder -> httpClientBuilder
+                        .setDefaultCredentialsProvider(credentialsProvider)
+                        .setMaxConnTotal(settings.getMaxConnectionsTotal())
+                        .setMaxConnPerRoute(settings.getMaxConnectionsPerRoute())
+                        .setKeepAliveStrategy((response, context) -> settings.getKeepAliveMillis())
+                        .setDefaultIOReactorConfig(IOReactorConfig.custom()
+                                .setIoThreadCount(settings.getIoThreadCount() > 0 ? settings.getIoThreadCount() : Runtime.getRuntime().availableProcessors())
+                                .setSoKeepAlive(true).build()));
+
+        //Sniff on failures if sniffing is enabled
+        if (settings.isSniffingEnabled()) {
+            clientBuilder.setFailureListener(sniffOnFailureListener);
+        }
+
         //Create REST client
-        this.restClient = new RestHighLevelClient(
-                RestClient.builder(new HttpHost(hostAddress, port, "http"))
-                        .setHttpClientConfigCallback(httpClientBuilder -> httpClientBuilder
-                                .setDefaultCredentialsProvider(credentialsProvider)));
+        this.restClient = new RestHighLevelClient(clientBuilder);
 
-        //Prepare and initialize the index to use
+        //Create sniffer for discovering the nodes of the cluster if enabled
+        if (settings.isSniffingEnabled()) {
+            this.sniffer = Sniffer.builder(this.restClient.getLowLevelClient())
+                    .setSniffIntervalMillis(settings.getSniffIntervalMillis())
+                    .setSniffAfterFailureDelayMillis(settings.getSniffAfterFailureDelayMillis())
+                    .setNodesSniffer(new ElasticsearchNodesSniffer(this.restClient.getLowLevelClient(),
+                            ElasticsearchNodesSniffer.DEFAULT_SNIFF_REQUEST_TIMEOUT,
+                            settings.getScheme().equals("https") ? ElasticsearchNodesSniffer.Scheme.HTTPS : ElasticsearchNodesSniffer.Scheme.HTTP))
+                    .build();
+            sniffOnFailureListener.setSniffer(this.sniffer);
+        }
+
+        //Prepare and initialize the indices to use
         initializeIndex();
+        initializePercolatorIndex();
     }
 
     /**
@@ -117,11 +290,19 @@ public class ElasticSearchClient implements RepositoryClient {
      */
     @Override
     public void close() {
+        //Stop the sniffer before the client it uses
+        if (this.sniffer != null) {
+            this.sniffer.close();
+        }
+
         try {
             this.restClient.close();
         } catch (IOException e) {
             handleException(e);
         }
+
+        //Stop the executor for callbacks last, such that the responses of pending requests still complete their futures
+        this.callbackExecutor.shutdown();
     }
 
     /**
@@ -144,91 +325,185 @@ public class ElasticSearchClient implements RepositoryClient {
      * Inserts a document, given as {@link JSONObject}, into the repository and returns the identifier under which
      * it was stored.
      *
-     * @param document The document to insert
+     * @param document    The document to insert
+     * @param consistency The consistency level to apply to the write
      * @return The identifier under which the document was stored
      */
     @Override
-    public String insertDocument(JSONObject document) {
+    public String insertDocument(JSONObject document, WriteConsistency consistency) {
+        //Wait for the asynchronous insertion
+        return insertDocumentAsync(document, consistency).join();
+    }
+
+    /**
+     * Asynchronously inserts a document, given as {@link JSONObject}, into the repository. The returned
+     * {@link CompletableFuture} completes with the identifier under which the document was stored or with null
+     * if the insertion failed.
+     *
+     * @param document    The document to insert
+     * @param consistency The consistency level to apply to the write
+     * @return The {@link CompletableFuture} of the identifier
+     */
+    @Override
+    public CompletableFuture<String> insertDocumentAsync(JSONObject document, WriteConsistency consistency) {
         //Create index request
         IndexRequest indexRequest = new IndexRequest(this.indexName).source(document.toString(), XContentType.JSON)
-                .setRefreshPolicy(WriteRequest.RefreshPolicy.WAIT_UNTIL);;
+                .setRefreshPolicy(toRefreshPolicy(consistency));
 
-        try {
-            //Index the document
-            IndexResponse response = this.restClient.index(indexRequest, RequestOptions.DEFAULT);
+        //Index the document and get the ID from the response
+        return executeAsync(l -> this.restClient.indexAsync(indexRequest, RequestOptions.DEFAULT, l),
+                IndexResponse::getId, null);
+    }
 
-            //Get ID and return it
-            return response.getId();
-        } catch (IOException e) {
-            //Handle the exception
-            handleException(e);
-            return null;
+    /**
+     * Inserts a list of documents, given as {@link JSONObject}s, into the repository by using as few requests as
+     * possible and returns the identifiers under which they were stored. The resulting list is ordered in the same
+     * way as the given list of documents and contains null for each document that could not be inserted.
+     *
+     * @param documents   The documents to insert
+     * @param consistency The consistency level to apply to the write
+     * @return The list of identifiers under which the documents were stored
+     */
+    @Override
+    public List<String> insertDocuments(List<JSONObject> documents, WriteConsistency consistency) {
+        //Wait for the asynchronous insertion
+        return insertDocumentsAsync(documents, consistency).join();
+    }
+
+    /**
+     * Asynchronously inserts a list of documents, given as {@link JSONObject}s, into the repository. The returned
+     * {@link CompletableFuture} completes with the list of identifiers under which the documents were stored,
+     * ordered in the same way as the given documents and containing null for each document that could not be
+     * inserted.
+     *
+     * @param documents   The documents to insert
+     * @param consistency The consistency level to apply to the write
+     * @return The {@link CompletableFuture} of the list of identifiers
+     */
+    @Override
+    public CompletableFuture<List<String>> insertDocumentsAsync(List<JSONObject> documents, WriteConsistency consistency) {
+        //Sanity check
+        if ((documents == null) || documents.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        //Create list for the futures of the chunks
+        List<CompletableFuture<List<String>>> chunkFutures = new ArrayList<>();
+
+        //Split the documents into chunks and insert each chunk with a single bulk request
+        for (int offset = 0; offset < documents.size(); offset += BULK_MAX_DOCUMENTS) {
+            //Get the documents of the current chunk
+            List<JSONObject> chunk = documents.subList(offset, Math.min(offset + BULK_MAX_DOCUMENTS, documents.size()));
+
+            //Create bulk request for the chunk, applying the refresh policy only once per chunk
+            BulkRequest bulkRequest = new BulkRequest(this.indexName).setRefreshPolicy(toRefreshPolicy(consistency));
+            chunk.forEach(d -> bulkRequest.add(new IndexRequest().source(d.toString(), XContentType.JSON)));
+
+            //Index the documents of the chunk and collect the IDs of the items, which are ordered as in the request
+            chunkFutures.add(executeAsync(l -> this.restClient.bulkAsync(bulkRequest, RequestOptions.DEFAULT, l),
+                    (BulkResponse r) -> Arrays.stream(r.getItems()).map(i -> i.isFailed() ? null : i.getId()).collect(Collectors.toList()),
+                    Collections.nCopies(chunk.size(), null)));
         }
+
+        //Concatenate the identifiers of all chunks as soon as they are available
+        return CompletableFuture.allOf(chunkFutures.toArray(new CompletableFuture<?>[0])).thenApply(v -> chunkFutures.stream()
+                .flatMap(f -> f.join().stream()).collect(Collectors.toList()));
     }
 
     /**
      * Retrieves the document from the repository that matches the given identifier as {@link JSONObject} or null
-     * if the document cannot be found.
+     * if the document cannot be found. The retrieval always reflects the most recent writes, independent of the
+     * {@link WriteConsistency} that was used for them.
      *
      * @param id The identifier of the document to retrieve
      * @return The document as {@link JSONObject} or null
      */
     @Override
     public JSONObject getDocument(String id) {
-        //Create get request
-        GetRequest getRequest = new GetRequest(this.indexName).id(id);
+        //Wait for the asynchronous retrieval
+        return getDocumentAsync(id).join();
+    }
 
-        try {
-            //Retrieve the document
-            GetResponse response = this.restClient.get(getRequest, RequestOptions.DEFAULT);
-            //Get the document, transform it to JSONObject and return it
-            return new JSONObject(response.getSourceAsString());
-        } catch (IOException e) {
-            //Handle the exception
-            handleException(e);
-            return null;
-        }
+    /**
+     * Asynchronously retrieves the document from the repository that matches the given identifier. The returned
+     * {@link CompletableFuture} completes with the document as {@link JSONObject} or with null if the document
+     * cannot be found.
+     *
+     * @param id The identifier of the document to retrieve
+     * @return The {@link CompletableFuture} of the document
+     */
+    @Override
+    public CompletableFuture<JSONObject> getDocumentAsync(String id) {
+        //Create realtime get request, which also covers writes that are not searchable yet
+        GetRequest getRequest = new GetRequest(this.indexName).id(id).realtime(true);
+
+        //Retrieve the document and transform it to JSONObject if it exists
+        return executeAsync(l -> this.restClient.getAsync(getRequest, RequestOptions.DEFAULT, l),
+                (GetResponse r) -> r.isExists() ? new JSONObject(r.getSourceAsString()) : null, null);
     }
 
     /**
      * Updates a document with a certain identifier in the repository by replacing it with a new document.
      *
-     * @param id       The identifier of the document that is supposed to be updated
-     * @param document The updated document to use
+     * @param id          The identifier of the document that is supposed to be updated
+     * @param document    The updated document to use
+     * @param consistency The consistency level to apply to the write
+     */
+    @Override
+    public void updateDocument(String id, JSONObject document, WriteConsistency consistency) {
+        //Wait for the asynchronous update
+        updateDocumentAsync(id, document, consistency).join();
+    }
+
+    /**
+     * Asynchronously updates a document with a certain identifier in the repository by replacing it with a new
+     * document. The returned {@link CompletableFuture} completes as soon as the update was processed.
+     *
+     * @param id          The identifier of the document that is supposed to be updated
+     * @param document    The updated document to use
+     * @param consistency The consistency level to apply to the write
+     * @return The {@link CompletableFuture} of the update
      */
     @Override
-    public void updateDocument(String id, JSONObject document) {
+    public CompletableFuture<Void> updateDocumentAsync(String id, JSONObject document, WriteConsistency consistency) {
         //Create update request
-        UpdateRequest updateRequest = new UpdateRequest(this.indexName, id).doc(document)
-                .setRefreshPolicy(WriteRequest.RefreshPolicy.WAIT_UNTIL);
+        UpdateRequest updateRequest = new UpdateRequest(this.indexName, id).doc(document.toString(), XContentType.JSON)
+                .setRefreshPolicy(toRefreshPolicy(consistency));
 
-        try {
-            //Update the document
-            this.restClient.update(updateRequest, RequestOptions.DEFAULT);
-        } catch (IOException e) {
-            //Handle the exception
-            handleException(e);
-        }
+        //Update the document
+        return executeAsync(l -> this.restClient.updateAsync(updateRequest, RequestOptions.DEFAULT, l),
+                (UpdateResponse r) -> null, null);
     }
 
     /**
      * Deletes a document, given by its identifier, from the repository.
      *
-     * @param id The identifier of the document to delete
+     * @param id          The identifier of the document to delete
+     * @param consistency The consistency level to apply to the write
      */
     @Override
-    public void deleteDocument(String id) {
+    public void deleteDocument(String id, WriteConsistency consistency) {
+        //Wait for the asynchronous deletion
+        deleteDocumentAsync(id, consistency).join();
+    }
+
+    /**
+     * Asynchronously deletes a document, given by its identifier, from the repository. The returned
+     * {@link CompletableFuture} completes as soon as the deletion was processed.
+     *
+     * @param id          The identifier of the document to delete
+     * @param consistency The consistency level to apply to the write
+     * @return The {@link CompletableFuture} of the deletion
+     */
+    @Override
+    public CompletableFuture<Void> deleteDocumentAsync(String id, WriteConsistency consistency) {
         //Create delete request
         DeleteRequest deleteRequest = new DeleteRequest(this.indexName).id(id)
-                .setRefreshPolicy(WriteRequest.RefreshPolicy.WAIT_UNTIL);;
+                .setRefreshPolicy(toRefreshPolicy(consistency));
 
-        try {
-            //Perform deletion
-            this.restClient.delete(deleteRequest, RequestOptions.DEFAULT);
-        } catch (IOException e) {
-            //Handle the exception
-            handleException(e);
-        }
+        //Perform deletion
+        return executeAsync(l -> this.restClient.deleteAsync(deleteRequest, RequestOptions.DEFAULT, l),
+                (DeleteResponse r) -> null, null);
     }
 
     /**
@@ -244,6 +519,9 @@ public class ElasticSearchClient implements RepositoryClient {
             //Delete index
             this.restClient.indices().delete(new DeleteIndexRequest(this.indexName), RequestOptions.DEFAULT);
 
+            //Forget the capability types of the deleted index
+            this.capabilityTypes = Collections.emptyMap();
+
             //Prepare and initialize a new index
             this.initializeIndex();
         } catch (IOException e) {
@@ -253,47 +531,284 @@ public class ElasticSearchClient implements RepositoryClient {
     }
 
     /**
-     * Searches all documents in the repository for those that match a given query,
-     * consisting out of a {@link JSONArray} of requirements and a {@link JSONArray} of scoring criteria.
+     * Searches all documents in the repository for those that match a given {@link RepositoryQuery}, consisting out
+     * of requirements, scoring criteria, a limit and an optional continuation token, and returns the requested page
+     * of matching documents as {@link QueryResult}.
      *
-     * @param requirements    The requirements of the query
-     * @param scoringCriteria The scoring criteria of the query
-     * @return A list of matching device descriptions
+     * @param query The query to execute
+     * @return The resulting page of matching documents
+     * @throws IllegalArgumentException In case the continuation token of the query is invalid
      */
     @Override
-    public List<JSONObject> query(JSONArray requirements, JSONArray scoringCriteria) {
-        //Use the query generator to create a corresponding boolean query
-        BoolQueryBuilder query = QueryGenerator.generate(requirements, scoringCriteria);
+    public QueryResult query(RepositoryQuery query) {
+        //Wait for the asynchronous search
+        return queryAsync(query).join();
+    }
 
-        //Create search source with appropriate configuration from the query
-        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
-                .query(query)
-                .size(20)
-                .timeout(new TimeValue(30, TimeUnit.SECONDS));
+    /**
+     * Asynchronously searches all documents in the repository for those that match a given {@link RepositoryQuery},
+     * consisting out of requirements, scoring criteria, a limit and an optional continuation token. The returned
+     * {@link CompletableFuture} completes with the requested page of matching documents as {@link QueryResult}.
+     * All pages are sorted by score and use the document identifier as deterministic tiebreaker, such that the first
+     * page is retrieved by a single plain search whose continuation token only holds the sort values of its last
+     * document. A point-in-time is opened lazily on the first request of a subsequent page, such that the remaining
+     * pages are consistent, and is released as soon as the last page was retrieved and otherwise expires after
+     * {@link #QUERY_KEEP_ALIVE}.
+     *
+     * @param query The query to execute
+     * @return The {@link CompletableFuture} of the resulting page of matching documents
+     * @throws IllegalArgumentException In case the continuation token of the query is invalid
+     */
+    @Override
+    public CompletableFuture<QueryResult> queryAsync(RepositoryQuery query) {
+        //Determine the number of documents to retrieve
+        int limit = query.getLimit() > 0 ? query.getLimit() : QUERY_DEFAULT_LIMIT;
+
+        //Optimize the requirements and check whether they can be satisfied at all
+        QueryPlan plan = QueryPlanner.plan(query.getRequirements());
+        if (plan.isUnsatisfiable()) {
+            return CompletableFuture.completedFuture(QueryResult.empty());
+        }
+
+        //Use the query generator to create a corresponding query that ranks the documents by the scoring criteria
+        QueryBuilder searchQuery = QueryGenerator.generate(plan.getRequirements(), query.getScoringCriteria(),
+                getCapabilityTypes(plan.getRequirements(), query.getScoringCriteria()));
+
+        //Translate the projection to source filtering
+        FetchSourceContext fetchSource = toFetchSourceContext(query.getProjection());
+
+        //Check if the first page is requested
+        if (query.getContinuationToken() == null) {
+            return searchPageAsync(searchQuery, limit, fetchSource, null, null);
+        }
+
+        //Decode the continuation token and check whether it already refers to a point-in-time
+        ContinuationToken token = ContinuationToken.decode(query.getContinuationToken());
+        if (token.getPointInTimeId() != null) {
+            return searchPageAsync(searchQuery, limit, fetchSource, token.getPointInTimeId(), token.getSearchAfter());
+        }
+
+        //Open a point-in-time for the subsequent pages, falling back to the index if it could not be opened
+        return openPointInTimeAsync(QUERY_KEEP_ALIVE).thenCompose(pointInTimeId ->
+                searchPageAsync(searchQuery, limit, fetchSource, pointInTimeId, token.getSearchAfter()));
+    }
+
+    /**
+     * Searches all documents in the repository for those that match each of a given list of
+     * {@link RepositoryQuery}s and returns the resulting pages of matching documents as list of {@link QueryResult}s,
+     * in the same order as the queries. The first pages of all queries are retrieved by a single multi search
+     * request, such that only one round trip is necessary. Their continuation tokens do not refer to a
+     * point-in-time, which is opened lazily by {@link #queryAsync(RepositoryQuery)} on the first subsequent page.
+     * Queries that already provide a continuation token are executed individually. If the multi search request or
+     * the search of an individual query fails, the list contains null at the position of the affected queries, such
+     * that failures can be distinguished from queries without matching documents.
+     *
+     * @param queries The queries to execute
+     * @return The list of resulting pages of matching documents, containing null for queries that failed
+     * @throws IllegalArgumentException In case the continuation token of any of the queries is invalid
+     */
+    @Override
+    public List<QueryResult> multiQuery(List<RepositoryQuery> queries) {
+        //Create array for the results, containing null for queries that were not executed successfully
+        QueryResult[] results = new QueryResult[queries.size()];
+
+        //Create multi search request and remember the positions and limits of its searches
+        MultiSearchRequest multiSearchRequest = new MultiSearchRequest();
+        List<Integer> positions = new ArrayList<>();
+        List<Integer> limits = new ArrayList<>();
+
+        //Iterate over all queries
+        for (int i = 0; i < queries.size(); i++) {
+            RepositoryQuery query = queries.get(i);
+
+            //Execute queries for subsequent pages individually
+            if (query.getContinuationToken() != null) {
+                results[i] = query(query);
+                continue;
+            }
+
+            //Optimize the requirements and check whether they can be satisfied at all
+            QueryPlan plan = QueryPlanner.plan(query.getRequirements());
+            if (plan.isUnsatisfiable()) {
+                results[i] = QueryResult.empty();
+                continue;
+            }
+
+            //Generate the query and add the search request for its first page to the multi search request
+            int limit = query.getLimit() > 0 ? query.getLimit() : QUERY_DEFAULT_LIMIT;
+            QueryBuilder searchQuery = QueryGenerator.generate(plan.getRequirements(), query.getScoringCriteria(),
+                    getCapabilityTypes(plan.getRequirements(), query.getScoringCriteria()));
+            multiSearchRequest.add(createPageRequest(searchQuery, limit, toFetchSourceContext(query.getProjection()),
+                    null, null));
+            positions.add(i);
+            limits.add(limit);
+        }
+
+        //Check whether any searches need to be conducted
+        if (positions.isEmpty()) {
+            return Arrays.asList(results);
+        }
+
+        try {
+            //Conduct the searches
+            MultiSearchResponse.Item[] items = this.restClient.msearch(multiSearchRequest, RequestOptions.DEFAULT).getResponses();
+
+            //Create the results of the searches
+            for (int j = 0; j < items.length; j++) {
+                //Check whether the search failed
+                if (items[j].isFailure()) {
+                    handleException(items[j].getFailure());
+                    continue;
+                }
+
+                //Transform the hits of the first page
+                results[positions.get(j)] = toQueryResult(items[j].getResponse().getHits().getHits(), limits.get(j), null);
+            }
+        } catch (Exception e) {
+            //Handle the exception and mark all searches of the multi search request as failed
+            handleException(e);
+            positions.forEach(p -> results[p] = null);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Registers a query, given by an identifier and a {@link JSONArray} of requirements, for the reverse matching
+     * of documents by {@link #percolate(List)}. If a query with the same identifier is already registered, it is
+     * replaced. The boolean query that is generated from the requirements is stored in the percolator index, whose
+     * mapping is synchronized with the mapping of the index beforehand, tagged with the identifier of this instance. Queries whose requirements are unsatisfiable
+     * are not stored, since they never match, while queries that reference capabilities that are not known yet or
+     * that could not be stored are considered to match all documents.
+     *
+     * @param queryId      The identifier of the query
+     * @param requirements The requirements of the query
+     */
+    @Override
+    public void registerQuery(String queryId, JSONArray requirements) {
+        //Optimize the requirements
+        QueryPlan plan = QueryPlanner.plan(requirements);
+        this.unpercolatableQueryIds.remove(queryId);
+
+        try {
+            //Check whether the requirements can be satisfied at all
+            if (plan.isUnsatisfiable()) {
+                deletePercolatorQuery(queryId);
+                return;
+            }
+
+            //Synchronize the mapping of the percolator index and retrieve the current capability types
+            synchronizePercolatorMapping();
+            Map<String, String> types = getKeySummary();
+            this.capabilityTypes = types;
+            this.capabilityTypesTimestamp = System.currentTimeMillis();
+
+            //Queries on unknown capabilities cannot be stored with the correct data types
+            if (referencesUnknownCapabilities(plan.getRequirements(), types)) {
+                this.unpercolatableQueryIds.add(queryId);
+                deletePercolatorQuery(queryId);
+                return;
+            }
+
+            //Generate the query and store it in the percolator index
+            QueryBuilder query = QueryGenerator.generate(plan.getRequirements(), null, types);
+            IndexRequest indexRequest = new IndexRequest(this.percolatorIndexName).id(toPercolatorId(queryId))
+                    .source(new JSONObject().put(PERCOLATOR_FIELD, new JSONObject(query.toString()))
+                            .put(PERCOLATOR_INSTANCE_FIELD, settings.getInstanceId()).toString(), XContentType.JSON)
+                    .setRefreshPolicy(WriteRequest.RefreshPolicy.WAIT_UNTIL);
+            this.restClient.index(indexRequest, RequestOptions.DEFAULT);
+        } catch (Exception e) {
+            //Consider the query to match all documents
+            this.unpercolatableQueryIds.add(queryId);
 
-        //Create search request
-        SearchRequest searchRequest = new SearchRequest(this.indexName).source(sourceBuilder);
+            //Handle the exception
+            handleException(e);
+        }
+    }
+
+    /**
+     * Unregisters a query, given by its identifier, that was previously registered by
+     * {@link #registerQuery(String, JSONArray)}.
+     *
+     * @param queryId The identifier of the query
+     */
+    @Override
+    public void unregisterQuery(String queryId) {
+        //Forget the query
+        this.unpercolatableQueryIds.remove(queryId);
 
-        //Conduct the search
-        SearchResponse response;
         try {
-            response = this.restClient.search(searchRequest, RequestOptions.DEFAULT);
+            //Delete the query from the percolator index
+            deletePercolatorQuery(queryId);
         } catch (IOException e) {
             //Handle the exception
             handleException(e);
-            return Collections.emptyList();
         }
+    }
 
-        //Get hits from the response
-        SearchHit[] searchHits = response.getHits().getHits();
+    /**
+     * Determines the registered queries whose requirements are satisfied by at least one of the given documents
+     * and returns their identifiers. For this, a single percolate query is executed for all documents against the
+     * queries of this instance within the percolator index in filter context.
+     *
+     * @param documents The documents to match against the registered queries
+     * @return The set of identifiers of the matching queries or null, if they could not be determined
+     */
+    @Override
+    public Set<String> percolate(List<JSONObject> documents) {
+        //Sanity check
+        if ((documents == null) || documents.isEmpty()) {
+            return new HashSet<>();
+        }
 
-        //Check if there are any hits
-        if ((searchHits == null) || (searchHits.length < 1)) {
-            return Collections.emptyList();
+        //Create percolate query, which is not supported by the high level client and thus wrapped
+        JSONObject percolateQuery = new JSONObject().put("percolate", new JSONObject()
+                .put("field", PERCOLATOR_FIELD)
+                .put("documents", new JSONArray(documents)));
+
+        //Create search source, retrieving only the identifiers of the matching queries of this instance
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
+                .query(QueryBuilders.constantScoreQuery(QueryBuilders.boolQuery()
+                        .filter(QueryBuilders.wrapperQuery(percolateQuery.toString()))
+                        .filter(QueryBuilders.termQuery(PERCOLATOR_INSTANCE_FIELD, settings.getInstanceId()))))
+                .size(PERCOLATE_MAX_MATCHES)
+                .timeout(QUERY_TIMEOUT)
+                .fetchSource(false)
+                .trackTotalHits(false);
+
+        try {
+            //Conduct the search
+            SearchHit[] hits = this.restClient.search(new SearchRequest(this.percolatorIndexName).source(sourceBuilder),
+                    RequestOptions.DEFAULT).getHits().getHits();
+
+            //Check whether further matching queries may exist
+            if (hits.length >= PERCOLATE_MAX_MATCHES) {
+                return null;
+            }
+
+            //Collect the identifiers of the matching queries, including the ones that always match
+            int prefixLength = toPercolatorId("").length();
+            Set<String> queryIds = Arrays.stream(hits).map(h -> h.getId().substring(prefixLength))
+                    .collect(Collectors.toCollection(HashSet::new));
+            queryIds.addAll(this.unpercolatableQueryIds);
+            return queryIds;
+        } catch (Exception e) {
+            //Handle the exception
+            handleException(e);
+            return null;
         }
+    }
 
-        //Transform hits to JSON objects and collect them to a list
-        return Arrays.stream(searchHits).map(h -> new JSONObject(h.getSourceAsString())).collect(Collectors.toList());
+    /**
+     * Compiles a given {@link JSONArray} of requirements to a {@link Predicate} that evaluates whether a single
+     * document satisfies the requirements in-process. For this, each requirement is compiled by the same parser
+     * that generates the corresponding query.
+     *
+     * @param requirements The requirements to compile
+     * @return The resulting predicate or null, if the requirements cannot be evaluated in-process
+     */
+    @Override
+    public Predicate<JSONObject> compileQuery(JSONArray requirements) {
+        return QueryGenerator.compile(requirements);
     }
 
     /**
@@ -303,19 +818,24 @@ public class ElasticSearchClient implements RepositoryClient {
      */
     @Override
     public long getDocumentsCount() {
+        //Wait for the asynchronous count
+        return getDocumentsCountAsync().join();
+    }
+
+    /**
+     * Asynchronously determines the total number of documents in the repository. The returned
+     * {@link CompletableFuture} completes with the number of documents or with -1 if it could not be determined.
+     *
+     * @return The {@link CompletableFuture} of the number of documents
+     */
+    @Override
+    public CompletableFuture<Long> getDocumentsCountAsync() {
         //Create count request
         CountRequest countRequest = new CountRequest(this.indexName);
 
-        try {
-            //Count all documents
-            CountResponse countResponse = this.restClient.count(countRequest, RequestOptions.DEFAULT);
-            //Return result
-            return countResponse.getCount();
-        } catch (IOException e) {
-            //Handle the exception
-            handleException(e);
-            return -1;
-        }
+        //Count all documents
+        return executeAsync(l -> this.restClient.countAsync(countRequest, RequestOptions.DEFAULT, l),
+                CountResponse::getCount, -1L);
     }
 
     /**
@@ -345,7 +865,12 @@ public class ElasticSearchClient implements RepositoryClient {
             JSONObject mappingData = new JSONObject(mappings.get(this.indexName).source().toString());
 
             //Get capability object
-            JSONObject capabilityObject = mappingData.getJSONObject("properties").getJSONObject("capabilities").getJSONObject("properties");
+            JSONObject capabilityObject = (JSONObject) mappingData.optQuery("/properties/capabilities/properties");
+
+            //Check if capabilities were already indexed
+            if (capabilityObject == null) {
+                return Collections.emptyMap();
+            }
 
             //Get types of the capabilities
             return capabilityObject.keySet().stream().collect(Collectors.toMap(k -> k, k -> capabilityObject.getJSONObject(k).getJSONObject("properties").getJSONObject("value").getString("type")));
@@ -356,6 +881,58 @@ public class ElasticSearchClient implements RepositoryClient {
         }
     }
 
+    /**
+     * Returns a map (capability name --> data type) of the capabilities that are known from the mapping of the
+     * index for the evaluation of given {@link JSONArray}s of requirements and scoring criteria. The map is kept
+     * between queries and only retrieved again if the requirements or scoring criteria reference capabilities that
+     * are not contained in it, but at most once per {@link #CAPABILITY_TYPES_REFRESH_INTERVAL}.
+     *
+     * @param requirements    The requirements to evaluate
+     * @param scoringCriteria The scoring criteria to evaluate
+     * @return The map of capability names and their data types
+     */
+    private Map<String, String> getCapabilityTypes(JSONArray requirements, JSONArray scoringCriteria) {
+        //Get the currently known capability types
+        Map<String, String> types = this.capabilityTypes;
+
+        //Check whether the requirements or scoring criteria reference unknown capabilities
+        boolean unknownCapabilities = referencesUnknownCapabilities(requirements, types)
+                || referencesUnknownCapabilities(scoringCriteria, types);
+
+        //Check whether the capability types need to be retrieved again
+        if ((!unknownCapabilities) || (System.currentTimeMillis() - this.capabilityTypesTimestamp < CAPABILITY_TYPES_REFRESH_INTERVAL)) {
+            return types;
+        }
+
+        //Retrieve the capability types from the mapping
+        this.capabilityTypesTimestamp = System.currentTimeMillis();
+        types = getKeySummary();
+        this.capabilityTypes = types;
+        return types;
+    }
+
+    /**
+     * Checks and returns whether a given {@link JSONArray} of requirements or scoring criteria references
+     * capabilities that are not contained in a given map of capability types.
+     *
+     * @param elements The requirements or scoring criteria to check, may be null
+     * @param types    The map of capability names and their data types
+     * @return True, if unknown capabilities are referenced; false otherwise
+     */
+    private static boolean referencesUnknownCapabilities(JSONArray elements, Map<String, String> types) {
+        //Null check
+        if (elements == null) return false;
+
+        //Check all elements that refer to capabilities
+        for (Object element : elements) {
+            if ((element instanceof JSONObject) && "capability".equals(((JSONObject) element).optString("type"))
+                    && (!types.containsKey(((JSONObject) element).optString("name")))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Returns all available documents from the repository as a map that contains the identifiers of the documents
      * as well as their contents.
@@ -364,32 +941,46 @@ public class ElasticSearchClient implements RepositoryClient {
      */
     @Override
     public Map<String, JSONObject> getAllDocuments() {
-        //Build search request
-        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder().query(new MatchAllQueryBuilder());
-
-        //Create search request for all documents
-        SearchRequest searchRequest = new SearchRequest(this.indexName).source(sourceBuilder);
-
-        SearchResponse response;
-        try {
-            //Perform search request
-            response = this.restClient.search(searchRequest, RequestOptions.DEFAULT);
-        } catch (IOException e) {
-            //Handle the exception
-            handleException(e);
-            return Collections.emptyMap();
+        //Collect all documents from the stream into a map (document ID --> document content)
+        try (Stream<Map.Entry<String, JSONObject>> documents = streamAllDocuments()) {
+            return documents.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (d1, d2) -> d2, LinkedHashMap::new));
         }
+    }
 
-        //Get hits
-        SearchHit[] searchHits = response.getHits().getHits();
+    /**
+     * Returns a {@link Stream} over all available documents of the repository, consisting out of entries that
+     * contain the identifiers of the documents as well as their contents. The documents are retrieved lazily
+     * in chunks while the stream is consumed, such that the memory consumption does not depend on the total
+     * number of documents. The stream must be closed after use in order to release the associated resources.
+     *
+     * @return The stream of entries (document ID --> document content) of all available documents
+     */
+    @Override
+    public Stream<Map.Entry<String, JSONObject>> streamAllDocuments() {
+        //Stream the full documents
+        return streamAllDocuments(Projection.NONE);
+    }
 
-        //Check for any hits
-        if ((searchHits == null) || (searchHits.length < 1)) {
-            return Collections.emptyMap();
-        }
+    /**
+     * Returns a {@link Stream} over all available documents of the repository to which a given {@link Projection}
+     * is applied, consisting out of entries that contain the identifiers of the documents as well as their projected
+     * contents. The projection is applied by the repository by using source filtering. The documents are retrieved
+     * lazily in chunks while the stream is consumed. If a chunk cannot be retrieved, the consumption of the stream
+     * fails with an {@link IllegalStateException} instead of ending early. The stream must be closed after use in
+     * order to release the associated resources.
+     *
+     * @param projection The projection to apply to the documents
+     * @return The stream of entries (document ID --> projected document content) of all available documents
+     */
+    @Override
+    public Stream<Map.Entry<String, JSONObject>> streamAllDocuments(Projection projection) {
+        //Create cursor that iterates over the documents by using a point-in-time
+        DocumentCursor cursor = new DocumentCursor(this.restClient, this.indexName, EXPORT_PAGE_SIZE,
+                EXPORT_KEEP_ALIVE, toFetchSourceContext(projection), this::handleException);
 
-        //Convert all hits to JSON objects and put them in a map (document ID --> document content)
-        return Arrays.stream(searchHits).collect(Collectors.toMap(SearchHit::getId, h -> new JSONObject(h.getSourceAsString())));
+        //Wrap the cursor into a stream that releases the cursor on close
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(cursor::close);
     }
 
     /**
@@ -415,35 +1006,504 @@ public class ElasticSearchClient implements RepositoryClient {
     }
 
     /**
-     * Prepares and initializes the repository index that is supposed to be used.
+     * Prepares and initializes the repository index that is supposed to be used. If the index already exists, but
+     * was created with a previous version of the mapping that lacks some of the subfields, it is migrated.
      */
     private void initializeIndex() {
         try {
-            //Check if index already exists
-            if (this.restClient.indices().exists(new GetIndexRequest(this.indexName), RequestOptions.DEFAULT)) {
-                //Index already exists, so do nothing
-                return;
-            }
-
-            //Index does not exist, check if index mapping is already available
+            //Check if index mapping and settings are already available
             if (this.indexMappingDocument == null) {
                 //Read mapping from class path file
                 this.indexMappingDocument = new JSONObject(new JSONTokener(MAPPING_RESOURCE.getInputStream()));
             }
+            if (this.indexSettingsDocument == null) {
+                //Read settings from class path file
+                this.indexSettingsDocument = new JSONObject(new JSONTokener(SETTINGS_RESOURCE.getInputStream()));
+            }
+
+            //Check if index already exists
+            if (this.restClient.indices().exists(new GetIndexRequest(this.indexName), RequestOptions.DEFAULT)) {
+                //Index already exists, so migrate it if necessary
+                migrateIndex();
+                return;
+            }
 
-            //Create request for creating the index with the mapping
+            //Create request for creating the index with the settings and the mapping
             CreateIndexRequest createIndexRequest = new CreateIndexRequest(this.indexName)
+                    .settings(this.indexSettingsDocument.toString(), XContentType.JSON)
                     .mapping(this.indexMappingDocument.toString(), XContentType.JSON);
 
             //Create index
-            CreateIndexResponse response = this.restClient.indices().create(createIndexRequest, RequestOptions.DEFAULT);
-            System.out.println();
+            this.restClient.indices().create(createIndexRequest, RequestOptions.DEFAULT);
         } catch (IOException e) {
             //Handle the exception
             handleException(e);
         }
     }
 
+    /**
+     * Prepares and initializes the percolator index in which the registered queries are stored. The percolator index
+     * is shared by all repository instances that use the same cluster and is thus only created if it does not exist
+     * yet. It uses the same settings and mapping as the index, extended by the fields holding the queries and the
+     * identifiers of the instances that registered them. Since the queries are registered again by the owners of the
+     * subscriptions after each start, the queries that this instance registered before are removed.
+     */
+    private void initializePercolatorIndex() {
+        //Forget the queries that were registered before
+        this.unpercolatableQueryIds.clear();
+
+        try {
+            //Check whether the percolator index already exists
+            if (this.restClient.indices().exists(new GetIndexRequest(this.percolatorIndexName), RequestOptions.DEFAULT)) {
+                //Add the instance field to percolator indices of previous versions
+                synchronizePercolatorMapping();
+
+                //Remove the queries of this instance only
+                DeleteByQueryRequest deleteRequest = new DeleteByQueryRequest(this.percolatorIndexName)
+                        .setQuery(QueryBuilders.termQuery(PERCOLATOR_INSTANCE_FIELD, settings.getInstanceId()))
+                        .setRefresh(true);
+                deleteRequest.setConflicts("proceed");
+                this.restClient.deleteByQuery(deleteRequest, RequestOptions.DEFAULT);
+                return;
+            }
+
+            //Extend the settings of the index, such that queries on fields that are not mapped yet can be stored
+            JSONObject percolatorSettings = new JSONObject(this.indexSettingsDocument.toString())
+                    .put("index.percolator.map_unmapped_fields_as_text", true);
+
+            //Create request for creating the percolator index
+            CreateIndexRequest createIndexRequest = new CreateIndexRequest(this.percolatorIndexName)
+                    .settings(percolatorSettings.toString(), XContentType.JSON)
+                    .mapping(toPercolatorMapping(this.indexMappingDocument).toString(), XContentType.JSON);
+
+            //Create percolator index
+            this.restClient.indices().create(createIndexRequest, RequestOptions.DEFAULT);
+        } catch (ElasticsearchStatusException e) {
+            //Ignore that another instance created the percolator index in the meantime
+            if ((e.status() != RestStatus.BAD_REQUEST) ||
+                    (!String.valueOf(e.getMessage()).contains("resource_already_exists_exception"))) {
+                handleException(e);
+            }
+        } catch (Exception e) {
+            //Handle the exception
+            handleException(e);
+        }
+    }
+
+    /**
+     * Synchronizes the mapping of the percolator index with the current mapping of the index, such that it contains
+     * the fields that were added to the index by dynamic mapping in the meantime.
+     *
+     * @throws IOException In case the communication with the repository failed
+     */
+    private void synchronizePercolatorMapping() throws IOException {
+        //Retrieve the current mapping of the index
+        MappingMetadata mappingMetadata = this.restClient.indices().getMapping(
+                new GetMappingsRequest().indices(this.indexName), RequestOptions.DEFAULT).mappings().get(this.indexName);
+
+        //Check whether the mapping is available
+        if (mappingMetadata == null) {
+            return;
+        }
+
+        //Apply the mapping to the percolator index
+        this.restClient.indices().putMapping(new PutMappingRequest(this.percolatorIndexName)
+                        .source(toPercolatorMapping(new JSONObject(mappingMetadata.getSourceAsMap())).toString(), XContentType.JSON),
+                RequestOptions.DEFAULT);
+    }
+
+    /**
+     * Deletes a query, given by its identifier, from the percolator index if it exists.
+     *
+     * @param queryId The identifier of the query
+     * @throws IOException In case the communication with the repository failed
+     */
+    private void deletePercolatorQuery(String queryId) throws IOException {
+        this.restClient.delete(new DeleteRequest(this.percolatorIndexName, toPercolatorId(queryId))
+                .setRefreshPolicy(WriteRequest.RefreshPolicy.WAIT_UNTIL), RequestOptions.DEFAULT);
+    }
+
+    /**
+     * Returns the identifier of the document of the percolator index that holds a query, given by its identifier,
+     * of this instance. The identifier of the instance is prepended, such that the identifiers of the queries of
+     * different instances cannot collide.
+     *
+     * @param queryId The identifier of the query
+     * @return The identifier of the document holding the query
+     */
+    private String toPercolatorId(String queryId) {
+        return settings.getInstanceId() + ":" + queryId;
+    }
+
+    /**
+     * Extends a given mapping of the index by the fields of the percolator index that hold the queries and the
+     * identifiers of the instances that registered them.
+     *
+     * @param mapping The mapping of the index
+     * @return The resulting mapping of the percolator index
+     */
+    private static JSONObject toPercolatorMapping(JSONObject mapping) {
+        //Copy the mapping and add the percolator field to its properties
+        JSONObject percolatorMapping = new JSONObject(mapping.toString());
+        JSONObject properties = percolatorMapping.optJSONObject("properties");
+        if (properties == null) {
+            properties = new JSONObject();
+            percolatorMapping.put("properties", properties);
+        }
+        properties.put(PERCOLATOR_FIELD, new JSONObject().put("type", "percolator"));
+        properties.put(PERCOLATOR_INSTANCE_FIELD, new JSONObject().put("type", "keyword"));
+        return percolatorMapping;
+    }
+
+    /**
+     * Migrates an existing repository index that was created with a previous version of the mapping by adding the
+     * analyzers of the index settings and the subfields of the mapping to it. Since analyzers can only be added to
+     * closed indices, the index is temporarily closed. Afterwards, an update by query task is submitted that
+     * re-indexes the existing documents in place in the background, such that the subfields are populated. Since
+     * closing the index makes it unavailable for all instances that share the cluster, the migration is only
+     * conducted if it was explicitly enabled in the {@link ElasticSearchSettings}.
+     *
+     * @throws IOException In case the communication with the repository failed
+     */
+    private void migrateIndex() throws IOException {
+        //Retrieve the current mapping of the index
+        GetMappingsResponse mappingsResponse = this.restClient.indices().getMapping(
+                new GetMappingsRequest().indices(this.indexName), RequestOptions.DEFAULT);
+        MappingMetadata mappingMetadata = mappingsResponse.mappings().get(this.indexName);
+
+        //Check whether the mapping already contains the subfields
+        if ((mappingMetadata == null) || (new JSONObject(mappingMetadata.getSourceAsMap()).optQuery(SUBFIELDS_MARKER_POINTER) != null)) {
+            return;
+        }
+
+        //Check whether the migration is enabled, since the index would be unavailable in the meantime
+        if (!settings.isIndexMigrationEnabled()) {
+            System.err.println("The index " + this.indexName + " was created with a previous version of the mapping "
+                    + "and does not support all string operators; enable the index migration to update it.");
+            return;
+        }
+
+        //Close the index, add the analyzers to its settings and re-open it
+        this.restClient.indices().close(new CloseIndexRequest(this.indexName), RequestOptions.DEFAULT);
+        try {
+            this.restClient.indices().putSettings(new UpdateSettingsRequest(this.indexName)
+                    .settings(this.indexSettingsDocument.toString(), XContentType.JSON), RequestOptions.DEFAULT);
+        } finally {
+            this.restClient.indices().open(new OpenIndexRequest(this.indexName), RequestOptions.DEFAULT);
+        }
+
+        //Add the subfields to the mapping
+        this.restClient.indices().putMapping(new PutMappingRequest(this.indexName)
+                .source(this.indexMappingDocument.toString(), XContentType.JSON), RequestOptions.DEFAULT);
+
+        //Re-index the existing documents in the background in order to populate the subfields
+        this.restClient.submitUpdateByQueryTask(new UpdateByQueryRequest(this.indexName).setAbortOnVersionConflict(false),
+                RequestOptions.DEFAULT);
+    }
+
+    /**
+     * Asynchronously retrieves a page of documents that match a given query, starting after the document with the
+     * given sort values. The page is retrieved from a given point-in-time or from the index, if no point-in-time is
+     * provided. The returned {@link CompletableFuture} completes with the {@link QueryResult} of the page, containing
+     * a continuation token if further documents are available. Otherwise, the point-in-time is released.
+     *
+     * @param query         The query to execute
+     * @param limit         The maximum number of documents to retrieve
+     * @param fetchSource   The source filtering to apply to the documents
+     * @param pointInTimeId The identifier of the point-in-time to use or null for searching the index
+     * @param searchAfter   The sort values of the last document of the preceding page or null for the first page
+     * @return The {@link CompletableFuture} of the resulting page
+     */
+    private CompletableFuture<QueryResult> searchPageAsync(QueryBuilder query, int limit, FetchSourceContext fetchSource,
+                                                           String pointInTimeId, Object[] searchAfter) {
+        //Create search request for the page
+        SearchRequest searchRequest = createPageRequest(query, limit, fetchSource, pointInTimeId, searchAfter);
+
+        //Conduct the search and create the result of the page
+        return executeAsync(l -> this.restClient.searchAsync(searchRequest, RequestOptions.DEFAULT, l), (SearchResponse r) -> {
+            //Get the possibly updated point-in-time
+            String updatedPointInTimeId = (pointInTimeId == null) || (r.pointInTimeId() == null) ?
+                    pointInTimeId : r.pointInTimeId();
+
+            //Create the result and release the point-in-time if this is the last page
+            QueryResult result = toQueryResult(r.getHits().getHits(), limit, updatedPointInTimeId);
+            if ((!result.hasMore()) && (updatedPointInTimeId != null)) {
+                closePointInTimeAsync(updatedPointInTimeId);
+            }
+            return result;
+        }, QueryResult.empty());
+    }
+
+    /**
+     * Creates a {@link SearchRequest} for a page of a given query, retrieving the top documents after the document
+     * with the given sort values and one additional document for detecting further pages. The documents are sorted
+     * by score and by their identifiers as tiebreaker, which does not depend on a point-in-time, such that the sort
+     * values of pages from the index and from a point-in-time are interchangeable. The total number of hits is not
+     * needed, which allows to skip non-competitive hits.
+     *
+     * @param query         The query to execute
+     * @param limit         The maximum number of documents to retrieve
+     * @param fetchSource   The source filtering to apply to the documents
+     * @param pointInTimeId The identifier of the point-in-time to use or null for searching the index
+     * @param searchAfter   The sort values of the last document of the preceding page or null for the first page
+     * @return The resulting search request
+     */
+    private SearchRequest createPageRequest(QueryBuilder query, int limit, FetchSourceContext fetchSource,
+                                            String pointInTimeId, Object[] searchAfter) {
+        //Create search source, sorting by score and using the document identifier as tiebreaker
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
+                .query(query)
+                .size(limit + 1)
+                .timeout(QUERY_TIMEOUT)
+                .fetchSource(fetchSource)
+                .trackTotalHits(false)
+                .sort(SortBuilders.scoreSort())
+                .sort(SortBuilders.fieldSort(IdFieldMapper.NAME));
+
+        //Continue after the last document of the preceding page
+        if (searchAfter != null) {
+            sourceBuilder.searchAfter(searchAfter);
+        }
+
+        //Search the index if no point-in-time is provided
+        if (pointInTimeId == null) {
+            return new SearchRequest(this.indexName).source(sourceBuilder);
+        }
+
+        //Create search request, which must not reference the index when using a point-in-time
+        sourceBuilder.pointInTimeBuilder(new PointInTimeBuilder(pointInTimeId).setKeepAlive(QUERY_KEEP_ALIVE));
+        return new SearchRequest().source(sourceBuilder);
+    }
+
+    /**
+     * Creates the {@link QueryResult} of a page from given search hits, which contain one additional hit if further
+     * documents are available. In this case, the result contains a continuation token that refers to the sort values
+     * of the last document of the page and to a given point-in-time.
+     *
+     * @param hits          The search hits of the page
+     * @param limit         The maximum number of documents of the page
+     * @param pointInTimeId The identifier of the point-in-time of the page or null, if none was used
+     * @return The resulting {@link QueryResult}
+     */
+    private static QueryResult toQueryResult(SearchHit[] hits, int limit, String pointInTimeId) {
+        //Check if this is the last page
+        if (hits.length <= limit) {
+            return new QueryResult(toDocuments(hits, hits.length), null);
+        }
+
+        //Create continuation token for the subsequent page
+        ContinuationToken token = new ContinuationToken(pointInTimeId, hits[limit - 1].getSortValues());
+        return new QueryResult(toDocuments(hits, limit), token.encode());
+    }
+
+    /**
+     * Asynchronously opens a point-in-time on the index with a given keep alive time. The returned
+     * {@link CompletableFuture} completes with the identifier of the point-in-time or with null if it could not be
+     * opened.
+     *
+     * @param keepAlive The keep alive time of the point-in-time
+     * @return The {@link CompletableFuture} of the point-in-time identifier
+     */
+    private CompletableFuture<String> openPointInTimeAsync(TimeValue keepAlive) {
+        //Create request for the low level client, since the high level client does not support points-in-time
+        Request request = new Request("POST", "/" + this.indexName + "/_pit");
+        request.addParameter("keep_alive", keepAlive.getStringRep());
+
+        //Open the point-in-time and extract its identifier
+        return executeAsync(l -> this.restClient.getLowLevelClient().performRequestAsync(request, toResponseListener(l)),
+                (Response r) -> {
+                    try {
+                        return new JSONObject(EntityUtils.toString(r.getEntity())).getString("id");
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, null);
+    }
+
+    /**
+     * Asynchronously releases a point-in-time, given by its identifier, without waiting for the completion.
+     *
+     * @param pointInTimeId The identifier of the point-in-time to release
+     */
+    private void closePointInTimeAsync(String pointInTimeId) {
+        //Create request for the low level client, since the high level client does not support points-in-time
+        Request request = new Request("DELETE", "/_pit");
+        request.setJsonEntity(new JSONObject().put("id", pointInTimeId).toString());
+
+        //Release the point-in-time
+        executeAsync(l -> this.restClient.getLowLevelClient().performRequestAsync(request, toResponseListener(l)),
+                (Response r) -> null, null);
+    }
+
+    /**
+     * Adapts a given {@link ActionListener} to a {@link ResponseListener} of the low level REST client.
+     *
+     * @param listener The listener to adapt
+     * @return The resulting {@link ResponseListener}
+     */
+    private static ResponseListener toResponseListener(ActionListener<Response> listener) {
+        return new ResponseListener() {
+            @Override
+            public void onSuccess(Response response) {
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                listener.onFailure(exception);
+            }
+        };
+    }
+
+    /**
+     * Translates a given {@link Projection} to the corresponding source filtering of Elasticsearch.
+     *
+     * @param projection The projection to translate
+     * @return The resulting source filtering or null, if the full documents are supposed to be retrieved
+     */
+    private static FetchSourceContext toFetchSourceContext(Projection projection) {
+        //Check if projection is necessary
+        if ((projection == null) || projection.isEmpty()) {
+            return null;
+        }
+
+        return new FetchSourceContext(true, projection.getIncludes().toArray(new String[0]),
+                projection.getExcludes().toArray(new String[0]));
+    }
+
+    /**
+     * Transforms the first documents of a given array of search hits to {@link JSONObject}s.
+     *
+     * @param hits  The search hits to transform
+     * @param count The number of search hits to transform
+     * @return The list of resulting documents
+     */
+    private static List<JSONObject> toDocuments(SearchHit[] hits, int count) {
+        return Arrays.stream(hits).limit(count).map(h -> new JSONObject(h.getSourceAsString())).collect(Collectors.toList());
+    }
+
+    /**
+     * Parses a given comma-separated list of nodes in the format [scheme://]host[:port] to an array of
+     * {@link HttpHost}s, using the configured scheme and a given port for nodes that do not specify them.
+     *
+     * @param hostAddresses The comma-separated list of nodes to parse
+     * @param defaultPort   The port to use for nodes without port
+     * @return The resulting array of hosts
+     */
+    private HttpHost[] parseHosts(String hostAddresses, int defaultPort) {
+        //Sanity check
+        if ((hostAddresses == null) || hostAddresses.isBlank())
+            throw new IllegalArgumentException("The host address must not be null or empty.");
+
+        //Parse each node of the list
+        return Arrays.stream(hostAddresses.split(",")).map(String::trim).filter(h -> !h.isEmpty()).map(h -> {
+            //Parse the node, adding the configured scheme if necessary
+            HttpHost host = HttpHost.create(h.contains("://") ? h : settings.getScheme() + "://" + h);
+
+            //Use the default port if no port is specified
+            return host.getPort() < 0 ? new HttpHost(host.getHostName(), defaultPort, host.getSchemeName()) : host;
+        }).toArray(HttpHost[]::new);
+    }
+
+    /**
+     * Translates a given {@link WriteConsistency} to the corresponding refresh policy of Elasticsearch.
+     *
+     * @param consistency The consistency level to translate
+     * @return The resulting refresh policy
+     */
+    private static WriteRequest.RefreshPolicy toRefreshPolicy(WriteConsistency consistency) {
+        //Sanity check
+        if (consistency == null) {
+            return WriteRequest.RefreshPolicy.WAIT_UNTIL;
+        }
+
+        //Check the consistency level
+        switch (consistency) {
+            case FIRE_AND_FORGET:
+                return WriteRequest.RefreshPolicy.NONE;
+            case IMMEDIATE:
+                return WriteRequest.RefreshPolicy.IMMEDIATE;
+            case WAIT_FOR_REFRESH:
+            default:
+                return WriteRequest.RefreshPolicy.WAIT_UNTIL;
+        }
+    }
+
+    /**
+     * Executes an asynchronous request against the repository and returns a {@link CompletableFuture} that completes
+     * with the result that is derived from the response by using a given transformation function. In case the request
+     * fails, the exception is handled and the future completes with a given fallback value instead. The future is
+     * always completed from the callback executor, so that dependent stages never run on the I/O threads of the REST
+     * client. Since the callback executor has a bounded number of threads and the synchronous methods wait for
+     * futures that are completed by it, dependent stages must not block, e.g. by issuing synchronous requests.
+     * Blocking continuations have to be moved to another executor instead, for example via
+     * {@link CompletableFuture#thenApplyAsync(Function, java.util.concurrent.Executor)}.
+     *
+     * @param request     Consumer that issues the asynchronous request by using the provided {@link ActionListener}
+     * @param transformer Function that derives the result from the response
+     * @param fallback    The fallback value to use in case of failures
+     * @param <R>         The type of the response
+     * @param <T>         The type of the result
+     * @return The {@link CompletableFuture} of the result
+     */
+    private <R, T> CompletableFuture<T> executeAsync(Consumer<ActionListener<R>> request, Function<R, T> transformer, T fallback) {
+        //Create the future to complete
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        //Create listener that completes the future from the callback executor
+        ActionListener<R> listener = new ActionListener<R>() {
+            @Override
+            public void onResponse(R response) {
+                executeCallback(() -> {
+                    try {
+                        //Transform the response to the result
+                        future.complete(transformer.apply(response));
+                    } catch (Exception e) {
+                        //Handle the exception
+                        handleException(e);
+                        future.complete(fallback);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                executeCallback(() -> {
+                    //Handle the exception
+                    handleException(e);
+                    future.complete(fallback);
+                });
+            }
+        };
+
+        try {
+            //Issue the request
+            request.accept(listener);
+        } catch (Exception e) {
+            //Handle the exception
+            handleException(e);
+            future.complete(fallback);
+        }
+
+        //Return the future
+        return future;
+    }
+
+    /**
+     * Executes a given callback that completes the future of an asynchronous request on the callback executor. If
+     * the callback executor does not accept the callback, e.g. because the client is being closed, the callback is
+     * executed directly by the calling thread, such that the future is completed in any case.
+     *
+     * @param callback The callback to execute
+     */
+    private void executeCallback(Runnable callback) {
+        try {
+            callbackExecutor.execute(callback);
+        } catch (RejectedExecutionException e) {
+            callback.run();
+        }
+    }
+
     /**
      * Handles a given exception by either calling the exception handler or printing information about the exception
      * to the standard output.
@@ -0,0 +1,356 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch;
+
+/**
+ * Objects of this class bundle the connection settings of the {@link ElasticSearchClient}, covering the scheme to use
+ * for the nodes, the sniffing of further nodes of the cluster, the limits of the connection pool, the number of
+ * I/O threads and callback threads, the keep alive time of idle connections, the request timeouts, the identifier
+ * of the repository instance and the migration of outdated indices. Unset settings keep their defaults.
+ */
+public class ElasticSearchSettings {
+    //Scheme to use for nodes that are specified without scheme
+    private String scheme = "http";
+
+    //Whether the nodes of the cluster are supposed to be discovered via sniffing
+    private boolean sniffingEnabled = false;
+
+    //Interval in which the nodes of the cluster are sniffed
+    private int sniffIntervalMillis = 5 * 60 * 1000;
+
+    //Delay after which the nodes are sniffed again after a failure
+    private int sniffAfterFailureDelayMillis = 60 * 1000;
+
+    //Maximum number of connections in total and per node
+    private int maxConnectionsTotal = 100;
+    private int maxConnectionsPerRoute = 50;
+
+    //Number of I/O threads, or zero for the number of available processors
+    private int ioThreadCount = 0;
+
+    //Number of threads that complete the futures of asynchronous requests, or zero for twice the available processors
+    private int callbackThreadCount = 0;
+
+    //Time for which idle connections are kept alive
+    private long keepAliveMillis = 60 * 1000;
+
+    //Timeouts for establishing connections and for waiting for data
+    private int connectTimeoutMillis = 1000;
+    private int socketTimeoutMillis = 30 * 1000;
+
+    //Identifier of the repository instance among all instances that share the cluster
+    private String instanceId = "default";
+
+    //Whether an index that was created with a previous version of the mapping is supposed to be migrated on connect
+    private boolean indexMigrationEnabled = false;
+
+    /**
+     * Creates new {@link ElasticSearchSettings} with default values.
+     */
+    public ElasticSearchSettings() {
+
+    }
+
+    /**
+     * Returns the scheme to use for nodes that are specified without scheme.
+     *
+     * @return The scheme
+     */
+    public String getScheme() {
+        return scheme;
+    }
+
+    /**
+     * Sets the scheme to use for nodes that are specified without scheme.
+     *
+     * @param scheme The scheme to set, either "http" or "https"
+     * @return The {@link ElasticSearchSettings}
+     */
+    public ElasticSearchSettings setScheme(String scheme) {
+        //Sanity check
+        if ((scheme == null) || !(scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https")))
+            throw new IllegalArgumentException("The scheme must be either http or https.");
+
+        this.scheme = scheme.toLowerCase();
+        return this;
+    }
+
+    /**
+     * Returns whether the nodes of the cluster are supposed to be discovered via sniffing.
+     *
+     * @return True, if sniffing is enabled; false otherwise
+     */
+    public boolean isSniffingEnabled() {
+        return sniffingEnabled;
+    }
+
+    /**
+     * Sets whether the nodes of the cluster are supposed to be discovered via sniffing.
+     *
+     * @param sniffingEnabled True, if sniffing is supposed to be enabled; false otherwise
+     * @return The {@link ElasticSearchSettings}
+     */
+    public ElasticSearchSettings setSniffingEnabled(boolean sniffingEnabled) {
+        this.sniffingEnabled = sniffingEnabled;
+        return this;
+    }
+
+    /**
+     * Returns the interval in milliseconds in which the nodes of the cluster are sniffed.
+     *
+     * @return The sniff interval
+     */
+    public int getSniffIntervalMillis() {
+        return sniffIntervalMillis;
+    }
+
+    /**
+     * Sets the interval in milliseconds in which the nodes of the cluster are sniffed.
+     *
+     * @param sniffIntervalMillis The sniff interval to set
+     * @return The {@link ElasticSearchSettings}
+     */
+    public ElasticSearchSettings setSniffIntervalMillis(int sniffIntervalMillis) {
+        //Sanity check
+        if (sniffIntervalMillis <= 0) throw new IllegalArgumentException("The sniff interval must be positive.");
+
+        this.sniffIntervalMillis = sniffIntervalMillis;
+        return this;
+    }
+
+    /**
+     * Returns the delay in milliseconds after which the nodes of the cluster are sniffed again after a failure.
+     *
+     * @return The sniff delay after failures
+     */
+    public int getSniffAfterFailureDelayMillis() {
+        return sniffAfterFailureDelayMillis;
+    }
+
+    /**
+     * Sets the delay in milliseconds after which the nodes of the cluster are sniffed again after a failure.
+     *
+     * @param sniffAfterFailureDelayMillis The sniff delay after failures to set
+     * @return The {@link ElasticSearchSettings}
+     */
+    public ElasticSearchSettings setSniffAfterFailureDelayMillis(int sniffAfterFailureDelayMillis) {
+        //Sanity check
+        if (sniffAfterFailureDelayMillis <= 0)
+            throw new IllegalArgumentException("The sniff delay after failures must be positive.");
+
+        this.sniffAfterFailureDelayMillis = sniffAfterFailureDelayMillis;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of connections in total.
+     *
+     * @return The maximum number of connections
+     */
+    public int getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    /**
+     * Sets the maximum number of connections in total.
+     *
+     * @param maxConnectionsTotal The maximum number of connections to set
+     * @return The {@link ElasticSearchSettings}
+     */
+    public ElasticSearchSettings setMaxConnectionsTotal(int maxConnectionsTotal) {
+        //Sanity check
+        if (maxConnectionsTotal <= 0)
+            throw new IllegalArgumentException("The maximum number of connections must be positive.");
+
+        this.maxConnectionsTotal = maxConnectionsTotal;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of connections per node.
+     *
+     * @return The maximum number of connections per node
+     */
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * Sets the maximum number of connections per node.
+     *
+     * @param maxConnectionsPerRoute The maximum number of connections per node to set
+     * @return The {@link ElasticSearchSettings}
+     */
+    public ElasticSearchSettings setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        //Sanity check
+        if (maxConnectionsPerRoute <= 0)
+            throw new IllegalArgumentException("The maximum number of connections per node must be positive.");
+
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        return this;
+    }
+
+    /**
+     * Returns the number of I/O threads or zero, if the number of available processors is used.
+     *
+     * @return The number of I/O threads
+     */
+    public int getIoThreadCount() {
+        return ioThreadCount;
+    }
+
+    /**
+     * Sets the number of I/O threads. Zero indicates that the number of available processors is supposed to be used.
+     *
+     * @param ioThreadCount The number of I/O threads to set
+     * @return The {@link ElasticSearchSettings}
+     */
+    public ElasticSearchSettings setIoThreadCount(int ioThreadCount) {
+        //Sanity check
+        if (ioThreadCount < 0) throw new IllegalArgumentException("The number of I/O threads must not be negative.");
+
+        this.ioThreadCount = ioThreadCount;
+        return this;
+    }
+
+    /**
+     * Returns the number of threads that complete the futures of asynchronous requests or zero, if twice the number
+     * of available processors is used.
+     *
+     * @return The number of callback threads
+     */
+    public int getCallbackThreadCount() {
+        return callbackThreadCount;
+    }
+
+    /**
+     * Sets the number of threads that complete the futures of asynchronous requests. Zero indicates that twice the
+     * number of available processors is supposed to be used.
+     *
+     * @param callbackThreadCount The number of callback threads to set
+     * @return The {@link ElasticSearchSettings}
+     */
+    public ElasticSearchSettings setCallbackThreadCount(int callbackThreadCount) {
+        //Sanity check
+        if (callbackThreadCount < 0) throw new IllegalArgumentException("The number of callback threads must not be negative.");
+
+        this.callbackThreadCount = callbackThreadCount;
+        return this;
+    }
+
+    /**
+     * Returns the time in milliseconds for which idle connections are kept alive.
+     *
+     * @return The keep alive time
+     */
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    /**
+     * Sets the time in milliseconds for which idle connections are kept alive.
+     *
+     * @param keepAliveMillis The keep alive time to set
+     * @return The {@link ElasticSearchSettings}
+     */
+    public ElasticSearchSettings setKeepAliveMillis(long keepAliveMillis) {
+        //Sanity check
+        if (keepAliveMillis <= 0) throw new IllegalArgumentException("The keep alive time must be positive.");
+
+        this.keepAliveMillis = keepAliveMillis;
+        return this;
+    }
+
+    /**
+     * Returns the timeout in milliseconds for establishing connections.
+     *
+     * @return The connect timeout
+     */
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    /**
+     * Sets the timeout in milliseconds for establishing connections.
+     *
+     * @param connectTimeoutMillis The connect timeout to set
+     * @return The {@link ElasticSearchSettings}
+     */
+    public ElasticSearchSettings setConnectTimeoutMillis(int connectTimeoutMillis) {
+        //Sanity check
+        if (connectTimeoutMillis <= 0) throw new IllegalArgumentException("The connect timeout must be positive.");
+
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Returns the timeout in milliseconds for waiting for data on established connections.
+     *
+     * @return The socket timeout
+     */
+    public int getSocketTimeoutMillis() {
+        return socketTimeoutMillis;
+    }
+
+    /**
+     * Sets the timeout in milliseconds for waiting for data on established connections.
+     *
+     * @param socketTimeoutMillis The socket timeout to set
+     * @return The {@link ElasticSearchSettings}
+     */
+    public ElasticSearchSettings setSocketTimeoutMillis(int socketTimeoutMillis) {
+        //Sanity check
+        if (socketTimeoutMillis <= 0) throw new IllegalArgumentException("The socket timeout must be positive.");
+
+        this.socketTimeoutMillis = socketTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Returns the identifier of the repository instance, which distinguishes the registered queries of this instance
+     * from the ones of other instances that share the same cluster.
+     *
+     * @return The instance identifier
+     */
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Sets the identifier of the repository instance, which distinguishes the registered queries of this instance
+     * from the ones of other instances that share the same cluster. It must be stable across restarts of the
+     * instance, such that the queries that were registered before a restart can be removed.
+     *
+     * @param instanceId The instance identifier to set
+     * @return The {@link ElasticSearchSettings}
+     */
+    public ElasticSearchSettings setInstanceId(String instanceId) {
+        //Sanity check
+        if ((instanceId == null) || instanceId.isEmpty()) throw new IllegalArgumentException("The instance ID must not be empty.");
+
+        this.instanceId = instanceId;
+        return this;
+    }
+
+    /**
+     * Returns whether an index that was created with a previous version of the mapping is supposed to be migrated
+     * on connect.
+     *
+     * @return True, if the index migration is enabled; false otherwise
+     */
+    public boolean isIndexMigrationEnabled() {
+        return indexMigrationEnabled;
+    }
+
+    /**
+     * Sets whether an index that was created with a previous version of the mapping is supposed to be migrated on
+     * connect. Since the migration temporarily closes the index, it makes the index unavailable for all instances
+     * that share the cluster and should only be enabled during maintenance.
+     *
+     * @param indexMigrationEnabled True, if the index migration is supposed to be enabled; false otherwise
+     * @return The {@link ElasticSearchSettings}
+     */
+    public ElasticSearchSettings setIndexMigrationEnabled(boolean indexMigrationEnabled) {
+        this.indexMigrationEnabled = indexMigrationEnabled;
+        return this;
+    }
+}
@@ -1,28 +1,46 @@
 package de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch;
 
 import de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.parsers.RequirementParser;
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.scoring.ScoringCriterionParser;
+import org.elasticsearch.common.lucene.search.function.CombineFunction;
+import org.elasticsearch.common.lucene.search.function.FunctionScoreQuery;
 import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.functionscore.FunctionScoreQueryBuilder.FilterFunctionBuilder;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.reflections.Reflections;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
 /**
- * This class provides methods that allow to generate {@link BoolQueryBuilder}s from given {@link JSONArray}s
- * of requirements and scoring criteria.
+ * This class provides methods that allow to generate {@link QueryBuilder}s from given {@link JSONArray}s
+ * of requirements and scoring criteria. The requirements are transformed to clauses of a {@link BoolQueryBuilder}
+ * in filter context, while the scoring criteria are transformed to functions of a function score query that wraps
+ * the boolean query, such that the matching documents are ranked by the repository. Furthermore, requirements can be
+ * compiled to {@link Predicate}s that evaluate single documents in-process.
  */
 public class QueryGenerator {
 
     //Package in which the requirement parsers can be found
     private static final String PARSER_PACKAGE = "de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.parsers";
 
+    //Package in which the scoring criterion parsers can be found
+    private static final String SCORING_PACKAGE = "de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.scoring";
+
     //Map (requirement type name --> parser) for retrieving fitting parsers
     private final static Map<String, RequirementParser> REQUIREMENT_PARSERS = new HashMap<>();
 
+    //Map (scoring criterion type name --> parser) for retrieving fitting parsers
+    private final static Map<String, ScoringCriterionParser> SCORING_PARSERS = new HashMap<>();
+
     static {
         //Get all available requirement parser classes
         Reflections reflections = new Reflections(PARSER_PACKAGE);
@@ -39,18 +57,49 @@ public class QueryGenerator {
             } catch (Exception ignore) {
             }
         }
+
+        //Get all available scoring criterion parser classes
+        Set<Class<? extends ScoringCriterionParser>> scoringClasses = new Reflections(SCORING_PACKAGE)
+                .getSubTypesOf(ScoringCriterionParser.class);
+
+        //Iterate over all scoring criterion parser classes
+        for (Class<? extends ScoringCriterionParser> scoringClass : scoringClasses) {
+            try {
+                //Create new instance of the scoring criterion parser
+                ScoringCriterionParser parser = scoringClass.getDeclaredConstructor().newInstance();
+
+                //Add parser to map, together with the criterion type for which it is responsible
+                SCORING_PARSERS.put(parser.getCriterionTypeName().toLowerCase(), parser);
+            } catch (Exception ignore) {
+            }
+        }
     }
 
 
     /**
-     * Generates an equivalent {@link BoolQueryBuilder} from a given query, consisting out of a {@link JSONArray}
+     * Generates an equivalent {@link QueryBuilder} from a given query, consisting out of a {@link JSONArray}
      * of requirements and a {@link JSONArray} of scoring criteria.
      *
      * @param requirements    The requirements of the query
-     * @param scoringCriteria The scoring criteria of the query (ignored for now)
-     * @return The resulting boolean query
+     * @param scoringCriteria The scoring criteria of the query
+     * @return The resulting query
+     */
+    public static QueryBuilder generate(JSONArray requirements, JSONArray scoringCriteria) {
+        return generate(requirements, scoringCriteria, Collections.emptyMap());
+    }
+
+    /**
+     * Generates an equivalent {@link QueryBuilder} from a given query, consisting out of a {@link JSONArray}
+     * of requirements and a {@link JSONArray} of scoring criteria. The given map (capability name --> data type)
+     * of the capabilities that are known to the repository is passed to the parsers. If none of the scoring criteria
+     * is valid, the plain {@link BoolQueryBuilder} of the requirements is returned.
+     *
+     * @param requirements    The requirements of the query
+     * @param scoringCriteria The scoring criteria of the query
+     * @param capabilityTypes The map of capability names and their data types
+     * @return The resulting query
      */
-    public static BoolQueryBuilder generate(JSONArray requirements, JSONArray scoringCriteria) {
+    public static QueryBuilder generate(JSONArray requirements, JSONArray scoringCriteria, Map<String, String> capabilityTypes) {
         //Sanity checks
         if (requirements == null) {
             requirements = new JSONArray();
@@ -81,10 +130,80 @@ public class QueryGenerator {
             }
 
             //Get the fitting parser, parse the requirement and extend the bool query accordingly
-            REQUIREMENT_PARSERS.get(requirementType).parse(boolQuery, requirementJSON);
+            REQUIREMENT_PARSERS.get(requirementType).parse(boolQuery, requirementJSON, capabilityTypes);
+        }
+
+        //Collect the score functions of all scoring criteria
+        List<FilterFunctionBuilder> functions = new ArrayList<>();
+        for (Object criterion : scoringCriteria) {
+            //Skip criterion if not a JSONObject
+            if (!(criterion instanceof JSONObject)) {
+                continue;
+            }
+
+            //Get criterion type and check whether it is known
+            String criterionType = ((JSONObject) criterion).optString("type");
+            if (!SCORING_PARSERS.containsKey(criterionType)) {
+                continue;
+            }
+
+            //Get the fitting parser and parse the criterion
+            functions.addAll(SCORING_PARSERS.get(criterionType).parse((JSONObject) criterion, capabilityTypes));
+        }
+
+        //Check whether the documents need to be scored
+        if (functions.isEmpty()) {
+            return boolQuery;
+        }
+
+        //Wrap the bool query, whose clauses are all in filter context, into a function score query
+        return QueryBuilders.functionScoreQuery(boolQuery, functions.toArray(new FilterFunctionBuilder[0]))
+                .scoreMode(FunctionScoreQuery.ScoreMode.SUM)
+                .boostMode(CombineFunction.REPLACE);
+    }
+
+    /**
+     * Compiles a given {@link JSONArray} of requirements to a {@link Predicate} that evaluates whether a single
+     * document satisfies all requirements, equivalently to the query that is generated for the same requirements
+     * by {@link #generate(JSONArray, JSONArray)}. Like for the generation of queries, requirements of unknown types
+     * are ignored.
+     *
+     * @param requirements The requirements to compile
+     * @return The resulting predicate or null, if at least one of the requirements cannot be evaluated in-process
+     */
+    public static Predicate<JSONObject> compile(JSONArray requirements) {
+        //Start with a predicate that is satisfied by all documents
+        Predicate<JSONObject> predicate = d -> true;
+
+        //Sanity check
+        if (requirements == null) {
+            return predicate;
         }
 
-        //Return the resulting bool query
-        return boolQuery;
+        //Iterate through all requirements
+        for (Object requirement : requirements) {
+            //Skip requirement if not a JSONObject
+            if (!(requirement instanceof JSONObject)) {
+                continue;
+            }
+
+            //Get requirement type and check whether it is known
+            String requirementType = ((JSONObject) requirement).optString("type");
+            if (!REQUIREMENT_PARSERS.containsKey(requirementType)) {
+                continue;
+            }
+
+            //Get the fitting parser and compile the requirement
+            Predicate<JSONObject> requirementPredicate = REQUIREMENT_PARSERS.get(requirementType).compile((JSONObject) requirement);
+
+            //Check whether the requirement could be compiled
+            if (requirementPredicate == null) {
+                return null;
+            }
+
+            //Combine the predicates
+            predicate = predicate.and(requirementPredicate);
+        }
+        return predicate;
     }
 }
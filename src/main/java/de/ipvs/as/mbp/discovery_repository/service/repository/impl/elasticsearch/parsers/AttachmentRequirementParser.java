@@ -0,0 +1,151 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.parsers;
+
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.util.ParserUtils;
+import org.apache.lucene.search.join.ScoreMode;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Parser for attachment requirements. Attachment requirements check whether the device descriptions contain at least
+ * one attachment that matches all of the given details, e.g. {"type": "attachment", "details": {"type": "sensor",
+ * "quantity": "temperature", "model": "DHT22", "port": "GPIO4"}}. The quantity refers to the physical quantity of
+ * the object that is observed or manipulated by the attachment. Type, quantity, model and port are compared
+ * case-insensitively, while numeric ports are compared numerically.
+ */
+public class AttachmentRequirementParser implements RequirementParser {
+
+    //Type name of the requirements that are supported by this parser
+    private static final String TYPE_NAME = "attachment";
+
+    //Path to the nested attachment objects
+    private static final String ATTACHMENTS_PATH = "attachments";
+
+    //Map (detail --> path within the attachment) of the details that are matched as keywords
+    private static final Map<String, String> KEYWORD_FIELDS = Map.of("type", "type", "model", "model",
+            "quantity", "object.quantity");
+
+    //Name of the detail and field holding the port, which may be either a number or a string
+    private static final String PORT_FIELD = "port";
+
+    /**
+     * Parses a requirement, given as {@link JSONObject}, of the supported requirement type, transforms it to a
+     * corresponding {@link QueryBuilder} that implements this requirement and adds it as clause to a given
+     * {@link BoolQueryBuilder}.
+     *
+     * @param boolQuery   The boolean query to extend for the requirement
+     * @param requirement The requirement to parse and transform
+     */
+    @Override
+    public void parse(BoolQueryBuilder boolQuery, JSONObject requirement) {
+        //Retrieve details
+        JSONObject details = requirement.optJSONObject("details");
+
+        //Sanity check
+        if ((details == null) || details.isEmpty()) {
+            return;
+        }
+
+        //Create bool query for the constraints on a single attachment
+        BoolQueryBuilder attachmentQuery = QueryBuilders.boolQuery();
+
+        //Add the keyword constraints
+        KEYWORD_FIELDS.forEach((detail, path) -> {
+            String value = details.optString(detail);
+            if (!value.isEmpty()) {
+                attachmentQuery.filter(QueryBuilders.termQuery(ATTACHMENTS_PATH + "." + path, value.toLowerCase(Locale.ROOT)));
+            }
+        });
+
+        //Add the port constraint as lenient match query, which works for ports mapped as keyword or as number
+        Object port = details.opt(PORT_FIELD);
+        if ((port instanceof Number) || ((port instanceof String) && !((String) port).isEmpty())) {
+            attachmentQuery.filter(QueryBuilders.matchQuery(ATTACHMENTS_PATH + "." + PORT_FIELD, port).lenient(true));
+        }
+
+        //Add nested query without scoring to the bool query
+        boolQuery.filter(QueryBuilders.nestedQuery(ATTACHMENTS_PATH, attachmentQuery, ScoreMode.None));
+    }
+
+    /**
+     * Compiles a requirement, given as {@link JSONObject}, of the supported requirement type to a {@link Predicate}
+     * that evaluates whether a single device description satisfies this requirement. Like the nested query, all
+     * constraints must be satisfied by the same attachment.
+     *
+     * @param requirement The requirement to compile
+     * @return The resulting predicate
+     */
+    @Override
+    public Predicate<JSONObject> compile(JSONObject requirement) {
+        //Retrieve details
+        JSONObject details = requirement.optJSONObject("details");
+
+        //Requirements without details do not constrain the device descriptions
+        if ((details == null) || details.isEmpty()) {
+            return d -> true;
+        }
+
+        //Collect the normalized keyword constraints and the port
+        Map<String, String> constraints = new HashMap<>();
+        KEYWORD_FIELDS.forEach((detail, path) -> {
+            String value = details.optString(detail);
+            if (!value.isEmpty()) constraints.put(path, value.toLowerCase(Locale.ROOT));
+        });
+        String port = ParserUtils.normalizePort(details.opt(PORT_FIELD));
+
+        //Create predicate that checks whether any of the attachments satisfies all constraints
+        return d -> {
+            //Get the attachments, which may also be given as single object
+            Object attachments = d.opt(ATTACHMENTS_PATH);
+            JSONArray attachmentsArray = (attachments instanceof JSONObject) ? new JSONArray().put(attachments)
+                    : (attachments instanceof JSONArray) ? (JSONArray) attachments : new JSONArray();
+
+            //Check the attachments one by one
+            for (int i = 0; i < attachmentsArray.length(); i++) {
+                JSONObject attachment = attachmentsArray.optJSONObject(i);
+                if ((attachment != null) && matchesAttachment(attachment, constraints, port)) return true;
+            }
+            return false;
+        };
+    }
+
+    /**
+     * Returns the type name of the requirements that can be parsed and transformed to {@link QueryBuilder}s by using
+     * this requirement parser.
+     *
+     * @return The requirement type name
+     */
+    @Override
+    public String getRequirementTypeName() {
+        return TYPE_NAME;
+    }
+
+    /**
+     * Checks whether a given attachment satisfies a given map (path --> normalized value) of keyword constraints
+     * and is connected via a given port.
+     *
+     * @param attachment  The attachment to check
+     * @param constraints The map of keyword constraints
+     * @param port        The normalized port or null, if the port is not constrained
+     * @return True, if the attachment satisfies all constraints; false otherwise
+     */
+    private boolean matchesAttachment(JSONObject attachment, Map<String, String> constraints, String port) {
+        //Check the keyword constraints
+        for (Map.Entry<String, String> constraint : constraints.entrySet()) {
+            Object value = ParserUtils.getFieldValue(attachment, constraint.getKey());
+            if ((value == null) || !value.toString().toLowerCase(Locale.ROOT).equals(constraint.getValue())) {
+                return false;
+            }
+        }
+
+        //Check the port
+        return (port == null) || port.equals(ParserUtils.normalizePort(attachment.opt(PORT_FIELD)));
+    }
+}
@@ -0,0 +1,256 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.parsers;
+
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.util.ParserUtils;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Parser for capability requirements. Capability requirements constrain the value of a single capability of the
+ * device descriptions, e.g. {"type": "capability", "name": "ram", "operator": "greater_equals", "match": 2000}.
+ * The match value is converted to the data type of the capability as known by the repository, such that numeric
+ * capabilities can be compared by range queries, regardless of whether the match value was provided as number or
+ * as string. All resulting queries are added in filter context, such that they can be cached by the repository.
+ */
+public class CapabilityRequirementParser implements RequirementParser {
+
+    //Type name of the requirements that are supported by this parser
+    private static final String TYPE_NAME = "capability";
+
+    /**
+     * Parses a requirement, given as {@link JSONObject}, of the supported requirement type, transforms it to a
+     * corresponding {@link QueryBuilder} that implements this requirement and adds it as clause to a given
+     * {@link BoolQueryBuilder}. Since no data types of the capabilities are provided, they are derived from
+     * the match values.
+     *
+     * @param boolQuery   The boolean query to extend for the requirement
+     * @param requirement The requirement to parse and transform
+     */
+    @Override
+    public void parse(BoolQueryBuilder boolQuery, JSONObject requirement) {
+        parse(boolQuery, requirement, Collections.emptyMap());
+    }
+
+    /**
+     * Parses a requirement, given as {@link JSONObject}, of the supported requirement type, transforms it to a
+     * corresponding {@link QueryBuilder} that implements this requirement and adds it as clause to a given
+     * {@link BoolQueryBuilder}. The match value is converted to the data type that is provided for the capability
+     * in the given map (capability name --> data type).
+     *
+     * @param boolQuery       The boolean query to extend for the requirement
+     * @param requirement     The requirement to parse and transform
+     * @param capabilityTypes The map of capability names and their data types
+     */
+    @Override
+    public void parse(BoolQueryBuilder boolQuery, JSONObject requirement, Map<String, String> capabilityTypes) {
+        //Retrieve name and operator
+        String name = requirement.optString("name");
+        String operator = requirement.optString("operator").toLowerCase();
+
+        //Sanity check
+        if (name.isEmpty()) {
+            return;
+        }
+
+        //Determine the field holding the value of the capability
+        String fieldPath = "capabilities." + name + ".value";
+
+        //Check for operators that do not require a match value
+        switch (operator) {
+            case "exists":
+                boolQuery.filter(QueryBuilders.existsQuery(fieldPath));
+                return;
+            case "not_exists":
+                boolQuery.mustNot(QueryBuilders.existsQuery(fieldPath));
+                return;
+        }
+
+        //Convert the match value to the data type of the capability
+        String type = capabilityTypes.get(name);
+        Object value = ParserUtils.toCapabilityValue(requirement.opt("match"), type);
+
+        //Create query, depending on the operator
+        QueryBuilder query;
+        switch (operator) {
+            case "equals":
+            case "not_equals":
+                query = (value == null) ? null : QueryBuilders.termQuery(fieldPath, value);
+                break;
+            case "greater_than":
+            case "greater_equals":
+            case "less_than":
+            case "less_equals":
+                query = ((value instanceof Number) && ParserUtils.isNumericCapabilityType(type)) ?
+                        createRangeQuery(fieldPath, operator, value) : null;
+                break;
+            default:
+                //Unknown operator
+                return;
+        }
+
+        //Add query to the bool query, depending on the operator
+        if (operator.equals("not_equals")) {
+            //Values that cannot be converted to the data type can never be equal
+            if (query != null) boolQuery.mustNot(query);
+        } else {
+            //Values that cannot be converted to the data type can never be matched
+            boolQuery.filter(query == null ? QueryBuilders.boolQuery().mustNot(QueryBuilders.matchAllQuery()) : query);
+        }
+    }
+
+    /**
+     * Compiles a requirement, given as {@link JSONObject}, of the supported requirement type to a {@link Predicate}
+     * that evaluates whether a single device description satisfies this requirement. Since the predicate is
+     * evaluated independently of the repository, the match value is converted to the data type of the value of the
+     * capability within the device description under test.
+     *
+     * @param requirement The requirement to compile
+     * @return The resulting predicate
+     */
+    @Override
+    public Predicate<JSONObject> compile(JSONObject requirement) {
+        //Retrieve name, operator and match value
+        String name = requirement.optString("name");
+        String operator = requirement.optString("operator").toLowerCase();
+        Object match = requirement.opt("match");
+
+        //Sanity check
+        if (name.isEmpty()) {
+            return d -> true;
+        }
+
+        //Create predicate, depending on the operator
+        switch (operator) {
+            case "exists":
+                return d -> getCapabilityValue(d, name) != null;
+            case "not_exists":
+                return d -> getCapabilityValue(d, name) == null;
+            case "equals":
+            case "greater_than":
+            case "greater_equals":
+            case "less_than":
+            case "less_equals":
+                return d -> testCapabilityValue(getCapabilityValue(d, name), operator, match);
+            case "not_equals":
+                //Like a must_not clause, match all device descriptions that do not contain an equal value
+                return d -> !testCapabilityValue(getCapabilityValue(d, name), "equals", match);
+            default:
+                //Unknown operator, no constraint
+                return d -> true;
+        }
+    }
+
+    /**
+     * Returns the type name of the requirements that can be parsed and transformed to {@link QueryBuilder}s by using
+     * this requirement parser.
+     *
+     * @return The requirement type name
+     */
+    @Override
+    public String getRequirementTypeName() {
+        return TYPE_NAME;
+    }
+
+    /**
+     * Creates a {@link RangeQueryBuilder} for a given field, a given comparison operator and a given bound.
+     *
+     * @param fieldPath The path of the field to compare
+     * @param operator  The comparison operator
+     * @param value     The bound to compare the field with
+     * @return The resulting range query
+     */
+    private RangeQueryBuilder createRangeQuery(String fieldPath, String operator, Object value) {
+        RangeQueryBuilder query = QueryBuilders.rangeQuery(fieldPath);
+        switch (operator) {
+            case "greater_than":
+                return query.gt(value);
+            case "greater_equals":
+                return query.gte(value);
+            case "less_than":
+                return query.lt(value);
+            default:
+                return query.lte(value);
+        }
+    }
+
+    /**
+     * Retrieves the value of a capability, given by its name, from a given device description.
+     *
+     * @param deviceDescription The device description to retrieve the value from
+     * @param name              The name of the capability
+     * @return The value of the capability or null, if it does not exist
+     */
+    private Object getCapabilityValue(JSONObject deviceDescription, String name) {
+        Object capability = ParserUtils.getFieldValue(deviceDescription, "capabilities");
+        if (!(capability instanceof JSONObject)) return null;
+        capability = ((JSONObject) capability).opt(name);
+        return (capability instanceof JSONObject) ? ParserUtils.getFieldValue((JSONObject) capability, "value") : null;
+    }
+
+    /**
+     * Tests whether the value of a capability within a device description satisfies a given comparison operator
+     * for a given match value. The match value is converted to the data type of the capability value, while range
+     * comparisons are only possible for numeric values. For arrays of values, at least one of the values must
+     * satisfy the comparison.
+     *
+     * @param value    The value of the capability or null, if it does not exist
+     * @param operator The comparison operator
+     * @param match    The match value to compare the capability value with
+     * @return True, if the comparison is satisfied; false otherwise
+     */
+    private boolean testCapabilityValue(Object value, String operator, Object match) {
+        //Check for arrays of values
+        if (value instanceof JSONArray) {
+            for (Object element : (JSONArray) value) {
+                if (testCapabilityValue(element, operator, match)) return true;
+            }
+            return false;
+        }
+
+        //Determine the data type of the value
+        String type;
+        if (value instanceof Number) {
+            type = "double";
+        } else if (value instanceof Boolean) {
+            type = "boolean";
+        } else if (value instanceof String) {
+            type = "keyword";
+        } else {
+            //Value does not exist or cannot be compared
+            return false;
+        }
+
+        //Convert the match value to the data type of the value
+        Object converted = ParserUtils.toCapabilityValue(match, type);
+        if (converted == null) {
+            return false;
+        }
+
+        //Check for equality of non-numeric values
+        if (!(value instanceof Number)) {
+            return operator.equals("equals") && value.equals(converted);
+        }
+
+        //Compare the numeric values
+        int comparison = Double.compare(((Number) value).doubleValue(), ((Number) converted).doubleValue());
+        switch (operator) {
+            case "equals":
+                return comparison == 0;
+            case "greater_than":
+                return comparison > 0;
+            case "greater_equals":
+                return comparison >= 0;
+            case "less_than":
+                return comparison < 0;
+            default:
+                return comparison <= 0;
+        }
+    }
+}
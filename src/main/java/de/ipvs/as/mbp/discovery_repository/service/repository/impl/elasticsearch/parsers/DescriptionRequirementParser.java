@@ -1,8 +1,12 @@
 package de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.parsers;
 
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.util.ParserUtils;
 import org.elasticsearch.index.query.*;
 import org.json.JSONObject;
 
+import java.util.Set;
+import java.util.function.Predicate;
+
 /**
  * Parser for description requirements.
  */
@@ -32,6 +36,34 @@ public class DescriptionRequirementParser implements RequirementParser {
         boolQuery.filter(matchQuery);
     }
 
+    /**
+     * Compiles a requirement, given as {@link JSONObject}, of the supported requirement type to a {@link Predicate}
+     * that evaluates whether a single device description satisfies this requirement. Like the match query, the
+     * description must contain all (and) or at least one (or) of the tokens of the match field.
+     *
+     * @param requirement The requirement to compile
+     * @return The resulting predicate or null, if the operator is invalid
+     */
+    @Override
+    public Predicate<JSONObject> compile(JSONObject requirement) {
+        //Retrieve the tokens of the match field and the operator
+        Set<String> matchTokens = ParserUtils.tokenize(requirement.optString("match"));
+        String operator = requirement.optString("operator").toLowerCase();
+
+        //Sanity check
+        if ((!operator.equals("and")) && (!operator.equals("or"))) {
+            return null;
+        }
+
+        //Create predicate that compares the tokens of the description with the tokens of the match field
+        return d -> {
+            Object description = ParserUtils.getFieldValue(d, "description");
+            if ((!(description instanceof String)) || matchTokens.isEmpty()) return false;
+            Set<String> tokens = ParserUtils.tokenize((String) description);
+            return operator.equals("and") ? tokens.containsAll(matchTokens) : matchTokens.stream().anyMatch(tokens::contains);
+        };
+    }
+
     /**
      * Returns the type name of the requirements that can be parsed and transformed to {@link QueryBuilder}s by using
      * this requirement parser.
@@ -0,0 +1,91 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.parsers;
+
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.util.ParserUtils;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.json.JSONObject;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Parser for keywords requirements. Keywords requirements check whether the keywords of the device descriptions
+ * contain any or all of a given set of keywords, e.g. {"type": "keywords", "operator": "any", "match":
+ * ["temperature", "sensor"]}. The keywords are compared case-insensitively.
+ */
+public class KeywordsRequirementParser implements RequirementParser {
+
+    //Type name of the requirements that are supported by this parser
+    private static final String TYPE_NAME = "keywords";
+
+    //Path to the field holding the normalized keywords
+    private static final String FIELD_PATH = "keywords" + ParserUtils.SUBFIELD_LOWERCASE;
+
+    /**
+     * Parses a requirement, given as {@link JSONObject}, of the supported requirement type, transforms it to a
+     * corresponding {@link QueryBuilder} that implements this requirement and adds it as clause to a given
+     * {@link BoolQueryBuilder}.
+     *
+     * @param boolQuery   The boolean query to extend for the requirement
+     * @param requirement The requirement to parse and transform
+     */
+    @Override
+    public void parse(BoolQueryBuilder boolQuery, JSONObject requirement) {
+        //Retrieve the normalized keywords and the operator
+        List<String> keywords = ParserUtils.toNormalizedStrings(requirement.opt("match"));
+        String operator = requirement.optString("operator", "any").toLowerCase();
+
+        //Sanity check
+        if (keywords.isEmpty()) {
+            return;
+        }
+
+        //Check the operator
+        if (operator.equals("all")) {
+            //Add a term query per keyword, such that each of them can be cached independently
+            keywords.forEach(k -> boolQuery.filter(QueryBuilders.termQuery(FIELD_PATH, k)));
+        } else {
+            //Add a single terms query that is satisfied by any of the keywords
+            boolQuery.filter(QueryBuilders.termsQuery(FIELD_PATH, keywords));
+        }
+    }
+
+    /**
+     * Compiles a requirement, given as {@link JSONObject}, of the supported requirement type to a {@link Predicate}
+     * that evaluates whether a single device description satisfies this requirement.
+     *
+     * @param requirement The requirement to compile
+     * @return The resulting predicate
+     */
+    @Override
+    public Predicate<JSONObject> compile(JSONObject requirement) {
+        //Retrieve the normalized keywords and the operator
+        List<String> keywords = ParserUtils.toNormalizedStrings(requirement.opt("match"));
+        String operator = requirement.optString("operator", "any").toLowerCase();
+
+        //Requirements without keywords do not constrain the device descriptions
+        if (keywords.isEmpty()) {
+            return d -> true;
+        }
+
+        //Create predicate that compares the normalized keywords of the device description with the required ones
+        return d -> {
+            Set<String> documentKeywords = new HashSet<>(ParserUtils.toNormalizedStrings(ParserUtils.getFieldValue(d, "keywords")));
+            return operator.equals("all") ? documentKeywords.containsAll(keywords) : keywords.stream().anyMatch(documentKeywords::contains);
+        };
+    }
+
+    /**
+     * Returns the type name of the requirements that can be parsed and transformed to {@link QueryBuilder}s by using
+     * this requirement parser.
+     *
+     * @return The requirement type name
+     */
+    @Override
+    public String getRequirementTypeName() {
+        return TYPE_NAME;
+    }
+}
@@ -1,6 +1,7 @@
 package de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.parsers;
 
 import de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.util.ParserUtils;
+import org.elasticsearch.common.geo.GeoUtils;
 import org.elasticsearch.common.unit.DistanceUnit;
 import org.elasticsearch.geometry.LinearRing;
 import org.elasticsearch.geometry.Polygon;
@@ -13,6 +14,7 @@ import org.json.JSONObject;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * Parser for description requirements.
@@ -47,7 +49,7 @@ public class LocationRequirementParser implements RequirementParser {
         //Switch by the operator
         switch (operator.toLowerCase()) {
             case "described_by":
-                ParserUtils.createWildcardQuery(boolQuery, details, "location.description");
+                ParserUtils.createStringQuery(boolQuery, details, "location.description");
                 break;
             case "at_location":
                 createAtLocationQuery(boolQuery, details);
@@ -59,6 +61,42 @@ public class LocationRequirementParser implements RequirementParser {
         }
     }
 
+    /**
+     * Compiles a requirement, given as {@link JSONObject}, of the supported requirement type to a {@link Predicate}
+     * that evaluates whether a single device description satisfies this requirement. Distances are calculated
+     * as arc distances, like for the geo distance queries.
+     *
+     * @param requirement The requirement to compile
+     * @return The resulting predicate or null, if the area cannot be evaluated in-process
+     */
+    @Override
+    public Predicate<JSONObject> compile(JSONObject requirement) {
+        //Retrieve operator and details
+        String operator = requirement.optString("operator");
+        JSONObject details = requirement.optJSONObject("details");
+
+        //Sanity checks
+        if ((details == null) || (details.isEmpty())) {
+            return d -> true;
+        }
+
+        //Switch by the operator
+        switch (operator.toLowerCase()) {
+            case "described_by":
+                return ParserUtils.createStringPredicate(details, "location.description");
+            case "at_location":
+                //Sanity check
+                if ((!details.has("lat")) || (!details.has("lon"))) {
+                    return d -> true;
+                }
+                return createDistancePredicate(details.optDouble("lat"), details.optDouble("lon"), DISTANCE_TOLERANCE);
+            case "in_area":
+                return createInAreaPredicate(details);
+            default:
+                return d -> true;
+        }
+    }
+
     /**
      * Returns the type name of the requirements that can be parsed and transformed to {@link QueryBuilder}s by using
      * this requirement parser.
@@ -132,4 +170,91 @@ public class LocationRequirementParser implements RequirementParser {
         } catch (Exception ignored) {
         }
     }
+
+    private Predicate<JSONObject> createInAreaPredicate(JSONObject details) {
+        try {
+            //Check whether circle or polygon
+            if (details.has("radius") && details.has("lat") && details.has("lon")) {
+                //Circle area
+                return createDistancePredicate(details.optDouble("lat"), details.optDouble("lon"), details.optDouble("radius"));
+            } else if (details.has("polygon")) {
+                //Get polygon points
+                JSONArray points = details.getJSONArray("polygon");
+
+                //Create arrays of longitudes and latitudes
+                double[] longitudes = new double[points.length()];
+                double[] latitudes = new double[points.length()];
+                for (int i = 0; i < points.length(); i++) {
+                    longitudes[i] = points.getJSONArray(i).getDouble(0);
+                    latitudes[i] = points.getJSONArray(i).getDouble(1);
+                }
+
+                //Validate the polygon like the query
+                new Polygon(new LinearRing(longitudes, latitudes));
+
+                //Create predicate for the polygon
+                return d -> {
+                    double[] point = parsePoint(ParserUtils.getFieldValue(d, "location.coordinates"));
+                    return (point != null) && isInPolygon(point[0], point[1], longitudes, latitudes);
+                };
+            }
+        } catch (Exception e) {
+            //Invalid areas are not evaluated in-process
+            return null;
+        }
+
+        //Unknown area
+        return d -> true;
+    }
+
+    private Predicate<JSONObject> createDistancePredicate(double latitude, double longitude, double distance) {
+        return d -> {
+            double[] point = parsePoint(ParserUtils.getFieldValue(d, "location.coordinates"));
+            return (point != null) && (GeoUtils.arcDistance(latitude, longitude, point[0], point[1]) <= distance);
+        };
+    }
+
+    /**
+     * Checks whether a given point is located within a given polygon by using ray casting.
+     *
+     * @param latitude   The latitude of the point
+     * @param longitude  The longitude of the point
+     * @param longitudes The longitudes of the polygon vertices
+     * @param latitudes  The latitudes of the polygon vertices
+     * @return True, if the point is located within the polygon; false otherwise
+     */
+    private static boolean isInPolygon(double latitude, double longitude, double[] longitudes, double[] latitudes) {
+        boolean inside = false;
+        for (int i = 0, j = longitudes.length - 1; i < longitudes.length; j = i++) {
+            if (((latitudes[i] > latitude) != (latitudes[j] > latitude)) &&
+                    (longitude < (longitudes[j] - longitudes[i]) * (latitude - latitudes[i]) / (latitudes[j] - latitudes[i]) + longitudes[i])) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Parses a given geo point, given either as object with lat and lon fields, as array [lon, lat] or as string
+     * "lat,lon", to an array [lat, lon].
+     *
+     * @param geoPoint The geo point to parse
+     * @return The resulting array or null, if the geo point could not be parsed
+     */
+    private static double[] parsePoint(Object geoPoint) {
+        try {
+            if (geoPoint instanceof JSONObject) {
+                JSONObject pointObject = (JSONObject) geoPoint;
+                return new double[]{pointObject.getDouble("lat"), pointObject.getDouble("lon")};
+            } else if (geoPoint instanceof JSONArray) {
+                JSONArray pointArray = (JSONArray) geoPoint;
+                return new double[]{pointArray.getDouble(1), pointArray.getDouble(0)};
+            } else if (geoPoint instanceof String) {
+                String[] parts = ((String) geoPoint).split(",");
+                return new double[]{Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim())};
+            }
+        } catch (RuntimeException ignored) {
+        }
+        return null;
+    }
 }
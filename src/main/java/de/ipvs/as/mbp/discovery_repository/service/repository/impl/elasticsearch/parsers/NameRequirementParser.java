@@ -5,6 +5,8 @@ import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.json.JSONObject;
 
+import java.util.function.Predicate;
+
 /**
  * Parser for name requirements.
  */
@@ -23,8 +25,21 @@ public class NameRequirementParser implements RequirementParser {
      */
     @Override
     public void parse(BoolQueryBuilder boolQuery, JSONObject requirement) {
-        //Create a corresponding wildcard query and add it to the bool query
-        ParserUtils.createWildcardQuery(boolQuery, requirement, "name");
+        //Create a corresponding string query on the subfields of the name and add it to the bool query
+        ParserUtils.createStringQuery(boolQuery, requirement, "name");
+    }
+
+    /**
+     * Compiles a requirement, given as {@link JSONObject}, of the supported requirement type to a {@link Predicate}
+     * that evaluates whether a single device description satisfies this requirement.
+     *
+     * @param requirement The requirement to compile
+     * @return The resulting predicate
+     */
+    @Override
+    public Predicate<JSONObject> compile(JSONObject requirement) {
+        //Create a corresponding string predicate on the name
+        return ParserUtils.createStringPredicate(requirement, "name");
     }
 
     /**
@@ -4,10 +4,15 @@ import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.json.JSONObject;
 
+import java.util.Map;
+import java.util.function.Predicate;
+
 /**
  * Requirement parsers can be used to parse a requirement, given as {@link JSONObject}, of a certain type and to
  * transform it to a corresponding {@link QueryBuilder} that implements this requirement. The resulting
- * {@link QueryBuilder} is added as clause to a given {@link BoolQueryBuilder}.
+ * {@link QueryBuilder} is added as clause to a given {@link BoolQueryBuilder}. In addition, requirement parsers
+ * may compile requirements to {@link Predicate}s that evaluate single device descriptions in-process, equivalently
+ * to the generated queries.
  */
 public interface RequirementParser {
     /**
@@ -20,6 +25,34 @@ public interface RequirementParser {
      */
     void parse(BoolQueryBuilder boolQuery, JSONObject requirement);
 
+    /**
+     * Parses a requirement, given as {@link JSONObject}, of the supported requirement type, transforms it to a
+     * corresponding {@link QueryBuilder} that implements this requirement and adds it as clause to a given
+     * {@link BoolQueryBuilder}. In addition, a map (capability name --> data type) of the capabilities that are
+     * known to the repository is provided, which can be used by parsers that need to take the data types of the
+     * capabilities into account. By default, the map is ignored.
+     *
+     * @param boolQuery       The boolean query to extend for the requirement
+     * @param requirement     The requirement to parse and transform
+     * @param capabilityTypes The map of capability names and their data types
+     */
+    default void parse(BoolQueryBuilder boolQuery, JSONObject requirement, Map<String, String> capabilityTypes) {
+        parse(boolQuery, requirement);
+    }
+
+    /**
+     * Compiles a requirement, given as {@link JSONObject}, of the supported requirement type to a {@link Predicate}
+     * that evaluates whether a single device description satisfies this requirement, without involving the
+     * repository. The predicate must behave like the query that is created for the same requirement. By default,
+     * requirements cannot be compiled and null is returned.
+     *
+     * @param requirement The requirement to compile
+     * @return The resulting predicate or null, if the requirement cannot be evaluated in-process
+     */
+    default Predicate<JSONObject> compile(JSONObject requirement) {
+        return null;
+    }
+
     /**
      * Returns the type name of the requirements that can be parsed and transformed to {@link QueryBuilder}s by using
      * this requirement parser.
@@ -0,0 +1,79 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.scoring;
+
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.util.ParserUtils;
+import org.elasticsearch.common.lucene.search.function.FieldValueFactorFunction;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.functionscore.FunctionScoreQueryBuilder.FilterFunctionBuilder;
+import org.elasticsearch.index.query.functionscore.ScoreFunctionBuilder;
+import org.elasticsearch.index.query.functionscore.ScoreFunctionBuilders;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parser for capability scoring criteria. Capability criteria prefer devices with large or small values of a numeric
+ * capability, e.g. {"type": "capability", "name": "ram", "order": "desc", "weight": 1}. The score grows
+ * logarithmically with the value for descending order and shrinks with it for ascending order. Devices that do not
+ * provide the capability do not receive a score for this criterion.
+ */
+public class CapabilityCriterionParser implements ScoringCriterionParser {
+
+    //Type name of the criteria that are supported by this parser
+    private static final String TYPE_NAME = "capability";
+
+    //Script that computes the score for ascending order
+    private static final String ASCENDING_SCRIPT = "1.0 / (1.0 + Math.log1p(Math.max(doc[params.field].value, 0)))";
+
+    /**
+     * Parses a scoring criterion, given as {@link JSONObject}, of the supported criterion type and transforms it to
+     * a list of {@link FilterFunctionBuilder}s that implement this criterion. Only capabilities with numeric data
+     * types are supported.
+     *
+     * @param criterion       The scoring criterion to parse and transform
+     * @param capabilityTypes The map of capability names and their data types
+     * @return The resulting list of filter functions, which is empty if the criterion is invalid
+     */
+    @Override
+    public List<FilterFunctionBuilder> parse(JSONObject criterion, Map<String, String> capabilityTypes) {
+        //Retrieve name and order
+        String name = criterion.optString("name");
+        String order = criterion.optString("order", "desc").toLowerCase();
+
+        //Sanity check, requiring a known numeric capability
+        if (name.isEmpty() || (!capabilityTypes.containsKey(name)) || (!ParserUtils.isNumericCapabilityType(capabilityTypes.get(name)))) {
+            return Collections.emptyList();
+        }
+
+        //Determine the field holding the value of the capability
+        String fieldPath = "capabilities." + name + ".value";
+
+        //Create function, depending on the order
+        ScoreFunctionBuilder<?> function;
+        if (order.equals("asc")) {
+            function = ScoreFunctionBuilders.scriptFunction(new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG,
+                    ASCENDING_SCRIPT, Collections.singletonMap("field", fieldPath)));
+        } else {
+            function = ScoreFunctionBuilders.fieldValueFactorFunction(fieldPath)
+                    .modifier(FieldValueFactorFunction.Modifier.LOG1P).missing(0);
+        }
+        function.setWeight(ScoringUtils.getWeight(criterion));
+
+        //Only apply the function to devices that provide the capability
+        return Collections.singletonList(new FilterFunctionBuilder(QueryBuilders.existsQuery(fieldPath), function));
+    }
+
+    /**
+     * Returns the type name of the scoring criteria that can be parsed and transformed to {@link ScoreFunctionBuilder}s
+     * by using this scoring criterion parser.
+     *
+     * @return The scoring criterion type name
+     */
+    @Override
+    public String getCriterionTypeName() {
+        return TYPE_NAME;
+    }
+}
@@ -0,0 +1,74 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.scoring;
+
+import org.elasticsearch.common.geo.GeoPoint;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.functionscore.FunctionScoreQueryBuilder.FilterFunctionBuilder;
+import org.elasticsearch.index.query.functionscore.ScoreFunctionBuilder;
+import org.elasticsearch.index.query.functionscore.ScoreFunctionBuilders;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parser for distance scoring criteria. Distance criteria prefer devices that are located close to a given point,
+ * e.g. {"type": "distance", "details": {"lat": 48.78, "lon": 9.18, "scale": 1000}, "weight": 2}. The score decays
+ * in a Gaussian manner with the distance of the device to the point, such that it is halved at the given scale in
+ * meters. Devices without coordinates do not receive a score for this criterion.
+ */
+public class DistanceCriterionParser implements ScoringCriterionParser {
+
+    //Type name of the criteria that are supported by this parser
+    private static final String TYPE_NAME = "distance";
+
+    //Default distance in meters at which the score is halved
+    private static final double DEFAULT_SCALE = 1000;
+
+    //Score at the scale distance
+    private static final double DECAY = 0.5;
+
+    /**
+     * Parses a scoring criterion, given as {@link JSONObject}, of the supported criterion type and transforms it to
+     * a list of {@link FilterFunctionBuilder}s that implement this criterion.
+     *
+     * @param criterion       The scoring criterion to parse and transform
+     * @param capabilityTypes The map of capability names and their data types
+     * @return The resulting list of filter functions, which is empty if the criterion is invalid
+     */
+    @Override
+    public List<FilterFunctionBuilder> parse(JSONObject criterion, Map<String, String> capabilityTypes) {
+        //Retrieve details
+        JSONObject details = criterion.optJSONObject("details");
+
+        //Sanity check
+        if ((details == null) || (!details.has("lat")) || (!details.has("lon"))) {
+            return Collections.emptyList();
+        }
+
+        //Retrieve origin and scale from the details
+        GeoPoint origin = new GeoPoint(details.optDouble("lat"), details.optDouble("lon"));
+        double scale = details.optDouble("scale", DEFAULT_SCALE);
+        if (!(scale > 0)) {
+            return Collections.emptyList();
+        }
+
+        //Create decay function
+        ScoreFunctionBuilder<?> function = ScoreFunctionBuilders.gaussDecayFunction("location.coordinates", origin,
+                scale + "m", "0m", DECAY).setWeight(ScoringUtils.getWeight(criterion));
+
+        //Only apply to devices that provide the field, since decay functions score missing fields highest
+        return Collections.singletonList(new FilterFunctionBuilder(QueryBuilders.existsQuery("location.coordinates"), function));
+    }
+
+    /**
+     * Returns the type name of the scoring criteria that can be parsed and transformed to {@link ScoreFunctionBuilder}s
+     * by using this scoring criterion parser.
+     *
+     * @return The scoring criterion type name
+     */
+    @Override
+    public String getCriterionTypeName() {
+        return TYPE_NAME;
+    }
+}
@@ -0,0 +1,75 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.scoring;
+
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.functionscore.FunctionScoreQueryBuilder.FilterFunctionBuilder;
+import org.elasticsearch.index.query.functionscore.ScoreFunctionBuilder;
+import org.elasticsearch.index.query.functionscore.ScoreFunctionBuilders;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parser for freshness scoring criteria. Freshness criteria prefer device descriptions that were updated recently,
+ * e.g. {"type": "freshness", "details": {"scale": 86400000}, "weight": 1}. The score decays exponentially with the
+ * time that passed since the last update of the description, as given by its last_update field in milliseconds,
+ * such that it is halved after the given scale in milliseconds. Device descriptions without last_update field do not
+ * receive a score for this criterion.
+ */
+public class FreshnessCriterionParser implements ScoringCriterionParser {
+
+    //Type name of the criteria that are supported by this parser
+    private static final String TYPE_NAME = "freshness";
+
+    //Default time in milliseconds after which the score is halved
+    private static final long DEFAULT_SCALE = TimeUnit.DAYS.toMillis(1);
+
+    //Granularity of the current time that is used as origin, allowing the repository to cache the query
+    private static final long ORIGIN_GRANULARITY = TimeUnit.SECONDS.toMillis(1);
+
+    //Score at the scale time
+    private static final double DECAY = 0.5;
+
+    /**
+     * Parses a scoring criterion, given as {@link JSONObject}, of the supported criterion type and transforms it to
+     * a list of {@link FilterFunctionBuilder}s that implement this criterion.
+     *
+     * @param criterion       The scoring criterion to parse and transform
+     * @param capabilityTypes The map of capability names and their data types
+     * @return The resulting list of filter functions, which is empty if the criterion is invalid
+     */
+    @Override
+    public List<FilterFunctionBuilder> parse(JSONObject criterion, Map<String, String> capabilityTypes) {
+        //Retrieve scale from the details
+        JSONObject details = criterion.optJSONObject("details");
+        long scale = (details == null) ? DEFAULT_SCALE : details.optLong("scale", DEFAULT_SCALE);
+
+        //Sanity check
+        if (scale <= 0) {
+            return Collections.emptyList();
+        }
+
+        //Use the current time as origin
+        long origin = (System.currentTimeMillis() / ORIGIN_GRANULARITY) * ORIGIN_GRANULARITY;
+
+        //Create decay function
+        ScoreFunctionBuilder<?> function = ScoreFunctionBuilders.exponentialDecayFunction("last_update", origin,
+                scale, 0, DECAY).setWeight(ScoringUtils.getWeight(criterion));
+
+        //Only apply to devices that provide the field, since decay functions score missing fields highest
+        return Collections.singletonList(new FilterFunctionBuilder(QueryBuilders.existsQuery("last_update"), function));
+    }
+
+    /**
+     * Returns the type name of the scoring criteria that can be parsed and transformed to {@link ScoreFunctionBuilder}s
+     * by using this scoring criterion parser.
+     *
+     * @return The scoring criterion type name
+     */
+    @Override
+    public String getCriterionTypeName() {
+        return TYPE_NAME;
+    }
+}
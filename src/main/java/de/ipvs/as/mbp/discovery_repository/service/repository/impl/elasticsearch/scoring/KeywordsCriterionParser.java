@@ -0,0 +1,57 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.scoring;
+
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.util.ParserUtils;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.functionscore.FunctionScoreQueryBuilder.FilterFunctionBuilder;
+import org.elasticsearch.index.query.functionscore.ScoreFunctionBuilder;
+import org.elasticsearch.index.query.functionscore.ScoreFunctionBuilders;
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Parser for keywords scoring criteria. Keywords criteria prefer devices whose keywords contain many of the given
+ * keywords, e.g. {"type": "keywords", "match": ["temperature", "outdoor"], "weight": 1}. Each contained keyword
+ * contributes the weight of the criterion to the score. The keywords are compared case-insensitively.
+ */
+public class KeywordsCriterionParser implements ScoringCriterionParser {
+
+    //Type name of the criteria that are supported by this parser
+    private static final String TYPE_NAME = "keywords";
+
+    //Path to the field holding the normalized keywords
+    private static final String FIELD_PATH = "keywords" + ParserUtils.SUBFIELD_LOWERCASE;
+
+    /**
+     * Parses a scoring criterion, given as {@link JSONObject}, of the supported criterion type and transforms it to
+     * a list of {@link FilterFunctionBuilder}s that implement this criterion.
+     *
+     * @param criterion       The scoring criterion to parse and transform
+     * @param capabilityTypes The map of capability names and their data types
+     * @return The resulting list of filter functions, which is empty if the criterion is invalid
+     */
+    @Override
+    public List<FilterFunctionBuilder> parse(JSONObject criterion, Map<String, String> capabilityTypes) {
+        //Retrieve weight
+        float weight = ScoringUtils.getWeight(criterion);
+
+        //Create a weight function per keyword that applies to the devices containing the keyword
+        return ParserUtils.toNormalizedStrings(criterion.opt("match")).stream()
+                .map(k -> new FilterFunctionBuilder(QueryBuilders.termQuery(FIELD_PATH, k),
+                        ScoreFunctionBuilders.weightFactorFunction(weight)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the type name of the scoring criteria that can be parsed and transformed to {@link ScoreFunctionBuilder}s
+     * by using this scoring criterion parser.
+     *
+     * @return The scoring criterion type name
+     */
+    @Override
+    public String getCriterionTypeName() {
+        return TYPE_NAME;
+    }
+}
@@ -0,0 +1,36 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.scoring;
+
+import org.elasticsearch.index.query.functionscore.FunctionScoreQueryBuilder.FilterFunctionBuilder;
+import org.elasticsearch.index.query.functionscore.ScoreFunctionBuilder;
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scoring criterion parsers can be used to parse a scoring criterion, given as {@link JSONObject}, of a certain type
+ * and to transform it to corresponding {@link ScoreFunctionBuilder}s that implement this criterion. The resulting
+ * functions are combined within a function score query, such that the scores of the individual criteria are summed
+ * up and the matching documents are returned in the order of their total scores.
+ */
+public interface ScoringCriterionParser {
+    /**
+     * Parses a scoring criterion, given as {@link JSONObject}, of the supported criterion type and transforms it to
+     * a list of {@link FilterFunctionBuilder}s that implement this criterion. A map (capability name --> data type)
+     * of the capabilities that are known to the repository is provided, which can be used by parsers that need to
+     * take the data types of the capabilities into account.
+     *
+     * @param criterion       The scoring criterion to parse and transform
+     * @param capabilityTypes The map of capability names and their data types
+     * @return The resulting list of filter functions, which is empty if the criterion is invalid
+     */
+    List<FilterFunctionBuilder> parse(JSONObject criterion, Map<String, String> capabilityTypes);
+
+    /**
+     * Returns the type name of the scoring criteria that can be parsed and transformed to {@link ScoreFunctionBuilder}s
+     * by using this scoring criterion parser.
+     *
+     * @return The scoring criterion type name
+     */
+    String getCriterionTypeName();
+}
@@ -0,0 +1,31 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.scoring;
+
+import org.json.JSONObject;
+
+/**
+ * Collection of utility functions related to {@link ScoringCriterionParser}s.
+ */
+public class ScoringUtils {
+
+    //Weight of scoring criteria that do not specify a weight
+    private static final float DEFAULT_WEIGHT = 1;
+
+    /**
+     * Not instantiable.
+     */
+    private ScoringUtils() {
+
+    }
+
+    /**
+     * Returns the weight of a given scoring criterion. Missing or non-positive weights are replaced by the default
+     * weight.
+     *
+     * @param criterion The scoring criterion
+     * @return The weight of the criterion
+     */
+    public static float getWeight(JSONObject criterion) {
+        double weight = criterion.optDouble("weight", DEFAULT_WEIGHT);
+        return (weight > 0) ? (float) weight : DEFAULT_WEIGHT;
+    }
+}
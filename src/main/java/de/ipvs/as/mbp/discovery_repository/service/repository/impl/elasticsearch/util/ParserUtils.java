@@ -2,37 +2,89 @@ package de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearc
 
 
 import de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.parsers.RequirementParser;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.index.query.WildcardQueryBuilder;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
 /**
  * Collection of utility functions related to {@link RequirementParser}s.
  */
 public class ParserUtils {
 
+    //Suffixes of the subfields of keyword fields, as defined in the index mapping
+    public static final String SUBFIELD_LOWERCASE = ".lowercase";
+    public static final String SUBFIELD_NGRAM = ".ngram";
+    public static final String SUBFIELD_REVERSE = ".reverse";
+
+    //Length of the n-grams that are indexed in the n-gram subfields
+    private static final int NGRAM_LENGTH = 3;
+
+    //Standard tokenizers of the individual threads, which split texts like the standard analyzer of the text fields
+    private static final ThreadLocal<StandardTokenizer> STANDARD_TOKENIZER = ThreadLocal.withInitial(StandardTokenizer::new);
+
     /**
-     * Creates a {@link WildcardQueryBuilder} from a given {@link JSONObject} wrapping the match field and the
-     * corresponding string operator, a given field path referencing the field in the device description to which
-     * the query is supposed to be applied and a {@link BoolQueryBuilder} to which the resulting wildcard query
-     * should be added as clause.
+     * Creates a query for a string operator from a given {@link JSONObject} wrapping the match field and the
+     * corresponding string operator, a given field path referencing the keyword field in the device description to
+     * which the query is supposed to be applied and a {@link BoolQueryBuilder} to which the resulting query
+     * should be added as clause. The query is evaluated case-insensitively on the subfields of the keyword field,
+     * such that all operators result in indexed lookups: equals and not_equals use a term query and begins_with a
+     * prefix query on the lowercase subfield, ends_with a prefix query on the reversed subfield and contains a phrase
+     * query on the n-gram subfield. Match fields that are shorter than the n-grams or that contain wildcard
+     * characters fall back to a wildcard query on the lowercase subfield.
      *
-     * @param boolQuery The bool query to extend for the wildcard query
+     * @param boolQuery The bool query to extend for the query
      * @param details   The details {@link JSONObject} wrapping the match field and the operator to use
-     * @param fieldPath The path referencing the field within the device descriptions to which the wildcard query
+     * @param fieldPath The path referencing the keyword field within the device descriptions to which the query
      *                  is supposed to be applied
      */
-    public static void createWildcardQuery(BoolQueryBuilder boolQuery, JSONObject details, String fieldPath) {
+    public static void createStringQuery(BoolQueryBuilder boolQuery, JSONObject details, String fieldPath) {
         //Get match field and operator from the details
         String match = details.optString("match");
         String operator = details.optString("operator");
 
-        //Extend the match field for wildcards, depending on the chosen operator
-        String wildcardMatch = ParserUtils.extendWithWildcards(match, operator);
+        //Normalize the match field like the subfields
+        String normalizedMatch = match.toLowerCase(Locale.ROOT);
 
-        //Create query
-        WildcardQueryBuilder query = QueryBuilders.wildcardQuery(fieldPath, wildcardMatch).caseInsensitive(true);
+        //Create query, depending on the chosen operator
+        QueryBuilder query;
+        switch (operator) {
+            case "equals":
+            case "not_equals":
+                query = containsWildcards(match) ? createWildcardQuery(fieldPath, normalizedMatch, operator)
+                        : QueryBuilders.termQuery(fieldPath + SUBFIELD_LOWERCASE, normalizedMatch);
+                break;
+            case "begins_with":
+                query = containsWildcards(match) ? createWildcardQuery(fieldPath, normalizedMatch, operator)
+                        : QueryBuilders.prefixQuery(fieldPath + SUBFIELD_LOWERCASE, normalizedMatch);
+                break;
+            case "ends_with":
+                query = containsWildcards(match) ? createWildcardQuery(fieldPath, normalizedMatch, operator)
+                        : QueryBuilders.prefixQuery(fieldPath + SUBFIELD_REVERSE, new StringBuilder(normalizedMatch).reverse().toString());
+                break;
+            case "contains":
+                query = (containsWildcards(match) || (match.length() < NGRAM_LENGTH)) ? createWildcardQuery(fieldPath, normalizedMatch, operator)
+                        : QueryBuilders.matchPhraseQuery(fieldPath + SUBFIELD_NGRAM, normalizedMatch);
+                break;
+            default:
+                query = createWildcardQuery(fieldPath, normalizedMatch, operator);
+        }
 
         //Add query to the bool query, depending on the operator
         if (operator.equals("not_equals")) {
@@ -42,6 +94,172 @@ public class ParserUtils {
         }
     }
 
+    /**
+     * Creates a {@link Predicate} for a string operator from a given {@link JSONObject} wrapping the match field and
+     * the corresponding string operator and a given field path referencing the keyword field in the device
+     * descriptions to which the predicate is supposed to be applied. The predicate evaluates device descriptions
+     * in-process and behaves like the query that is created for the same details by
+     * {@link #createStringQuery(BoolQueryBuilder, JSONObject, String)}.
+     *
+     * @param details   The details {@link JSONObject} wrapping the match field and the operator to use
+     * @param fieldPath The path referencing the keyword field within the device descriptions to which the
+     *                  predicate is supposed to be applied
+     * @return The resulting predicate
+     */
+    public static Predicate<JSONObject> createStringPredicate(JSONObject details, String fieldPath) {
+        //Get match field and operator from the details
+        String match = details.optString("match");
+        String operator = details.optString("operator");
+
+        //Normalize the match field like the subfields
+        String normalizedMatch = match.toLowerCase(Locale.ROOT);
+
+        //Create the test for the normalized field value, depending on the chosen operator
+        Predicate<String> test;
+        switch (operator) {
+            case "equals":
+            case "not_equals":
+                test = containsWildcards(match) ? createWildcardPattern(normalizedMatch, operator)
+                        : normalizedMatch::equals;
+                break;
+            case "begins_with":
+                test = containsWildcards(match) ? createWildcardPattern(normalizedMatch, operator)
+                        : v -> v.startsWith(normalizedMatch);
+                break;
+            case "ends_with":
+                test = containsWildcards(match) ? createWildcardPattern(normalizedMatch, operator)
+                        : v -> v.endsWith(normalizedMatch);
+                break;
+            case "contains":
+                test = containsWildcards(match) ? createWildcardPattern(normalizedMatch, operator)
+                        : v -> v.contains(normalizedMatch);
+                break;
+            default:
+                test = createWildcardPattern(normalizedMatch, operator);
+        }
+
+        //Create predicate for the field, negating it for not_equals like a must_not clause
+        Predicate<JSONObject> predicate = d -> {
+            Object value = getFieldValue(d, fieldPath);
+            return (value instanceof String) && test.test(((String) value).toLowerCase(Locale.ROOT));
+        };
+        return operator.equals("not_equals") ? predicate.negate() : predicate;
+    }
+
+    /**
+     * Creates a {@link Predicate} for strings that behaves like a wildcard query on the lowercase subfield of a
+     * keyword field for a given normalized match string and a given string operator.
+     *
+     * @param normalizedMatch The lowercase match string
+     * @param operator        The string operator that is supposed to be represented
+     * @return The resulting predicate
+     */
+    public static Predicate<String> createWildcardPattern(String normalizedMatch, String operator) {
+        //Extend the match string for the operator
+        String wildcardMatch = extendWithWildcards(normalizedMatch, operator);
+
+        //Translate the wildcard syntax to a regular expression
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < wildcardMatch.length(); i++) {
+            char c = wildcardMatch.charAt(i);
+            if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else if ((c == '\\') && (i + 1 < wildcardMatch.length())) {
+                regex.append(Pattern.quote(String.valueOf(wildcardMatch.charAt(++i))));
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL).asMatchPredicate();
+    }
+
+    /**
+     * Retrieves the value of a field, given by its dot-separated path, from a given device description.
+     *
+     * @param document  The device description to retrieve the value from
+     * @param fieldPath The dot-separated path of the field
+     * @return The value of the field or null, if it does not exist
+     */
+    public static Object getFieldValue(JSONObject document, String fieldPath) {
+        //Walk along the path
+        Object current = document;
+        for (String segment : fieldPath.split("\\.")) {
+            if (!(current instanceof JSONObject)) return null;
+            current = ((JSONObject) current).opt(segment);
+        }
+        return JSONObject.NULL.equals(current) ? null : current;
+    }
+
+    /**
+     * Splits a given text into its distinct, lower-cased tokens like the standard analyzer of the text fields. The
+     * text is split by the same standard tokenizer that is used by the repository, which follows the word boundary
+     * rules of Unicode text segmentation, such that e.g. "3.5" and "o'neil" are kept as single tokens.
+     *
+     * @param text The text to tokenize
+     * @return The set of tokens
+     */
+    public static Set<String> tokenize(String text) {
+        //Collect the tokens
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) return tokens;
+        StandardTokenizer tokenizer = STANDARD_TOKENIZER.get();
+        CharTermAttribute term = tokenizer.addAttribute(CharTermAttribute.class);
+        try {
+            tokenizer.setReader(new StringReader(text));
+            tokenizer.reset();
+            while (tokenizer.incrementToken()) {
+                tokens.add(toLowerCase(term));
+            }
+            tokenizer.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            //Release the reader, such that the tokenizer can be reused
+            try {
+                tokenizer.close();
+            } catch (IOException ignored) {
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Lower-cases a given token per code point, like the lowercase filter of the standard analyzer.
+     *
+     * @param token The token to lower-case
+     * @return The lower-cased token
+     */
+    private static String toLowerCase(CharSequence token) {
+        StringBuilder builder = new StringBuilder(token.length());
+        token.codePoints().forEach(c -> builder.appendCodePoint(Character.toLowerCase(c)));
+        return builder.toString();
+    }
+
+    /**
+     * Creates a {@link WildcardQueryBuilder} on the lowercase subfield of a given keyword field for a given
+     * normalized match string and a given string operator.
+     *
+     * @param fieldPath       The path referencing the keyword field
+     * @param normalizedMatch The lowercase match string
+     * @param operator        The string operator that is supposed to be represented
+     * @return The resulting wildcard query
+     */
+    private static WildcardQueryBuilder createWildcardQuery(String fieldPath, String normalizedMatch, String operator) {
+        return QueryBuilders.wildcardQuery(fieldPath + SUBFIELD_LOWERCASE, extendWithWildcards(normalizedMatch, operator));
+    }
+
+    /**
+     * Checks and returns whether a given match string contains characters that are interpreted as wildcards.
+     *
+     * @param match The match string to check
+     * @return True, if the match string contains wildcard characters; false otherwise
+     */
+    public static boolean containsWildcards(String match) {
+        return (match.indexOf('*') >= 0) || (match.indexOf('?') >= 0) || (match.indexOf('\\') >= 0);
+    }
+
     /**
      * Extends a given match string for wildcards, such that it behaves like a given operator is applied to it
      * within a query.
@@ -74,4 +292,111 @@ public class ParserUtils {
                 return match;
         }
     }
+
+    /**
+     * Converts a given match value of a capability requirement to a given data type of the capability, as reported
+     * by the mapping of the repository. If no data type is provided, the data type is derived from the match value.
+     *
+     * @param match The match value to convert
+     * @param type  The data type of the capability or null, if unknown
+     * @return The converted value or null, if the match value cannot be converted to the data type
+     */
+    public static Object toCapabilityValue(Object match, String type) {
+        //Sanity check
+        if ((match == null) || JSONObject.NULL.equals(match)) {
+            return null;
+        }
+
+        //Derive the data type from the match value if unknown
+        if (type == null) {
+            if (match instanceof Number) return toCapabilityValue(match, "double");
+            return ((match instanceof Boolean) || (match instanceof String)) ? match : null;
+        }
+
+        //Check the data type
+        switch (type) {
+            case "boolean":
+                if (match instanceof Boolean) return match;
+                if ("true".equalsIgnoreCase(match.toString())) return true;
+                if ("false".equalsIgnoreCase(match.toString())) return false;
+                return null;
+            case "keyword":
+            case "text":
+                return match.toString();
+            default:
+                //Numeric types
+                if (!isNumericCapabilityType(type)) return null;
+                if ((match instanceof Integer) || (match instanceof Long) || (match instanceof Double)) return match;
+                try {
+                    BigDecimal number = new BigDecimal(match.toString().trim());
+                    return (number.scale() <= 0) ? (Object) number.longValueExact() : (Object) number.doubleValue();
+                } catch (NumberFormatException | ArithmeticException e) {
+                    return null;
+                }
+        }
+    }
+
+    /**
+     * Checks and returns whether a given data type of a capability, as reported by the mapping of the repository,
+     * is numeric. Unknown data types are considered to be numeric, such that numeric match values can be compared.
+     *
+     * @param type The data type to check or null, if unknown
+     * @return True, if the data type is numeric; false otherwise
+     */
+    public static boolean isNumericCapabilityType(String type) {
+        if (type == null) return true;
+        switch (type) {
+            case "long":
+            case "integer":
+            case "short":
+            case "byte":
+            case "double":
+            case "float":
+            case "half_float":
+            case "scaled_float":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Converts a given match value that is either a single string or a {@link JSONArray} of strings to a list of
+     * distinct strings in lowercase. Other values are ignored.
+     *
+     * @param match The match value to convert
+     * @return The resulting list of normalized strings
+     */
+    public static List<String> toNormalizedStrings(Object match) {
+        //Collect the strings
+        Set<String> strings = new LinkedHashSet<>();
+        if (match instanceof String) {
+            strings.add(((String) match).toLowerCase(Locale.ROOT));
+        } else if (match instanceof JSONArray) {
+            ((JSONArray) match).forEach(e -> {
+                if (e instanceof String) strings.add(((String) e).toLowerCase(Locale.ROOT));
+            });
+        }
+        return new ArrayList<>(strings);
+    }
+
+    /**
+     * Normalizes a given port of an attachment, which may be given either as number or as string, for comparisons.
+     * Numbers and numeric strings are converted to their canonical decimal representation, such that they are
+     * compared numerically, while other strings are converted to lowercase.
+     *
+     * @param port The port to normalize
+     * @return The normalized port or null, if no port is given
+     */
+    public static String normalizePort(Object port) {
+        //Check whether a port is given
+        if ((port == null) || JSONObject.NULL.equals(port) || port.toString().trim().isEmpty()) return null;
+
+        //Try to interpret the port as number
+        try {
+            return new BigDecimal(port.toString().trim()).stripTrailingZeros().toPlainString();
+        } catch (NumberFormatException e) {
+            return port.toString().toLowerCase(Locale.ROOT);
+        }
+    }
 }
@@ -0,0 +1,495 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.file;
+
+import de.ipvs.as.mbp.discovery_repository.service.repository.Projection;
+import de.ipvs.as.mbp.discovery_repository.service.repository.RepositoryClient;
+import de.ipvs.as.mbp.discovery_repository.service.repository.WriteConsistency;
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.IndexedRepositoryClient;
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.index.AttachmentIndex;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An implementation of the {@link RepositoryClient} interface that persists all documents in an append-only
+ * {@link LogFile} within a local directory, such that no external repository is required and the documents survive
+ * restarts of the application. Each written document is stored together with an excerpt that only consists of the
+ * fields which the in-memory indexes key on, which allows to rebuild the indexes at startup without decoding the
+ * full documents. Hence, the startup time grows with the size of these excerpts, which is dominated by the textual
+ * fields, rather than with the size of the documents. The documents themselves are decoded on demand from a memory
+ * mapping of the log file.
+ * <p>
+ * Incomplete records that are left behind by a crash are detected by their checksums and dropped at startup.
+ * Records that were superseded by later writes are removed by a background compaction, which rewrites the live
+ * records into a new log file as soon as they make up only a minor part of the log file. Writes with a
+ * {@link WriteConsistency} other than {@link WriteConsistency#FIRE_AND_FORGET} are forced to the storage
+ * device before they complete.
+ */
+public class FileRepositoryClient extends IndexedRepositoryClient {
+
+    //File extension of log files
+    private static final String LOG_FILE_EXTENSION = ".log";
+
+    //File extension of log files that are currently being compacted
+    private static final String COMPACTION_FILE_EXTENSION = ".log.compact";
+
+    //Minimum number of bytes of superseded records that trigger a compaction
+    private static final long COMPACTION_MIN_GARBAGE = 16 * 1024 * 1024;
+
+    //Minimum fraction of superseded records within the log file that trigger a compaction
+    private static final double COMPACTION_GARBAGE_RATIO = 0.5;
+
+    //Projection that extracts the fields from the documents which the indexes key on, and nothing else
+    private static final Projection INDEX_PROJECTION = new Projection(Arrays.asList("name", "keywords", "description",
+            "location.description", "location.coordinates", "capabilities.*.value",
+            "attachments." + AttachmentIndex.FIELD_TYPE, "attachments." + AttachmentIndex.FIELD_MODEL,
+            "attachments." + AttachmentIndex.FIELD_PORT, "attachments." + AttachmentIndex.FIELD_QUANTITY), Collections.emptyList());
+
+    //Directory in which the log files are stored
+    private final Path directory;
+
+    //Minimum number of bytes of superseded records that trigger a compaction
+    private final long compactionMinGarbage;
+
+    //Executor for the background compaction
+    private final ExecutorService compactionExecutor;
+
+    //Indicates whether a compaction is currently running
+    private final AtomicBoolean compacting = new AtomicBoolean(false);
+
+    //Map (document ID --> record) of the current records of all documents
+    private final Map<String, LogRecord> records = new HashMap<>();
+
+    //Log file that is currently used
+    private LogFile logFile;
+
+    //Path to the log file
+    private Path logFilePath;
+
+    //Total number of bytes of the current records
+    private long liveBytes = 0;
+
+    /**
+     * Creates and initializes the file-based client for a given directory.
+     *
+     * @param directory The directory in which the log files are supposed to be stored
+     */
+    public FileRepositoryClient(Path directory) {
+        this(directory, COMPACTION_MIN_GARBAGE);
+    }
+
+    /**
+     * Creates and initializes the file-based client for a given directory, using a given minimum number of bytes of
+     * superseded records that trigger a compaction.
+     *
+     * @param directory            The directory in which the log files are supposed to be stored
+     * @param compactionMinGarbage The minimum number of bytes of superseded records that trigger a compaction
+     */
+    FileRepositoryClient(Path directory, long compactionMinGarbage) {
+        //Sanity checks
+        if (directory == null) throw new IllegalArgumentException("The directory must not be null.");
+        if (compactionMinGarbage < 0) throw new IllegalArgumentException("The minimum garbage must not be negative.");
+
+        //Set fields
+        this.directory = directory;
+        this.compactionMinGarbage = compactionMinGarbage;
+
+        //Create executor for the background compaction
+        this.compactionExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "repository-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens the log file of the repository collection with a given name and rebuilds the indexes from its records.
+     * Since the repository is embedded, the remaining connection parameters are ignored.
+     *
+     * @param hostAddress    The host address of the repository (ignored)
+     * @param port           The port of the repository (ignored)
+     * @param username       The username to use (ignored)
+     * @param password       The password to use (ignored)
+     * @param collectionName The name of the repository collection, which is used as name of the log file
+     */
+    @Override
+    public void connect(String hostAddress, int port, String username, String password, String collectionName) {
+        //Sanity check
+        if ((collectionName == null) || collectionName.isEmpty()) {
+            throw new IllegalArgumentException("The collection name must not be null or empty.");
+        }
+
+        lock.writeLock().lock();
+        try {
+            //Close a previously opened log file
+            closeLogFile();
+
+            //Create the directory and remove the remains of an interrupted compaction
+            Files.createDirectories(directory);
+            Files.deleteIfExists(directory.resolve(collectionName + COMPACTION_FILE_EXTENSION));
+
+            //Open the log file and recover the documents from its records
+            this.logFilePath = directory.resolve(collectionName + LOG_FILE_EXTENSION);
+            this.logFile = new LogFile(logFilePath);
+            recover();
+        } catch (IOException e) {
+            handleException(e);
+            closeLogFile();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        //Compact the log file if it contains too many superseded records
+        compactIfNecessary();
+    }
+
+    /**
+     * Gracefully disconnects from the repository by closing the log file.
+     */
+    @Override
+    public void disconnect() {
+        lock.writeLock().lock();
+        try {
+            closeLogFile();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Disconnects and destroys the client such that all allocated resources are released.
+     */
+    @Override
+    public void close() {
+        //Stop the background compaction
+        compactionExecutor.shutdownNow();
+        try {
+            compactionExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        //Close the log file
+        disconnect();
+    }
+
+    /**
+     * Returns whether the log file of the repository is currently opened.
+     *
+     * @return True, if the log file is opened; false otherwise
+     */
+    @Override
+    public boolean isConnected() {
+        lock.readLock().lock();
+        try {
+            return this.logFile != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Appends records for a list of documents with given identifiers and sequence numbers to the log file. All
+     * records are written at once, such that either all or none of them are recovered after a crash.
+     *
+     * @param ids         The identifiers of the documents
+     * @param sequences   The sequence numbers of the documents
+     * @param documents   The documents to store
+     * @param consistency The consistency level to apply to the write
+     * @throws IOException In case the documents could not be stored
+     */
+    @Override
+    protected void storeDocuments(List<String> ids, List<Long> sequences, List<JSONObject> documents, WriteConsistency consistency) throws IOException {
+        //Encode the records
+        List<ByteBuffer> encodedRecords = new ArrayList<>(ids.size());
+        int totalLength = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            byte[] index = INDEX_PROJECTION.apply(documents.get(i)).toString().getBytes(StandardCharsets.UTF_8);
+            byte[] document = documents.get(i).toString().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer record = LogRecord.encode(LogRecord.TYPE_PUT, sequences.get(i), ids.get(i), index, document);
+            encodedRecords.add(record);
+            totalLength += record.remaining();
+        }
+
+        //Concatenate the records and append them to the log file
+        ByteBuffer buffer = ByteBuffer.allocate(totalLength);
+        encodedRecords.forEach(buffer::put);
+        List<LogRecord> appendedRecords = append(buffer.flip(), consistency);
+
+        //Replace the previous records of the documents
+        for (LogRecord record : appendedRecords) {
+            LogRecord previousRecord = this.records.put(record.getId(), record);
+            if (previousRecord != null) liveBytes -= previousRecord.getLength();
+            liveBytes += record.getLength();
+        }
+
+        //Compact the log file if it contains too many superseded records
+        compactIfNecessary();
+    }
+
+    /**
+     * Decodes the stored document with a given identifier from the log file.
+     *
+     * @param id The identifier of the document
+     * @return The document or null, if it does not exist or could not be read
+     */
+    @Override
+    protected JSONObject loadDocument(String id) {
+        //Get the current record of the document
+        LogRecord record = this.records.get(id);
+        if (record == null) return null;
+
+        try {
+            //Decode the document
+            return record.readDocument();
+        } catch (IOException e) {
+            handleException(e);
+            return null;
+        }
+    }
+
+    /**
+     * Appends a record to the log file that deletes the document with a given identifier.
+     *
+     * @param id          The identifier of the document
+     * @param consistency The consistency level to apply to the write
+     * @throws IOException In case the document could not be removed
+     */
+    @Override
+    protected void removeDocument(String id, WriteConsistency consistency) throws IOException {
+        //Append the record
+        append(LogRecord.encode(LogRecord.TYPE_DELETE, 0, id, new byte[0], new byte[0]), consistency);
+
+        //Remove the previous record of the document
+        LogRecord previousRecord = this.records.remove(id);
+        if (previousRecord != null) liveBytes -= previousRecord.getLength();
+
+        //Compact the log file if it contains too many superseded records
+        compactIfNecessary();
+    }
+
+    /**
+     * Appends a record to the log file that deletes all documents.
+     *
+     * @throws IOException In case the documents could not be removed
+     */
+    @Override
+    protected void clearDocuments() throws IOException {
+        //Append the record
+        append(LogRecord.encode(LogRecord.TYPE_CLEAR, 0, "", new byte[0], new byte[0]), WriteConsistency.IMMEDIATE);
+
+        //Remove all records
+        this.records.clear();
+        liveBytes = 0;
+
+        //Compact the log file if it contains too many superseded records
+        compactIfNecessary();
+    }
+
+    /**
+     * Appends a given buffer of encoded records to the log file and returns the appended records.
+     *
+     * @param buffer      The buffer of encoded records
+     * @param consistency The consistency level to apply to the write
+     * @return The list of appended records
+     * @throws IOException In case the records could not be appended
+     */
+    private List<LogRecord> append(ByteBuffer buffer, WriteConsistency consistency) throws IOException {
+        //Check whether the log file is opened
+        if (this.logFile == null) throw new IOException("The repository is not connected.");
+
+        //Append the records
+        List<LogRecord> appendedRecords = logFile.append(buffer);
+
+        //Persist the records if requested
+        if (consistency != WriteConsistency.FIRE_AND_FORGET) logFile.force();
+        return appendedRecords;
+    }
+
+    /**
+     * Rebuilds the records and indexes from the log file, dropping incomplete records at its end.
+     *
+     * @throws IOException In case the log file could not be read
+     */
+    private void recover() throws IOException {
+        //Start with an empty repository
+        this.records.clear();
+        this.liveBytes = 0;
+        unregisterAllDocuments();
+
+        //Replay all valid records
+        long end = logFile.scan(0, record -> {
+            //Check the type of the record
+            if (record.getType() == LogRecord.TYPE_CLEAR) {
+                this.records.clear();
+                this.liveBytes = 0;
+                unregisterAllDocuments();
+                return;
+            }
+
+            //Remove the previous record of the document
+            LogRecord previousRecord = this.records.remove(record.getId());
+            if (previousRecord != null) {
+                unregisterDocument(previousRecord.getId(), previousRecord.readIndex());
+                liveBytes -= previousRecord.getLength();
+            }
+
+            //Register the document
+            if (record.getType() == LogRecord.TYPE_PUT) {
+                restoreDocument(record.getId(), record.getSequence(), record.readIndex());
+                this.records.put(record.getId(), record);
+                liveBytes += record.getLength();
+            }
+        });
+
+        //Drop incomplete records
+        if (end < logFile.size()) logFile.truncate(end);
+    }
+
+    /**
+     * Starts a background compaction of the log file, in case it contains too many superseded records and no
+     * compaction is already running.
+     */
+    private void compactIfNecessary() {
+        lock.readLock().lock();
+        try {
+            //Check whether the log file is opened
+            if (this.logFile == null) return;
+
+            //Check whether compaction is necessary
+            long garbage = logFile.size() - liveBytes;
+            if ((garbage < compactionMinGarbage) || (garbage < logFile.size() * COMPACTION_GARBAGE_RATIO)) return;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        //Start the compaction if not already running
+        if (compacting.compareAndSet(false, true)) {
+            try {
+                compactionExecutor.execute(() -> {
+                    try {
+                        compact();
+                    } finally {
+                        compacting.set(false);
+                    }
+                });
+            } catch (RuntimeException e) {
+                compacting.set(false);
+            }
+        }
+    }
+
+    /**
+     * Compacts the log file by copying the current records into a new log file, which replaces the existing one.
+     * The records are copied without holding the lock, while records that are appended in the meantime are
+     * transferred afterwards, such that writes are only blocked for a short time.
+     */
+    private void compact() {
+        LogFile source;
+        Path sourcePath;
+        long sourceEnd;
+        List<LogRecord> liveRecords;
+
+        //Take a snapshot of the current records
+        lock.readLock().lock();
+        try {
+            if (this.logFile == null) return;
+            source = this.logFile;
+            sourcePath = this.logFilePath;
+            sourceEnd = source.size();
+            liveRecords = new ArrayList<>(this.records.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        //Determine the path of the new log file
+        String fileName = sourcePath.getFileName().toString();
+        Path targetPath = sourcePath.resolveSibling(fileName.substring(0, fileName.length() - LOG_FILE_EXTENSION.length()) + COMPACTION_FILE_EXTENSION);
+
+        LogFile target = null;
+        try {
+            //Copy the records of the snapshot in their original order
+            Files.deleteIfExists(targetPath);
+            target = new LogFile(targetPath);
+            liveRecords.sort(Comparator.comparingLong(LogRecord::getOffset));
+            for (LogRecord record : liveRecords) {
+                if (Thread.currentThread().isInterrupted()) throw new IOException("The compaction was interrupted.");
+                target.transferFrom(source, record.getOffset(), record.getLength());
+            }
+
+            //Decode the copied records
+            Map<String, LogRecord> compactedRecords = new HashMap<>();
+            target.scan(0, record -> compactedRecords.put(record.getId(), record));
+
+            lock.writeLock().lock();
+            try {
+                //Check whether the log file was closed or replaced in the meantime
+                if (this.logFile != source) throw new IOException("The log file was closed during compaction.");
+
+                //Transfer and apply the records that were appended in the meantime
+                long tailOffset = target.size();
+                target.transferFrom(source, sourceEnd, source.size() - sourceEnd);
+                target.scan(tailOffset, record -> {
+                    if (record.getType() == LogRecord.TYPE_CLEAR) compactedRecords.clear();
+                    else if (record.getType() == LogRecord.TYPE_DELETE) compactedRecords.remove(record.getId());
+                    else compactedRecords.put(record.getId(), record);
+                });
+
+                //Persist the new log file and replace the existing one
+                target.force();
+                Files.move(targetPath, sourcePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                source.close();
+                this.logFile = target;
+                target = null;
+
+                //Replace the records
+                this.records.clear();
+                this.records.putAll(compactedRecords);
+                this.liveBytes = compactedRecords.values().stream().mapToLong(LogRecord::getLength).sum();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException e) {
+            //Discard the new log file
+            if (target != null) {
+                try {
+                    target.close();
+                    Files.deleteIfExists(targetPath);
+                } catch (IOException ignored) {
+                }
+            }
+
+            //Only report the exception if the compaction was not aborted on purpose
+            if (!Thread.currentThread().isInterrupted()) handleException(e);
+        }
+    }
+
+    /**
+     * Closes the current log file, if it is opened. This method must be called while holding the write lock.
+     */
+    private void closeLogFile() {
+        //Check whether the log file is opened
+        if (this.logFile == null) return;
+
+        try {
+            //Close the log file
+            this.logFile.close();
+        } catch (IOException e) {
+            handleException(e);
+        } finally {
+            this.logFile = null;
+            this.records.clear();
+            this.liveBytes = 0;
+            unregisterAllDocuments();
+        }
+    }
+}
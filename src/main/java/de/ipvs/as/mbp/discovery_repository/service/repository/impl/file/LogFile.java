@@ -0,0 +1,322 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.file;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log file that stores {@link LogRecord}s. Records are appended through a {@link FileChannel}, while
+ * they are read through a memory mapping of the file, such that the contents of records can be decoded directly
+ * from the page cache of the operating system without copying them into intermediate buffers. Since the mapping
+ * is limited to {@link Integer#MAX_VALUE} bytes, the size of a log file is limited accordingly.
+ * <p>
+ * Each record is stored in the following binary format (big endian):
+ * <pre>
+ * int    length of the record, excluding this field and the checksum
+ * int    CRC32 checksum over the remaining fields
+ * byte   type of the record
+ * long   sequence number of the document
+ * short  length of the document identifier, followed by the UTF-8 encoded identifier
+ * int    length of the index excerpt, followed by the UTF-8 encoded JSON index excerpt
+ * int    length of the document, followed by the UTF-8 encoded JSON document
+ * </pre>
+ * Objects of this class are not thread-safe with respect to writes, which must be synchronized externally.
+ * Reads may be performed concurrently.
+ */
+class LogFile implements AutoCloseable {
+
+    //Size of the length and checksum fields that precede each record
+    static final int RECORD_PREFIX_SIZE = 8;
+
+    //Minimum size of the remaining fields of a record
+    private static final int RECORD_MIN_LENGTH = 1 + 8 + 2 + 4 + 4;
+
+    //Maximum size of a log file
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+
+    //Number of bytes that may be appended before the memory mapping is renewed for reading them
+    private static final long REMAP_THRESHOLD = 4 * 1024 * 1024;
+
+    //Path to the log file
+    private final Path path;
+
+    //Channel for reading and writing the log file
+    private final FileChannel channel;
+
+    //Current size of the log file
+    private volatile long size;
+
+    //Memory mapping of the log file for reading records
+    private volatile MappedByteBuffer mapping;
+
+    /**
+     * Opens the log file at a given path, which is created in case it does not exist yet.
+     *
+     * @param path The path to the log file
+     * @throws IOException In case the log file could not be opened
+     */
+    LogFile(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.size = channel.size();
+    }
+
+    /**
+     * Scans the records of the log file, starting at a given offset, and passes each valid record to a given
+     * {@link RecordVisitor}. The scan stops at the end of the file or at the first record that is incomplete or
+     * whose checksum does not match, as it is left behind when the application crashes during a write.
+     *
+     * @param offset  The offset of the first record to scan
+     * @param visitor The visitor to pass the records to
+     * @return The offset behind the last valid record
+     * @throws IOException In case the log file could not be read
+     */
+    long scan(long offset, RecordVisitor visitor) throws IOException {
+        ByteBuffer buffer = map();
+        CRC32 crc = new CRC32();
+
+        //Iterate over the records
+        while (offset + RECORD_PREFIX_SIZE <= size) {
+            //Read length and checksum of the record
+            int length = buffer.getInt((int) offset);
+            int checksum = buffer.getInt((int) offset + 4);
+            long dataOffset = offset + RECORD_PREFIX_SIZE;
+
+            //Check whether the record is complete
+            if ((length < RECORD_MIN_LENGTH) || (dataOffset + length > size)) break;
+
+            //Verify the checksum of the record
+            ByteBuffer data = slice(buffer, dataOffset, length);
+            crc.reset();
+            crc.update(data);
+            if ((int) crc.getValue() != checksum) break;
+
+            //Decode the fields of the record
+            LogRecord record = LogRecord.decode(this, offset, slice(buffer, dataOffset, length));
+            if (record == null) break;
+
+            //Pass the record to the visitor
+            visitor.visit(record);
+            offset = dataOffset + length;
+        }
+        return offset;
+    }
+
+    /**
+     * Appends a given buffer of one or multiple encoded records to the log file with a single write and returns
+     * the appended records.
+     *
+     * @param records The encoded records, as created by {@link LogRecord#encode(byte, long, String, byte[], byte[])}
+     * @return The list of appended records
+     * @throws IOException In case the records could not be written
+     */
+    List<LogRecord> append(ByteBuffer records) throws IOException {
+        //Check whether the records fit into the log file
+        long offset = size;
+        if (offset + records.remaining() > MAX_FILE_SIZE) {
+            throw new IOException("The log file " + path + " exceeds the maximum size.");
+        }
+
+        //Decode the records from the buffer
+        List<LogRecord> appendedRecords = new ArrayList<>();
+        ByteBuffer buffer = records.slice();
+        while (buffer.hasRemaining()) {
+            int length = buffer.getInt(buffer.position());
+            int dataOffset = buffer.position() + RECORD_PREFIX_SIZE;
+            appendedRecords.add(LogRecord.decode(this, offset + buffer.position(), slice(buffer, dataOffset, length)));
+            buffer.position(dataOffset + length);
+        }
+
+        //Write the records
+        long position = offset;
+        while (records.hasRemaining()) {
+            position += channel.write(records, position);
+        }
+
+        //Update the size
+        size = position;
+        return appendedRecords;
+    }
+
+    /**
+     * Appends a region of another log file to this log file without copying it through the memory of the
+     * application and returns the offset at which it was written.
+     *
+     * @param source The log file to copy from
+     * @param offset The offset of the region within the source log file
+     * @param length The length of the region
+     * @return The offset of the region within this log file
+     * @throws IOException In case the region could not be copied
+     */
+    long transferFrom(LogFile source, long offset, long length) throws IOException {
+        //Check whether the region fits into the log file
+        long position = size;
+        if (position + length > MAX_FILE_SIZE) {
+            throw new IOException("The log file " + path + " exceeds the maximum size.");
+        }
+
+        //Copy the region
+        long transferred = 0;
+        while (transferred < length) {
+            long count = channel.transferFrom(source.channel.position(offset + transferred), position + transferred, length - transferred);
+            if (count <= 0) throw new IOException("Failed to copy the region of the log file " + source.path + ".");
+            transferred += count;
+        }
+
+        //Update the size and return the offset of the region
+        size = position + length;
+        return position;
+    }
+
+    /**
+     * Decodes a UTF-8 encoded string that is stored in a given region of the log file.
+     *
+     * @param offset The offset of the region
+     * @param length The length of the region
+     * @return The decoded string
+     * @throws IOException In case the log file could not be read
+     */
+    String readString(long offset, int length) throws IOException {
+        return StandardCharsets.UTF_8.decode(region(offset, length)).toString();
+    }
+
+    /**
+     * Forces all written records to be persisted on the storage device.
+     *
+     * @throws IOException In case the records could not be persisted
+     */
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Truncates the log file to a given size, dropping all records behind it.
+     *
+     * @param newSize The new size of the log file
+     * @throws IOException In case the log file could not be truncated
+     */
+    void truncate(long newSize) throws IOException {
+        channel.truncate(newSize);
+        size = newSize;
+        mapping = null;
+    }
+
+    /**
+     * Returns the current size of the log file.
+     *
+     * @return The size in bytes
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Returns the path to the log file.
+     *
+     * @return The path
+     */
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Closes the log file.
+     *
+     * @throws IOException In case the log file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        mapping = null;
+        channel.close();
+    }
+
+    /**
+     * Returns a buffer for a given region of the log file. Regions that are covered by the memory mapping are
+     * returned as view on the mapping. Regions that were only appended recently are read directly from the file
+     * instead, such that the mapping is not renewed after every write.
+     *
+     * @param offset The offset of the region
+     * @param length The length of the region
+     * @return The buffer for the region
+     * @throws IOException In case the log file could not be read
+     */
+    private ByteBuffer region(long offset, int length) throws IOException {
+        //Check whether the region is covered by the current mapping
+        MappedByteBuffer currentMapping = mapping;
+        if ((currentMapping != null) && (offset + length <= currentMapping.capacity())) {
+            return slice(currentMapping, offset, length);
+        }
+
+        //Renew the mapping if a considerable part of the file is not covered
+        if ((currentMapping == null) || (size - currentMapping.capacity() >= REMAP_THRESHOLD)) {
+            return slice(map(), offset, length);
+        }
+
+        //Read the region from the file
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of the log file " + path + ".");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Returns a memory mapping that covers the current size of the log file. The mapping is only renewed if records
+     * were appended since it was created.
+     *
+     * @return The memory mapping
+     * @throws IOException In case the log file could not be mapped
+     */
+    private ByteBuffer map() throws IOException {
+        //Check whether the current mapping covers the file
+        MappedByteBuffer currentMapping = mapping;
+        long currentSize = size;
+        if ((currentMapping != null) && (currentMapping.capacity() >= currentSize)) return currentMapping;
+
+        synchronized (this) {
+            //Check again, as another thread may have renewed the mapping
+            if ((mapping == null) || (mapping.capacity() < currentSize)) {
+                mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, currentSize);
+            }
+            return mapping;
+        }
+    }
+
+    /**
+     * Creates an independent view on a region of a given buffer.
+     *
+     * @param buffer The buffer
+     * @param offset The offset of the region
+     * @param length The length of the region
+     * @return The view on the region
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, long offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit((int) offset + length).position((int) offset);
+        return view.slice();
+    }
+
+    /**
+     * Visitor that is called for each record during a scan of the log file.
+     */
+    @FunctionalInterface
+    interface RecordVisitor {
+        /**
+         * Visits a given record.
+         *
+         * @param record The record
+         * @throws IOException In case the record could not be processed
+         */
+        void visit(LogRecord record) throws IOException;
+    }
+}
@@ -0,0 +1,199 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.file;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * A record of a {@link LogFile} that describes a single change of the repository. Records of type {@link #TYPE_PUT}
+ * carry a document together with an excerpt of it that contains only the indexed fields, such that the indexes can be
+ * rebuilt after a restart without decoding the full documents. Records only reference the regions of the log file
+ * that hold their contents, which are decoded on demand.
+ */
+class LogRecord {
+
+    //Type of records that store a new version of a document
+    static final byte TYPE_PUT = 1;
+
+    //Type of records that delete a document
+    static final byte TYPE_DELETE = 2;
+
+    //Type of records that delete all documents
+    static final byte TYPE_CLEAR = 3;
+
+    //Log file that contains the record
+    private final LogFile logFile;
+
+    //Offset and total length of the record within the log file
+    private final long offset;
+    private final int length;
+
+    //Fields of the record
+    private final byte type;
+    private final long sequence;
+    private final String id;
+
+    //Offsets and lengths of the index excerpt and the document within the log file
+    private final long indexOffset;
+    private final int indexLength;
+    private final long documentOffset;
+    private final int documentLength;
+
+    /**
+     * Creates a new log record.
+     */
+    private LogRecord(LogFile logFile, long offset, int length, byte type, long sequence, String id,
+                      long indexOffset, int indexLength, long documentOffset, int documentLength) {
+        this.logFile = logFile;
+        this.offset = offset;
+        this.length = length;
+        this.type = type;
+        this.sequence = sequence;
+        this.id = id;
+        this.indexOffset = indexOffset;
+        this.indexLength = indexLength;
+        this.documentOffset = documentOffset;
+        this.documentLength = documentLength;
+    }
+
+    /**
+     * Encodes a record from given fields into a buffer that can be appended to a {@link LogFile}.
+     *
+     * @param type     The type of the record
+     * @param sequence The sequence number of the document
+     * @param id       The identifier of the document
+     * @param index    The UTF-8 encoded index excerpt of the document
+     * @param document The UTF-8 encoded document
+     * @return The buffer containing the encoded record
+     */
+    static ByteBuffer encode(byte type, long sequence, String id, byte[] index, byte[] document) {
+        //Encode the identifier
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+
+        //Allocate the buffer and skip the length and checksum fields
+        int length = 1 + 8 + 2 + idBytes.length + 4 + index.length + 4 + document.length;
+        ByteBuffer buffer = ByteBuffer.allocate(LogFile.RECORD_PREFIX_SIZE + length);
+        buffer.position(LogFile.RECORD_PREFIX_SIZE);
+
+        //Write the fields
+        buffer.put(type).putLong(sequence);
+        buffer.putShort((short) idBytes.length).put(idBytes);
+        buffer.putInt(index.length).put(index);
+        buffer.putInt(document.length).put(document);
+
+        //Calculate the checksum over the fields
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), LogFile.RECORD_PREFIX_SIZE, length);
+
+        //Write the length and checksum fields
+        buffer.putInt(0, length).putInt(4, (int) crc.getValue());
+        return buffer.rewind();
+    }
+
+    /**
+     * Decodes a record from a given buffer that contains the fields of the record, as read from a {@link LogFile}.
+     *
+     * @param logFile The log file that contains the record
+     * @param offset  The offset of the record within the log file
+     * @param data    The buffer containing the fields of the record
+     * @return The decoded record or null, if the fields are malformed
+     */
+    static LogRecord decode(LogFile logFile, long offset, ByteBuffer data) {
+        int length = LogFile.RECORD_PREFIX_SIZE + data.remaining();
+        long dataOffset = offset + LogFile.RECORD_PREFIX_SIZE;
+
+        //Read the type and the sequence number
+        byte type = data.get();
+        long sequence = data.getLong();
+        if ((type < TYPE_PUT) || (type > TYPE_CLEAR)) return null;
+
+        //Read the identifier
+        int idLength = data.getShort() & 0xFFFF;
+        if (idLength > data.remaining() - 8) return null;
+        ByteBuffer idBytes = data.slice();
+        idBytes.limit(idLength);
+        String id = StandardCharsets.UTF_8.decode(idBytes).toString();
+        data.position(data.position() + idLength);
+
+        //Read the location of the index excerpt
+        int indexLength = data.getInt();
+        if ((indexLength < 0) || (indexLength > data.remaining() - 4)) return null;
+        long indexOffset = dataOffset + data.position();
+        data.position(data.position() + indexLength);
+
+        //Read the location of the document
+        int documentLength = data.getInt();
+        if (documentLength != data.remaining()) return null;
+        long documentOffset = dataOffset + data.position();
+
+        return new LogRecord(logFile, offset, length, type, sequence, id, indexOffset, indexLength, documentOffset, documentLength);
+    }
+
+    /**
+     * Decodes and returns the index excerpt of the document.
+     *
+     * @return The index excerpt
+     * @throws IOException In case the log file could not be read
+     */
+    JSONObject readIndex() throws IOException {
+        return new JSONObject(logFile.readString(indexOffset, indexLength));
+    }
+
+    /**
+     * Decodes and returns the document.
+     *
+     * @return The document
+     * @throws IOException In case the log file could not be read
+     */
+    JSONObject readDocument() throws IOException {
+        return new JSONObject(logFile.readString(documentOffset, documentLength));
+    }
+
+    /**
+     * Returns the offset of the record within the log file.
+     *
+     * @return The offset
+     */
+    long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the total length of the record within the log file.
+     *
+     * @return The length in bytes
+     */
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the type of the record.
+     *
+     * @return The type
+     */
+    byte getType() {
+        return type;
+    }
+
+    /**
+     * Returns the sequence number of the document.
+     *
+     * @return The sequence number
+     */
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the identifier of the document.
+     *
+     * @return The identifier
+     */
+    String getId() {
+        return id;
+    }
+}
@@ -0,0 +1,176 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory;
+
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.index.AttachmentIndex;
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.index.CapabilityIndex;
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.index.GeoGridIndex;
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.index.KeywordIndex;
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.index.TextIndex;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.function.Consumer;
+
+/**
+ * Bundles the indexes that are maintained by the {@link IndexedRepositoryClient} for the fields of the device
+ * descriptions: keyword indexes for the name, the keywords and the location description, a text index for the
+ * description, a geo grid index for the location coordinates, a typed index for the capabilities and an index for
+ * the attachments. Objects of this class
+ * are not thread-safe, such that access must be synchronized externally.
+ */
+public class DocumentIndex {
+    //Indexes for the individual fields
+    private final KeywordIndex nameIndex = new KeywordIndex();
+    private final KeywordIndex keywordsIndex = new KeywordIndex();
+    private final KeywordIndex locationDescriptionIndex = new KeywordIndex();
+    private final TextIndex descriptionIndex = new TextIndex();
+    private final GeoGridIndex coordinatesIndex = new GeoGridIndex();
+    private final CapabilityIndex capabilityIndex = new CapabilityIndex();
+    private final AttachmentIndex attachmentIndex = new AttachmentIndex();
+
+    /**
+     * Creates a new, empty {@link DocumentIndex}.
+     */
+    public DocumentIndex() {
+
+    }
+
+    /**
+     * Adds a given document with a given identifier to all indexes.
+     *
+     * @param id       The identifier of the document
+     * @param document The document to add
+     */
+    public void add(String id, JSONObject document) {
+        //Index the name, the keywords and the description
+        forEachString(document.opt("name"), v -> nameIndex.add(id, v));
+        forEachString(document.opt("keywords"), v -> keywordsIndex.add(id, v));
+        forEachString(document.opt("description"), v -> descriptionIndex.add(id, v));
+
+        //Index the location
+        JSONObject location = document.optJSONObject("location");
+        if (location != null) {
+            forEachString(location.opt("description"), v -> locationDescriptionIndex.add(id, v));
+            coordinatesIndex.add(id, location.opt("coordinates"));
+        }
+
+        //Index the capabilities and the attachments
+        capabilityIndex.add(id, document.optJSONObject("capabilities"));
+        attachmentIndex.add(id, document.optJSONArray("attachments"));
+    }
+
+    /**
+     * Removes a given document with a given identifier from all indexes.
+     *
+     * @param id       The identifier of the document
+     * @param document The document to remove, as it was added before
+     */
+    public void remove(String id, JSONObject document) {
+        //Remove the name, the keywords and the description
+        forEachString(document.opt("name"), v -> nameIndex.remove(id, v));
+        forEachString(document.opt("keywords"), v -> keywordsIndex.remove(id, v));
+        forEachString(document.opt("description"), v -> descriptionIndex.remove(id, v));
+
+        //Remove the location
+        JSONObject location = document.optJSONObject("location");
+        if (location != null) {
+            forEachString(location.opt("description"), v -> locationDescriptionIndex.remove(id, v));
+        }
+        coordinatesIndex.remove(id);
+
+        //Remove the capabilities and the attachments
+        capabilityIndex.remove(id, document.optJSONObject("capabilities"));
+        attachmentIndex.remove(id, document.optJSONArray("attachments"));
+    }
+
+    /**
+     * Removes all documents from all indexes.
+     */
+    public void clear() {
+        nameIndex.clear();
+        keywordsIndex.clear();
+        locationDescriptionIndex.clear();
+        descriptionIndex.clear();
+        coordinatesIndex.clear();
+        capabilityIndex.clear();
+        attachmentIndex.clear();
+    }
+
+    /**
+     * Returns the keyword index for the names of the documents.
+     *
+     * @return The name index
+     */
+    public KeywordIndex getNameIndex() {
+        return nameIndex;
+    }
+
+    /**
+     * Returns the keyword index for the keywords of the documents.
+     *
+     * @return The keywords index
+     */
+    public KeywordIndex getKeywordsIndex() {
+        return keywordsIndex;
+    }
+
+    /**
+     * Returns the keyword index for the location descriptions of the documents.
+     *
+     * @return The location description index
+     */
+    public KeywordIndex getLocationDescriptionIndex() {
+        return locationDescriptionIndex;
+    }
+
+    /**
+     * Returns the text index for the descriptions of the documents.
+     *
+     * @return The description index
+     */
+    public TextIndex getDescriptionIndex() {
+        return descriptionIndex;
+    }
+
+    /**
+     * Returns the geo grid index for the location coordinates of the documents.
+     *
+     * @return The coordinates index
+     */
+    public GeoGridIndex getCoordinatesIndex() {
+        return coordinatesIndex;
+    }
+
+    /**
+     * Returns the typed index for the capabilities of the documents.
+     *
+     * @return The capability index
+     */
+    public CapabilityIndex getCapabilityIndex() {
+        return capabilityIndex;
+    }
+
+    /**
+     * Returns the index for the attachments of the documents.
+     *
+     * @return The attachment index
+     */
+    public AttachmentIndex getAttachmentIndex() {
+        return attachmentIndex;
+    }
+
+    /**
+     * Calls a given consumer for a given value if it is a string or for each string element if it is an array.
+     *
+     * @param value    The value
+     * @param consumer The consumer to call
+     */
+    private static void forEachString(Object value, Consumer<String> consumer) {
+        if (value instanceof String) {
+            consumer.accept((String) value);
+        } else if (value instanceof JSONArray) {
+            ((JSONArray) value).forEach(e -> {
+                if (e instanceof String) consumer.accept((String) e);
+            });
+        }
+    }
+}
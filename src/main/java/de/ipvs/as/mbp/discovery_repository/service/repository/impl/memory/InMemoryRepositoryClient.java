@@ -0,0 +1,84 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory;
+
+import de.ipvs.as.mbp.discovery_repository.service.repository.RepositoryClient;
+import de.ipvs.as.mbp.discovery_repository.service.repository.WriteConsistency;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An implementation of the {@link RepositoryClient} interface that keeps all documents in the memory of the
+ * application, such that no external repository is required. Besides the documents themselves, the client maintains
+ * inverted indexes for the fields that are referenced by the requirements of queries, which are evaluated with the
+ * same semantics as for Elasticsearch. All writes are immediately visible, independent of the requested
+ * {@link WriteConsistency}. Since no I/O is involved, the asynchronous methods complete immediately.
+ */
+public class InMemoryRepositoryClient extends IndexedRepositoryClient {
+
+    //Map (document ID --> document) of all documents
+    private final Map<String, JSONObject> documents = new HashMap<>();
+
+    /**
+     * Creates and initializes the in-memory client.
+     */
+    public InMemoryRepositoryClient() {
+
+    }
+
+    /**
+     * Disconnects and destroys the client such that all allocated resources are released.
+     */
+    @Override
+    public void close() {
+        //Release all documents
+        clearRepository();
+    }
+
+    /**
+     * Stores a list of documents with given identifiers and sequence numbers in memory.
+     *
+     * @param ids         The identifiers of the documents
+     * @param sequences   The sequence numbers of the documents
+     * @param documents   The documents to store
+     * @param consistency The consistency level to apply to the write (ignored)
+     */
+    @Override
+    protected void storeDocuments(List<String> ids, List<Long> sequences, List<JSONObject> documents, WriteConsistency consistency) {
+        for (int i = 0; i < ids.size(); i++) {
+            this.documents.put(ids.get(i), documents.get(i));
+        }
+    }
+
+    /**
+     * Returns a copy of the stored document with a given identifier.
+     *
+     * @param id The identifier of the document
+     * @return The copy of the document or null, if it does not exist
+     */
+    @Override
+    protected JSONObject loadDocument(String id) {
+        JSONObject document = this.documents.get(id);
+        return document == null ? null : copy(document);
+    }
+
+    /**
+     * Removes the stored document with a given identifier from memory.
+     *
+     * @param id          The identifier of the document
+     * @param consistency The consistency level to apply to the write (ignored)
+     */
+    @Override
+    protected void removeDocument(String id, WriteConsistency consistency) {
+        this.documents.remove(id);
+    }
+
+    /**
+     * Removes all stored documents from memory.
+     */
+    @Override
+    protected void clearDocuments() {
+        this.documents.clear();
+    }
+}
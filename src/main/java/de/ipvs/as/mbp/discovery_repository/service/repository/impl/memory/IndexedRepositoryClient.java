@@ -0,0 +1,788 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory;
+
+import de.ipvs.as.mbp.discovery_repository.service.repository.*;
+import de.ipvs.as.mbp.discovery_repository.service.repository.handler.RepositoryExceptionHandler;
+import de.ipvs.as.mbp.discovery_repository.service.repository.planner.QueryPlan;
+import de.ipvs.as.mbp.discovery_repository.service.repository.planner.QueryPlanner;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Base class for implementations of the {@link RepositoryClient} interface that run embedded in the application and
+ * maintain inverted indexes in memory for the fields that are referenced by the requirements of queries, which are
+ * evaluated with the same semantics as for Elasticsearch. The storage of the documents themselves is left to the
+ * subclasses. All writes are immediately visible, independent of the requested {@link WriteConsistency}, and the
+ * asynchronous methods complete immediately.
+ */
+public abstract class IndexedRepositoryClient implements RepositoryClient {
+
+    //Number of documents that are returned per page by queries that do not specify a limit
+    private static final int QUERY_DEFAULT_LIMIT = 20;
+
+    //JSON key of the sequence number within continuation tokens
+    private static final String TOKEN_KEY_AFTER = "after";
+
+    //Map (document ID --> sequence number) of all documents
+    private final Map<String, Long> sequences = new HashMap<>();
+
+    //Map (sequence number --> document ID) that defines the order of the documents
+    private final NavigableMap<Long, String> documentOrder = new TreeMap<>();
+
+    //Indexes for the fields of the documents
+    private final DocumentIndex index = new DocumentIndex();
+
+    //Lock for synchronizing the access to the documents and indexes
+    protected final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    //Sequence number to assign to the next inserted document
+    private long nextSequence = 0;
+
+    //Map (query ID --> optimized requirements) of the queries that are registered for reverse matching
+    private final Map<String, JSONArray> registeredQueries = new ConcurrentHashMap<>();
+
+    //Exception handler to use for handling exceptions
+    private RepositoryExceptionHandler exceptionHandler;
+
+    /**
+     * Creates and initializes the client.
+     */
+    protected IndexedRepositoryClient() {
+
+    }
+
+    /**
+     * Establishes a connection to the repository. Since the repository is embedded, the connection parameters
+     * are ignored.
+     *
+     * @param hostAddress    The host address of the repository (ignored)
+     * @param port           The port of the repository (ignored)
+     * @param username       The username to use (ignored)
+     * @param password       The password to use (ignored)
+     * @param collectionName The name of the repository collection (ignored)
+     */
+    @Override
+    public void connect(String hostAddress, int port, String username, String password, String collectionName) {
+        //Nothing to connect to
+    }
+
+    /**
+     * Gracefully disconnects from the repository in case a connection was previously established.
+     */
+    @Override
+    public void disconnect() {
+        //Nothing to disconnect from
+    }
+
+    /**
+     * Disconnects and destroys the client such that all allocated resources are released.
+     */
+    @Override
+    public void close() {
+        //Nothing to release
+    }
+
+    /**
+     * Returns whether there is currently an active connection to the repository, which is always the case.
+     *
+     * @return Always true
+     */
+    @Override
+    public boolean isConnected() {
+        return true;
+    }
+
+    /**
+     * Inserts a document, given as {@link JSONObject}, into the repository and returns the identifier under which
+     * it was stored.
+     *
+     * @param document    The document to insert
+     * @param consistency The consistency level to apply to the write (ignored)
+     * @return The identifier under which the document was stored
+     */
+    @Override
+    public String insertDocument(JSONObject document, WriteConsistency consistency) {
+        return insertDocuments(Collections.singletonList(document), consistency).get(0);
+    }
+
+    /**
+     * Inserts a list of documents, given as {@link JSONObject}s, into the repository and returns the identifiers
+     * under which they were stored, ordered in the same way as the given list of documents.
+     *
+     * @param documents   The documents to insert
+     * @param consistency The consistency level to apply to the write (ignored)
+     * @return The list of identifiers under which the documents were stored
+     */
+    @Override
+    public List<String> insertDocuments(List<JSONObject> documents, WriteConsistency consistency) {
+        //Sanity check
+        if ((documents == null) || documents.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        //Copy the documents outside of the lock
+        List<JSONObject> copies = documents.stream().map(IndexedRepositoryClient::copy).collect(Collectors.toList());
+
+        //Create lists for the identifiers and sequence numbers
+        List<String> ids = new ArrayList<>(copies.size());
+        List<Long> newSequences = new ArrayList<>(copies.size());
+
+        lock.writeLock().lock();
+        try {
+            //Assign new identifiers and sequence numbers to the documents
+            for (int i = 0; i < copies.size(); i++) {
+                ids.add(UUID.randomUUID().toString());
+                newSequences.add(nextSequence++);
+            }
+
+            //Store the documents
+            storeDocuments(ids, newSequences, copies, consistency);
+
+            //Index the documents
+            for (int i = 0; i < copies.size(); i++) {
+                this.sequences.put(ids.get(i), newSequences.get(i));
+                this.documentOrder.put(newSequences.get(i), ids.get(i));
+                this.index.add(ids.get(i), copies.get(i));
+            }
+        } catch (IOException e) {
+            //Handle the exception, none of the documents was inserted
+            handleException(e);
+            return Collections.nCopies(copies.size(), null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        return ids;
+    }
+
+    /**
+     * Asynchronously inserts a document, given as {@link JSONObject}, into the repository. The returned
+     * {@link CompletableFuture} is already completed with the identifier under which the document was stored.
+     *
+     * @param document    The document to insert
+     * @param consistency The consistency level to apply to the write (ignored)
+     * @return The {@link CompletableFuture} of the identifier
+     */
+    @Override
+    public CompletableFuture<String> insertDocumentAsync(JSONObject document, WriteConsistency consistency) {
+        return CompletableFuture.completedFuture(insertDocument(document, consistency));
+    }
+
+    /**
+     * Asynchronously inserts a list of documents, given as {@link JSONObject}s, into the repository. The returned
+     * {@link CompletableFuture} is already completed with the list of identifiers under which the documents were
+     * stored.
+     *
+     * @param documents   The documents to insert
+     * @param consistency The consistency level to apply to the write (ignored)
+     * @return The {@link CompletableFuture} of the list of identifiers
+     */
+    @Override
+    public CompletableFuture<List<String>> insertDocumentsAsync(List<JSONObject> documents, WriteConsistency consistency) {
+        return CompletableFuture.completedFuture(insertDocuments(documents, consistency));
+    }
+
+    /**
+     * Retrieves the document from the repository that matches the given identifier as {@link JSONObject} or null
+     * if the document cannot be found.
+     *
+     * @param id The identifier of the document to retrieve
+     * @return The document as {@link JSONObject} or null
+     */
+    @Override
+    public JSONObject getDocument(String id) {
+        return getStoredDocument(id, Projection.NONE);
+    }
+
+    /**
+     * Asynchronously retrieves the document from the repository that matches the given identifier. The returned
+     * {@link CompletableFuture} is already completed with the document or with null if it cannot be found.
+     *
+     * @param id The identifier of the document to retrieve
+     * @return The {@link CompletableFuture} of the document
+     */
+    @Override
+    public CompletableFuture<JSONObject> getDocumentAsync(String id) {
+        return CompletableFuture.completedFuture(getDocument(id));
+    }
+
+    /**
+     * Updates a document with a certain identifier in the repository by merging a given document into it.
+     * As for partial updates in Elasticsearch, objects are merged recursively, while all other values are replaced.
+     *
+     * @param id          The identifier of the document that is supposed to be updated
+     * @param document    The updated document to use
+     * @param consistency The consistency level to apply to the write (ignored)
+     */
+    @Override
+    public void updateDocument(String id, JSONObject document, WriteConsistency consistency) {
+        lock.writeLock().lock();
+        try {
+            //Get the stored document
+            Long sequence = this.sequences.get(id);
+            JSONObject storedDocument = sequence == null ? null : loadDocument(id);
+            if (storedDocument == null) {
+                handleException(new NoSuchElementException("The document with ID " + id + " does not exist."));
+                return;
+            }
+
+            //Merge the update into a copy of the document, store it and re-index it
+            JSONObject updatedDocument = merge(copy(storedDocument), copy(document));
+            storeDocuments(Collections.singletonList(id), Collections.singletonList(sequence),
+                    Collections.singletonList(updatedDocument), consistency);
+            this.index.remove(id, storedDocument);
+            this.index.add(id, updatedDocument);
+        } catch (IOException e) {
+            handleException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Asynchronously updates a document with a certain identifier in the repository. The returned
+     * {@link CompletableFuture} is already completed.
+     *
+     * @param id          The identifier of the document that is supposed to be updated
+     * @param document    The updated document to use
+     * @param consistency The consistency level to apply to the write (ignored)
+     * @return The {@link CompletableFuture} of the update
+     */
+    @Override
+    public CompletableFuture<Void> updateDocumentAsync(String id, JSONObject document, WriteConsistency consistency) {
+        updateDocument(id, document, consistency);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Deletes a document, given by its identifier, from the repository.
+     *
+     * @param id          The identifier of the document to delete
+     * @param consistency The consistency level to apply to the write (ignored)
+     */
+    @Override
+    public void deleteDocument(String id, WriteConsistency consistency) {
+        lock.writeLock().lock();
+        try {
+            //Get the stored document
+            Long sequence = this.sequences.get(id);
+            JSONObject storedDocument = sequence == null ? null : loadDocument(id);
+            if (storedDocument == null) return;
+
+            //Remove the document and its index entries
+            removeDocument(id, consistency);
+            this.sequences.remove(id);
+            this.documentOrder.remove(sequence);
+            this.index.remove(id, storedDocument);
+        } catch (IOException e) {
+            handleException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Asynchronously deletes a document, given by its identifier, from the repository. The returned
+     * {@link CompletableFuture} is already completed.
+     *
+     * @param id          The identifier of the document to delete
+     * @param consistency The consistency level to apply to the write (ignored)
+     * @return The {@link CompletableFuture} of the deletion
+     */
+    @Override
+    public CompletableFuture<Void> deleteDocumentAsync(String id, WriteConsistency consistency) {
+        deleteDocument(id, consistency);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Clears the entire repository by deleting all of its documents.
+     */
+    @Override
+    public void clearRepository() {
+        lock.writeLock().lock();
+        try {
+            //Remove all documents and index entries
+            clearDocuments();
+            this.sequences.clear();
+            this.documentOrder.clear();
+            this.index.clear();
+        } catch (IOException e) {
+            handleException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Searches all documents in the repository for those that match a given {@link RepositoryQuery} and returns the
+     * requested page of matching documents as {@link QueryResult}. Since the requirements are only used as filters,
+     * the matching documents are returned in the order of their insertion. Continuation tokens refer to the position
+     * of the last returned document within this order, such that subsequent pages remain stable under concurrent
+     * writes.
+     *
+     * @param query The query to execute
+     * @return The resulting page of matching documents
+     * @throws IllegalArgumentException In case the continuation token of the query is invalid
+     */
+    @Override
+    public QueryResult query(RepositoryQuery query) {
+        //Determine the number of documents to retrieve and the position to continue after
+        int limit = query.getLimit() > 0 ? query.getLimit() : QUERY_DEFAULT_LIMIT;
+        long after = query.getContinuationToken() == null ? -1 : decodeContinuationToken(query.getContinuationToken());
+
+        //Optimize the requirements and check whether they can be satisfied at all
+        QueryPlan plan = QueryPlanner.plan(query.getRequirements());
+        if (plan.isUnsatisfiable()) {
+            return QueryResult.empty();
+        }
+
+        lock.readLock().lock();
+        try {
+            //Evaluate the requirements against the indexes
+            MatchResult matchResult = QueryMatcher.match(plan.getRequirements(), this.index);
+
+            //Determine the candidates in the order of the documents, starting after the given position
+            Iterator<Map.Entry<Long, String>> candidates;
+            if (matchResult.isFiltered()) {
+                candidates = matchResult.getFiltered().stream().filter(this.sequences::containsKey)
+                        .map(id -> (Map.Entry<Long, String>) new AbstractMap.SimpleImmutableEntry<>(this.sequences.get(id), id))
+                        .filter(e -> e.getKey() > after)
+                        .sorted(Map.Entry.comparingByKey())
+                        .iterator();
+            } else {
+                candidates = this.documentOrder.tailMap(after, false).entrySet().iterator();
+            }
+
+            //Collect the matching documents of the page
+            List<JSONObject> page = new ArrayList<>(limit);
+            long lastSequence = after;
+            while (candidates.hasNext()) {
+                Map.Entry<Long, String> candidate = candidates.next();
+                if (!matchResult.matches(candidate.getValue())) continue;
+
+                //Check if a further document exists beyond the page
+                if (page.size() == limit) {
+                    return new QueryResult(page, encodeContinuationToken(lastSequence));
+                }
+
+                //Add the projected document to the page
+                page.add(query.getProjection().apply(loadDocument(candidate.getValue())));
+                lastSequence = candidate.getKey();
+            }
+            return new QueryResult(page, null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Asynchronously searches all documents in the repository for those that match a given {@link RepositoryQuery}.
+     * The returned {@link CompletableFuture} is already completed with the requested page of matching documents.
+     *
+     * @param query The query to execute
+     * @return The {@link CompletableFuture} of the resulting page of matching documents
+     * @throws IllegalArgumentException In case the continuation token of the query is invalid
+     */
+    @Override
+    public CompletableFuture<QueryResult> queryAsync(RepositoryQuery query) {
+        return CompletableFuture.completedFuture(query(query));
+    }
+
+    /**
+     * Searches all documents in the repository for those that match each of a given list of
+     * {@link RepositoryQuery}s. Since the queries are evaluated in-process, they are executed one after another.
+     *
+     * @param queries The queries to execute
+     * @return The list of resulting pages of matching documents
+     * @throws IllegalArgumentException In case the continuation token of any of the queries is invalid
+     */
+    @Override
+    public List<QueryResult> multiQuery(List<RepositoryQuery> queries) {
+        return queries.stream().map(this::query).collect(Collectors.toList());
+    }
+
+    /**
+     * Registers a query, given by an identifier and a {@link JSONArray} of requirements, for the reverse matching
+     * of documents by {@link #percolate(List)}. If a query with the same identifier is already registered, it is
+     * replaced. Queries whose requirements are unsatisfiable are not registered, since they never match.
+     *
+     * @param queryId      The identifier of the query
+     * @param requirements The requirements of the query
+     */
+    @Override
+    public void registerQuery(String queryId, JSONArray requirements) {
+        //Optimize the requirements
+        QueryPlan plan = QueryPlanner.plan(requirements);
+
+        //Register or replace the query
+        if (plan.isUnsatisfiable()) {
+            this.registeredQueries.remove(queryId);
+        } else {
+            this.registeredQueries.put(queryId, plan.getRequirements());
+        }
+    }
+
+    /**
+     * Unregisters a query, given by its identifier, that was previously registered by
+     * {@link #registerQuery(String, JSONArray)}.
+     *
+     * @param queryId The identifier of the query
+     */
+    @Override
+    public void unregisterQuery(String queryId) {
+        this.registeredQueries.remove(queryId);
+    }
+
+    /**
+     * Determines the registered queries whose requirements are satisfied by at least one of the given documents
+     * and returns their identifiers. For this, the documents are indexed in a separate {@link DocumentIndex}, against
+     * which the requirements of the registered queries are evaluated.
+     *
+     * @param documents The documents to match against the registered queries
+     * @return The set of identifiers of the matching queries
+     */
+    @Override
+    public Set<String> percolate(List<JSONObject> documents) {
+        //Sanity check
+        if ((documents == null) || documents.isEmpty()) {
+            return new HashSet<>();
+        }
+
+        //Index the documents, using their positions as identifiers
+        DocumentIndex documentsIndex = new DocumentIndex();
+        for (int i = 0; i < documents.size(); i++) {
+            documentsIndex.add(String.valueOf(i), documents.get(i));
+        }
+
+        //Evaluate the requirements of all registered queries against the documents
+        Set<String> matchingQueryIds = new HashSet<>();
+        this.registeredQueries.forEach((queryId, requirements) -> {
+            MatchResult matchResult = QueryMatcher.match(requirements, documentsIndex);
+            for (int i = 0; i < documents.size(); i++) {
+                if (matchResult.matches(String.valueOf(i))) {
+                    matchingQueryIds.add(queryId);
+                    return;
+                }
+            }
+        });
+        return matchingQueryIds;
+    }
+
+    /**
+     * Compiles a given {@link JSONArray} of requirements to a {@link Predicate} that evaluates whether a single
+     * document satisfies the requirements in-process. Since the registered queries are already evaluated in-process
+     * by {@link #percolate(List)}, no separate predicates are provided.
+     *
+     * @param requirements The requirements to compile
+     * @return Always null
+     */
+    @Override
+    public Predicate<JSONObject> compileQuery(JSONArray requirements) {
+        return null;
+    }
+
+    /**
+     * Returns the total number of documents in the repository.
+     *
+     * @return The number of documents
+     */
+    @Override
+    public long getDocumentsCount() {
+        lock.readLock().lock();
+        try {
+            return this.sequences.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Asynchronously determines the total number of documents in the repository. The returned
+     * {@link CompletableFuture} is already completed with the number of documents.
+     *
+     * @return The {@link CompletableFuture} of the number of documents
+     */
+    @Override
+    public CompletableFuture<Long> getDocumentsCountAsync() {
+        return CompletableFuture.completedFuture(getDocumentsCount());
+    }
+
+    /**
+     * Returns a summary map (key name --> key data type) of all capabilities and their associated data types
+     * that occur in the documents of the repository.
+     *
+     * @return The map of occurring keys and their data types
+     */
+    @Override
+    public Map<String, String> getKeySummary() {
+        lock.readLock().lock();
+        try {
+            return this.index.getCapabilityIndex().getTypes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns all available documents from the repository as a map that contains the identifiers of the documents
+     * as well as their contents.
+     *
+     * @return The map (document ID --> document content) of all available documents
+     */
+    @Override
+    public Map<String, JSONObject> getAllDocuments() {
+        //Collect all documents from the stream into a map (document ID --> document content)
+        try (Stream<Map.Entry<String, JSONObject>> documents = streamAllDocuments()) {
+            return documents.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (d1, d2) -> d2, LinkedHashMap::new));
+        }
+    }
+
+    /**
+     * Returns a {@link Stream} over all available documents of the repository, consisting out of entries that
+     * contain the identifiers of the documents as well as their contents.
+     *
+     * @return The stream of entries (document ID --> document content) of all available documents
+     */
+    @Override
+    public Stream<Map.Entry<String, JSONObject>> streamAllDocuments() {
+        return streamAllDocuments(Projection.NONE);
+    }
+
+    /**
+     * Returns a {@link Stream} over all available documents of the repository to which a given {@link Projection}
+     * is applied. The stream iterates over the identifiers of the documents that existed when the stream was
+     * created and copies the documents lazily while the stream is consumed, skipping documents that were deleted
+     * in the meantime.
+     *
+     * @param projection The projection to apply to the documents
+     * @return The stream of entries (document ID --> projected document content) of all available documents
+     */
+    @Override
+    public Stream<Map.Entry<String, JSONObject>> streamAllDocuments(Projection projection) {
+        //Take a snapshot of the document IDs
+        List<String> ids;
+        lock.readLock().lock();
+        try {
+            ids = new ArrayList<>(this.documentOrder.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        //Retrieve the documents lazily
+        return ids.stream().map(id -> {
+            JSONObject document = getStoredDocument(id, projection);
+            return document == null ? null : (Map.Entry<String, JSONObject>) new AbstractMap.SimpleImmutableEntry<>(id, document);
+        }).filter(Objects::nonNull);
+    }
+
+    /**
+     * Sets the exception handler that is supposed to be used for handling exceptions that occur during the
+     * communication between the client and the repository.
+     *
+     * @param exceptionHandler The exception handler to set or null, if exceptions should not be handled
+     */
+    @Override
+    public void setExceptionHandler(RepositoryExceptionHandler exceptionHandler) {
+        this.exceptionHandler = exceptionHandler;
+    }
+
+    /**
+     * Returns the exception handler that is currently used for handling exceptions that occur during the
+     * communication between the client and the repository.
+     *
+     * @return The exception handler
+     */
+    @Override
+    public RepositoryExceptionHandler getExceptionHandler() {
+        return this.exceptionHandler;
+    }
+
+    /**
+     * Stores a list of documents with given identifiers and sequence numbers, replacing the documents that may
+     * already be stored under the identifiers. This method is called while holding the write lock.
+     *
+     * @param ids         The identifiers of the documents
+     * @param sequences   The sequence numbers of the documents
+     * @param documents   The documents to store, which are owned by the storage afterwards
+     * @param consistency The consistency level to apply to the write
+     * @throws IOException In case the documents could not be stored
+     */
+    protected abstract void storeDocuments(List<String> ids, List<Long> sequences, List<JSONObject> documents,
+                                           WriteConsistency consistency) throws IOException;
+
+    /**
+     * Loads the stored document with a given identifier. The returned document is owned by the caller and may
+     * be modified. This method is called while holding the read or write lock.
+     *
+     * @param id The identifier of the document
+     * @return The document or null, if it does not exist
+     */
+    protected abstract JSONObject loadDocument(String id);
+
+    /**
+     * Removes the stored document with a given identifier. This method is called while holding the write lock.
+     *
+     * @param id          The identifier of the document
+     * @param consistency The consistency level to apply to the write
+     * @throws IOException In case the document could not be removed
+     */
+    protected abstract void removeDocument(String id, WriteConsistency consistency) throws IOException;
+
+    /**
+     * Removes all stored documents. This method is called while holding the write lock.
+     *
+     * @throws IOException In case the documents could not be removed
+     */
+    protected abstract void clearDocuments() throws IOException;
+
+    /**
+     * Registers a document that is already contained in the storage, as for example after a restart, with a given
+     * identifier and sequence number. Only the fields of the document that are covered by the indexes are required.
+     * This method must be called while holding the write lock.
+     *
+     * @param id            The identifier of the document
+     * @param sequence      The sequence number of the document
+     * @param indexDocument The document or an excerpt of it that contains at least the indexed fields
+     */
+    protected void restoreDocument(String id, long sequence, JSONObject indexDocument) {
+        //Remove a previous version of the document
+        unregisterDocument(id, null);
+
+        //Register and index the document
+        this.sequences.put(id, sequence);
+        this.documentOrder.put(sequence, id);
+        this.index.add(id, indexDocument);
+        this.nextSequence = Math.max(this.nextSequence, sequence + 1);
+    }
+
+    /**
+     * Unregisters a document that was removed from the storage, as for example during the recovery after a restart.
+     * This method must be called while holding the write lock.
+     *
+     * @param id            The identifier of the document
+     * @param indexDocument The document or an excerpt of it that contains at least the indexed fields or null, if
+     *                      the document is supposed to be loaded from the storage
+     */
+    protected void unregisterDocument(String id, JSONObject indexDocument) {
+        //Get the sequence number of the document
+        Long sequence = this.sequences.remove(id);
+        if (sequence == null) return;
+
+        //Remove the document from the order and the indexes
+        this.documentOrder.remove(sequence);
+        JSONObject document = indexDocument == null ? loadDocument(id) : indexDocument;
+        if (document != null) this.index.remove(id, document);
+    }
+
+    /**
+     * Unregisters all documents, as for example during the recovery after a restart. This method must be called
+     * while holding the write lock.
+     */
+    protected void unregisterAllDocuments() {
+        this.sequences.clear();
+        this.documentOrder.clear();
+        this.index.clear();
+    }
+
+    /**
+     * Returns a projected copy of the stored document with a given identifier or null, if it does not exist.
+     *
+     * @param id         The identifier of the document
+     * @param projection The projection to apply
+     * @return The projected copy of the document or null
+     */
+    private JSONObject getStoredDocument(String id, Projection projection) {
+        lock.readLock().lock();
+        try {
+            return this.sequences.containsKey(id) ? projection.apply(loadDocument(id)) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Encodes a given sequence number to an opaque continuation token.
+     *
+     * @param sequence The sequence number of the last returned document
+     * @return The resulting continuation token
+     */
+    private static String encodeContinuationToken(long sequence) {
+        String tokenString = new JSONObject().put(TOKEN_KEY_AFTER, sequence).toString();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(tokenString.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a given continuation token to the sequence number of the last returned document.
+     *
+     * @param token The continuation token to decode
+     * @return The resulting sequence number
+     * @throws IllegalArgumentException In case the continuation token is invalid
+     */
+    private static long decodeContinuationToken(String token) {
+        try {
+            return new JSONObject(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)).getLong(TOKEN_KEY_AFTER);
+        } catch (IllegalArgumentException | JSONException e) {
+            throw new IllegalArgumentException("The continuation token is invalid.");
+        }
+    }
+
+    /**
+     * Merges a given update document recursively into a given target document.
+     *
+     * @param target The document to merge into
+     * @param update The update document to merge
+     * @return The target document
+     */
+    private static JSONObject merge(JSONObject target, JSONObject update) {
+        for (String key : update.keySet()) {
+            Object updateValue = update.get(key);
+            Object targetValue = target.opt(key);
+            if ((updateValue instanceof JSONObject) && (targetValue instanceof JSONObject)) {
+                merge((JSONObject) targetValue, (JSONObject) updateValue);
+            } else {
+                target.put(key, updateValue);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Creates a deep copy of a given document.
+     *
+     * @param document The document to copy
+     * @return The copy of the document
+     */
+    protected static JSONObject copy(JSONObject document) {
+        return new JSONObject(document.toString());
+    }
+
+    /**
+     * Handles a given exception by either calling the exception handler or printing information about the exception
+     * to the standard output.
+     *
+     * @param exception The exception to handle
+     */
+    protected void handleException(Exception exception) {
+        //Check if exception handler is set
+        if (this.exceptionHandler != null) {
+            //Call exception handler
+            this.exceptionHandler.handleException(exception);
+            return;
+        }
+
+        //No exception handler set, thus print to standard output
+        System.err.printf("%s: %s%n", exception.getClass().getSimpleName(), exception.getMessage());
+    }
+}
@@ -0,0 +1,79 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Collects the sets of document IDs that result from the individual requirements of a query, analogously to the
+ * filter and must_not clauses of a boolean query. A document matches if it is contained in all filter sets and in
+ * none of the must_not sets.
+ */
+public class MatchResult {
+    //Intersection of all filter sets, or null if no filter was added
+    private Set<String> filtered = null;
+
+    //Union of all must_not sets
+    private final Set<String> excluded = new HashSet<>();
+
+    /**
+     * Creates a new, unrestricted {@link MatchResult}.
+     */
+    public MatchResult() {
+
+    }
+
+    /**
+     * Restricts the result to the documents with the given identifiers.
+     *
+     * @param ids The identifiers of the documents that must match
+     * @return The {@link MatchResult}
+     */
+    public MatchResult filter(Set<String> ids) {
+        if (filtered == null) {
+            filtered = new HashSet<>(ids);
+        } else {
+            filtered.retainAll(ids);
+        }
+        return this;
+    }
+
+    /**
+     * Excludes the documents with the given identifiers from the result.
+     *
+     * @param ids The identifiers of the documents that must not match
+     * @return The {@link MatchResult}
+     */
+    public MatchResult mustNot(Set<String> ids) {
+        excluded.addAll(ids);
+        return this;
+    }
+
+    /**
+     * Returns whether the result is restricted by at least one filter. If this is not the case, all documents
+     * that are not excluded match.
+     *
+     * @return True, if the result is restricted; false otherwise
+     */
+    public boolean isFiltered() {
+        return filtered != null;
+    }
+
+    /**
+     * Returns the identifiers of the documents that passed all filters or null, if no filter was added.
+     *
+     * @return The set of filtered document IDs or null
+     */
+    public Set<String> getFiltered() {
+        return filtered;
+    }
+
+    /**
+     * Checks and returns whether a document with a given identifier matches.
+     *
+     * @param id The identifier of the document
+     * @return True, if the document matches; false otherwise
+     */
+    public boolean matches(String id) {
+        return ((filtered == null) || filtered.contains(id)) && !excluded.contains(id);
+    }
+}
@@ -0,0 +1,85 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory;
+
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.matchers.RequirementMatcher;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.reflections.Reflections;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class provides methods that allow to evaluate given {@link JSONArray}s of requirements against the indexes
+ * of a {@link DocumentIndex}, resulting in {@link MatchResult}s.
+ */
+public class QueryMatcher {
+
+    //Package in which the requirement matchers can be found
+    private static final String MATCHER_PACKAGE = "de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.matchers";
+
+    //Map (requirement type name --> matcher) for retrieving fitting matchers
+    private final static Map<String, RequirementMatcher> REQUIREMENT_MATCHERS = new HashMap<>();
+
+    static {
+        //Get all available requirement matcher classes
+        Reflections reflections = new Reflections(MATCHER_PACKAGE);
+        Set<Class<? extends RequirementMatcher>> matcherClasses = reflections.getSubTypesOf(RequirementMatcher.class);
+
+        //Iterate over all matcher classes
+        for (Class<? extends RequirementMatcher> matcherClass : matcherClasses) {
+            try {
+                //Create new instance of the requirement matcher
+                RequirementMatcher matcher = matcherClass.getDeclaredConstructor().newInstance();
+
+                //Add matcher to map, together with the requirement type for which it is responsible
+                REQUIREMENT_MATCHERS.put(matcher.getRequirementTypeName().toLowerCase(), matcher);
+            } catch (Exception ignore) {
+            }
+        }
+    }
+
+
+    /**
+     * Evaluates a given {@link JSONArray} of requirements against the indexes of a given {@link DocumentIndex}.
+     * Requirements of unknown types are ignored, as done by the query generation for Elasticsearch.
+     *
+     * @param requirements The requirements to evaluate
+     * @param index        The index to use
+     * @return The resulting {@link MatchResult}
+     */
+    public static MatchResult match(JSONArray requirements, DocumentIndex index) {
+        //Create unrestricted match result
+        MatchResult result = new MatchResult();
+
+        //Sanity check
+        if (requirements == null) {
+            return result;
+        }
+
+        //Iterate through all requirements
+        for (Object requirement : requirements) {
+            //Skip requirement if not a JSONObject
+            if (!(requirement instanceof JSONObject)) {
+                continue;
+            }
+
+            //Cast to JSONObject
+            JSONObject requirementJSON = (JSONObject) requirement;
+
+            //Get requirement type
+            String requirementType = requirementJSON.optString("type");
+
+            //Check for valid and known requirement type
+            if (!REQUIREMENT_MATCHERS.containsKey(requirementType)) {
+                continue;
+            }
+
+            //Get the fitting matcher and apply the requirement to the match result
+            REQUIREMENT_MATCHERS.get(requirementType).match(result, requirementJSON, index);
+        }
+
+        //Return the resulting match result
+        return result;
+    }
+}
@@ -0,0 +1,183 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.index;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Index for the attachments of device descriptions. Each attachment is identified by the identifier of its document
+ * and its position within the attachments array. The index maps the normalized values of the keyword fields of the
+ * attachments (type, model, port and the physical quantity of the observed or manipulated object) to the identifiers
+ * of the attachments containing them, such that constraints that must be satisfied by the same attachment can be
+ * evaluated. Numeric ports are normalized to their canonical decimal representation.
+ */
+public class AttachmentIndex {
+    //Paths of the fields of the attachments that are indexed as keywords
+    public static final String FIELD_TYPE = "type";
+    public static final String FIELD_MODEL = "model";
+    public static final String FIELD_PORT = "port";
+    public static final String FIELD_QUANTITY = "object.quantity";
+    private static final String[] KEYWORD_FIELDS = {FIELD_TYPE, FIELD_MODEL, FIELD_PORT, FIELD_QUANTITY};
+
+    //Maps (field --> normalized value --> attachment IDs) of the keyword fields
+    private final Map<String, Map<String, Set<String>>> values = new HashMap<>();
+
+    //Set of the identifiers of all attachments
+    private final Set<String> attachmentIds = new HashSet<>();
+
+    /**
+     * Creates a new, empty {@link AttachmentIndex}.
+     */
+    public AttachmentIndex() {
+
+    }
+
+    /**
+     * Adds the attachments of a document, given by its identifier, to the index.
+     *
+     * @param id          The identifier of the document
+     * @param attachments The attachments array of the document
+     */
+    public void add(String id, JSONArray attachments) {
+        //Null check
+        if (attachments == null) return;
+
+        //Iterate over all attachments
+        for (int i = 0; i < attachments.length(); i++) {
+            JSONObject attachment = attachments.optJSONObject(i);
+            if (attachment == null) continue;
+
+            //Add the keyword fields of the attachment
+            String attachmentId = attachmentId(id, i);
+            for (String field : KEYWORD_FIELDS) {
+                String value = getNormalizedValue(attachment, field);
+                if (value == null) continue;
+                values.computeIfAbsent(field, f -> new HashMap<>())
+                        .computeIfAbsent(value, v -> new HashSet<>()).add(attachmentId);
+            }
+            attachmentIds.add(attachmentId);
+        }
+    }
+
+    /**
+     * Removes the attachments of a document, given by its identifier, from the index.
+     *
+     * @param id          The identifier of the document
+     * @param attachments The attachments array of the document
+     */
+    public void remove(String id, JSONArray attachments) {
+        //Null check
+        if (attachments == null) return;
+
+        //Iterate over all attachments
+        for (int i = 0; i < attachments.length(); i++) {
+            JSONObject attachment = attachments.optJSONObject(i);
+            if (attachment == null) continue;
+
+            //Remove the keyword fields of the attachment
+            String attachmentId = attachmentId(id, i);
+            for (String field : KEYWORD_FIELDS) {
+                String value = getNormalizedValue(attachment, field);
+                if (value == null) continue;
+                Map<String, Set<String>> fieldValues = values.get(field);
+                if (fieldValues == null) continue;
+                Set<String> ids = fieldValues.get(value);
+                if (ids == null) continue;
+                ids.remove(attachmentId);
+                if (ids.isEmpty()) fieldValues.remove(value);
+            }
+            attachmentIds.remove(attachmentId);
+        }
+    }
+
+    /**
+     * Removes all attachments from the index.
+     */
+    public void clear() {
+        values.clear();
+        attachmentIds.clear();
+    }
+
+    /**
+     * Returns the identifiers of all documents that contain at least one attachment whose keyword fields equal the
+     * given values, ignoring the case and comparing numeric ports numerically.
+     *
+     * @param constraints The map (field path --> value) of the required values of the keyword fields
+     * @return The set of matching document IDs
+     */
+    public Set<String> find(Map<String, Object> constraints) {
+        //Intersect the attachments that match the individual constraints, starting with all attachments
+        Set<String> matchingIds = null;
+        for (Map.Entry<String, Object> constraint : constraints.entrySet()) {
+            String value = normalize(constraint.getKey(), constraint.getValue());
+            Set<String> ids = (value == null) ? Collections.emptySet() : values
+                    .getOrDefault(constraint.getKey(), Collections.emptyMap()).getOrDefault(value, Collections.emptySet());
+            if (matchingIds == null) {
+                matchingIds = new HashSet<>(ids);
+            } else {
+                matchingIds.retainAll(ids);
+            }
+        }
+        if (matchingIds == null) matchingIds = attachmentIds;
+
+        //Map the attachments to their documents
+        Set<String> result = new HashSet<>();
+        for (String attachmentId : matchingIds) {
+            result.add(attachmentId.substring(0, attachmentId.lastIndexOf('#')));
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the value of a keyword field, given by its path, from a given attachment and normalizes it.
+     *
+     * @param attachment The attachment
+     * @param field      The path of the field
+     * @return The normalized value or null, if the attachment does not contain the field
+     */
+    private static String getNormalizedValue(JSONObject attachment, String field) {
+        //Walk along the path
+        Object current = attachment;
+        for (String segment : field.split("\\.")) {
+            if (!(current instanceof JSONObject)) return null;
+            current = ((JSONObject) current).opt(segment);
+        }
+        return normalize(field, current);
+    }
+
+    /**
+     * Creates the identifier of the attachment at a given position within the document with a given identifier.
+     *
+     * @param id       The identifier of the document
+     * @param position The position of the attachment
+     * @return The identifier of the attachment
+     */
+    private static String attachmentId(String id, int position) {
+        return id + "#" + position;
+    }
+
+    /**
+     * Normalizes a given value of a given keyword field for comparisons. Ports that are numbers or numeric strings
+     * are converted to their canonical decimal representation, all other values are converted to lowercase.
+     *
+     * @param field The path of the field
+     * @param value The value to normalize
+     * @return The normalized value or null, if the value is empty
+     */
+    private static String normalize(String field, Object value) {
+        //Check whether a value is given
+        if ((value == null) || JSONObject.NULL.equals(value) || value.toString().trim().isEmpty()) return null;
+
+        //Interpret ports as numbers where possible
+        if (field.equals(FIELD_PORT)) {
+            try {
+                return new BigDecimal(value.toString().trim()).stripTrailingZeros().toPlainString();
+            } catch (NumberFormatException ignored) {
+                //Not numeric, thus compare as string
+            }
+        }
+        return value.toString().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,224 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.index;
+
+import org.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * Typed index for the capabilities of device descriptions. Similar to the dynamic mapping of Elasticsearch, the type
+ * of each capability is determined from the first value that is indexed for it, using the type names long, float,
+ * keyword and boolean. Numeric values are kept in sorted maps, such that range lookups are possible, while keyword
+ * and boolean values are kept in hash maps for exact lookups.
+ */
+public class CapabilityIndex {
+    //Type names of the capabilities
+    public static final String TYPE_LONG = "long";
+    public static final String TYPE_FLOAT = "float";
+    public static final String TYPE_KEYWORD = "keyword";
+    public static final String TYPE_BOOLEAN = "boolean";
+
+    //Map (capability name --> type name) of all known capabilities
+    private final Map<String, String> types = new HashMap<>();
+
+    //Maps (capability name --> value --> document IDs) for the different types of values
+    private final Map<String, NavigableMap<Double, Set<String>>> numericValues = new HashMap<>();
+    private final Map<String, Map<String, Set<String>>> keywordValues = new HashMap<>();
+    private final Map<String, Map<Boolean, Set<String>>> booleanValues = new HashMap<>();
+
+    /**
+     * Creates a new, empty {@link CapabilityIndex}.
+     */
+    public CapabilityIndex() {
+
+    }
+
+    /**
+     * Adds the capabilities of a document, given by its identifier, to the index.
+     *
+     * @param id           The identifier of the document
+     * @param capabilities The capabilities object of the document
+     */
+    public void add(String id, JSONObject capabilities) {
+        //Null check
+        if (capabilities == null) return;
+
+        //Iterate over all capabilities
+        for (String name : capabilities.keySet()) {
+            //Get the value of the capability
+            JSONObject capability = capabilities.optJSONObject(name);
+            if ((capability == null) || !capability.has("value")) continue;
+            Object value = capability.get("value");
+
+            //Determine the type of the value and register it if the capability is new
+            String type = typeOf(value);
+            if (type == null) continue;
+            types.putIfAbsent(name, type);
+
+            //Add the value to the map of its type
+            if (value instanceof Number) {
+                numericValues.computeIfAbsent(name, n -> new TreeMap<>())
+                        .computeIfAbsent(((Number) value).doubleValue(), v -> new HashSet<>()).add(id);
+            } else if (value instanceof Boolean) {
+                booleanValues.computeIfAbsent(name, n -> new HashMap<>())
+                        .computeIfAbsent((Boolean) value, v -> new HashSet<>()).add(id);
+            } else {
+                keywordValues.computeIfAbsent(name, n -> new HashMap<>())
+                        .computeIfAbsent((String) value, v -> new HashSet<>()).add(id);
+            }
+        }
+    }
+
+    /**
+     * Removes the capabilities of a document, given by its identifier, from the index. The types of the
+     * capabilities remain registered.
+     *
+     * @param id           The identifier of the document
+     * @param capabilities The capabilities object of the document
+     */
+    public void remove(String id, JSONObject capabilities) {
+        //Null check
+        if (capabilities == null) return;
+
+        //Iterate over all capabilities
+        for (String name : capabilities.keySet()) {
+            //Get the value of the capability
+            JSONObject capability = capabilities.optJSONObject(name);
+            if ((capability == null) || !capability.has("value")) continue;
+            Object value = capability.get("value");
+
+            //Remove the value from the map of its type
+            if (value instanceof Number) {
+                removeFromMap(numericValues.get(name), ((Number) value).doubleValue(), id);
+            } else if (value instanceof Boolean) {
+                removeFromMap(booleanValues.get(name), value, id);
+            } else if (value instanceof String) {
+                removeFromMap(keywordValues.get(name), value, id);
+            }
+        }
+    }
+
+    /**
+     * Removes all capabilities and their types from the index.
+     */
+    public void clear() {
+        types.clear();
+        numericValues.clear();
+        keywordValues.clear();
+        booleanValues.clear();
+    }
+
+    /**
+     * Returns a map (capability name --> type name) of all capabilities that were indexed so far.
+     *
+     * @return The map of capability types
+     */
+    public Map<String, String> getTypes() {
+        return new HashMap<>(types);
+    }
+
+    /**
+     * Returns the type name of a given capability.
+     *
+     * @param name The name of the capability
+     * @return The type name or null, if the capability was not indexed so far
+     */
+    public String getType(String name) {
+        return types.get(name);
+    }
+
+    /**
+     * Returns the identifiers of all documents in which a certain capability has a value.
+     *
+     * @param name The name of the capability
+     * @return The set of matching document IDs
+     */
+    public Set<String> findExisting(String name) {
+        Set<String> result = new HashSet<>();
+        numericValues.getOrDefault(name, Collections.emptyNavigableMap()).values().forEach(result::addAll);
+        keywordValues.getOrDefault(name, Collections.emptyMap()).values().forEach(result::addAll);
+        booleanValues.getOrDefault(name, Collections.emptyMap()).values().forEach(result::addAll);
+        return result;
+    }
+
+    /**
+     * Returns the identifiers of all documents in which a certain capability has a value that equals a given value.
+     *
+     * @param name  The name of the capability
+     * @param value The value to look for
+     * @return The set of matching document IDs
+     */
+    public Set<String> findEquals(String name, Object value) {
+        Set<String> ids = null;
+        if (value instanceof Number) {
+            ids = numericValues.getOrDefault(name, Collections.emptyNavigableMap()).get(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            ids = booleanValues.getOrDefault(name, Collections.emptyMap()).get(value);
+        } else if (value instanceof String) {
+            ids = keywordValues.getOrDefault(name, Collections.emptyMap()).get(value);
+        }
+        return ids == null ? new HashSet<>() : new HashSet<>(ids);
+    }
+
+    /**
+     * Returns the identifiers of all documents in which a certain capability has a numeric value within a given
+     * range. Null bounds indicate that the range is open on the respective side.
+     *
+     * @param name          The name of the capability
+     * @param from          The lower bound of the range or null
+     * @param fromInclusive True, if the lower bound is inclusive; false otherwise
+     * @param to            The upper bound of the range or null
+     * @param toInclusive   True, if the upper bound is inclusive; false otherwise
+     * @return The set of matching document IDs
+     */
+    public Set<String> findInRange(String name, Double from, boolean fromInclusive, Double to, boolean toInclusive) {
+        //Get the numeric values of the capability
+        NavigableMap<Double, Set<String>> values = numericValues.getOrDefault(name, Collections.emptyNavigableMap());
+
+        //Restrict the values to the range
+        if (from != null) values = values.tailMap(from, fromInclusive);
+        if (to != null) values = values.headMap(to, toInclusive);
+
+        //Collect the document IDs
+        Set<String> result = new HashSet<>();
+        values.values().forEach(result::addAll);
+        return result;
+    }
+
+    /**
+     * Determines the type name of a given capability value.
+     *
+     * @param value The value
+     * @return The type name or null, if the value is not supported
+     */
+    private static String typeOf(Object value) {
+        if ((value instanceof Integer) || (value instanceof Long) || (value instanceof BigInteger)) {
+            return TYPE_LONG;
+        } else if ((value instanceof Double) || (value instanceof Float) || (value instanceof BigDecimal)) {
+            return TYPE_FLOAT;
+        } else if (value instanceof Boolean) {
+            return TYPE_BOOLEAN;
+        } else if (value instanceof String) {
+            return TYPE_KEYWORD;
+        }
+        return null;
+    }
+
+    /**
+     * Removes a document ID from the set of a given key within a given map and removes the key if its set
+     * becomes empty.
+     *
+     * @param map The map to update or null
+     * @param key The key of the set
+     * @param id  The document ID to remove
+     * @param <K> The type of the keys
+     */
+    private static <K> void removeFromMap(Map<K, Set<String>> map, Object key, String id) {
+        if (map == null) return;
+        Set<String> ids = map.get(key);
+        if (ids == null) return;
+        ids.remove(id);
+        if (ids.isEmpty()) map.remove(key);
+    }
+}
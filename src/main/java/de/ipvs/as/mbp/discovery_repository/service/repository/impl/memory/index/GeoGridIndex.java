@@ -0,0 +1,257 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.index;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Spatial index for geo point fields that assigns the points of the documents to the cells of a regular grid of
+ * latitudes and longitudes. Distance and polygon lookups only inspect the points within the cells that overlap
+ * with the bounding box of the requested area and verify them exactly afterwards.
+ */
+public class GeoGridIndex {
+    //Size of the grid cells in degrees (roughly 1.1 km in latitude direction)
+    private static final double CELL_SIZE = 0.01;
+
+    //Number of cells in longitude direction, used for calculating the cell keys
+    private static final long LONGITUDE_CELLS = (long) Math.ceil(360 / CELL_SIZE) + 1;
+
+    //Maximum number of cells to inspect before scanning all points instead
+    private static final long MAX_CELLS_TO_INSPECT = 10000;
+
+    //Mean earth radius in meters, as used by Elasticsearch for distance calculations
+    private static final double EARTH_RADIUS = 6371008.7714;
+
+    //Map (cell key --> document IDs) of all grid cells that contain points
+    private final Map<Long, Set<String>> cells = new HashMap<>();
+
+    //Map (document ID --> point as [lat, lon]) of all indexed points
+    private final Map<String, double[]> points = new HashMap<>();
+
+    /**
+     * Creates a new, empty {@link GeoGridIndex}.
+     */
+    public GeoGridIndex() {
+
+    }
+
+    /**
+     * Adds the geo point of a document, given by its identifier, to the index. The geo point may be given in any of
+     * the formats that are supported by Elasticsearch for geo points, except for geohashes.
+     *
+     * @param id       The identifier of the document
+     * @param geoPoint The geo point to add
+     */
+    public void add(String id, Object geoPoint) {
+        //Parse the point
+        double[] point = parsePoint(geoPoint);
+        if (point == null) return;
+
+        //Add point to its cell
+        points.put(id, point);
+        cells.computeIfAbsent(cellKey(point[0], point[1]), k -> new HashSet<>()).add(id);
+    }
+
+    /**
+     * Removes the geo point of a document, given by its identifier, from the index.
+     *
+     * @param id The identifier of the document
+     */
+    public void remove(String id) {
+        //Remove the point
+        double[] point = points.remove(id);
+        if (point == null) return;
+
+        //Remove the point from its cell
+        long key = cellKey(point[0], point[1]);
+        Set<String> ids = cells.get(key);
+        if (ids == null) return;
+        ids.remove(id);
+        if (ids.isEmpty()) cells.remove(key);
+    }
+
+    /**
+     * Removes all points from the index.
+     */
+    public void clear() {
+        cells.clear();
+        points.clear();
+    }
+
+    /**
+     * Returns the identifiers of all documents whose point is located within a given distance of a given point.
+     *
+     * @param latitude  The latitude of the center point
+     * @param longitude The longitude of the center point
+     * @param distance  The maximum distance in meters
+     * @return The set of matching document IDs
+     */
+    public Set<String> findWithinDistance(double latitude, double longitude, double distance) {
+        //Calculate the bounding box of the circle
+        double latitudeDelta = Math.toDegrees(distance / EARTH_RADIUS);
+        double cosLatitude = Math.cos(Math.toRadians(latitude));
+        double longitudeDelta = cosLatitude < 1e-9 ? 180 : Math.min(180, latitudeDelta / cosLatitude);
+
+        //Find the points within the bounding box and verify their distances
+        Set<String> result = new HashSet<>();
+        forEachInBox(latitude - latitudeDelta, latitude + latitudeDelta, longitude - longitudeDelta, longitude + longitudeDelta, (id, p) -> {
+            if (distance(latitude, longitude, p[0], p[1]) <= distance) result.add(id);
+        });
+        return result;
+    }
+
+    /**
+     * Returns the identifiers of all documents whose point is located within a given polygon.
+     *
+     * @param longitudes The longitudes of the polygon vertices
+     * @param latitudes  The latitudes of the polygon vertices
+     * @return The set of matching document IDs
+     */
+    public Set<String> findWithinPolygon(double[] longitudes, double[] latitudes) {
+        //Sanity check
+        if ((longitudes.length < 3) || (longitudes.length != latitudes.length)) return new HashSet<>();
+
+        //Calculate the bounding box of the polygon
+        double minLatitude = Arrays.stream(latitudes).min().getAsDouble();
+        double maxLatitude = Arrays.stream(latitudes).max().getAsDouble();
+        double minLongitude = Arrays.stream(longitudes).min().getAsDouble();
+        double maxLongitude = Arrays.stream(longitudes).max().getAsDouble();
+
+        //Find the points within the bounding box and verify them against the polygon
+        Set<String> result = new HashSet<>();
+        forEachInBox(minLatitude, maxLatitude, minLongitude, maxLongitude, (id, p) -> {
+            if (isInPolygon(p[0], p[1], longitudes, latitudes)) result.add(id);
+        });
+        return result;
+    }
+
+    /**
+     * Calls a given consumer for all points that are located within the cells overlapping with a given bounding
+     * box. If the bounding box covers too many cells, all points are passed instead.
+     *
+     * @param minLatitude  The minimum latitude of the bounding box
+     * @param maxLatitude  The maximum latitude of the bounding box
+     * @param minLongitude The minimum longitude of the bounding box
+     * @param maxLongitude The maximum longitude of the bounding box
+     * @param consumer     The consumer to call for the document IDs and points
+     */
+    private void forEachInBox(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude,
+                              BiConsumer<String, double[]> consumer) {
+        //Determine the cell ranges, not wrapping around the date line
+        long minLatitudeCell = latitudeCell(Math.max(-90, minLatitude));
+        long maxLatitudeCell = latitudeCell(Math.min(90, maxLatitude));
+        long minLongitudeCell = longitudeCell(Math.max(-180, minLongitude));
+        long maxLongitudeCell = longitudeCell(Math.min(180, maxLongitude));
+
+        //Check if the box crosses the date line or covers too many cells
+        long cellCount = (maxLatitudeCell - minLatitudeCell + 1) * (maxLongitudeCell - minLongitudeCell + 1);
+        if ((minLongitude < -180) || (maxLongitude > 180) || (cellCount > MAX_CELLS_TO_INSPECT) || (cellCount > cells.size())) {
+            //Scan all points
+            points.forEach(consumer);
+            return;
+        }
+
+        //Inspect the points of all overlapping cells
+        for (long latitudeCell = minLatitudeCell; latitudeCell <= maxLatitudeCell; latitudeCell++) {
+            for (long longitudeCell = minLongitudeCell; longitudeCell <= maxLongitudeCell; longitudeCell++) {
+                Set<String> ids = cells.get(latitudeCell * LONGITUDE_CELLS + longitudeCell);
+                if (ids == null) continue;
+                ids.forEach(id -> consumer.accept(id, points.get(id)));
+            }
+        }
+    }
+
+    /**
+     * Calculates the arc distance in meters between two points.
+     *
+     * @param latitude1  The latitude of the first point
+     * @param longitude1 The longitude of the first point
+     * @param latitude2  The latitude of the second point
+     * @param longitude2 The longitude of the second point
+     * @return The distance in meters
+     */
+    public static double distance(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double latitudeDelta = Math.toRadians(latitude2 - latitude1);
+        double longitudeDelta = Math.toRadians(longitude2 - longitude1);
+        double a = Math.pow(Math.sin(latitudeDelta / 2), 2) + Math.cos(Math.toRadians(latitude1))
+                * Math.cos(Math.toRadians(latitude2)) * Math.pow(Math.sin(longitudeDelta / 2), 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Checks whether a given point is located within a given polygon by using ray casting.
+     *
+     * @param latitude   The latitude of the point
+     * @param longitude  The longitude of the point
+     * @param longitudes The longitudes of the polygon vertices
+     * @param latitudes  The latitudes of the polygon vertices
+     * @return True, if the point is located within the polygon; false otherwise
+     */
+    public static boolean isInPolygon(double latitude, double longitude, double[] longitudes, double[] latitudes) {
+        boolean inside = false;
+        for (int i = 0, j = longitudes.length - 1; i < longitudes.length; j = i++) {
+            if (((latitudes[i] > latitude) != (latitudes[j] > latitude)) &&
+                    (longitude < (longitudes[j] - longitudes[i]) * (latitude - latitudes[i]) / (latitudes[j] - latitudes[i]) + longitudes[i])) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Parses a given geo point, given either as object with lat and lon fields, as array [lon, lat] or as string
+     * "lat,lon", to an array [lat, lon].
+     *
+     * @param geoPoint The geo point to parse
+     * @return The resulting array or null, if the geo point could not be parsed
+     */
+    public static double[] parsePoint(Object geoPoint) {
+        try {
+            if (geoPoint instanceof JSONObject) {
+                JSONObject pointObject = (JSONObject) geoPoint;
+                return new double[]{pointObject.getDouble("lat"), pointObject.getDouble("lon")};
+            } else if (geoPoint instanceof JSONArray) {
+                JSONArray pointArray = (JSONArray) geoPoint;
+                return new double[]{pointArray.getDouble(1), pointArray.getDouble(0)};
+            } else if (geoPoint instanceof String) {
+                String[] parts = ((String) geoPoint).split(",");
+                return new double[]{Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim())};
+            }
+        } catch (RuntimeException ignored) {
+        }
+        return null;
+    }
+
+    /**
+     * Calculates the key of the cell that contains a given point.
+     *
+     * @param latitude  The latitude of the point
+     * @param longitude The longitude of the point
+     * @return The resulting cell key
+     */
+    private static long cellKey(double latitude, double longitude) {
+        return latitudeCell(latitude) * LONGITUDE_CELLS + longitudeCell(longitude);
+    }
+
+    /**
+     * Calculates the index of the cell row that contains a given latitude.
+     *
+     * @param latitude The latitude
+     * @return The cell row index
+     */
+    private static long latitudeCell(double latitude) {
+        return (long) Math.floor((latitude + 90) / CELL_SIZE);
+    }
+
+    /**
+     * Calculates the index of the cell column that contains a given longitude.
+     *
+     * @param longitude The longitude
+     * @return The cell column index
+     */
+    private static long longitudeCell(double longitude) {
+        return (long) Math.floor((longitude + 180) / CELL_SIZE);
+    }
+}
@@ -0,0 +1,235 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.index;
+
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.util.ParserUtils;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Inverted index for keyword fields that maps the distinct values of a field to the identifiers of the documents
+ * containing them. Values are compared case-insensitively. Besides exact lookups, the index supports prefix lookups
+ * on the sorted values, suffix lookups on the sorted reversed values and infix lookups by scanning the distinct
+ * values, which are typically much fewer than the documents. Match strings with wildcard characters are evaluated
+ * like the wildcard queries of the elasticsearch repository, by scanning the distinct values that begin with the
+ * literal part in front of the first wildcard.
+ */
+public class KeywordIndex {
+    //Map (normalized value --> document IDs) of all indexed values
+    private final NavigableMap<String, Set<String>> values = new TreeMap<>();
+
+    //Map (reversed normalized value --> document IDs) of all indexed values for suffix lookups
+    private final NavigableMap<String, Set<String>> reversedValues = new TreeMap<>();
+
+    /**
+     * Creates a new, empty {@link KeywordIndex}.
+     */
+    public KeywordIndex() {
+
+    }
+
+    /**
+     * Adds a given value of a document, given by its identifier, to the index.
+     *
+     * @param id    The identifier of the document
+     * @param value The value to add
+     */
+    public void add(String id, String value) {
+        //Null check
+        if (value == null) return;
+
+        //Normalize the value and add it to both maps
+        String normalizedValue = normalize(value);
+        values.computeIfAbsent(normalizedValue, v -> new HashSet<>()).add(id);
+        reversedValues.computeIfAbsent(reverse(normalizedValue), v -> new HashSet<>()).add(id);
+    }
+
+    /**
+     * Removes a given value of a document, given by its identifier, from the index.
+     *
+     * @param id    The identifier of the document
+     * @param value The value to remove
+     */
+    public void remove(String id, String value) {
+        //Null check
+        if (value == null) return;
+
+        //Normalize the value and remove it from both maps
+        String normalizedValue = normalize(value);
+        removeFromMap(values, normalizedValue, id);
+        removeFromMap(reversedValues, reverse(normalizedValue), id);
+    }
+
+    /**
+     * Removes all values from the index.
+     */
+    public void clear() {
+        values.clear();
+        reversedValues.clear();
+    }
+
+    /**
+     * Returns the identifiers of all documents whose value equals a given value, ignoring the case.
+     *
+     * @param value The value to look for
+     * @return The set of matching document IDs
+     */
+    public Set<String> findEquals(String value) {
+        return new HashSet<>(values.getOrDefault(normalize(value), Collections.emptySet()));
+    }
+
+    /**
+     * Returns the identifiers of all documents whose value begins with a given prefix, ignoring the case.
+     *
+     * @param prefix The prefix to look for
+     * @return The set of matching document IDs
+     */
+    public Set<String> findPrefix(String prefix) {
+        return collectPrefix(values, normalize(prefix));
+    }
+
+    /**
+     * Returns the identifiers of all documents whose value ends with a given suffix, ignoring the case.
+     *
+     * @param suffix The suffix to look for
+     * @return The set of matching document IDs
+     */
+    public Set<String> findSuffix(String suffix) {
+        return collectPrefix(reversedValues, reverse(normalize(suffix)));
+    }
+
+    /**
+     * Returns the identifiers of all documents whose value contains a given infix, ignoring the case.
+     *
+     * @param infix The infix to look for
+     * @return The set of matching document IDs
+     */
+    public Set<String> findInfix(String infix) {
+        //Normalize the infix
+        String normalizedInfix = normalize(infix);
+
+        //Scan all distinct values
+        Set<String> result = new HashSet<>();
+        values.forEach((v, ids) -> {
+            if (v.contains(normalizedInfix)) result.addAll(ids);
+        });
+        return result;
+    }
+
+    /**
+     * Returns the identifiers of all documents whose value matches a given wildcard pattern, ignoring the case. The
+     * pattern is extended for a given string operator and interpreted like by a wildcard query, i.e. * matches any
+     * sequence of characters, ? matches a single character and \ escapes the subsequent character.
+     *
+     * @param pattern  The wildcard pattern to look for
+     * @param operator The string operator to apply
+     * @return The set of matching document IDs
+     */
+    public Set<String> findWildcard(String pattern, String operator) {
+        //Create the matcher for the normalized pattern
+        String normalizedPattern = normalize(pattern);
+        Predicate<String> matcher = ParserUtils.createWildcardPattern(normalizedPattern, operator);
+
+        //Determine the literal part in front of the first wildcard, which all matching values begin with
+        String extendedPattern = ParserUtils.extendWithWildcards(normalizedPattern, operator);
+        int literalEnd = 0;
+        while ((literalEnd < extendedPattern.length()) && ("*?\\".indexOf(extendedPattern.charAt(literalEnd)) < 0)) {
+            literalEnd++;
+        }
+        String literalPrefix = extendedPattern.substring(0, literalEnd);
+
+        //Scan the distinct values that begin with the literal part
+        Set<String> result = new HashSet<>();
+        for (Map.Entry<String, Set<String>> entry : values.tailMap(literalPrefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(literalPrefix)) break;
+            if (matcher.test(entry.getKey())) result.addAll(entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the identifiers of all documents whose value matches a given match string with respect to a given
+     * string operator (equals, not_equals, contains, begins_with, ends_with), ignoring the case. For not_equals,
+     * the documents with equal values are returned, since the negation is applied by the caller. Like for the
+     * queries of the elasticsearch repository, match strings that contain wildcard characters are evaluated as
+     * wildcard patterns.
+     *
+     * @param match    The match string
+     * @param operator The string operator to apply
+     * @return The set of matching document IDs
+     */
+    public Set<String> find(String match, String operator) {
+        //Sanity check
+        if (match == null) match = "";
+        String normalizedOperator = (operator == null) ? "" : operator.toLowerCase(Locale.ROOT);
+
+        //Evaluate match strings with wildcards as patterns
+        if (ParserUtils.containsWildcards(match)) {
+            return findWildcard(match, normalizedOperator);
+        }
+
+        //Check the operator
+        switch (normalizedOperator) {
+            case "contains":
+                return findInfix(match);
+            case "begins_with":
+                return findPrefix(match);
+            case "ends_with":
+                return findSuffix(match);
+            case "equals":
+            case "not_equals":
+            default:
+                return findEquals(match);
+        }
+    }
+
+    /**
+     * Collects the document IDs of all entries of a given map whose key begins with a given prefix.
+     *
+     * @param map    The map to search
+     * @param prefix The prefix to look for
+     * @return The set of matching document IDs
+     */
+    private static Set<String> collectPrefix(NavigableMap<String, Set<String>> map, String prefix) {
+        Set<String> result = new HashSet<>();
+        for (Map.Entry<String, Set<String>> entry : map.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) break;
+            result.addAll(entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Removes a document ID from the set of a given key within a given map and removes the key if its set
+     * becomes empty.
+     *
+     * @param map The map to update
+     * @param key The key of the set
+     * @param id  The document ID to remove
+     */
+    private static void removeFromMap(Map<String, Set<String>> map, String key, String id) {
+        Set<String> ids = map.get(key);
+        if (ids == null) return;
+        ids.remove(id);
+        if (ids.isEmpty()) map.remove(key);
+    }
+
+    /**
+     * Normalizes a given value for case-insensitive comparisons.
+     *
+     * @param value The value to normalize
+     * @return The normalized value
+     */
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Reverses a given string.
+     *
+     * @param value The string to reverse
+     * @return The reversed string
+     */
+    private static String reverse(String value) {
+        return new StringBuilder(value).reverse().toString();
+    }
+}
@@ -0,0 +1,99 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.index;
+
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Inverted index for full text fields that maps the tokens of a field to the identifiers of the documents containing
+ * them. Texts are tokenized in a similar way as by the standard analyzer of Elasticsearch, i.e. split at
+ * non-alphanumeric characters and lower-cased.
+ */
+public class TextIndex {
+    //Pattern for splitting texts into tokens
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    //Map (token --> document IDs) of all indexed tokens
+    private final Map<String, Set<String>> tokens = new HashMap<>();
+
+    /**
+     * Creates a new, empty {@link TextIndex}.
+     */
+    public TextIndex() {
+
+    }
+
+    /**
+     * Adds a given text of a document, given by its identifier, to the index.
+     *
+     * @param id   The identifier of the document
+     * @param text The text to add
+     */
+    public void add(String id, String text) {
+        tokenize(text).forEach(t -> tokens.computeIfAbsent(t, k -> new HashSet<>()).add(id));
+    }
+
+    /**
+     * Removes a given text of a document, given by its identifier, from the index.
+     *
+     * @param id   The identifier of the document
+     * @param text The text to remove
+     */
+    public void remove(String id, String text) {
+        tokenize(text).forEach(t -> {
+            Set<String> ids = tokens.get(t);
+            if (ids == null) return;
+            ids.remove(id);
+            if (ids.isEmpty()) tokens.remove(t);
+        });
+    }
+
+    /**
+     * Removes all texts from the index.
+     */
+    public void clear() {
+        tokens.clear();
+    }
+
+    /**
+     * Returns the identifiers of all documents whose text contains all tokens (conjunctive) or at least one token
+     * (disjunctive) of a given match text. If the match text does not contain any tokens, no documents match.
+     *
+     * @param match       The match text
+     * @param conjunctive True, if all tokens must be contained; false, if at least one token must be contained
+     * @return The set of matching document IDs
+     */
+    public Set<String> find(String match, boolean conjunctive) {
+        //Tokenize the match text
+        Set<String> matchTokens = tokenize(match);
+        if (matchTokens.isEmpty()) return new HashSet<>();
+
+        //Combine the document IDs of all tokens
+        Set<String> result = null;
+        for (String token : matchTokens) {
+            Set<String> ids = tokens.getOrDefault(token, Collections.emptySet());
+            if (result == null) {
+                result = new HashSet<>(ids);
+            } else if (conjunctive) {
+                result.retainAll(ids);
+            } else {
+                result.addAll(ids);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Splits a given text into its distinct, lower-cased tokens.
+     *
+     * @param text The text to tokenize
+     * @return The set of tokens
+     */
+    private static Set<String> tokenize(String text) {
+        //Null check
+        if (text == null) return Collections.emptySet();
+
+        return Arrays.stream(TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT)))
+                .filter(t -> !t.isEmpty()).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,62 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.matchers;
+
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.DocumentIndex;
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.MatchResult;
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.index.AttachmentIndex;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Matcher for attachment requirements. The quantity of the requirement refers to the physical quantity of the object
+ * that is observed or manipulated by the attachment.
+ */
+public class AttachmentRequirementMatcher implements RequirementMatcher {
+
+    //Type name of the requirements that are supported by this matcher
+    private static final String TYPE_NAME = "attachment";
+
+    //Map (detail --> path within the attachment) of the details that are matched as keywords
+    private static final Map<String, String> KEYWORD_FIELDS = Map.of("type", AttachmentIndex.FIELD_TYPE,
+            "model", AttachmentIndex.FIELD_MODEL, "port", AttachmentIndex.FIELD_PORT, "quantity", AttachmentIndex.FIELD_QUANTITY);
+
+    /**
+     * Evaluates a requirement, given as {@link JSONObject}, of the supported requirement type against the indexes
+     * of a given {@link DocumentIndex} and restricts a given {@link MatchResult} accordingly.
+     *
+     * @param result      The match result to restrict
+     * @param requirement The requirement to evaluate
+     * @param index       The index to use
+     */
+    @Override
+    public void match(MatchResult result, JSONObject requirement, DocumentIndex index) {
+        //Retrieve details
+        JSONObject details = requirement.optJSONObject("details");
+
+        //Sanity check
+        if ((details == null) || details.isEmpty()) {
+            return;
+        }
+
+        //Collect the keyword constraints
+        Map<String, Object> constraints = new HashMap<>();
+        KEYWORD_FIELDS.forEach((detail, path) -> {
+            Object value = details.opt(detail);
+            if (((value instanceof String) && !((String) value).isEmpty()) || (value instanceof Number)) constraints.put(path, value);
+        });
+
+        //Look up the documents with a matching attachment and restrict the result
+        result.filter(index.getAttachmentIndex().find(constraints));
+    }
+
+    /**
+     * Returns the type name of the requirements that can be evaluated by using this requirement matcher.
+     *
+     * @return The requirement type name
+     */
+    @Override
+    public String getRequirementTypeName() {
+        return TYPE_NAME;
+    }
+}
@@ -0,0 +1,160 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.matchers;
+
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.DocumentIndex;
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.MatchResult;
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.index.CapabilityIndex;
+import org.json.JSONObject;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Matcher for capability requirements. The match value is converted to the type of the capability as registered
+ * in the {@link CapabilityIndex}, such that numeric capabilities can be compared by range lookups.
+ */
+public class CapabilityRequirementMatcher implements RequirementMatcher {
+
+    //Type name of the requirements that are supported by this matcher
+    private static final String TYPE_NAME = "capability";
+
+    /**
+     * Evaluates a requirement, given as {@link JSONObject}, of the supported requirement type against the indexes
+     * of a given {@link DocumentIndex} and restricts a given {@link MatchResult} accordingly.
+     *
+     * @param result      The match result to restrict
+     * @param requirement The requirement to evaluate
+     * @param index       The index to use
+     */
+    @Override
+    public void match(MatchResult result, JSONObject requirement, DocumentIndex index) {
+        //Retrieve name and operator
+        String name = requirement.optString("name");
+        String operator = requirement.optString("operator").toLowerCase();
+
+        //Sanity check
+        if (name.isEmpty()) {
+            return;
+        }
+
+        //Get the capability index
+        CapabilityIndex capabilityIndex = index.getCapabilityIndex();
+
+        //Check for operators that do not require a match value
+        switch (operator) {
+            case "exists":
+                result.filter(capabilityIndex.findExisting(name));
+                return;
+            case "not_exists":
+                result.mustNot(capabilityIndex.findExisting(name));
+                return;
+        }
+
+        //Convert the match value to the type of the capability
+        Object value = toValue(requirement.opt("match"), capabilityIndex.getType(name));
+
+        //Look up the matching values, depending on the operator
+        Set<String> ids;
+        switch (operator) {
+            case "equals":
+            case "not_equals":
+                ids = (value == null) ? new HashSet<>() : capabilityIndex.findEquals(name, value);
+                break;
+            case "greater_than":
+                ids = findInRange(capabilityIndex, name, value, false, null, false);
+                break;
+            case "greater_equals":
+                ids = findInRange(capabilityIndex, name, value, true, null, false);
+                break;
+            case "less_than":
+                ids = findInRange(capabilityIndex, name, null, false, value, false);
+                break;
+            case "less_equals":
+                ids = findInRange(capabilityIndex, name, null, false, value, true);
+                break;
+            default:
+                //Unknown operator
+                return;
+        }
+
+        //Restrict the result, depending on the operator
+        if (operator.equals("not_equals")) {
+            result.mustNot(ids);
+        } else {
+            result.filter(ids);
+        }
+    }
+
+    /**
+     * Returns the type name of the requirements that can be evaluated by using this requirement matcher.
+     *
+     * @return The requirement type name
+     */
+    @Override
+    public String getRequirementTypeName() {
+        return TYPE_NAME;
+    }
+
+    /**
+     * Looks up the documents in which a certain capability has a numeric value within a range that is given by a
+     * lower or an upper bound. No documents match if the bound is not numeric.
+     *
+     * @param capabilityIndex The capability index to use
+     * @param name            The name of the capability
+     * @param from            The lower bound or null
+     * @param fromInclusive   True, if the lower bound is inclusive; false otherwise
+     * @param to              The upper bound or null
+     * @param toInclusive     True, if the upper bound is inclusive; false otherwise
+     * @return The set of matching document IDs
+     */
+    private Set<String> findInRange(CapabilityIndex capabilityIndex, String name, Object from, boolean fromInclusive,
+                                    Object to, boolean toInclusive) {
+        //Check whether the bound is numeric
+        Object bound = (from != null) ? from : to;
+        if (!(bound instanceof Number)) {
+            return new HashSet<>();
+        }
+
+        //Look up the range
+        return capabilityIndex.findInRange(name, (from == null) ? null : ((Number) from).doubleValue(), fromInclusive,
+                (to == null) ? null : ((Number) to).doubleValue(), toInclusive);
+    }
+
+    /**
+     * Converts a given match value to a given type of a capability. If the type is unknown, the match value is
+     * used as it is.
+     *
+     * @param match The match value to convert
+     * @param type  The type name of the capability or null, if unknown
+     * @return The converted value or null, if the match value cannot be converted to the type
+     */
+    private Object toValue(Object match, String type) {
+        //Sanity check
+        if ((match == null) || JSONObject.NULL.equals(match)) {
+            return null;
+        }
+
+        //Use the match value as it is if the type is unknown
+        if (type == null) {
+            return match;
+        }
+
+        //Check the type
+        switch (type) {
+            case CapabilityIndex.TYPE_BOOLEAN:
+                if (match instanceof Boolean) return match;
+                if ("true".equalsIgnoreCase(match.toString())) return true;
+                if ("false".equalsIgnoreCase(match.toString())) return false;
+                return null;
+            case CapabilityIndex.TYPE_KEYWORD:
+                return match.toString();
+            default:
+                //Numeric types
+                if (match instanceof Number) return match;
+                try {
+                    return Double.parseDouble(match.toString().trim());
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.matchers;
+
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.DocumentIndex;
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.MatchResult;
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.index.KeywordIndex;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Matcher for keywords requirements.
+ */
+public class KeywordsRequirementMatcher implements RequirementMatcher {
+
+    //Type name of the requirements that are supported by this matcher
+    private static final String TYPE_NAME = "keywords";
+
+    /**
+     * Evaluates a requirement, given as {@link JSONObject}, of the supported requirement type against the indexes
+     * of a given {@link DocumentIndex} and restricts a given {@link MatchResult} accordingly.
+     *
+     * @param result      The match result to restrict
+     * @param requirement The requirement to evaluate
+     * @param index       The index to use
+     */
+    @Override
+    public void match(MatchResult result, JSONObject requirement, DocumentIndex index) {
+        //Retrieve keywords and operator
+        List<String> keywords = toStrings(requirement.opt("match"));
+        String operator = requirement.optString("operator", "any").toLowerCase();
+
+        //Sanity check
+        if (keywords.isEmpty()) {
+            return;
+        }
+
+        //Get the keywords index
+        KeywordIndex keywordsIndex = index.getKeywordsIndex();
+
+        //Check the operator
+        if (operator.equals("all")) {
+            //Restrict the result by each keyword
+            keywords.forEach(k -> result.filter(keywordsIndex.findEquals(k)));
+        } else {
+            //Restrict the result by the union of the keywords
+            Set<String> ids = new HashSet<>();
+            keywords.forEach(k -> ids.addAll(keywordsIndex.findEquals(k)));
+            result.filter(ids);
+        }
+    }
+
+    /**
+     * Returns the type name of the requirements that can be evaluated by using this requirement matcher.
+     *
+     * @return The requirement type name
+     */
+    @Override
+    public String getRequirementTypeName() {
+        return TYPE_NAME;
+    }
+
+    /**
+     * Converts a given match value that is either a single string or a {@link JSONArray} of strings to a list of
+     * strings. Other values are ignored.
+     *
+     * @param match The match value to convert
+     * @return The resulting list of strings
+     */
+    private List<String> toStrings(Object match) {
+        List<String> strings = new ArrayList<>();
+        if (match instanceof String) {
+            strings.add((String) match);
+        } else if (match instanceof JSONArray) {
+            ((JSONArray) match).forEach(e -> {
+                if (e instanceof String) strings.add((String) e);
+            });
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,117 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.matchers;
+
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.DocumentIndex;
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.MatchResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Set;
+
+/**
+ * Matcher for location requirements.
+ */
+public class LocationRequirementMatcher implements RequirementMatcher {
+
+    //Type name of the requirements that are supported by this matcher
+    private static final String TYPE_NAME = "location";
+
+    //Tolerance to use for at_location queries
+    private static final double DISTANCE_TOLERANCE = 20.0; //meters
+
+    /**
+     * Evaluates a requirement, given as {@link JSONObject}, of the supported requirement type against the indexes
+     * of a given {@link DocumentIndex} and restricts a given {@link MatchResult} accordingly.
+     *
+     * @param result      The match result to restrict
+     * @param requirement The requirement to evaluate
+     * @param index       The index to use
+     */
+    @Override
+    public void match(MatchResult result, JSONObject requirement, DocumentIndex index) {
+        //Retrieve operator and details
+        String operator = requirement.optString("operator");
+        JSONObject details = requirement.optJSONObject("details");
+
+        //Sanity checks
+        if ((details == null) || (details.isEmpty())) {
+            return;
+        }
+
+        //Switch by the operator
+        switch (operator.toLowerCase()) {
+            case "described_by":
+                matchDescribedBy(result, details, index);
+                break;
+            case "at_location":
+                matchAtLocation(result, details, index);
+                break;
+            case "in_area":
+                matchInArea(result, details, index);
+                break;
+            default:
+                return;
+        }
+    }
+
+    /**
+     * Returns the type name of the requirements that can be evaluated by using this requirement matcher.
+     *
+     * @return The requirement type name
+     */
+    @Override
+    public String getRequirementTypeName() {
+        return TYPE_NAME;
+    }
+
+    private void matchDescribedBy(MatchResult result, JSONObject details, DocumentIndex index) {
+        //Get match field and operator from the details
+        String match = details.optString("match");
+        String operator = details.optString("operator");
+
+        //Look up the matching location descriptions
+        Set<String> ids = index.getLocationDescriptionIndex().find(match, operator);
+
+        //Restrict the result, depending on the operator
+        if (operator.equals("not_equals")) {
+            result.mustNot(ids);
+        } else {
+            result.filter(ids);
+        }
+    }
+
+    private void matchAtLocation(MatchResult result, JSONObject details, DocumentIndex index) {
+        //Sanity check
+        if ((!details.has("lat")) || (!details.has("lon"))) {
+            return;
+        }
+
+        //Look up the locations within the tolerance
+        result.filter(index.getCoordinatesIndex().findWithinDistance(details.optDouble("lat"), details.optDouble("lon"), DISTANCE_TOLERANCE));
+    }
+
+    private void matchInArea(MatchResult result, JSONObject details, DocumentIndex index) {
+        try {
+            //Check whether circle or polygon
+            if (details.has("radius") && details.has("lat") && details.has("lon")) {
+                //Circle area, look up the locations within the radius
+                result.filter(index.getCoordinatesIndex().findWithinDistance(details.optDouble("lat"),
+                        details.optDouble("lon"), details.optDouble("radius")));
+            } else if (details.has("polygon")) {
+                //Get polygon points
+                JSONArray points = details.getJSONArray("polygon");
+
+                //Create arrays of longitudes and latitudes
+                double[] longitudes = new double[points.length()];
+                double[] latitudes = new double[points.length()];
+                for (int i = 0; i < points.length(); i++) {
+                    longitudes[i] = points.getJSONArray(i).getDouble(0);
+                    latitudes[i] = points.getJSONArray(i).getDouble(1);
+                }
+
+                //Look up the locations within the polygon
+                result.filter(index.getCoordinatesIndex().findWithinPolygon(longitudes, latitudes));
+            }
+        } catch (Exception ignored) {
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.matchers;
+
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.DocumentIndex;
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.MatchResult;
+import org.json.JSONObject;
+
+import java.util.Set;
+
+/**
+ * Matcher for name requirements.
+ */
+public class NameRequirementMatcher implements RequirementMatcher {
+
+    //Type name of the requirements that are supported by this matcher
+    private static final String TYPE_NAME = "name";
+
+    /**
+     * Evaluates a requirement, given as {@link JSONObject}, of the supported requirement type against the indexes
+     * of a given {@link DocumentIndex} and restricts a given {@link MatchResult} accordingly.
+     *
+     * @param result      The match result to restrict
+     * @param requirement The requirement to evaluate
+     * @param index       The index to use
+     */
+    @Override
+    public void match(MatchResult result, JSONObject requirement, DocumentIndex index) {
+        //Get match field and operator
+        String match = requirement.optString("match");
+        String operator = requirement.optString("operator");
+
+        //Look up the matching names
+        Set<String> ids = index.getNameIndex().find(match, operator);
+
+        //Restrict the result, depending on the operator
+        if (operator.equals("not_equals")) {
+            result.mustNot(ids);
+        } else {
+            result.filter(ids);
+        }
+    }
+
+    /**
+     * Returns the type name of the requirements that can be evaluated by using this requirement matcher.
+     *
+     * @return The requirement type name
+     */
+    @Override
+    public String getRequirementTypeName() {
+        return TYPE_NAME;
+    }
+}
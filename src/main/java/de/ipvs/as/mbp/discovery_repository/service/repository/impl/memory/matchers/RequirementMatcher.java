@@ -0,0 +1,30 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.matchers;
+
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.DocumentIndex;
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.MatchResult;
+import org.json.JSONObject;
+
+/**
+ * Requirement matchers can be used to evaluate a requirement, given as {@link JSONObject}, of a certain type against
+ * the indexes of a {@link DocumentIndex}. The documents that satisfy or violate the requirement are added to a given
+ * {@link MatchResult}. Matchers implement the same semantics as the corresponding requirement parsers for
+ * Elasticsearch.
+ */
+public interface RequirementMatcher {
+    /**
+     * Evaluates a requirement, given as {@link JSONObject}, of the supported requirement type against the indexes
+     * of a given {@link DocumentIndex} and restricts a given {@link MatchResult} accordingly.
+     *
+     * @param result      The match result to restrict
+     * @param requirement The requirement to evaluate
+     * @param index       The index to use
+     */
+    void match(MatchResult result, JSONObject requirement, DocumentIndex index);
+
+    /**
+     * Returns the type name of the requirements that can be evaluated by using this requirement matcher.
+     *
+     * @return The requirement type name
+     */
+    String getRequirementTypeName();
+}
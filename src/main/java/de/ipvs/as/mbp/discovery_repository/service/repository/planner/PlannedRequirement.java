@@ -0,0 +1,246 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.planner;
+
+import org.json.JSONObject;
+
+import java.util.Locale;
+
+/**
+ * Intermediate representation of a single requirement within the {@link QueryPlanner}. Besides the original
+ * requirement, it captures the estimated cost of evaluating the requirement and, for requirements that constrain a
+ * keyword field by a string operator, the field, the operator and the normalized match string, which allows to
+ * analyze the constraints on the same field in relation to each other.
+ */
+class PlannedRequirement {
+
+    //Operators of keyword constraints
+    static final String OPERATOR_EQUALS = "equals";
+    static final String OPERATOR_NOT_EQUALS = "not_equals";
+    static final String OPERATOR_BEGINS_WITH = "begins_with";
+    static final String OPERATOR_ENDS_WITH = "ends_with";
+    static final String OPERATOR_CONTAINS = "contains";
+
+    //Estimated costs of the different kinds of requirements, from cheapest to most expensive
+    private static final int COST_TERM = 1;
+    private static final int COST_NEGATED_TERM = 2;
+    private static final int COST_PREFIX = 3;
+    private static final int COST_RANGE = 3;
+    private static final int COST_GEO = 4;
+    private static final int COST_NESTED = 5;
+    private static final int COST_FULL_TEXT = 5;
+    private static final int COST_NGRAM = 6;
+    private static final int COST_UNKNOWN = 7;
+    private static final int COST_WILDCARD = 8;
+
+    //The original requirement
+    private final JSONObject requirement;
+
+    //Field, operator and normalized match string of keyword constraints, or null for other requirements
+    private final String field;
+    private final String operator;
+    private final String match;
+
+    //Estimated cost of evaluating the requirement
+    private final int cost;
+
+    /**
+     * Creates a new planned requirement.
+     */
+    private PlannedRequirement(JSONObject requirement, String field, String operator, String match, int cost) {
+        this.requirement = requirement;
+        this.field = field;
+        this.operator = operator;
+        this.match = match;
+        this.cost = cost;
+    }
+
+    /**
+     * Creates the intermediate representation of a given requirement.
+     *
+     * @param requirement The requirement to represent
+     * @return The resulting planned requirement
+     */
+    static PlannedRequirement of(JSONObject requirement) {
+        String type = requirement.optString("type");
+        String operator = requirement.optString("operator");
+
+        //Check the type of the requirement
+        switch (type) {
+            case "name":
+                return ofKeywordConstraint(requirement, "name", operator, requirement.optString("match"));
+            case "location":
+                //Only the description of the location is a keyword field
+                JSONObject details = requirement.optJSONObject("details");
+                if (operator.equalsIgnoreCase("described_by") && (details != null)) {
+                    return ofKeywordConstraint(requirement, "location.description",
+                            details.optString("operator"), details.optString("match"));
+                }
+                return new PlannedRequirement(requirement, null, null, null, COST_GEO);
+            case "description":
+                return new PlannedRequirement(requirement, null, null, null, COST_FULL_TEXT);
+            case "keywords":
+                return new PlannedRequirement(requirement, null, null, null, COST_TERM);
+            case "attachment":
+                return new PlannedRequirement(requirement, null, null, null, COST_NESTED);
+            case "capability":
+                return new PlannedRequirement(requirement, null, null, null, capabilityCost(operator));
+            default:
+                return new PlannedRequirement(requirement, null, null, null, COST_UNKNOWN);
+        }
+    }
+
+    /**
+     * Creates the intermediate representation of a given requirement that constrains a keyword field.
+     *
+     * @param requirement The requirement to represent
+     * @param field       The path of the constrained field
+     * @param operator    The string operator of the constraint
+     * @param match       The match string of the constraint
+     * @return The resulting planned requirement
+     */
+    private static PlannedRequirement ofKeywordConstraint(JSONObject requirement, String field, String operator, String match) {
+        //Determine the cost, depending on the operator
+        boolean wildcards = containsWildcards(match);
+        int cost;
+        switch (operator.toLowerCase(Locale.ROOT)) {
+            case OPERATOR_EQUALS:
+                //Match strings with wildcards are evaluated as wildcard patterns
+                cost = wildcards ? COST_WILDCARD : COST_TERM;
+                break;
+            case OPERATOR_NOT_EQUALS:
+                cost = wildcards ? COST_WILDCARD : COST_NEGATED_TERM;
+                break;
+            case OPERATOR_BEGINS_WITH:
+            case OPERATOR_ENDS_WITH:
+                //Suffixes are looked up as prefixes of the reversed field
+                cost = COST_PREFIX;
+                break;
+            case OPERATOR_CONTAINS:
+                //Substrings are looked up via the n-grams of the field, unless they are shorter than the n-grams
+                cost = (match.length() < 3) ? COST_WILDCARD : COST_NGRAM;
+                break;
+            default:
+                //Unknown operator, do not analyze
+                return new PlannedRequirement(requirement, null, null, null, COST_UNKNOWN);
+        }
+
+        //Keyword fields are matched case-insensitively
+        return new PlannedRequirement(requirement, field, operator.toLowerCase(Locale.ROOT), match.toLowerCase(Locale.ROOT), cost);
+    }
+
+    /**
+     * Determines the estimated cost of a capability requirement with a given operator.
+     *
+     * @param operator The operator of the capability requirement
+     * @return The estimated cost
+     */
+    private static int capabilityCost(String operator) {
+        switch (operator.toLowerCase(Locale.ROOT)) {
+            case "equals":
+            case "exists":
+                return COST_TERM;
+            case "not_equals":
+            case "not_exists":
+                return COST_NEGATED_TERM;
+            case "greater_than":
+            case "greater_equals":
+            case "less_than":
+            case "less_equals":
+                return COST_RANGE;
+            default:
+                return COST_UNKNOWN;
+        }
+    }
+
+    /**
+     * Returns whether the requirement is a keyword constraint that can be analyzed in relation to other keyword
+     * constraints on the same field. This is not the case for constraints whose match strings contain wildcard
+     * characters, since they are evaluated as wildcard patterns, regardless of the operator.
+     *
+     * @return True, if the requirement is an analyzable keyword constraint; false otherwise
+     */
+    boolean isKeywordConstraint() {
+        //Check whether the requirement constrains a keyword field
+        if (field == null) return false;
+
+        //Check for wildcard characters
+        return !containsWildcards(match);
+    }
+
+    /**
+     * Checks and returns whether a given match string contains characters that are interpreted as wildcards.
+     *
+     * @param match The match string to check
+     * @return True, if the match string contains wildcard characters; false otherwise
+     */
+    private static boolean containsWildcards(String match) {
+        return (match.indexOf('*') >= 0) || (match.indexOf('?') >= 0) || (match.indexOf('\\') >= 0);
+    }
+
+    /**
+     * Checks and returns whether a given normalized value of the constrained field satisfies the keyword constraint.
+     *
+     * @param value The value to check
+     * @return True, if the value satisfies the constraint; false otherwise
+     */
+    boolean isSatisfiedBy(String value) {
+        switch (operator) {
+            case OPERATOR_EQUALS:
+                return value.equals(match);
+            case OPERATOR_NOT_EQUALS:
+                return !value.equals(match);
+            case OPERATOR_BEGINS_WITH:
+                return value.startsWith(match);
+            case OPERATOR_ENDS_WITH:
+                return value.endsWith(match);
+            case OPERATOR_CONTAINS:
+                return value.contains(match);
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Returns the original requirement.
+     *
+     * @return The requirement
+     */
+    JSONObject getRequirement() {
+        return requirement;
+    }
+
+    /**
+     * Returns the path of the constrained field of keyword constraints.
+     *
+     * @return The field path or null, if the requirement is not a keyword constraint
+     */
+    String getField() {
+        return field;
+    }
+
+    /**
+     * Returns the normalized operator of keyword constraints.
+     *
+     * @return The operator or null, if the requirement is not a keyword constraint
+     */
+    String getOperator() {
+        return operator;
+    }
+
+    /**
+     * Returns the normalized match string of keyword constraints.
+     *
+     * @return The match string or null, if the requirement is not a keyword constraint
+     */
+    String getMatch() {
+        return match;
+    }
+
+    /**
+     * Returns the estimated cost of evaluating the requirement.
+     *
+     * @return The estimated cost
+     */
+    int getCost() {
+        return cost;
+    }
+}
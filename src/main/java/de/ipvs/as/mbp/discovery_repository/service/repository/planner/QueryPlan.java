@@ -0,0 +1,49 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.planner;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Objects of this class represent the result of planning the requirements of a query by the {@link QueryPlanner}.
+ * A plan either consists out of the optimized list of requirements, ordered from the cheapest to the most expensive
+ * one, or indicates that the requirements are unsatisfiable, such that the query does not need to be executed.
+ */
+public class QueryPlan {
+    //The optimized requirements
+    private final List<JSONObject> requirements;
+
+    //Whether the requirements are unsatisfiable
+    private final boolean unsatisfiable;
+
+    /**
+     * Creates a new {@link QueryPlan} from a given list of optimized requirements.
+     *
+     * @param requirements  The optimized requirements
+     * @param unsatisfiable True, if the requirements are unsatisfiable; false otherwise
+     */
+    QueryPlan(List<JSONObject> requirements, boolean unsatisfiable) {
+        this.requirements = Collections.unmodifiableList(requirements);
+        this.unsatisfiable = unsatisfiable;
+    }
+
+    /**
+     * Returns the optimized requirements as {@link JSONArray}, ordered from the cheapest to the most expensive one.
+     *
+     * @return The optimized requirements
+     */
+    public JSONArray getRequirements() {
+        return new JSONArray(requirements);
+    }
+
+    /**
+     * Returns whether the requirements are provably unsatisfiable, i.e. no document can match them.
+     *
+     * @return True, if the requirements are unsatisfiable; false otherwise
+     */
+    public boolean isUnsatisfiable() {
+        return unsatisfiable;
+    }
+}
@@ -0,0 +1,141 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.planner;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.*;
+import java.util.function.BiPredicate;
+import java.util.stream.Collectors;
+
+/**
+ * This class provides methods that allow to optimize given {@link JSONArray}s of requirements before they are
+ * evaluated by a repository, resulting in {@link QueryPlan}s. The requirements are translated into an intermediate
+ * representation, in which duplicates are removed, keyword constraints on the same field are merged or detected
+ * to be contradictory and the remaining requirements are ordered by their estimated costs.
+ */
+public class QueryPlanner {
+
+    /**
+     * Not instantiable.
+     */
+    private QueryPlanner() {
+
+    }
+
+    /**
+     * Plans a given {@link JSONArray} of requirements and returns the resulting {@link QueryPlan}.
+     *
+     * @param requirements The requirements to plan
+     * @return The resulting query plan
+     */
+    public static QueryPlan plan(JSONArray requirements) {
+        //Sanity check
+        if (requirements == null) {
+            return new QueryPlan(Collections.emptyList(), false);
+        }
+
+        //Translate the requirements into the intermediate representation, skipping duplicates
+        List<PlannedRequirement> plannedRequirements = new ArrayList<>();
+        for (Object requirement : requirements) {
+            //Skip requirement if not a JSONObject
+            if (!(requirement instanceof JSONObject)) continue;
+
+            //Skip duplicates
+            if (plannedRequirements.stream().anyMatch(p -> p.getRequirement().similar(requirement))) continue;
+
+            plannedRequirements.add(PlannedRequirement.of((JSONObject) requirement));
+        }
+
+        //Group the keyword constraints by their fields
+        Map<String, List<PlannedRequirement>> keywordConstraints = plannedRequirements.stream()
+                .filter(PlannedRequirement::isKeywordConstraint)
+                .collect(Collectors.groupingBy(PlannedRequirement::getField, LinkedHashMap::new, Collectors.toList()));
+
+        //Simplify the keyword constraints of each field
+        for (List<PlannedRequirement> constraints : keywordConstraints.values()) {
+            if (!simplifyKeywordConstraints(constraints, plannedRequirements)) {
+                return new QueryPlan(Collections.emptyList(), true);
+            }
+        }
+
+        //Order the requirements from the cheapest to the most expensive one
+        plannedRequirements.sort(Comparator.comparingInt(PlannedRequirement::getCost));
+
+        //Create the plan
+        return new QueryPlan(plannedRequirements.stream().map(PlannedRequirement::getRequirement)
+                .collect(Collectors.toList()), false);
+    }
+
+    /**
+     * Simplifies a given list of keyword constraints on the same field by removing constraints that are implied by
+     * others from a given list of planned requirements and checks whether the constraints are satisfiable.
+     *
+     * @param constraints         The keyword constraints on the same field
+     * @param plannedRequirements The planned requirements from which redundant constraints are removed
+     * @return True, if the constraints are satisfiable; false otherwise
+     */
+    private static boolean simplifyKeywordConstraints(List<PlannedRequirement> constraints, List<PlannedRequirement> plannedRequirements) {
+        //Collect the values that are required by equals constraints
+        List<PlannedRequirement> equalsConstraints = constraints.stream()
+                .filter(c -> c.getOperator().equals(PlannedRequirement.OPERATOR_EQUALS)).collect(Collectors.toList());
+
+        //Check whether the field is required to have a certain value
+        if (!equalsConstraints.isEmpty()) {
+            String value = equalsConstraints.get(0).getMatch();
+
+            //All other constraints must be satisfied by the value and are thus redundant
+            for (PlannedRequirement constraint : constraints) {
+                if (constraint == equalsConstraints.get(0)) continue;
+                if (!constraint.isSatisfiedBy(value)) return false;
+                plannedRequirements.remove(constraint);
+            }
+            return true;
+        }
+
+        //Merge the patterns of the same kind
+        return mergePatterns(constraints, plannedRequirements, PlannedRequirement.OPERATOR_BEGINS_WITH, String::startsWith, true)
+                && mergePatterns(constraints, plannedRequirements, PlannedRequirement.OPERATOR_ENDS_WITH, String::endsWith, true)
+                && mergePatterns(constraints, plannedRequirements, PlannedRequirement.OPERATOR_CONTAINS, String::contains, false);
+    }
+
+    /**
+     * Merges the keyword constraints of a given pattern operator within a given list of constraints on the same field.
+     * Constraints whose match strings are implied by the match strings of other constraints of the same operator are
+     * removed from a given list of planned requirements.
+     *
+     * @param constraints         The keyword constraints on the same field
+     * @param plannedRequirements The planned requirements from which redundant constraints are removed
+     * @param operator            The pattern operator to merge
+     * @param implies             Predicate that checks whether the first match string implies the second one
+     * @param exclusive           True, if two match strings that do not imply each other are unsatisfiable
+     * @return True, if the constraints are satisfiable; false otherwise
+     */
+    private static boolean mergePatterns(List<PlannedRequirement> constraints, List<PlannedRequirement> plannedRequirements,
+                                         String operator, BiPredicate<String, String> implies, boolean exclusive) {
+        //Keep the strongest constraints only
+        List<PlannedRequirement> strongest = new ArrayList<>();
+        for (PlannedRequirement constraint : constraints) {
+            //Skip constraints with other operators
+            if (!constraint.getOperator().equals(operator)) continue;
+
+            //Check whether the constraint is implied by a stronger one
+            if (strongest.stream().anyMatch(s -> implies.test(s.getMatch(), constraint.getMatch()))) {
+                plannedRequirements.remove(constraint);
+                continue;
+            }
+
+            //Remove the constraints that are implied by the current one
+            for (Iterator<PlannedRequirement> iterator = strongest.iterator(); iterator.hasNext(); ) {
+                PlannedRequirement weaker = iterator.next();
+                if (implies.test(constraint.getMatch(), weaker.getMatch())) {
+                    plannedRequirements.remove(weaker);
+                    iterator.remove();
+                }
+            }
+            strongest.add(constraint);
+        }
+
+        //Prefixes or suffixes that do not imply each other cannot be satisfied at the same time
+        return !exclusive || (strongest.size() <= 1);
+    }
+}
@@ -0,0 +1,238 @@
+package de.ipvs.as.mbp.discovery_repository.service.subscription;
+
+import org.json.JSONObject;
+
+import java.util.Collection;
+import java.util.function.LongConsumer;
+
+/**
+ * Immutable set of MAC addresses that is used for representing the result sets of {@link Subscription}s. Each MAC
+ * address is packed into the lower 48 bits of a primitive long and stored in an open-addressing hash table, such that
+ * membership checks neither parse nor allocate and the memory consumption per entry is a few bytes only. Since the
+ * schema of the device descriptions requires MAC addresses of the form AA:BB:CC:DD:EE:FF, every device description
+ * can be represented by its packed MAC address. Modifications create new sets, which allows to share the sets
+ * between threads without locking.
+ */
+public class MacAddressSet {
+    //The empty set
+    public static final MacAddressSet EMPTY = new MacAddressSet(new long[0], 0);
+
+    //Bit that is set for all stored entries, such that zero can be used for marking empty slots
+    private static final long PRESENT_BIT = 1L << 48;
+
+    //Mask for extracting the packed MAC address from an entry
+    private static final long MAC_ADDRESS_MASK = PRESENT_BIT - 1;
+
+    //Hash table of the entries, with a length that is a power of two
+    private final long[] table;
+
+    //Number of MAC addresses in the set
+    private final int size;
+
+    /**
+     * Creates a new {@link MacAddressSet} from a given hash table and the number of its entries.
+     *
+     * @param table The hash table
+     * @param size  The number of entries
+     */
+    private MacAddressSet(long[] table, int size) {
+        this.table = table;
+        this.size = size;
+    }
+
+    /**
+     * Creates a new {@link MacAddressSet} from the MAC addresses of a given collection of device descriptions.
+     * Device descriptions without valid MAC address are ignored.
+     *
+     * @param deviceDescriptions The device descriptions
+     * @return The resulting set
+     */
+    public static MacAddressSet of(Collection<JSONObject> deviceDescriptions) {
+        return EMPTY.withAll(deviceDescriptions);
+    }
+
+    /**
+     * Returns a new {@link MacAddressSet} that contains the MAC addresses of this set and the ones of a given
+     * collection of device descriptions. Device descriptions without valid MAC address are ignored.
+     *
+     * @param deviceDescriptions The device descriptions to add
+     * @return The resulting set
+     */
+    public MacAddressSet withAll(Collection<JSONObject> deviceDescriptions) {
+        //Create table with sufficient capacity for a load factor of at most 0.5
+        long[] newTable = new long[tableLength(this.size + deviceDescriptions.size())];
+        int newSize = 0;
+
+        //Copy the existing entries
+        for (long entry : this.table) {
+            if ((entry != 0) && insert(newTable, entry)) newSize++;
+        }
+
+        //Add the MAC addresses of the device descriptions
+        for (JSONObject deviceDescription : deviceDescriptions) {
+            long macAddress = packMacAddress(deviceDescription);
+            if ((macAddress >= 0) && insert(newTable, macAddress | PRESENT_BIT)) newSize++;
+        }
+        return (newSize == 0) ? EMPTY : new MacAddressSet(newTable, newSize);
+    }
+
+    /**
+     * Checks whether the set contains the MAC address of a given device description.
+     *
+     * @param deviceDescription The device description to check
+     * @return True, if the MAC address is contained; false otherwise
+     */
+    public boolean contains(JSONObject deviceDescription) {
+        return contains(packMacAddress(deviceDescription));
+    }
+
+    /**
+     * Checks whether the set contains a given packed MAC address.
+     *
+     * @param macAddress The packed MAC address to check
+     * @return True, if the MAC address is contained; false otherwise
+     */
+    public boolean contains(long macAddress) {
+        //Check whether the MAC address is valid
+        if ((macAddress < 0) || (this.size == 0)) return false;
+
+        //Probe the table
+        long entry = macAddress | PRESENT_BIT;
+        int mask = this.table.length - 1;
+        for (int i = hash(entry) & mask; this.table[i] != 0; i = (i + 1) & mask) {
+            if (this.table[i] == entry) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Performs a given action for each packed MAC address of the set.
+     *
+     * @param action The action to perform
+     */
+    public void forEach(LongConsumer action) {
+        for (long entry : this.table) {
+            if (entry != 0) action.accept(entry & MAC_ADDRESS_MASK);
+        }
+    }
+
+    /**
+     * Performs a given action for each packed MAC address of the set that is not contained in another set.
+     *
+     * @param other  The set to subtract
+     * @param action The action to perform
+     */
+    public void forEachNotIn(MacAddressSet other, LongConsumer action) {
+        forEach(m -> {
+            if (!other.contains(m)) action.accept(m);
+        });
+    }
+
+    /**
+     * Returns the number of MAC addresses in the set.
+     *
+     * @return The number of MAC addresses
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether the set is empty.
+     *
+     * @return True, if the set is empty; false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Packs the MAC address of a given device description into the lower 48 bits of a long.
+     *
+     * @param deviceDescription The device description
+     * @return The packed MAC address or -1, if the device description does not contain a valid MAC address
+     */
+    public static long packMacAddress(JSONObject deviceDescription) {
+        JSONObject identifiers = (deviceDescription == null) ? null : deviceDescription.optJSONObject("identifiers");
+        return (identifiers == null) ? -1 : packMacAddress(identifiers.optString("mac_address"));
+    }
+
+    /**
+     * Packs a given MAC address of the form AA:BB:CC:DD:EE:FF into the lower 48 bits of a long. Both upper and
+     * lower case hexadecimal digits are accepted.
+     *
+     * @param macAddress The MAC address to pack
+     * @return The packed MAC address or -1, if the MAC address is not valid
+     */
+    public static long packMacAddress(String macAddress) {
+        //Check the length
+        if ((macAddress == null) || (macAddress.length() != 17)) return -1;
+
+        //Parse the six octets
+        long result = 0;
+        for (int i = 0; i < 17; i += 3) {
+            int high = Character.digit(macAddress.charAt(i), 16);
+            int low = Character.digit(macAddress.charAt(i + 1), 16);
+            if ((high < 0) || (low < 0) || ((i < 15) && (macAddress.charAt(i + 2) != ':'))) return -1;
+            result = (result << 8) | (high << 4) | low;
+        }
+        return result;
+    }
+
+    /**
+     * Formats a given packed MAC address in the form AA:BB:CC:DD:EE:FF, as required by the schema of the device
+     * descriptions.
+     *
+     * @param macAddress The packed MAC address to format
+     * @return The formatted MAC address
+     */
+    public static String formatMacAddress(long macAddress) {
+        StringBuilder builder = new StringBuilder(17);
+        for (int shift = 40; shift >= 0; shift -= 8) {
+            int octet = (int) ((macAddress >>> shift) & 0xFF);
+            builder.append(Character.toUpperCase(Character.forDigit(octet >>> 4, 16)))
+                    .append(Character.toUpperCase(Character.forDigit(octet & 0xF, 16)));
+            if (shift > 0) builder.append(':');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Inserts a given entry into a given hash table, unless it is already contained.
+     *
+     * @param table The hash table
+     * @param entry The entry to insert
+     * @return True, if the entry was inserted; false if it was already contained
+     */
+    private static boolean insert(long[] table, long entry) {
+        int mask = table.length - 1;
+        int i = hash(entry) & mask;
+        while (table[i] != 0) {
+            if (table[i] == entry) return false;
+            i = (i + 1) & mask;
+        }
+        table[i] = entry;
+        return true;
+    }
+
+    /**
+     * Calculates the length of a hash table that holds a given number of entries with a load factor of at most 0.5.
+     *
+     * @param entries The number of entries
+     * @return The length of the table
+     */
+    private static int tableLength(int entries) {
+        return Integer.highestOneBit(Math.max(2, entries) * 2 - 1) << 1;
+    }
+
+    /**
+     * Spreads the bits of a given entry for hashing.
+     *
+     * @param entry The entry to hash
+     * @return The hash code
+     */
+    private static int hash(long entry) {
+        long h = entry * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
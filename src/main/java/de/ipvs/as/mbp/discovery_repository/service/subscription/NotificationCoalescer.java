@@ -0,0 +1,319 @@
+package de.ipvs.as.mbp.discovery_repository.service.subscription;
+
+import de.ipvs.as.mbp.discovery_repository.service.messaging.MessageService;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalescing stage for the notification messages that are published to the notification topics of the subscribers.
+ * Revisions without affected subscriptions are dropped. The remaining revisions are buffered per notification topic
+ * for a configurable time window and published together as a single notification message, as soon as the window
+ * elapsed or the buffered operations reached a configurable size. Consecutive revisions for the same subscriptions
+ * are merged into one revision and consecutive upsert or delete operations within a revision are merged into one
+ * operation, as long as this does not change the order in which the operations are observed by any subscription.
+ */
+@Service
+public class NotificationCoalescer {
+
+    //Type name of the notification messages
+    private static final String MESSAGE_TYPE = "query_reply";
+
+    //Operation types that can be merged, mapped to the names of their payload arrays
+    private static final Map<String, String> MERGEABLE_OPERATIONS = Map.of("upsert", "deviceDescriptions", "delete", "macAddresses");
+
+    @Autowired
+    private MessageService messageService;
+
+    //Time window in milliseconds for collecting revisions per notification topic, 0 disables coalescing
+    @Value("${subscriptions.notifications.coalescing.window_ms:50}")
+    private long window;
+
+    //Maximum number of device descriptions and MAC addresses per notification message before it is published early
+    @Value("${subscriptions.notifications.coalescing.max_batch_size:500}")
+    private int maxBatchSize;
+
+    //Map (notification topic --> buffer) of the revisions that are not published yet
+    private final Map<String, TopicBuffer> buffers = new ConcurrentHashMap<>();
+
+    //Executor for publishing the buffered revisions when the time window elapsed
+    private ScheduledExecutorService flushExecutor;
+
+    //Statistics about the coalescing
+    private final LongAdder receivedRevisions = new LongAdder();
+    private final LongAdder droppedRevisions = new LongAdder();
+    private final LongAdder publishedMessages = new LongAdder();
+
+    /**
+     * Creates and initializes the coalescer.
+     */
+    public NotificationCoalescer() {
+
+    }
+
+    /**
+     * Starts the executor for publishing the buffered revisions.
+     */
+    @PostConstruct
+    public void initialize() {
+        //Sanity checks
+        if (window < 0) {
+            throw new IllegalArgumentException("The coalescing window must not be negative.");
+        } else if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("The maximum batch size of notification messages must be positive.");
+        }
+
+        //Create executor with a single daemon thread
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "notification-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Publishes all buffered revisions and stops the executor.
+     */
+    @PreDestroy
+    public void close() {
+        this.buffers.keySet().forEach(this::flush);
+        if (this.flushExecutor != null) this.flushExecutor.shutdownNow();
+    }
+
+    /**
+     * Adds a revision, consisting of the reference IDs of the affected subscriptions and an operation, to the
+     * notification message of a given notification topic. Revisions without affected subscriptions are dropped.
+     * The operation must not be modified after it was added.
+     *
+     * @param notificationTopic The notification topic
+     * @param referenceIds      The reference IDs of the affected subscriptions
+     * @param operation         The operation object of the revision
+     */
+    public void addRevision(String notificationTopic, Set<String> referenceIds, JSONObject operation) {
+        //Sanity checks
+        if ((notificationTopic == null) || notificationTopic.isEmpty()) {
+            throw new IllegalArgumentException("The notification topic must not be null or empty.");
+        } else if (operation == null) {
+            throw new IllegalArgumentException("The operation must not be null.");
+        }
+        receivedRevisions.increment();
+
+        //Drop revisions that do not affect any subscription
+        if ((referenceIds == null) || referenceIds.isEmpty()) {
+            droppedRevisions.increment();
+            return;
+        }
+
+        //Add the revision to the buffer of the topic
+        TopicBuffer buffer = this.buffers.computeIfAbsent(notificationTopic, t -> new TopicBuffer());
+        synchronized (buffer) {
+            boolean scheduled = !buffer.isEmpty();
+            buffer.add(new LinkedHashSet<>(referenceIds), operation);
+
+            //Publish immediately if coalescing is disabled or the batch is full
+            if ((window == 0) || (buffer.size >= maxBatchSize)) {
+                publish(notificationTopic, buffer);
+                return;
+            }
+
+            //Schedule the publication of the buffer when the window elapsed
+            if (!scheduled) {
+                this.flushExecutor.schedule(() -> flush(notificationTopic), window, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Returns statistics about the coalescing, such as the number of received and dropped revisions and the number
+     * of published notification messages.
+     *
+     * @return The map of statistics
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("window_ms", window);
+        statistics.put("max_batch_size", maxBatchSize);
+        statistics.put("received_revisions", receivedRevisions.sum());
+        statistics.put("dropped_revisions", droppedRevisions.sum());
+        statistics.put("published_messages", publishedMessages.sum());
+        return statistics;
+    }
+
+    /**
+     * Publishes the buffered revisions of a given notification topic, if any.
+     *
+     * @param notificationTopic The notification topic
+     */
+    private void flush(String notificationTopic) {
+        TopicBuffer buffer = this.buffers.get(notificationTopic);
+        if (buffer == null) return;
+        synchronized (buffer) {
+            publish(notificationTopic, buffer);
+        }
+    }
+
+    /**
+     * Publishes the revisions of a given {@link TopicBuffer} as a single notification message under a given
+     * notification topic and empties the buffer. Must be called while holding the lock of the buffer.
+     *
+     * @param notificationTopic The notification topic
+     * @param buffer            The buffer to publish
+     */
+    private void publish(String notificationTopic, TopicBuffer buffer) {
+        //Check whether there is anything to publish
+        if (buffer.isEmpty()) return;
+
+        //Create body of notification message
+        JSONObject notificationMessageBody = new JSONObject();
+        JSONArray revisions = new JSONArray();
+        buffer.revisions.forEach(r -> revisions.put(new JSONObject()
+                .put("referenceIds", new JSONArray().putAll(r.referenceIds))
+                .put("operations", new JSONArray().putAll(r.operations))));
+        notificationMessageBody.put("revisions", revisions);
+        buffer.clear();
+
+        //Publish the notification message
+        try {
+            messageService.publishMessage(notificationTopic, notificationMessageBody, MESSAGE_TYPE);
+            publishedMessages.increment();
+        } catch (Exception e) {
+            System.err.println("Error occurred while publishing notification message: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Buffer for the revisions of a single notification topic that are not published yet.
+     */
+    private static class TopicBuffer {
+        //Buffered revisions in the order they were added
+        private final List<Revision> revisions = new ArrayList<>();
+
+        //Total number of device descriptions and MAC addresses within the buffered operations
+        private int size = 0;
+
+        /**
+         * Adds a revision to the buffer. The revision is merged into the last buffered revision for the same
+         * reference IDs if no later revision affects any of these reference IDs.
+         *
+         * @param referenceIds The reference IDs of the affected subscriptions
+         * @param operation    The operation object of the revision
+         */
+        void add(Set<String> referenceIds, JSONObject operation) {
+            size += getPayloadSize(operation);
+
+            //Look for a revision to merge into, starting with the most recent one
+            for (int i = revisions.size() - 1; i >= 0; i--) {
+                Revision revision = revisions.get(i);
+                if (revision.referenceIds.equals(referenceIds)) {
+                    revision.addOperation(operation);
+                    return;
+                }
+                if (!Collections.disjoint(revision.referenceIds, referenceIds)) break;
+            }
+
+            //Create a new revision
+            Revision revision = new Revision(referenceIds);
+            revision.addOperation(operation);
+            revisions.add(revision);
+        }
+
+        /**
+         * Returns whether the buffer contains any revisions.
+         *
+         * @return True, if the buffer is empty; false otherwise
+         */
+        boolean isEmpty() {
+            return revisions.isEmpty();
+        }
+
+        /**
+         * Removes all revisions from the buffer.
+         */
+        void clear() {
+            revisions.clear();
+            size = 0;
+        }
+
+        /**
+         * Returns the number of device descriptions or MAC addresses within a given operation.
+         *
+         * @param operation The operation
+         * @return The number of elements of its payload
+         */
+        private static int getPayloadSize(JSONObject operation) {
+            String payloadName = MERGEABLE_OPERATIONS.getOrDefault(operation.optString("type"), "deviceDescriptions");
+            JSONArray payload = operation.optJSONArray(payloadName);
+            return (payload == null) ? 1 : Math.max(1, payload.length());
+        }
+    }
+
+    /**
+     * Revision of a notification message, consisting of the reference IDs of the affected subscriptions and the
+     * operations to apply to their result sets.
+     */
+    private static class Revision {
+        //Reference IDs of the affected subscriptions
+        private final Set<String> referenceIds;
+
+        //Operations in the order they were added
+        private final List<JSONObject> operations = new ArrayList<>();
+
+        //Whether the last operation was created by merging and is thus owned by the revision
+        private boolean lastOperationOwned = false;
+
+        /**
+         * Creates a new, empty revision for a given set of reference IDs.
+         *
+         * @param referenceIds The reference IDs of the affected subscriptions
+         */
+        Revision(Set<String> referenceIds) {
+            this.referenceIds = referenceIds;
+        }
+
+        /**
+         * Adds an operation to the revision. If the operation and the last operation of the revision are both
+         * upserts or both deletes, their payloads are merged. Operation objects that were passed by the caller are
+         * never modified, since they may be shared between notification topics; instead, the first merge creates
+         * a new operation object that is owned by the revision and extended by subsequent merges.
+         *
+         * @param operation The operation to add
+         */
+        void addOperation(JSONObject operation) {
+            //Check whether the operation can be merged into the last one
+            String type = operation.optString("type");
+            String payloadName = MERGEABLE_OPERATIONS.get(type);
+            JSONObject last = operations.isEmpty() ? null : operations.get(operations.size() - 1);
+            JSONArray payload = (payloadName == null) ? null : operation.optJSONArray(payloadName);
+            JSONArray lastPayload = ((payloadName == null) || (last == null)) ? null : last.optJSONArray(payloadName);
+            if ((payload == null) || (lastPayload == null) || !type.equals(last.optString("type"))) {
+                operations.add(operation);
+                lastOperationOwned = false;
+                return;
+            }
+
+            //Replace the last operation by an owned copy if necessary
+            if (!lastOperationOwned) {
+                JSONArray mergedPayload = new JSONArray();
+                lastPayload.forEach(mergedPayload::put);
+                operations.set(operations.size() - 1, new JSONObject().put("type", type).put(payloadName, mergedPayload));
+                lastPayload = mergedPayload;
+                lastOperationOwned = true;
+            }
+
+            //Append the payload of the operation
+            payload.forEach(lastPayload::put);
+        }
+    }
+}
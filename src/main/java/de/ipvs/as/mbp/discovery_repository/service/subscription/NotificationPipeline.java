@@ -0,0 +1,424 @@
+package de.ipvs.as.mbp.discovery_repository.service.subscription;
+
+import de.ipvs.as.mbp.discovery_repository.service.descriptions.DeviceDescriptionsService;
+import de.ipvs.as.mbp.discovery_repository.service.repository.WriteConsistency;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pipeline that decouples the notification of subscribers from the write operations that cause them. Notification
+ * tasks are distributed among a configurable number of workers, each of which processes its own bounded queue in
+ * FIFO order. Since the tasks of a device description are always assigned to the worker that is derived from its
+ * MAC address, the subscribers are notified in the order of the writes per device. Tasks whose write operations are
+ * not visible for searches yet are put aside by their workers until they become visible, while the subsequent tasks
+ * of other devices are processed in the meantime. When a queue is full, the submission blocks until the worker
+ * caught up, such that the writers are slowed down instead of losing notifications. Hence, tasks must not be
+ * submitted from the threads that complete the futures of the repository, since blocking them would stall all other
+ * requests to the repository. Tasks that affect all device descriptions, such as clearing the repository, are
+ * executed as barrier across all workers.
+ */
+@Service
+public class NotificationPipeline {
+
+    @Autowired
+    private SubscriptionService subscriptionService;
+
+    @Autowired
+    private DeviceDescriptionsService deviceDescriptionsService;
+
+    //Number of workers that process notification tasks in parallel
+    @Value("${subscriptions.notifications.workers:4}")
+    private int workersCount;
+
+    //Maximum number of pending notification tasks over all workers
+    @Value("${subscriptions.notifications.queue_capacity:10000}")
+    private int queueCapacity;
+
+    //Queues of pending notification tasks, one per worker
+    private List<BlockingQueue<NotificationTask>> queues;
+
+    //Executor that runs the workers
+    private ExecutorService workersExecutor;
+
+    //Lock that serializes the submission of barrier tasks, such that they are queued in the same order for all workers
+    private final Object barrierLock = new Object();
+
+    //Statistics about the processed tasks
+    private final LongAdder submittedTasks = new LongAdder();
+    private final LongAdder completedTasks = new LongAdder();
+    private final LongAdder failedTasks = new LongAdder();
+    private final LongAdder blockedSubmissions = new LongAdder();
+    private final LongAdder delayedTasks = new LongAdder();
+    private final AtomicInteger pendingTasksCount = new AtomicInteger();
+    private final LongAdder totalLag = new LongAdder();
+    private final AtomicLong lastLag = new AtomicLong();
+    private final AtomicLong maxLag = new AtomicLong();
+
+    /**
+     * Creates and initializes the pipeline.
+     */
+    public NotificationPipeline() {
+
+    }
+
+    /**
+     * Creates the queues and starts the workers.
+     */
+    @PostConstruct
+    public void initialize() {
+        //Sanity checks
+        if (workersCount < 1) {
+            throw new IllegalArgumentException("The number of notification workers must be positive.");
+        } else if (queueCapacity < workersCount) {
+            throw new IllegalArgumentException("The notification queue capacity must not be smaller than the number of workers.");
+        }
+
+        //Create one bounded queue per worker
+        this.queues = new ArrayList<>(workersCount);
+        for (int i = 0; i < workersCount; i++) {
+            this.queues.add(new ArrayBlockingQueue<>(queueCapacity / workersCount));
+        }
+
+        //Start the workers as daemon threads
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workersExecutor = Executors.newFixedThreadPool(workersCount, r -> {
+            Thread thread = new Thread(r, "notification-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.queues.forEach(q -> this.workersExecutor.execute(() -> processQueue(q)));
+    }
+
+    /**
+     * Stops the workers. Pending notification tasks are discarded.
+     */
+    @PreDestroy
+    public void close() {
+        if (this.workersExecutor != null) this.workersExecutor.shutdownNow();
+    }
+
+    /**
+     * Submits the notification of the subscribers about a device description that was inserted with a given
+     * {@link WriteConsistency}. The notification is performed as soon as the insertion can be expected to be
+     * visible for searches.
+     *
+     * @param insertedDeviceDescription The inserted device description
+     * @param consistency               The consistency level that was applied to the insertion
+     */
+    public void submitInsert(JSONObject insertedDeviceDescription, WriteConsistency consistency) {
+        submitInserts(Collections.singletonList(insertedDeviceDescription), consistency);
+    }
+
+    /**
+     * Submits the notification of the subscribers about a batch of device descriptions that were inserted with a
+     * given {@link WriteConsistency}. The batch is split by workers, such that each worker notifies the subscribers
+     * once about the device descriptions that are assigned to it.
+     *
+     * @param insertedDeviceDescriptions The inserted device descriptions
+     * @param consistency                The consistency level that was applied to the insertion
+     */
+    public void submitInserts(List<JSONObject> insertedDeviceDescriptions, WriteConsistency consistency) {
+        //Sanity check
+        if ((insertedDeviceDescriptions == null) || insertedDeviceDescriptions.isEmpty()) return;
+
+        //Split the device descriptions by the workers they are assigned to
+        Map<Integer, List<JSONObject>> batches = new TreeMap<>();
+        for (JSONObject deviceDescription : insertedDeviceDescriptions) {
+            batches.computeIfAbsent(getWorkerIndex(deviceDescription), i -> new ArrayList<>()).add(deviceDescription);
+        }
+
+        //Submit one task per worker
+        long visibleAt = getVisibleAt(consistency);
+        batches.forEach((index, batch) -> enqueue(this.queues.get(index),
+                new NotificationTask(() -> this.subscriptionService.notifyAboutInserts(batch), visibleAt,
+                        batch.stream().mapToLong(MacAddressSet::packMacAddress).toArray())));
+    }
+
+    /**
+     * Submits the notification of the subscribers about a device description that was deleted with a given
+     * {@link WriteConsistency}. The notification is performed as soon as the deletion can be expected to be
+     * visible for searches.
+     *
+     * @param deletedDeviceDescription The deleted device description
+     * @param consistency              The consistency level that was applied to the deletion
+     */
+    public void submitDelete(JSONObject deletedDeviceDescription, WriteConsistency consistency) {
+        enqueue(this.queues.get(getWorkerIndex(deletedDeviceDescription)),
+                new NotificationTask(() -> this.subscriptionService.notifyAboutDelete(deletedDeviceDescription),
+                        getVisibleAt(consistency), new long[]{MacAddressSet.packMacAddress(deletedDeviceDescription)}));
+    }
+
+    /**
+     * Submits the notification of the subscribers about the clearing of the repository. The notification is executed
+     * as barrier, i.e. after all previously submitted tasks and before all subsequently submitted tasks of all workers.
+     */
+    public void submitClear() {
+        //Latches for the workers that reached the barrier and for the completion of the notification
+        CountDownLatch arrived = new CountDownLatch(this.queues.size());
+        CountDownLatch completed = new CountDownLatch(1);
+
+        //Queue the barrier in the same order for all workers
+        synchronized (barrierLock) {
+            for (int i = 0; i < this.queues.size(); i++) {
+                boolean leader = (i == 0);
+                enqueue(this.queues.get(i), new NotificationTask(() -> {
+                    arrived.countDown();
+                    if (leader) {
+                        //Notify once all workers reached the barrier
+                        try {
+                            awaitUninterruptibly(arrived);
+                            this.subscriptionService.notifyAboutClear();
+                        } finally {
+                            completed.countDown();
+                        }
+                    } else {
+                        //Wait until the notification completed
+                        awaitUninterruptibly(completed);
+                    }
+                }, System.currentTimeMillis(), null));
+            }
+        }
+    }
+
+    /**
+     * Returns statistics about the pipeline, such as the current queue depth and the lag between the submission
+     * of notification tasks and their completion.
+     *
+     * @return The map of statistics
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        long completed = completedTasks.sum();
+        statistics.put("workers", workersCount);
+        statistics.put("queue_capacity", queueCapacity);
+        statistics.put("queue_depth", this.queues.stream().mapToInt(Collection::size).sum() + pendingTasksCount.get());
+        statistics.put("submitted", submittedTasks.sum());
+        statistics.put("completed", completed);
+        statistics.put("failed", failedTasks.sum());
+        statistics.put("blocked_submissions", blockedSubmissions.sum());
+        statistics.put("delayed_tasks", delayedTasks.sum());
+        statistics.put("last_lag_ms", lastLag.get());
+        statistics.put("max_lag_ms", maxLag.get());
+        statistics.put("average_lag_ms", (completed == 0) ? 0 : totalLag.sum() / completed);
+        return statistics;
+    }
+
+    /**
+     * Adds a given {@link NotificationTask} to a given queue. If the queue is full, the calling thread is blocked
+     * until the worker of the queue made room for the task.
+     *
+     * @param queue The queue to add the task to
+     * @param task  The task to add
+     */
+    private void enqueue(BlockingQueue<NotificationTask> queue, NotificationTask task) {
+        //Try to add the task without blocking first
+        submittedTasks.increment();
+        if (queue.offer(task)) return;
+
+        //Queue is full, thus apply backpressure
+        blockedSubmissions.increment();
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            submittedTasks.decrement();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while submitting a notification task.", e);
+        }
+    }
+
+    /**
+     * Processes the tasks of a given queue in FIFO order until the worker is interrupted. Tasks whose write operations
+     * are not visible for searches yet are put aside until they become visible. Subsequent tasks are executed in the
+     * meantime unless they affect a device description of a task that was put aside or follow a barrier task that
+     * was put aside, such that the order of the tasks per device is preserved. At most as many tasks as fit into the
+     * queue are put aside at the same time.
+     *
+     * @param queue The queue to process
+     */
+    private void processQueue(BlockingQueue<NotificationTask> queue) {
+        //Tasks that were taken from the queue, but not executed yet, in the order of their submission
+        List<NotificationTask> pendingTasks = new LinkedList<>();
+        int maxPendingTasks = Math.max(1, queueCapacity / workersCount);
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                //Execute the pending tasks that became executable
+                long nextVisibleAt = executePendingTasks(pendingTasks);
+                long delay = nextVisibleAt - System.currentTimeMillis();
+
+                //Wait for the next task, but not longer than until the next pending task becomes visible
+                NotificationTask task;
+                if (pendingTasks.isEmpty()) {
+                    task = queue.take();
+                } else if (pendingTasks.size() >= maxPendingTasks) {
+                    //Too many pending tasks, thus stop taking tasks from the queue until the next one becomes visible
+                    TimeUnit.MILLISECONDS.sleep(Math.max(1, delay));
+                    continue;
+                } else {
+                    task = queue.poll(Math.max(0, delay), TimeUnit.MILLISECONDS);
+                }
+                if (task == null) continue;
+
+                //Execute the task right away if possible or put it aside otherwise
+                if (pendingTasks.isEmpty() && (task.visibleAt <= System.currentTimeMillis())) {
+                    executeTask(task);
+                } else {
+                    if (task.visibleAt > System.currentTimeMillis()) delayedTasks.increment();
+                    pendingTasks.add(task);
+                    pendingTasksCount.incrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Executes the tasks of a given list of pending tasks that are visible for searches and are not blocked by a
+     * preceding pending task, i.e. by a barrier task or a task that affects one of the same device descriptions.
+     * The executed tasks are removed from the list.
+     *
+     * @param pendingTasks The pending tasks in the order of their submission
+     * @return The earliest point in time at which one of the remaining tasks becomes visible for searches
+     */
+    private long executePendingTasks(List<NotificationTask> pendingTasks) {
+        //Packed MAC addresses of the device descriptions that are affected by remaining tasks
+        Set<Long> blockedMacAddresses = new HashSet<>();
+        long nextVisibleAt = Long.MAX_VALUE;
+
+        Iterator<NotificationTask> iterator = pendingTasks.iterator();
+        while (iterator.hasNext()) {
+            NotificationTask task = iterator.next();
+            long now = System.currentTimeMillis();
+
+            //Check whether the task is visible and not blocked by a preceding task
+            boolean blocked = (task.macAddresses == null) ? !blockedMacAddresses.isEmpty() :
+                    Arrays.stream(task.macAddresses).anyMatch(blockedMacAddresses::contains);
+            if ((task.visibleAt <= now) && !blocked) {
+                iterator.remove();
+                pendingTasksCount.decrementAndGet();
+                executeTask(task);
+                continue;
+            }
+
+            //Keep the task, which blocks all subsequent tasks of its device descriptions
+            if (task.visibleAt > now) nextVisibleAt = Math.min(nextVisibleAt, task.visibleAt);
+            if (task.macAddresses == null) break;
+            Arrays.stream(task.macAddresses).forEach(blockedMacAddresses::add);
+        }
+        return nextVisibleAt;
+    }
+
+    /**
+     * Executes a given {@link NotificationTask} and updates the statistics.
+     *
+     * @param task The task to execute
+     */
+    private void executeTask(NotificationTask task) {
+        //Execute the task
+        try {
+            task.action.run();
+        } catch (Exception e) {
+            failedTasks.increment();
+            System.err.println("Error occurred while notifying subscribers: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        //Update the statistics
+        long lag = System.currentTimeMillis() - task.submittedAt;
+        completedTasks.increment();
+        totalLag.add(lag);
+        lastLag.set(lag);
+        maxLag.accumulateAndGet(lag, Math::max);
+    }
+
+    /**
+     * Returns the index of the worker that is responsible for a given device description, based on its MAC address.
+     * Device descriptions without MAC address are all assigned to the first worker.
+     *
+     * @param deviceDescription The device description
+     * @return The index of the worker
+     */
+    private int getWorkerIndex(JSONObject deviceDescription) {
+        JSONObject identifiers = (deviceDescription == null) ? null : deviceDescription.optJSONObject("identifiers");
+        String macAddress = (identifiers == null) ? "" : identifiers.optString("mac_address");
+        return Math.floorMod(macAddress.toLowerCase(Locale.ROOT).hashCode(), this.queues.size());
+    }
+
+    /**
+     * Returns the point in time at which the changes of a write operation that was executed with a given
+     * {@link WriteConsistency} just now can be expected to be visible for searches.
+     *
+     * @param consistency The consistency level that was applied or null, if the default consistency level was used
+     * @return The point in time in milliseconds since the epoch
+     */
+    private long getVisibleAt(WriteConsistency consistency) {
+        return System.currentTimeMillis() + this.deviceDescriptionsService.getSearchVisibilityDelay(consistency);
+    }
+
+    /**
+     * Waits for a given {@link CountDownLatch} without reacting to interrupts, which are restored afterwards.
+     *
+     * @param latch The latch to wait for
+     */
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Notification task that is processed by a worker of the pipeline.
+     */
+    private static class NotificationTask {
+        //Action that notifies the subscribers
+        private final Runnable action;
+
+        //Point in time at which the task was submitted
+        private final long submittedAt;
+
+        //Point in time from which on the changes of the write operation are visible for searches
+        private final long visibleAt;
+
+        //Packed MAC addresses of the affected device descriptions or null, if all device descriptions are affected
+        private final long[] macAddresses;
+
+        /**
+         * Creates a new notification task from a given action, the point in time from which on the changes of
+         * the causing write operation are visible for searches and the packed MAC addresses of the affected
+         * device descriptions.
+         *
+         * @param action       The action that notifies the subscribers
+         * @param visibleAt    The point in time in milliseconds since the epoch
+         * @param macAddresses The packed MAC addresses or null, if all device descriptions are affected
+         */
+        NotificationTask(Runnable action, long visibleAt, long[] macAddresses) {
+            this.action = action;
+            this.submittedAt = System.currentTimeMillis();
+            this.visibleAt = visibleAt;
+            this.macAddresses = macAddresses;
+        }
+    }
+}
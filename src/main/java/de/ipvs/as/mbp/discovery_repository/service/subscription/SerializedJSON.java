@@ -0,0 +1,42 @@
+package de.ipvs.as.mbp.discovery_repository.service.subscription;
+
+import org.json.JSONObject;
+import org.json.JSONString;
+
+/**
+ * Wrapper for a {@link JSONObject} that is serialized only once, no matter in how many JSON documents it is embedded.
+ * This allows to share payloads, such as projected device descriptions, between the notification messages of
+ * multiple notification topics without serializing them for each message again.
+ */
+class SerializedJSON implements JSONString {
+    //The wrapped JSON object
+    private final JSONObject jsonObject;
+
+    //The serialized JSON object, created on first use
+    private volatile String serialized;
+
+    /**
+     * Creates a new {@link SerializedJSON} that wraps a given {@link JSONObject}. The JSON object must not be
+     * modified afterwards.
+     *
+     * @param jsonObject The JSON object to wrap
+     */
+    SerializedJSON(JSONObject jsonObject) {
+        this.jsonObject = jsonObject;
+    }
+
+    /**
+     * Returns the serialized JSON object, serializing it on the first invocation.
+     *
+     * @return The serialized JSON object
+     */
+    @Override
+    public String toJSONString() {
+        String result = this.serialized;
+        if (result == null) {
+            result = this.jsonObject.toString();
+            this.serialized = result;
+        }
+        return result;
+    }
+}
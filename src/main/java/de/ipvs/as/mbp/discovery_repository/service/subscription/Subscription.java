@@ -1,10 +1,12 @@
 package de.ipvs.as.mbp.discovery_repository.service.subscription;
 
+import de.ipvs.as.mbp.discovery_repository.service.repository.Projection;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Predicate;
 
 /**
  * Objects of this class represent subscriptions of the IoT platform at the repository, such that the IoT platform
@@ -23,8 +25,20 @@ public class Subscription {
     //The scoring criteria of the query
     private JSONArray scoringCriteria;
 
-    //The most recent query result
-    private List<JSONObject> queryResult;
+    //The maximum number of device descriptions in the query result, or zero for the default limit
+    private int limit = 0;
+
+    //The projection to apply to the device descriptions in the notifications
+    private Projection projection = Projection.NONE;
+
+    //The MAC addresses of the device descriptions in the most recent query result
+    private volatile MacAddressSet queryResult = MacAddressSet.EMPTY;
+
+    //Number of times the query result was replaced, used for detecting concurrent replacements
+    private volatile long queryResultVersion = 0;
+
+    //The compiled requirements of the query, or null if they cannot be evaluated in-process
+    private volatile Predicate<JSONObject> matcher;
 
     /**
      * Creates a new, incomplete {@link Subscription} from a given reference ID.
@@ -38,6 +52,7 @@ public class Subscription {
     /**
      * Creates a new {@link Subscription} object from a given return topic, a reference ID, an array of
      * query requirements, an array of scoring criteria and a list containing the most recent results for the query.
+     * Only the MAC addresses of the device descriptions in the query result are retained.
      *
      * @param notificationTopic The return topic to which the asynchronous notifications are supposed to be sent
      * @param referenceId       The reference ID to use in the notification messages
@@ -50,7 +65,7 @@ public class Subscription {
         setReferenceId(referenceId);
         setRequirements(requirements);
         setScoringCriteria(scoringCriteria);
-        setQueryResult(queryResult);
+        setQueryResult((queryResult == null) ? null : MacAddressSet.of(queryResult));
     }
 
     /**
@@ -148,25 +163,101 @@ public class Subscription {
     }
 
     /**
-     * Returns the most recent result of the query.
+     * Returns the maximum number of device descriptions in the query result or zero, if the default limit is used.
+     *
+     * @return The limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Sets the maximum number of device descriptions in the query result. Values lower than one indicate that the
+     * default limit is supposed to be used.
      *
-     * @return The query result
+     * @param limit The limit to set
+     * @return The {@link Subscription}
      */
-    public List<JSONObject> getQueryResult() {
+    public Subscription setLimit(int limit) {
+        this.limit = Math.max(limit, 0);
+        return this;
+    }
+
+    /**
+     * Returns the {@link Projection} that is applied to the device descriptions in the notifications.
+     *
+     * @return The projection
+     */
+    public Projection getProjection() {
+        return projection;
+    }
+
+    /**
+     * Sets the {@link Projection} that is applied to the device descriptions in the notifications. If null is
+     * provided, the full device descriptions are used.
+     *
+     * @param projection The projection to set
+     * @return The {@link Subscription}
+     */
+    public Subscription setProjection(Projection projection) {
+        this.projection = projection == null ? Projection.NONE : projection;
+        return this;
+    }
+
+    /**
+     * Returns the MAC addresses of the device descriptions in the most recent result of the query.
+     *
+     * @return The query result as set of MAC addresses
+     */
+    public MacAddressSet getQueryResult() {
         return queryResult;
     }
 
     /**
-     * Sets the most recent result of the query.
+     * Sets the MAC addresses of the device descriptions in the most recent result of the query.
      *
-     * @param queryResult The query result to set
+     * @param queryResult The query result to set as set of MAC addresses
      * @return The {@link Subscription}
      */
-    public Subscription setQueryResult(List<JSONObject> queryResult) {
+    public Subscription setQueryResult(MacAddressSet queryResult) {
         //Null check
         if (queryResult == null) throw new IllegalArgumentException("The query result most not be null.");
 
         this.queryResult = queryResult;
+        this.queryResultVersion++;
+        return this;
+    }
+
+    /**
+     * Returns the version of the query result, which is incremented each time the query result is replaced. Since
+     * the replacements of the query results of registered subscriptions are serialized by the subscription registry,
+     * the version allows to detect whether the query result was replaced in the meantime.
+     *
+     * @return The version of the query result
+     */
+    public long getQueryResultVersion() {
+        return queryResultVersion;
+    }
+
+    /**
+     * Returns the {@link Predicate} that evaluates whether a single device description satisfies the requirements
+     * of the query in-process.
+     *
+     * @return The predicate or null, if the requirements cannot be evaluated in-process
+     */
+    public Predicate<JSONObject> getMatcher() {
+        return matcher;
+    }
+
+    /**
+     * Sets the {@link Predicate} that evaluates whether a single device description satisfies the requirements
+     * of the query in-process.
+     *
+     * @param matcher The predicate to set or null, if the requirements cannot be evaluated in-process
+     * @return The {@link Subscription}
+     */
+    public Subscription setMatcher(Predicate<JSONObject> matcher) {
+        this.matcher = matcher;
         return this;
     }
 
@@ -0,0 +1,216 @@
+package de.ipvs.as.mbp.discovery_repository.service.subscription;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Thread-safe registry for {@link Subscription}s that indexes the subscriptions by their reference IDs, by their
+ * notification topics and by the packed MAC addresses of the device descriptions in their current query results. All
+ * indexes are backed by {@link ConcurrentHashMap}s, such that updates only lock the affected bins and lookups are
+ * lock-free. Modifications of the same subscription are serialized by the entry of its reference ID.
+ */
+class SubscriptionRegistry {
+    //Map (reference ID --> subscription) of all registered subscriptions
+    private final Map<String, Subscription> subscriptionsByReferenceId = new ConcurrentHashMap<>();
+
+    //Map (notification topic --> subscriptions) of all registered subscriptions
+    private final Map<String, Set<Subscription>> subscriptionsByTopic = new ConcurrentHashMap<>();
+
+    //Map (packed MAC address --> subscriptions) of the device descriptions in the query results of the subscriptions
+    private final Map<Long, Set<Subscription>> subscriptionsByMacAddress = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new, empty {@link SubscriptionRegistry}.
+     */
+    SubscriptionRegistry() {
+
+    }
+
+    /**
+     * Registers a given {@link Subscription}. If a {@link Subscription} with the same reference ID is already
+     * registered, it is replaced by the new one.
+     *
+     * @param subscription The subscription to register
+     */
+    void register(Subscription subscription) {
+        this.subscriptionsByReferenceId.compute(subscription.getReferenceId(), (referenceId, previous) -> {
+            //Remove the previous subscription from the indexes
+            if (previous != null) {
+                removeFromIndex(this.subscriptionsByTopic, previous.getNotificationTopic(), previous);
+                previous.getQueryResult().forEach(m -> removeFromIndex(this.subscriptionsByMacAddress, m, previous));
+            }
+
+            //Add the new subscription to the indexes
+            addToIndex(this.subscriptionsByTopic, subscription.getNotificationTopic(), subscription);
+            subscription.getQueryResult().forEach(m -> addToIndex(this.subscriptionsByMacAddress, m, subscription));
+            return subscription;
+        });
+    }
+
+    /**
+     * Unregisters a {@link Subscription}, given by its reference ID.
+     *
+     * @param referenceId The reference ID of the subscription to unregister
+     * @return True, if a subscription was unregistered; false otherwise
+     */
+    boolean unregister(String referenceId) {
+        //Remember whether a subscription was removed
+        boolean[] removed = {false};
+
+        this.subscriptionsByReferenceId.computeIfPresent(referenceId, (r, subscription) -> {
+            //Remove the subscription from the indexes
+            removeFromIndex(this.subscriptionsByTopic, subscription.getNotificationTopic(), subscription);
+            subscription.getQueryResult().forEach(m -> removeFromIndex(this.subscriptionsByMacAddress, m, subscription));
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Replaces the query result of a given {@link Subscription} and updates the index of the MAC addresses
+     * accordingly, based on the set differences between the old and the new query result. If the subscription is not
+     * registered (anymore), only its query result is replaced.
+     *
+     * @param subscription The subscription whose query result is supposed to be replaced
+     * @param queryResult  The new query result
+     */
+    void updateQueryResult(Subscription subscription, MacAddressSet queryResult) {
+        updateQueryResult(subscription, current -> queryResult);
+    }
+
+    /**
+     * Atomically replaces the query result of a given {@link Subscription} by the result of applying a given function
+     * to its current query result and updates the index of the MAC addresses accordingly. Since all replacements of
+     * the query result of a subscription are serialized, the function always observes the query result that is
+     * actually replaced, such that concurrent read-modify-write cycles cannot overwrite each other. The function is
+     * executed while holding a lock and must thus neither block nor access the registry. If the subscription is not
+     * registered (anymore), only its query result is replaced.
+     *
+     * @param subscription The subscription whose query result is supposed to be replaced
+     * @param function     The function that maps the current query result to the new one or to null, if the query
+     *                     result is supposed to remain unchanged
+     * @return The replaced query result or null, if the function returned null
+     */
+    MacAddressSet updateQueryResult(Subscription subscription, UnaryOperator<MacAddressSet> function) {
+        //Remember the replaced query result
+        MacAddressSet[] replaced = {null};
+
+        this.subscriptionsByReferenceId.compute(subscription.getReferenceId(), (referenceId, current) -> {
+            //Determine the new query result
+            MacAddressSet oldQueryResult = subscription.getQueryResult();
+            MacAddressSet queryResult = function.apply(oldQueryResult);
+            if (queryResult == null) return current;
+            replaced[0] = oldQueryResult;
+
+            //Update the index for the MAC addresses that leave and enter the query result if the subscription is registered
+            if (current == subscription) {
+                oldQueryResult.forEachNotIn(queryResult, m -> removeFromIndex(this.subscriptionsByMacAddress, m, subscription));
+                queryResult.forEachNotIn(oldQueryResult, m -> addToIndex(this.subscriptionsByMacAddress, m, subscription));
+            }
+
+            //Replace the query result
+            subscription.setQueryResult(queryResult);
+            return current;
+        });
+        return replaced[0];
+    }
+
+    /**
+     * Returns a view of all registered {@link Subscription}s.
+     *
+     * @return The collection of subscriptions
+     */
+    Collection<Subscription> getSubscriptions() {
+        return Collections.unmodifiableCollection(this.subscriptionsByReferenceId.values());
+    }
+
+    /**
+     * Returns the notification topics for which at least one {@link Subscription} is registered.
+     *
+     * @return The set of notification topics
+     */
+    Set<String> getNotificationTopics() {
+        return Collections.unmodifiableSet(this.subscriptionsByTopic.keySet());
+    }
+
+    /**
+     * Performs a given action for each notification topic and the set of {@link Subscription}s that are registered
+     * for it. The sets are weakly consistent views, which reflect concurrent modifications without failing.
+     *
+     * @param action The action to perform
+     */
+    void forEachNotificationTopic(BiConsumer<String, Set<Subscription>> action) {
+        this.subscriptionsByTopic.forEach((topic, subscriptions) -> action.accept(topic, Collections.unmodifiableSet(subscriptions)));
+    }
+
+    /**
+     * Returns the {@link Subscription}s whose current query results contain a device description with a given
+     * MAC address.
+     *
+     * @param macAddress The MAC address to look up
+     * @return The set of subscriptions
+     */
+    Set<Subscription> findByMacAddress(String macAddress) {
+        return findByMacAddress(MacAddressSet.packMacAddress(macAddress));
+    }
+
+    /**
+     * Returns the {@link Subscription}s whose current query results contain a device description with a given
+     * packed MAC address. The effort is proportional to the number of returned subscriptions.
+     *
+     * @param packedMacAddress The packed MAC address to look up or -1, if the MAC address is not valid
+     * @return The set of subscriptions
+     */
+    Set<Subscription> findByMacAddress(long packedMacAddress) {
+        //Check whether the MAC address is valid
+        if (packedMacAddress < 0) return Collections.emptySet();
+
+        return new HashSet<>(this.subscriptionsByMacAddress.getOrDefault(packedMacAddress, Collections.emptySet()));
+    }
+
+    /**
+     * Returns the total number of registered {@link Subscription}s.
+     *
+     * @return The number of subscriptions
+     */
+    int size() {
+        return this.subscriptionsByReferenceId.size();
+    }
+
+    /**
+     * Adds a given {@link Subscription} to the set of a given key within a given index.
+     *
+     * @param index        The index to update
+     * @param key          The key of the set
+     * @param subscription The subscription to add
+     */
+    private static <K> void addToIndex(Map<K, Set<Subscription>> index, K key, Subscription subscription) {
+        index.compute(key, (k, subscriptions) -> {
+            if (subscriptions == null) subscriptions = ConcurrentHashMap.newKeySet();
+            subscriptions.add(subscription);
+            return subscriptions;
+        });
+    }
+
+    /**
+     * Removes a given {@link Subscription} from the set of a given key within a given index and removes the key
+     * if its set becomes empty.
+     *
+     * @param index        The index to update
+     * @param key          The key of the set
+     * @param subscription The subscription to remove
+     */
+    private static <K> void removeFromIndex(Map<K, Set<Subscription>> index, K key, Subscription subscription) {
+        index.computeIfPresent(key, (k, subscriptions) -> {
+            subscriptions.remove(subscription);
+            return subscriptions.isEmpty() ? null : subscriptions;
+        });
+    }
+}
@@ -1,7 +1,9 @@
 package de.ipvs.as.mbp.discovery_repository.service.subscription;
 
 import de.ipvs.as.mbp.discovery_repository.service.descriptions.DeviceDescriptionsService;
-import de.ipvs.as.mbp.discovery_repository.service.messaging.MessageService;
+import de.ipvs.as.mbp.discovery_repository.service.repository.Projection;
+import de.ipvs.as.mbp.discovery_repository.service.repository.QueryResult;
+import de.ipvs.as.mbp.discovery_repository.service.repository.RepositoryQuery;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,6 +11,8 @@ import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import java.util.*;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
 /**
  * Service that offers functions related to the subscriptions that the IoT platform can register at the repository.
@@ -16,21 +20,30 @@ import java.util.*;
 @Service
 public class SubscriptionService {
 
+    //Maximum number of subscription queries that are executed together
+    private static final int QUERY_BATCH_SIZE = 50;
+
+    //Maximum number of times the query of a subscription is executed when its query result is replaced concurrently
+    private static final int MAX_QUERY_ATTEMPTS = 3;
+
+    //Projection that reduces the device descriptions in the results of subscription queries to their MAC addresses
+    private static final Projection MAC_ADDRESS_PROJECTION = new Projection(Collections.singletonList("identifiers.mac_address"), Collections.emptyList());
+
     @Autowired
     private DeviceDescriptionsService deviceDescriptionsService;
 
     @Autowired
-    private MessageService messageService;
+    private NotificationCoalescer notificationCoalescer;
 
-    //Map (notification topic --> subscriptions) of all registered subscriptions
-    private final Map<String, Set<Subscription>> subscriptionsMap;
+    //Registry of all registered subscriptions, indexed by reference ID, notification topic and MAC address
+    private final SubscriptionRegistry subscriptionRegistry;
 
     /**
      * Creates the {@link SubscriptionService}.
      */
     public SubscriptionService() {
         //Initialize data structures
-        this.subscriptionsMap = new HashMap<>();
+        this.subscriptionRegistry = new SubscriptionRegistry();
     }
 
     /**
@@ -43,7 +56,10 @@ public class SubscriptionService {
 
     /**
      * Registers a given {@link Subscription} at the {@link SubscriptionService}. If a {@link Subscription} with the
-     * same reference ID is already registered, the old {@link Subscription} will be replaced by the new one.
+     * same reference ID is already registered, the old {@link Subscription} will be replaced by the new one. The
+     * requirements of the subscription are compiled to a predicate for evaluating inserted device descriptions
+     * in-process and registered at the repository, such that inserted device descriptions can also be matched
+     * against them in case they cannot be evaluated in-process.
      *
      * @param subscription The subscription to register
      */
@@ -51,16 +67,14 @@ public class SubscriptionService {
         //Null check
         if (subscription == null) throw new IllegalArgumentException("The subscription must not be null.");
 
-        //Check if the subscription map already contains an entry for the notification topic
-        if (this.subscriptionsMap.containsKey(subscription.getNotificationTopic())) {
-            //Get the set of subscriptions for this topic and update it
-            Set<Subscription> subscriptions = this.subscriptionsMap.get(subscription.getNotificationTopic());
-            subscriptions.remove(subscription);
-            subscriptions.add(subscription);
-        } else {
-            //Create new set of subscriptions for the notification topic
-            this.subscriptionsMap.put(subscription.getNotificationTopic(), new HashSet<>(Collections.singleton(subscription)));
-        }
+        //Compile the requirements of the subscription
+        subscription.setMatcher(this.deviceDescriptionsService.compileSubscriptionQuery(subscription.getRequirements()));
+
+        //Register the subscription, replacing a previous one with the same reference ID
+        this.subscriptionRegistry.register(subscription);
+
+        //Register the requirements of the subscription at the repository
+        this.deviceDescriptionsService.registerSubscriptionQuery(subscription.getReferenceId(), subscription.getRequirements());
     }
 
     /**
@@ -73,16 +87,11 @@ public class SubscriptionService {
         if ((referenceId == null) || referenceId.isEmpty())
             throw new IllegalArgumentException("The reference ID must not be null or empty.");
 
-        //Create dummy subscription from the reference ID
-        Subscription dummySubscription = new Subscription(referenceId);
-
         //Unregister the subscription
-        Set<String> keysToDelete = new HashSet<>();
-        this.subscriptionsMap.forEach((t, subscriptions) -> {
-            subscriptions.remove(dummySubscription);
-            if (subscriptions.isEmpty()) keysToDelete.add(t);
-        });
-        keysToDelete.forEach(this.subscriptionsMap::remove);
+        this.subscriptionRegistry.unregister(referenceId);
+
+        //Unregister the requirements of the subscription from the repository
+        this.deviceDescriptionsService.unregisterSubscriptionQuery(referenceId);
     }
 
     /**
@@ -91,65 +100,166 @@ public class SubscriptionService {
      * @return The number of subscriptions
      */
     public int getSubscriptionsCount() {
-        return this.subscriptionsMap.size();
+        return this.subscriptionRegistry.size();
     }
 
     /**
      * Checks whether the device description query results changed for one or multiple {@link Subscription}s
      * after the insertion of a new device description. If this is the case, the affected subscribers
-     * will be notified with a notification message about the new device description.
+     * will be notified with a notification message about the new device description. The device description is
+     * projected according to the {@link Projection}s of the subscriptions, using one revision per projection.
+     * The requirements of the subscriptions are evaluated in-process where possible, while the queries of the
+     * matching subscriptions are only executed again if it is in doubt whether the device description is ranked
+     * within their limits.
      *
      * @param insertedDeviceDescription The inserted device description
      */
     public void notifyAboutInsert(JSONObject insertedDeviceDescription) {
-        //Iterate over the subscription map
-        this.subscriptionsMap.forEach((notificationTopic, subscriptions) -> {
-            //Create set storing the reference IDs of the affected subscriptions
-            Set<String> referenceIds = new HashSet<>();
+        //Handle the device description like a batch of a single device description
+        notifyAboutInserts(Collections.singletonList(insertedDeviceDescription));
+    }
 
-            //Iterate over all subscriptions
-            subscriptions.forEach(sub -> {
-                //Execute the query again for the current subscription
-                List<JSONObject> newQueryResult = this.deviceDescriptionsService.queryDeviceDescriptions(sub.getRequirements(), sub.getScoringCriteria());
+    /**
+     * Checks whether the device description query results changed for one or multiple {@link Subscription}s
+     * after the insertion of a batch of new device descriptions. The query of each {@link Subscription} is
+     * executed at most once for the whole batch. The affected subscribers will be notified with one revision per
+     * notification topic and {@link Projection} that contains all inserted device descriptions that became part
+     * of their result sets, projected according to the projection. Each device description is projected and
+     * serialized at most once per projection, regardless of the number of notification topics. Only the queries of
+     * the subscriptions whose requirements are satisfied by at least one of the device descriptions are executed
+     * again, provided that it is in doubt whether the device descriptions are ranked within their limits. Updated
+     * device descriptions that were part of the result set of a subscription, but no longer satisfy its requirements,
+     * are found by means of the MAC address index of the subscriptions, such that only the affected subscriptions
+     * are queried again. Device descriptions that left the result sets are reported as delete operations, which are
+     * only derived from query results that were actually returned by the repository. Subscriptions whose queries
+     * failed keep their current result sets and are not notified. The queries of all affected subscriptions are
+     * executed together in batches. The query results are replaced atomically per subscription, such that
+     * notifications that are processed concurrently for other device descriptions cannot overwrite each other.
+     *
+     * @param insertedDeviceDescriptions The inserted device descriptions
+     */
+    public void notifyAboutInserts(List<JSONObject> insertedDeviceDescriptions) {
+        //Sanity check
+        if ((insertedDeviceDescriptions == null) || insertedDeviceDescriptions.isEmpty()) return;
+
+        //Determine the subscriptions whose requirements are satisfied by any of the device descriptions and cannot be evaluated in-process
+        Set<String> matchingReferenceIds = findMatchingSubscriptions(insertedDeviceDescriptions);
+
+        //Look up the subscriptions whose current result sets already contain any of the device descriptions
+        Map<Subscription, List<JSONObject>> updatedBySubscription = findContainingSubscriptions(insertedDeviceDescriptions);
+
+        //Create maps storing the candidate device descriptions and the query result changes of the affected subscriptions
+        Map<Subscription, List<JSONObject>> candidatesBySubscription = new IdentityHashMap<>();
+        Map<Subscription, QueryResultChange> queryResultChanges = new IdentityHashMap<>();
+
+        //Collect the subscriptions whose queries need to be executed again
+        List<Subscription> subscriptionsToQuery = new ArrayList<>();
+
+        //Iterate over all subscriptions
+        this.subscriptionRegistry.getSubscriptions().forEach(sub -> {
+            //Skip subscriptions whose requirements are not satisfied by any of the device descriptions and that do not contain any of them
+            List<JSONObject> candidateDeviceDescriptions = filterMatching(sub, insertedDeviceDescriptions, matchingReferenceIds);
+            List<JSONObject> updatedDeviceDescriptions = updatedBySubscription.getOrDefault(sub, Collections.emptyList());
+            if (candidateDeviceDescriptions.isEmpty() && updatedDeviceDescriptions.isEmpty()) return;
+            candidatesBySubscription.put(sub, candidateDeviceDescriptions);
+
+            //Check whether any of the contained device descriptions no longer satisfies the requirements
+            boolean leaving = updatedDeviceDescriptions.stream().anyMatch(d -> !candidateDeviceDescriptions.contains(d));
+
+            //Try to derive the new query result from the current one without querying the repository
+            QueryResultChange queryResultChange = leaving ? null : updateQueryResult(sub,
+                    current -> deriveQueryResult(sub, current, candidateDeviceDescriptions));
+            if (queryResultChange == null) {
+                subscriptionsToQuery.add(sub);
+            } else {
+                queryResultChanges.put(sub, queryResultChange);
+            }
+        });
 
-                //Check if the new device description is part of the result set
-                if (newQueryResult.stream().noneMatch(d -> deviceDescriptionsEquals(d, insertedDeviceDescription)))
-                    return;
+        //Execute the queries of the remaining subscriptions again
+        Map<Subscription, QueryResultChange> queriedChanges = querySubscriptions(subscriptionsToQuery);
+        queryResultChanges.putAll(queriedChanges);
+
+        //Subscriptions whose queries failed remain without query result change and are thus skipped below
+        if (queriedChanges.size() < subscriptionsToQuery.size()) {
+            System.err.println("Failed to query " + (subscriptionsToQuery.size() - queriedChanges.size())
+                    + " subscription(s) again, their result sets remain unchanged.");
+        }
 
-                //Update subscription object
-                sub.setQueryResult(newQueryResult);
+        //Create map (projection --> device description --> serialized projected device description) shared by all topics
+        Map<Projection, Map<JSONObject, SerializedJSON>> projectedDeviceDescriptions = new HashMap<>();
 
-                //Add reference ID to the set
-                referenceIds.add(sub.getReferenceId());
-            });
+        //Create map (MAC address --> delete operation) shared by all topics
+        Map<String, JSONObject> deleteOperations = new HashMap<>();
 
-            //Create body of notification message
-            JSONObject notificationMessageBody = new JSONObject();
+        //Iterate over the subscriptions per notification topic
+        this.subscriptionRegistry.forEachNotificationTopic((notificationTopic, subscriptions) -> {
+            //Create maps storing the reference IDs of the affected subscriptions and the affected device descriptions per projection
+            Map<Projection, Set<String>> referenceIdsByProjection = new LinkedHashMap<>();
+            Map<Projection, Set<JSONObject>> deviceDescriptionsByProjection = new HashMap<>();
 
-            //Create revision object
-            JSONObject revisionObject = new JSONObject();
+            //Create map (MAC address --> reference IDs) of the device descriptions that left the result sets
+            Map<String, Set<String>> referenceIdsByDepartedMacAddress = new LinkedHashMap<>();
+
+            //Iterate over all subscriptions
+            subscriptions.forEach(sub -> {
+                //Skip subscriptions that are not affected or whose queries failed, since no departures can be derived for them
+                QueryResultChange queryResultChange = queryResultChanges.get(sub);
+                if (queryResultChange == null) return;
 
-            //Create operation object
-            JSONObject operationObject = new JSONObject();
-            operationObject.put("type", "upsert");
-            operationObject.put("deviceDescriptions", new JSONArray().put(insertedDeviceDescription));
+                //Determine the new device descriptions that are part of the result set
+                List<JSONObject> matchingDeviceDescriptions = candidatesBySubscription.get(sub).stream()
+                        .filter(queryResultChange.newQueryResult::contains).collect(Collectors.toList());
 
-            //Set fields of revision object
-            revisionObject.put("referenceIds", new JSONArray().putAll(referenceIds));
-            revisionObject.put("operations", new JSONArray().put(operationObject));
+                //Determine the MAC addresses that left the result set as difference between the replaced and the new result
+                List<String> departedMacAddresses = new ArrayList<>();
+                queryResultChange.oldQueryResult.forEachNotIn(queryResultChange.newQueryResult,
+                        m -> departedMacAddresses.add(MacAddressSet.formatMacAddress(m)));
 
-            //Add revision object to reply message
-            notificationMessageBody.put("revisions", new JSONArray().put(revisionObject));
+                //Check if the result set is affected at all
+                if (matchingDeviceDescriptions.isEmpty() && departedMacAddresses.isEmpty()) return;
+
+                //Add reference ID to the sets of the departed MAC addresses
+                departedMacAddresses.forEach(m -> referenceIdsByDepartedMacAddress.computeIfAbsent(m, k -> new HashSet<>()).add(sub.getReferenceId()));
+
+                //Add reference ID and device descriptions to the sets of the projection
+                if (matchingDeviceDescriptions.isEmpty()) return;
+                referenceIdsByProjection.computeIfAbsent(sub.getProjection(), p -> new HashSet<>()).add(sub.getReferenceId());
+                deviceDescriptionsByProjection.computeIfAbsent(sub.getProjection(), p -> new HashSet<>()).addAll(matchingDeviceDescriptions);
+            });
+
+            //Create one delete revision per departed MAC address
+            referenceIdsByDepartedMacAddress.forEach((macAddress, referenceIds) -> {
+                JSONObject operationObject = deleteOperations.computeIfAbsent(macAddress, m -> new JSONObject()
+                        .put("type", "delete").put("macAddresses", new JSONArray().put(m)));
+                this.notificationCoalescer.addRevision(notificationTopic, referenceIds, operationObject);
+            });
 
-            //Publish the notification message
-            messageService.publishMessage(notificationTopic, notificationMessageBody, "query_reply");
+            //Create one revision per projection
+            referenceIdsByProjection.forEach((projection, referenceIds) -> {
+                //Get the affected device descriptions of the projection and their shared projected versions
+                Set<JSONObject> affectedDeviceDescriptions = deviceDescriptionsByProjection.get(projection);
+                Map<JSONObject, SerializedJSON> projected = projectedDeviceDescriptions.computeIfAbsent(projection, p -> new IdentityHashMap<>());
+
+                //Create operation object, keeping the original order of the device descriptions
+                JSONObject operationObject = new JSONObject();
+                operationObject.put("type", "upsert");
+                operationObject.put("deviceDescriptions", new JSONArray().putAll(insertedDeviceDescriptions.stream()
+                        .filter(affectedDeviceDescriptions::contains)
+                        .map(d -> projected.computeIfAbsent(d, i -> new SerializedJSON(projection.apply(i))))
+                        .collect(Collectors.toList())));
+
+                //Hand the revision to the coalescer, which publishes it together with other revisions of the topic
+                this.notificationCoalescer.addRevision(notificationTopic, referenceIds, operationObject);
+            });
         });
     }
 
     /**
      * Checks whether the device description query results changed for one or multiple {@link Subscription}s
      * after the deletion of a device description. If this is the case, the affected subscribers
-     * will be notified with a notification message about the deleted device description.
+     * will be notified with a notification message about the deleted device description. Only subscriptions whose
+     * replaced query results contained the device description, while their new query results do not, are notified.
      *
      * @param deviceDescription The device description that has been deleted
      */
@@ -160,46 +270,26 @@ public class SubscriptionService {
         //Check if MAC address is valid
         if (macAddress.isEmpty()) return;
 
-        //Iterate over the subscription map
-        this.subscriptionsMap.forEach((notificationTopic, subscriptions) -> {
-            //Create set storing the reference IDs of the affected subscriptions
-            Set<String> referenceIds = new HashSet<>();
-
-            //Iterate over all subscriptions
-            subscriptions.forEach(sub -> {
-                //Check if the current result set of the subscription contains the affected device description
-                if (sub.getQueryResult().stream().noneMatch(d -> deviceDescriptionsEquals(d, deviceDescription))) {
-                    return;
-                }
-
-                //Update subscription object
-                sub.setQueryResult(this.deviceDescriptionsService.queryDeviceDescriptions(sub.getRequirements(), sub.getScoringCriteria()));
-
-                //Result set of the current subscriptions is affected, so add the reference ID to the set
-                referenceIds.add(sub.getReferenceId());
-            });
-
-            //Create body of notification message
-            JSONObject notificationMessageBody = new JSONObject();
+        //Look up the subscriptions whose current result sets contain the affected device description and query them again
+        long packedMacAddress = MacAddressSet.packMacAddress(macAddress);
+        Map<String, Set<String>> referenceIdsByTopic = new HashMap<>();
+        querySubscriptions(this.subscriptionRegistry.findByMacAddress(packedMacAddress)).forEach((sub, queryResultChange) -> {
+            //Check whether the device description left the result set
+            if ((!queryResultChange.oldQueryResult.contains(packedMacAddress)) ||
+                    queryResultChange.newQueryResult.contains(packedMacAddress)) return;
 
-            //Create revision object
-            JSONObject revisionObject = new JSONObject();
-
-            //Create operation object
-            JSONObject operationObject = new JSONObject();
-            operationObject.put("type", "delete");
-            operationObject.put("macAddresses", new JSONArray().put(macAddress));
-
-            //Set fields of revision object
-            revisionObject.put("referenceIds", new JSONArray().putAll(referenceIds));
-            revisionObject.put("operations", new JSONArray().put(operationObject));
+            //Result set of the current subscriptions is affected, so add the reference ID to the set of its topic
+            referenceIdsByTopic.computeIfAbsent(sub.getNotificationTopic(), t -> new HashSet<>()).add(sub.getReferenceId());
+        });
 
-            //Add revision object to reply message
-            notificationMessageBody.put("revisions", new JSONArray().put(revisionObject));
+        //Create operation object, which is shared by all notification topics
+        JSONObject operationObject = new JSONObject();
+        operationObject.put("type", "delete");
+        operationObject.put("macAddresses", new JSONArray().put(macAddress));
 
-            //Publish the notification message
-            messageService.publishMessage(notificationTopic, notificationMessageBody, "query_reply");
-        });
+        //Hand one revision per affected notification topic to the coalescer
+        referenceIdsByTopic.forEach((notificationTopic, referenceIds) ->
+                this.notificationCoalescer.addRevision(notificationTopic, referenceIds, operationObject));
     }
 
     /**
@@ -208,73 +298,220 @@ public class SubscriptionService {
      * will be notified with a notification message about the full deletion.
      */
     public void notifyAboutClear() {
-        //Iterate over the subscription map
-        this.subscriptionsMap.forEach((notificationTopic, subscriptions) -> {
+        //Create operation object, which is shared by all notification topics
+        JSONObject operationObject = new JSONObject();
+        operationObject.put("type", "replace");
+        operationObject.put("deviceDescriptions", new JSONArray());
+
+        //Iterate over the subscriptions per notification topic
+        this.subscriptionRegistry.forEachNotificationTopic((notificationTopic, subscriptions) -> {
             //Create set storing the reference IDs of the affected subscriptions
             Set<String> referenceIds = new HashSet<>();
 
             //Iterate over all subscriptions
             subscriptions.forEach(sub -> {
-                //Check if the current result set of the subscription contained any device description
-                if (sub.getQueryResult().isEmpty()) return;
-
-                //Update subscription object
-                sub.setQueryResult(new LinkedList<>());
+                //Empty the result set of the subscription unless it is already empty
+                if (this.subscriptionRegistry.updateQueryResult(sub, current -> current.isEmpty() ? null : MacAddressSet.EMPTY) == null) {
+                    return;
+                }
 
                 //Result set of the current subscriptions is affected, so add the reference ID to the set
                 referenceIds.add(sub.getReferenceId());
             });
 
-            //Create body of notification message
-            JSONObject notificationMessageBody = new JSONObject();
+            //Hand the revision to the coalescer, which drops it if no subscription is affected
+            this.notificationCoalescer.addRevision(notificationTopic, referenceIds, operationObject);
+        });
+    }
 
-            //Create revision object
-            JSONObject revisionObject = new JSONObject();
+    /**
+     * Determines the {@link Subscription}s whose requirements cannot be evaluated in-process and are satisfied by
+     * at least one of the given device descriptions by matching them against the queries registered at the
+     * repository. The repository is only involved if any of the subscriptions cannot be evaluated in-process.
+     *
+     * @param deviceDescriptions The device descriptions to match against the subscriptions
+     * @return The set of reference IDs of the matching subscriptions or null, if all subscriptions that cannot be
+     * evaluated in-process need to be considered as matching
+     */
+    private Set<String> findMatchingSubscriptions(List<JSONObject> deviceDescriptions) {
+        //Check whether any of the subscriptions cannot be evaluated in-process
+        boolean percolationRequired = this.subscriptionRegistry.getSubscriptions().stream().anyMatch(s -> s.getMatcher() == null);
 
-            //Create operation object
-            JSONObject operationObject = new JSONObject();
-            operationObject.put("type", "replace");
-            operationObject.put("deviceDescriptions", new JSONArray());
+        //Match the device descriptions against the registered queries if required
+        return percolationRequired ? this.deviceDescriptionsService.findMatchingSubscriptions(deviceDescriptions)
+                : Collections.emptySet();
+    }
 
-            //Set fields of revision object
-            revisionObject.put("referenceIds", new JSONArray().putAll(referenceIds));
-            revisionObject.put("operations", new JSONArray().put(operationObject));
+    /**
+     * Looks up the {@link Subscription}s whose current result sets contain any of the given device descriptions by
+     * using the MAC address index of the subscriptions, such that the effort is proportional to the number of
+     * affected subscriptions.
+     *
+     * @param deviceDescriptions The device descriptions to look up
+     * @return The map (subscription --> contained device descriptions) of the affected subscriptions
+     */
+    private Map<Subscription, List<JSONObject>> findContainingSubscriptions(List<JSONObject> deviceDescriptions) {
+        Map<Subscription, List<JSONObject>> result = new IdentityHashMap<>();
+        for (JSONObject deviceDescription : deviceDescriptions) {
+            this.subscriptionRegistry.findByMacAddress(MacAddressSet.packMacAddress(deviceDescription))
+                    .forEach(sub -> result.computeIfAbsent(sub, s -> new ArrayList<>()).add(deviceDescription));
+        }
+        return result;
+    }
 
-            //Add revision object to reply message
-            notificationMessageBody.put("revisions", new JSONArray().put(revisionObject));
+    /**
+     * Filters a given list of device descriptions for the ones that satisfy the requirements of a given
+     * {@link Subscription}. If the requirements of the subscription can be evaluated in-process, the device
+     * descriptions are tested one by one. Otherwise, all device descriptions are considered as matching if the
+     * subscription is part of a given set of reference IDs of matching subscriptions.
+     *
+     * @param subscription         The subscription whose requirements are supposed to be evaluated
+     * @param deviceDescriptions   The device descriptions to filter
+     * @param matchingReferenceIds The reference IDs of the matching subscriptions that cannot be evaluated
+     *                             in-process or null, if all of them need to be considered as matching
+     * @return The list of device descriptions that (may) satisfy the requirements of the subscription
+     */
+    private List<JSONObject> filterMatching(Subscription subscription, List<JSONObject> deviceDescriptions,
+                                            Set<String> matchingReferenceIds) {
+        //Evaluate the requirements in-process if possible
+        if (subscription.getMatcher() != null) {
+            return deviceDescriptions.stream().filter(subscription.getMatcher()).collect(Collectors.toList());
+        }
 
-            //Publish the notification message
-            messageService.publishMessage(notificationTopic, notificationMessageBody, "query_reply");
-        });
+        //Rely on the matching subscriptions as determined by the repository
+        if ((matchingReferenceIds != null) && (!matchingReferenceIds.contains(subscription.getReferenceId()))) {
+            return Collections.emptyList();
+        }
+        return deviceDescriptions;
     }
 
     /**
-     * Checks and returns whether two device descriptions, given as {@link JSONObject}, are equal, i.e. describe
-     * the same device. For this, the MAC addresses of the device descriptions are compared.
+     * Derives the new query result of a given {@link Subscription} from a given current query result after the
+     * insertion of device descriptions that (may) satisfy its requirements without querying the repository. This is
+     * possible if the requirements of the subscription are evaluated in-process and the subscription does not rank
+     * the device descriptions by scoring criteria, such that the MAC addresses of the device descriptions can be added
+     * to the current query result directly, as long as the limit of the subscription is not exceeded. Otherwise, it
+     * is in doubt whether the device descriptions are part of the result and the query of the subscription needs to
+     * be executed again.
      *
-     * @param deviceDescription1 The first device description to compare
-     * @param deviceDescription2 The second device description to compare
-     * @return True, if both device descriptions are equal; false otherwise
+     * @param subscription       The subscription whose query result is supposed to be derived
+     * @param queryResult        The current query result of the subscription
+     * @param deviceDescriptions The inserted device descriptions that (may) satisfy the requirements
+     * @return The new query result of the subscription or null, if it cannot be derived
      */
-    private boolean deviceDescriptionsEquals(JSONObject deviceDescription1, JSONObject deviceDescription2) {
-        //Null checks
-        if ((deviceDescription1 == null) || (deviceDescription2 == null)) return false;
+    private MacAddressSet deriveQueryResult(Subscription subscription, MacAddressSet queryResult, List<JSONObject> deviceDescriptions) {
+        //Check whether the device descriptions certainly satisfy the requirements and are not ranked
+        if ((subscription.getMatcher() == null) || ((subscription.getScoringCriteria() != null) && !subscription.getScoringCriteria().isEmpty())) {
+            return null;
+        }
 
-        //Get identifiers
-        JSONObject identifiers1 = deviceDescription1.optJSONObject("identifiers");
-        JSONObject identifiers2 = deviceDescription2.optJSONObject("identifiers");
+        //Add the MAC addresses of the device descriptions to the current query result
+        MacAddressSet newQueryResult = queryResult.withAll(deviceDescriptions);
 
-        //Check availability of identifiers
-        if ((identifiers1 == null) || (identifiers2 == null)) return false;
+        //Check whether the limit of the subscription is exceeded
+        return (newQueryResult.size() <= this.deviceDescriptionsService.getEffectiveQueryLimit(subscription.getLimit())) ?
+                newQueryResult : null;
+    }
 
-        //Get MAC addresses
-        String mac1 = identifiers1.optString("mac_address");
-        String mac2 = identifiers2.optString("mac_address");
+    /**
+     * Executes the queries of a given collection of {@link Subscription}s against the device descriptions
+     * repository, using the limits of the subscriptions, and replaces their query results by the MAC addresses of the
+     * resulting device descriptions. The queries are executed together in batches of at most
+     * {@link #QUERY_BATCH_SIZE} queries and only retrieve the MAC addresses of the device descriptions. If the query
+     * result of a subscription was replaced concurrently while its query was executed, the query is executed again,
+     * up to {@link #MAX_QUERY_ATTEMPTS} times, such that a more recent query result is never overwritten by an older
+     * one. Subscriptions whose queries failed are not contained in the resulting map and keep their current query
+     * results, such that they are not replaced by results that are not authoritative.
+     *
+     * @param subscriptions The subscriptions whose queries are supposed to be executed
+     * @return The map (subscription --> query result change) of the subscriptions whose queries succeeded
+     */
+    private Map<Subscription, QueryResultChange> querySubscriptions(Collection<Subscription> subscriptions) {
+        //Create map for the query result changes
+        Map<Subscription, QueryResultChange> changes = new IdentityHashMap<>();
+
+        //Execute the queries until no query result was replaced concurrently or the maximum number of attempts is reached
+        List<Subscription> pendingSubscriptions = new ArrayList<>(subscriptions);
+        for (int attempt = 1; !pendingSubscriptions.isEmpty(); attempt++) {
+            boolean lastAttempt = (attempt >= MAX_QUERY_ATTEMPTS);
+            List<Subscription> conflictingSubscriptions = new ArrayList<>();
+
+            //Split the subscriptions into batches
+            for (int start = 0; start < pendingSubscriptions.size(); start += QUERY_BATCH_SIZE) {
+                List<Subscription> batch = pendingSubscriptions.subList(start, Math.min(start + QUERY_BATCH_SIZE, pendingSubscriptions.size()));
+
+                //Remember the versions of the query results before executing the queries
+                long[] versions = batch.stream().mapToLong(Subscription::getQueryResultVersion).toArray();
+
+                //Create queries from the subscriptions
+                List<RepositoryQuery> queries = batch.stream().map(s -> new RepositoryQuery(s.getRequirements(), s.getScoringCriteria())
+                        .setLimit(s.getLimit()).setProjection(MAC_ADDRESS_PROJECTION)).collect(Collectors.toList());
+
+                //Execute the queries together and collect the MAC addresses of their first pages
+                List<QueryResult> queryResults = this.deviceDescriptionsService.queryDeviceDescriptions(queries);
+                for (int i = 0; i < batch.size(); i++) {
+                    //Skip subscriptions whose queries failed
+                    QueryResult queryResult = queryResults.get(i);
+                    if (queryResult == null) continue;
+
+                    //Replace the query result unless it was replaced concurrently in the meantime
+                    Subscription subscription = batch.get(i);
+                    long version = versions[i];
+                    MacAddressSet newQueryResult = MacAddressSet.of(queryResult.getDocuments());
+                    QueryResultChange change = updateQueryResult(subscription, current ->
+                            (lastAttempt || (subscription.getQueryResultVersion() == version)) ? newQueryResult : null);
+                    if (change == null) {
+                        conflictingSubscriptions.add(subscription);
+                    } else {
+                        changes.put(subscription, change);
+                    }
+                }
+            }
+            pendingSubscriptions = conflictingSubscriptions;
+        }
+        return changes;
+    }
 
-        //Check availability of MAC addresses
-        if (mac1.isEmpty() || mac2.isEmpty()) return false;
+    /**
+     * Atomically replaces the query result of a given {@link Subscription} by the result of applying a given function
+     * to its current query result and returns the change.
+     *
+     * @param subscription The subscription whose query result is supposed to be replaced
+     * @param function     The function that maps the current query result to the new one or to null, if the query
+     *                     result is supposed to remain unchanged
+     * @return The change of the query result or null, if the function returned null
+     */
+    private QueryResultChange updateQueryResult(Subscription subscription, UnaryOperator<MacAddressSet> function) {
+        //Remember the new query result
+        MacAddressSet[] newQueryResult = {null};
+
+        //Replace the query result atomically
+        MacAddressSet oldQueryResult = this.subscriptionRegistry.updateQueryResult(subscription, current -> {
+            newQueryResult[0] = function.apply(current);
+            return newQueryResult[0];
+        });
+        return (oldQueryResult == null) ? null : new QueryResultChange(oldQueryResult, newQueryResult[0]);
+    }
 
-        //Compare MAC addresses
-        return mac1.equalsIgnoreCase(mac2);
+    /**
+     * Change of the query result of a {@link Subscription}, consisting of the replaced and the new query result.
+     */
+    private static class QueryResultChange {
+        //The query result that was replaced
+        private final MacAddressSet oldQueryResult;
+
+        //The new query result
+        private final MacAddressSet newQueryResult;
+
+        /**
+         * Creates a new query result change from the replaced and the new query result.
+         *
+         * @param oldQueryResult The replaced query result
+         * @param newQueryResult The new query result
+         */
+        QueryResultChange(MacAddressSet oldQueryResult, MacAddressSet newQueryResult) {
+            this.oldQueryResult = oldQueryResult;
+            this.newQueryResult = newQueryResult;
+        }
     }
 }
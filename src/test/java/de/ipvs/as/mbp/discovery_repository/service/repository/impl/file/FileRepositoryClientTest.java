@@ -0,0 +1,151 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.file;
+
+import de.ipvs.as.mbp.discovery_repository.service.repository.WriteConsistency;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link FileRepositoryClient}, covering the recovery from incomplete writes and the background
+ * compaction of the log file while documents are written concurrently.
+ */
+class FileRepositoryClientTest {
+
+    //Name of the collection to use
+    private static final String COLLECTION_NAME = "devices";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversDocumentsFromLogWithTornTail() throws IOException {
+        //Store documents
+        Map<String, JSONObject> documents = new HashMap<>();
+        FileRepositoryClient client = connect(new FileRepositoryClient(directory), new ArrayList<>());
+        for (int i = 0; i < 3; i++) {
+            JSONObject document = createDocument(i, 0);
+            documents.put(client.insertDocument(document, WriteConsistency.IMMEDIATE), document);
+        }
+        client.close();
+
+        //Simulate a crash in the middle of writing a further record
+        Path logFilePath = directory.resolve(COLLECTION_NAME + ".log");
+        long validSize = Files.size(logFilePath);
+        Files.write(logFilePath, new byte[]{0, 0, 0, 100, 1, 2, 3, 4, 1, 0}, StandardOpenOption.APPEND);
+
+        //The documents are recovered and the incomplete record is removed
+        List<Exception> exceptions = new ArrayList<>();
+        client = connect(new FileRepositoryClient(directory), exceptions);
+        assertEquals(validSize, Files.size(logFilePath));
+        assertDocuments(documents, client);
+
+        //Documents that are written after the recovery survive a further restart
+        JSONObject document = createDocument(3, 0);
+        documents.put(client.insertDocument(document, WriteConsistency.IMMEDIATE), document);
+        client.close();
+
+        client = connect(new FileRepositoryClient(directory), exceptions);
+        assertDocuments(documents, client);
+        client.close();
+        assertTrue(exceptions.isEmpty(), exceptions::toString);
+    }
+
+    @Test
+    void compactionRacingWithWritesKeepsLatestDocuments() throws Exception {
+        //Use a client that starts compacting as soon as half of the log file is garbage
+        List<Exception> exceptions = Collections.synchronizedList(new ArrayList<>());
+        FileRepositoryClient client = connect(new FileRepositoryClient(directory, 0), exceptions);
+
+        //Insert the documents
+        int documentsCount = 20;
+        int updatesCount = 200;
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < documentsCount; i++) {
+            ids.add(client.insertDocument(createDocument(i, 0), WriteConsistency.FIRE_AND_FORGET));
+        }
+
+        //Update the documents from multiple threads, which repeatedly triggers compactions
+        int threadsCount = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threadsCount);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threadsCount; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int version = 1; version <= updatesCount; version++) {
+                    for (int i = thread; i < documentsCount; i += threadsCount) {
+                        client.updateDocument(ids.get(i), new JSONObject().put("version", version), WriteConsistency.FIRE_AND_FORGET);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) future.get(60, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        //All documents reflect their last update, both before and after a restart
+        Map<String, JSONObject> expected = new HashMap<>();
+        for (int i = 0; i < documentsCount; i++) expected.put(ids.get(i), createDocument(i, updatesCount));
+        assertDocuments(expected, client);
+        client.close();
+
+        FileRepositoryClient restartedClient = connect(new FileRepositoryClient(directory, 0), exceptions);
+        assertDocuments(expected, restartedClient);
+        assertEquals(documentsCount, restartedClient.getDocumentsCount());
+        restartedClient.close();
+        assertTrue(exceptions.isEmpty(), exceptions::toString);
+
+        //The log file was compacted, since it is far smaller than the documents of all written records together
+        long writtenBytes = (long) documentsCount * updatesCount * createDocument(0, 0).toString().length();
+        assertTrue(Files.size(directory.resolve(COLLECTION_NAME + ".log")) < writtenBytes / 4);
+        assertFalse(Files.exists(directory.resolve(COLLECTION_NAME + ".log.compact")));
+    }
+
+    /**
+     * Connects a given client to the collection and collects the exceptions it reports in a given list.
+     *
+     * @param client     The client to connect
+     * @param exceptions The list to collect the exceptions in
+     * @return The connected client
+     */
+    private static FileRepositoryClient connect(FileRepositoryClient client, List<Exception> exceptions) {
+        client.setExceptionHandler(exceptions::add);
+        client.connect(null, 0, null, null, COLLECTION_NAME);
+        assertTrue(client.isConnected());
+        return client;
+    }
+
+    /**
+     * Creates a simple document with a given number and version.
+     *
+     * @param number  The number of the document
+     * @param version The version of the document
+     * @return The created document
+     */
+    private static JSONObject createDocument(int number, int version) {
+        return new JSONObject()
+                .put("name", "Device " + number)
+                .put("keywords", Arrays.asList("test", "device" + number))
+                .put("version", version);
+    }
+
+    /**
+     * Asserts that a given client contains exactly the given documents.
+     *
+     * @param expected The map (document ID --> document) of the expected documents
+     * @param client   The client to check
+     */
+    private static void assertDocuments(Map<String, JSONObject> expected, FileRepositoryClient client) {
+        Map<String, JSONObject> actual = client.getAllDocuments();
+        assertEquals(expected.keySet(), actual.keySet());
+        expected.forEach((id, document) -> assertTrue(document.similar(actual.get(id)),
+                () -> "Expected " + document + " but got " + actual.get(id)));
+    }
+}
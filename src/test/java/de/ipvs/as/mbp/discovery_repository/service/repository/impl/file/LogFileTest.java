@@ -0,0 +1,152 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.file;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link LogFile}, covering the detection of incomplete and corrupted records at the end of the log
+ * file as they are left behind by a crash during a write.
+ */
+class LogFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void scanReturnsAllCompleteRecords() throws IOException {
+        try (LogFile logFile = new LogFile(directory.resolve("test.log"))) {
+            append(logFile, "a", "b", "c");
+
+            List<String> ids = new ArrayList<>();
+            assertEquals(logFile.size(), logFile.scan(0, r -> ids.add(r.getId())));
+            assertEquals(List.of("a", "b", "c"), ids);
+        }
+    }
+
+    @Test
+    void tornTailIsDroppedAndTruncated() throws IOException {
+        Path path = directory.resolve("test.log");
+
+        //Write complete records and remember where they end
+        long validEnd;
+        try (LogFile logFile = new LogFile(path)) {
+            append(logFile, "a", "b");
+            validEnd = logFile.size();
+        }
+
+        //Simulate a crash in the middle of writing a further record
+        ByteBuffer record = encode("c");
+        writeRaw(path, validEnd, record.limit(record.capacity() / 2));
+
+        try (LogFile logFile = new LogFile(path)) {
+            //The incomplete record must not be visited
+            List<String> ids = new ArrayList<>();
+            long end = logFile.scan(0, r -> ids.add(r.getId()));
+            assertEquals(validEnd, end);
+            assertEquals(List.of("a", "b"), ids);
+
+            //After truncation, new records are appended directly behind the valid ones
+            logFile.truncate(end);
+            assertEquals(validEnd, logFile.size());
+            append(logFile, "d");
+        }
+
+        //The appended record survives reopening
+        try (LogFile logFile = new LogFile(path)) {
+            List<String> ids = new ArrayList<>();
+            assertEquals(logFile.size(), logFile.scan(0, r -> ids.add(r.getId())));
+            assertEquals(List.of("a", "b", "d"), ids);
+        }
+    }
+
+    @Test
+    void tornLengthPrefixIsDropped() throws IOException {
+        Path path = directory.resolve("test.log");
+        long validEnd;
+        try (LogFile logFile = new LogFile(path)) {
+            append(logFile, "a");
+            validEnd = logFile.size();
+        }
+
+        //Only a part of the length field was written
+        writeRaw(path, validEnd, ByteBuffer.wrap(new byte[]{0, 0, 1}));
+
+        try (LogFile logFile = new LogFile(path)) {
+            assertEquals(validEnd, logFile.scan(0, r -> {
+            }));
+        }
+    }
+
+    @Test
+    void recordWithBadChecksumEndsTheScan() throws IOException {
+        Path path = directory.resolve("test.log");
+        long validEnd;
+        try (LogFile logFile = new LogFile(path)) {
+            append(logFile, "a");
+            validEnd = logFile.size();
+            append(logFile, "b");
+        }
+
+        //Corrupt the last byte of the second record
+        long size;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+        }
+        writeRaw(path, size - 1, ByteBuffer.wrap(new byte[]{'#'}));
+
+        try (LogFile logFile = new LogFile(path)) {
+            List<String> ids = new ArrayList<>();
+            assertEquals(validEnd, logFile.scan(0, r -> ids.add(r.getId())));
+            assertEquals(List.of("a"), ids);
+        }
+    }
+
+    /**
+     * Appends a record per given identifier to a given log file.
+     *
+     * @param logFile The log file to append to
+     * @param ids     The identifiers of the records
+     * @throws IOException In case the records could not be appended
+     */
+    private static void append(LogFile logFile, String... ids) throws IOException {
+        for (String id : ids) {
+            logFile.append(encode(id));
+        }
+    }
+
+    /**
+     * Encodes a put record for a given identifier with a small document.
+     *
+     * @param id The identifier of the record
+     * @return The encoded record
+     */
+    private static ByteBuffer encode(String id) {
+        byte[] document = ("{\"name\":\"" + id + "\"}").getBytes(StandardCharsets.UTF_8);
+        return LogRecord.encode(LogRecord.TYPE_PUT, 1, id, document, document);
+    }
+
+    /**
+     * Writes given bytes to a given position of a file, bypassing the {@link LogFile}.
+     *
+     * @param path     The path to the file
+     * @param position The position to write to
+     * @param bytes    The bytes to write
+     * @throws IOException In case the bytes could not be written
+     */
+    private static void writeRaw(Path path, long position, ByteBuffer bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(bytes, position);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.impl.memory.index;
+
+import de.ipvs.as.mbp.discovery_repository.service.repository.impl.elasticsearch.util.ParserUtils;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link KeywordIndex}, covering the lookups of the string operators with and without wildcard
+ * characters in comparison to the predicates that are compiled for the elasticsearch repository.
+ */
+class KeywordIndexTest {
+
+    //Values of the indexed documents, whose identifiers are their positions
+    private static final String[] VALUES = {"Raspberry Pi", "Raspberry Pi 4", "Arduino", "sensor*", "Sensor 1",
+            "ESP?32", "pi"};
+
+    @Test
+    void literalMatchStringsUseIndexedLookups() {
+        KeywordIndex index = createIndex();
+        assertEquals(Set.of("0", "1"), index.find("rasp", "begins_with"));
+        assertEquals(Set.of("0", "6"), index.find("PI", "ends_with"));
+        assertEquals(Set.of("0", "1"), index.find("berry", "contains"));
+        assertEquals(Set.of("2"), index.find("arduino", "equals"));
+    }
+
+    @Test
+    void wildcardsAreInterpretedForEquality() {
+        KeywordIndex index = createIndex();
+        assertEquals(Set.of("3", "4"), index.find("sensor*", "equals"));
+        assertEquals(Set.of("3", "4"), index.find("SENSOR*", "not_equals"));
+        assertEquals(Set.of("3"), index.find("sensor\\*", "equals"));
+    }
+
+    @Test
+    void wildcardsAreInterpretedForPatternOperators() {
+        KeywordIndex index = createIndex();
+        assertEquals(Set.of("0", "1"), index.find("Ras*Pi", "begins_with"));
+        assertEquals(Set.of("0", "1"), index.find("R?sp", "begins_with"));
+        assertEquals(Set.of("1"), index.find("*4", "ends_with"));
+        assertEquals(Set.of("0", "6"), index.find("p?", "ends_with"));
+        assertEquals(Set.of("0", "1"), index.find("b?rry", "contains"));
+    }
+
+    @Test
+    void escapedWildcardsAreMatchedLiterally() {
+        KeywordIndex index = createIndex();
+        assertEquals(Set.of("3"), index.find("sensor\\*", "begins_with"));
+        assertEquals(Set.of("5"), index.find("esp\\?", "contains"));
+    }
+
+    @Test
+    void lookupsAgreeWithCompiledPredicates() {
+        KeywordIndex index = createIndex();
+        String[] operators = {"equals", "begins_with", "ends_with", "contains"};
+        String[] matches = {"pi", "Ras*", "*berry*", "r?sp", "?", "sensor*", "sensor\\*", "esp?32", "4", "x*"};
+
+        for (String operator : operators) {
+            for (String match : matches) {
+                assertEquals(evaluatePredicate(match, operator), index.find(match, operator), operator + " " + match);
+            }
+        }
+    }
+
+    /**
+     * Creates an index that contains the values of the test documents.
+     *
+     * @return The created index
+     */
+    private static KeywordIndex createIndex() {
+        KeywordIndex index = new KeywordIndex();
+        for (int i = 0; i < VALUES.length; i++) index.add(String.valueOf(i), VALUES[i]);
+        return index;
+    }
+
+    /**
+     * Determines the identifiers of the test documents that satisfy the predicate that is compiled for the
+     * elasticsearch repository from a given match string and operator.
+     *
+     * @param match    The match string
+     * @param operator The string operator
+     * @return The set of matching document IDs
+     */
+    private static Set<String> evaluatePredicate(String match, String operator) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i < VALUES.length; i++) {
+            JSONObject document = new JSONObject().put("name", VALUES[i]);
+            if (ParserUtils.createStringPredicate(new JSONObject().put("match", match).put("operator", operator), "name")
+                    .test(document)) {
+                result.add(String.valueOf(i));
+            }
+        }
+        return result;
+    }
+}
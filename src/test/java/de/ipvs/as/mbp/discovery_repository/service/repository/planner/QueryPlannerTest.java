@@ -0,0 +1,201 @@
+package de.ipvs.as.mbp.discovery_repository.service.repository.planner;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link QueryPlanner}, covering the detection of unsatisfiable keyword constraints, the merging of
+ * redundant constraints on the same field and the ordering of the requirements by their costs.
+ */
+class QueryPlannerTest {
+
+    @Test
+    void missingRequirementsResultInEmptyPlan() {
+        QueryPlan plan = QueryPlanner.plan(null);
+        assertFalse(plan.isUnsatisfiable());
+        assertTrue(plan.getRequirements().isEmpty());
+    }
+
+    @Test
+    void duplicatesAreRemoved() {
+        QueryPlan plan = plan(name("equals", "Pi"), name("equals", "Pi"));
+        assertFalse(plan.isUnsatisfiable());
+        assertEquals(1, plan.getRequirements().length());
+    }
+
+    @Test
+    void equalsAndNotEqualsOfSameValueAreUnsatisfiable() {
+        assertTrue(plan(name("equals", "Pi"), name("not_equals", "pi")).isUnsatisfiable());
+    }
+
+    @Test
+    void equalsOfDifferentValuesAreUnsatisfiable() {
+        assertTrue(plan(name("equals", "Pi"), name("equals", "Arduino")).isUnsatisfiable());
+    }
+
+    @Test
+    void equalsOfSameValueInDifferentCaseAreMerged() {
+        QueryPlan plan = plan(name("equals", "Pi"), name("equals", "PI"));
+        assertFalse(plan.isUnsatisfiable());
+        assertMatches(plan, "Pi");
+    }
+
+    @Test
+    void equalsAndNotEqualsOfDifferentValuesAreMerged() {
+        QueryPlan plan = plan(name("not_equals", "Arduino"), name("equals", "Pi"));
+        assertFalse(plan.isUnsatisfiable());
+        assertMatches(plan, "Pi");
+    }
+
+    @Test
+    void patternsSatisfiedByEqualsAreMerged() {
+        QueryPlan plan = plan(name("begins_with", "Rasp"), name("ends_with", "Pi"),
+                name("contains", "berry"), name("equals", "Raspberry Pi"));
+        assertFalse(plan.isUnsatisfiable());
+        assertMatches(plan, "Raspberry Pi");
+    }
+
+    @Test
+    void patternsViolatedByEqualsAreUnsatisfiable() {
+        assertTrue(plan(name("equals", "Raspberry Pi"), name("begins_with", "Ard")).isUnsatisfiable());
+        assertTrue(plan(name("equals", "Raspberry Pi"), name("ends_with", "uino")).isUnsatisfiable());
+        assertTrue(plan(name("equals", "Raspberry Pi"), name("contains", "duin")).isUnsatisfiable());
+    }
+
+    @Test
+    void nestedPrefixesAreMergedIntoLongestOne() {
+        QueryPlan plan = plan(name("begins_with", "Ra"), name("begins_with", "Rasp"), name("begins_with", "Ras"));
+        assertFalse(plan.isUnsatisfiable());
+        assertMatches(plan, "Rasp");
+    }
+
+    @Test
+    void exclusivePrefixesAreUnsatisfiable() {
+        assertTrue(plan(name("begins_with", "Rasp"), name("begins_with", "Ard")).isUnsatisfiable());
+    }
+
+    @Test
+    void nestedSuffixesAreMergedIntoLongestOne() {
+        QueryPlan plan = plan(name("ends_with", "Pi 4"), name("ends_with", " 4"));
+        assertFalse(plan.isUnsatisfiable());
+        assertMatches(plan, "Pi 4");
+    }
+
+    @Test
+    void exclusiveSuffixesAreUnsatisfiable() {
+        assertTrue(plan(name("ends_with", "Pi 4"), name("ends_with", "Pi 3")).isUnsatisfiable());
+    }
+
+    @Test
+    void prefixAndSuffixAreNotExclusive() {
+        QueryPlan plan = plan(name("begins_with", "Rasp"), name("ends_with", "Pi"));
+        assertFalse(plan.isUnsatisfiable());
+        assertEquals(2, plan.getRequirements().length());
+    }
+
+    @Test
+    void containedSubstringsAreSubsumed() {
+        QueryPlan plan = plan(name("contains", "berry"), name("contains", "Raspberry"), name("contains", "rasp"));
+        assertFalse(plan.isUnsatisfiable());
+        assertMatches(plan, "Raspberry");
+    }
+
+    @Test
+    void unrelatedSubstringsAreKept() {
+        QueryPlan plan = plan(name("contains", "berry"), name("contains", "Pi"));
+        assertFalse(plan.isUnsatisfiable());
+        assertMatches(plan, "berry", "Pi");
+    }
+
+    @Test
+    void patternsWithWildcardsAreNotAnalyzed() {
+        QueryPlan plan = plan(name("begins_with", "Ras*"), name("begins_with", "Ard"));
+        assertFalse(plan.isUnsatisfiable());
+        assertEquals(2, plan.getRequirements().length());
+    }
+
+    @Test
+    void equalityWithWildcardsIsNotAnalyzed() {
+        QueryPlan plan = plan(name("equals", "Rasp*"), name("equals", "Raspberry Pi"));
+        assertFalse(plan.isUnsatisfiable());
+        assertEquals(2, plan.getRequirements().length());
+
+        plan = plan(name("equals", "Raspberry Pi"), name("not_equals", "Rasp*"));
+        assertFalse(plan.isUnsatisfiable());
+        assertEquals(2, plan.getRequirements().length());
+    }
+
+    @Test
+    void constraintsOnDifferentFieldsAreIndependent() {
+        QueryPlan plan = plan(name("equals", "Pi"), locationDescription("equals", "Kitchen"));
+        assertFalse(plan.isUnsatisfiable());
+        assertEquals(2, plan.getRequirements().length());
+
+        assertTrue(plan(locationDescription("begins_with", "Kitchen"), locationDescription("begins_with", "Living"))
+                .isUnsatisfiable());
+    }
+
+    @Test
+    void requirementsAreOrderedByCost() {
+        JSONObject description = new JSONObject().put("type", "description").put("operator", "contains").put("match", "sensor");
+        JSONObject keywords = new JSONObject().put("type", "keywords").put("operator", "contain").put("match", "pi");
+        JSONObject prefix = name("begins_with", "Rasp");
+
+        JSONArray requirements = plan(description, prefix, keywords).getRequirements();
+        assertTrue(keywords.similar(requirements.get(0)));
+        assertTrue(prefix.similar(requirements.get(1)));
+        assertTrue(description.similar(requirements.get(2)));
+    }
+
+    /**
+     * Plans a given list of requirements.
+     *
+     * @param requirements The requirements to plan
+     * @return The resulting plan
+     */
+    private static QueryPlan plan(JSONObject... requirements) {
+        return QueryPlanner.plan(new JSONArray(requirements));
+    }
+
+    /**
+     * Creates a requirement on the name of the device descriptions.
+     *
+     * @param operator The operator of the requirement
+     * @param match    The match string of the requirement
+     * @return The created requirement
+     */
+    private static JSONObject name(String operator, String match) {
+        return new JSONObject().put("type", "name").put("operator", operator).put("match", match);
+    }
+
+    /**
+     * Creates a requirement on the textual description of the location of the device descriptions.
+     *
+     * @param operator The operator of the requirement
+     * @param match    The match string of the requirement
+     * @return The created requirement
+     */
+    private static JSONObject locationDescription(String operator, String match) {
+        return new JSONObject().put("type", "location").put("operator", "described_by")
+                .put("details", new JSONObject().put("operator", operator).put("match", match));
+    }
+
+    /**
+     * Asserts that a given plan consists exactly of requirements with given match strings, in any order.
+     *
+     * @param plan    The plan to check
+     * @param matches The expected match strings
+     */
+    private static void assertMatches(QueryPlan plan, String... matches) {
+        List<String> actual = new ArrayList<>();
+        plan.getRequirements().forEach(r -> actual.add(((JSONObject) r).getString("match")));
+        assertEquals(List.of(matches).size(), actual.size(), actual::toString);
+        assertTrue(actual.containsAll(List.of(matches)), actual::toString);
+    }
+}
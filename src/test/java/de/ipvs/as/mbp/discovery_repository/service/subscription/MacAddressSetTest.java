@@ -0,0 +1,153 @@
+package de.ipvs.as.mbp.discovery_repository.service.subscription;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link MacAddressSet}, covering the packing of MAC addresses, the construction of sets across
+ * resizes of their hash tables and the set operations that are used for diffing query results.
+ */
+class MacAddressSetTest {
+
+    @Test
+    void packAndFormatAreInverse() {
+        long packed = MacAddressSet.packMacAddress("0a:1B:2c:3D:4e:5F");
+        assertEquals(0x0A1B2C3D4E5FL, packed);
+        assertEquals("0A:1B:2C:3D:4E:5F", MacAddressSet.formatMacAddress(packed));
+        assertEquals(0L, MacAddressSet.packMacAddress("00:00:00:00:00:00"));
+        assertEquals(0xFFFFFFFFFFFFL, MacAddressSet.packMacAddress("FF:FF:FF:FF:FF:FF"));
+    }
+
+    @Test
+    void invalidMacAddressesAreRejected() {
+        assertEquals(-1, MacAddressSet.packMacAddress((String) null));
+        assertEquals(-1, MacAddressSet.packMacAddress(""));
+        assertEquals(-1, MacAddressSet.packMacAddress("AA:BB:CC:DD:EE"));
+        assertEquals(-1, MacAddressSet.packMacAddress("AA-BB-CC-DD-EE-FF"));
+        assertEquals(-1, MacAddressSet.packMacAddress("AA:BB:CC:DD:EE:FG"));
+        assertEquals(-1, MacAddressSet.packMacAddress(new JSONObject()));
+        assertEquals(-1, MacAddressSet.packMacAddress((JSONObject) null));
+    }
+
+    @Test
+    void setsIgnoreInvalidAndDuplicateMacAddresses() {
+        MacAddressSet set = MacAddressSet.of(Arrays.asList(device("AA:BB:CC:DD:EE:FF"), device("aa:bb:cc:dd:ee:ff"),
+                device("invalid"), new JSONObject()));
+        assertEquals(1, set.size());
+        assertTrue(set.contains(device("AA:BB:CC:DD:EE:FF")));
+        assertFalse(set.contains(-1));
+        assertSame(MacAddressSet.EMPTY, MacAddressSet.of(Collections.singletonList(device("invalid"))));
+    }
+
+    @Test
+    void zeroMacAddressIsStored() {
+        MacAddressSet set = MacAddressSet.of(Collections.singletonList(device("00:00:00:00:00:00")));
+        assertEquals(1, set.size());
+        assertTrue(set.contains(0L));
+        assertEquals(Collections.singleton(0L), toSet(set));
+    }
+
+    @Test
+    void withAllKeepsEntriesAcrossResizes() {
+        //Grow the set step by step, such that its table is resized multiple times
+        MacAddressSet set = MacAddressSet.EMPTY;
+        Set<Long> expected = new HashSet<>();
+        for (int batch = 0; batch < 12; batch++) {
+            List<JSONObject> devices = new ArrayList<>();
+            for (int i = 0; i < (1 << batch); i++) {
+                long macAddress = (batch * 100003L + i) * 0x10001L;
+                devices.add(device(MacAddressSet.formatMacAddress(macAddress)));
+                expected.add(macAddress);
+            }
+
+            MacAddressSet previous = set;
+            set = set.withAll(devices);
+
+            //The previous set is not modified
+            assertEquals(expected.size() - devices.size(), previous.size());
+            assertEquals(expected.size(), set.size());
+        }
+
+        //All entries are contained exactly once
+        assertEquals(expected, toSet(set));
+        for (long macAddress : expected) assertTrue(set.contains(macAddress));
+        assertFalse(set.contains(0xFFFFFFFFFFFFL));
+    }
+
+    @Test
+    void withAllOfContainedMacAddressesKeepsSize() {
+        List<JSONObject> devices = devices(0, 100);
+        MacAddressSet set = MacAddressSet.of(devices);
+        MacAddressSet same = set.withAll(devices.subList(10, 50));
+        assertEquals(100, same.size());
+        assertEquals(toSet(set), toSet(same));
+    }
+
+    @Test
+    void forEachNotInReturnsDifference() {
+        //Use sets of different sizes, such that their tables have different lengths
+        MacAddressSet large = MacAddressSet.of(devices(0, 1000));
+        MacAddressSet small = MacAddressSet.of(devices(900, 1100));
+
+        Set<Long> departed = new HashSet<>();
+        large.forEachNotIn(small, departed::add);
+        assertEquals(toSet(MacAddressSet.of(devices(0, 900))), departed);
+
+        Set<Long> entered = new HashSet<>();
+        small.forEachNotIn(large, entered::add);
+        assertEquals(toSet(MacAddressSet.of(devices(1000, 1100))), entered);
+    }
+
+    @Test
+    void forEachNotInWithEmptySets() {
+        MacAddressSet set = MacAddressSet.of(devices(0, 10));
+
+        Set<Long> all = new HashSet<>();
+        set.forEachNotIn(MacAddressSet.EMPTY, all::add);
+        assertEquals(toSet(set), all);
+
+        MacAddressSet.EMPTY.forEachNotIn(set, m -> fail("The empty set has no entries."));
+        set.forEachNotIn(set, m -> fail("A set has no entries that are not contained in itself."));
+    }
+
+    /**
+     * Creates a device description with a given MAC address.
+     *
+     * @param macAddress The MAC address
+     * @return The created device description
+     */
+    private static JSONObject device(String macAddress) {
+        return new JSONObject().put("identifiers", new JSONObject().put("mac_address", macAddress));
+    }
+
+    /**
+     * Creates device descriptions with consecutive MAC addresses from a given start (inclusive) to a given end
+     * (exclusive).
+     *
+     * @param start The first MAC address as number
+     * @param end   The MAC address behind the last one as number
+     * @return The list of created device descriptions
+     */
+    private static List<JSONObject> devices(int start, int end) {
+        List<JSONObject> devices = new ArrayList<>();
+        for (int i = start; i < end; i++) devices.add(device(MacAddressSet.formatMacAddress(i)));
+        return devices;
+    }
+
+    /**
+     * Collects the packed MAC addresses of a given set into a {@link Set}, failing on duplicates.
+     *
+     * @param set The set to collect
+     * @return The set of packed MAC addresses
+     */
+    private static Set<Long> toSet(MacAddressSet set) {
+        Set<Long> result = new HashSet<>();
+        set.forEach(m -> assertTrue(result.add(m), "Duplicate entry " + MacAddressSet.formatMacAddress(m)));
+        assertEquals(set.size(), result.size());
+        return result;
+    }
+}